@@ -107,6 +107,13 @@ public class Antlr4Mojo extends AbstractMojo {
 	@Parameter(property = "antlr4.forceATN", defaultValue = "false")
 	protected boolean forceATN;
 
+	/**
+	 * Precompute the DFA of lexer modes which do not use predicates, and
+	 * generate lexers which match tokens using the precomputed tables.
+	 */
+	@Parameter(property = "antlr4.compileLexer", defaultValue = "false")
+	protected boolean compileLexer;
+
 	/**
 	 * A list of grammar options to explicitly specify to the tool. These
 	 * options are passed to the tool using the
@@ -364,6 +371,10 @@ public class Antlr4Mojo extends AbstractMojo {
 			args.add("-Xforce-atn");
 		}
 
+		if (compileLexer) {
+			args.add("-Xcompile-lexer");
+		}
+
 		if (options != null) {
 			for (Map.Entry<String, String> option : options.entrySet()) {
 				args.add(String.format("-D%s=%s", option.getKey(), option.getValue()));
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.mojo.antlr4;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.DFASnapshotDeserializer;
+import org.antlr.v4.runtime.atn.DFASnapshotSerializer;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the compiled lexer and parser for a grammar over a directory of sample
+ * inputs, and writes the resulting DFA cache next to the compiled recognizer
+ * classes. Generated recognizers load these snapshots from the classpath the
+ * first time they are constructed, so they start with a warm DFA cache.
+ *
+ * <p>This goal runs after compilation. Use one execution per grammar.</p>
+ *
+ * @see DFASnapshotDeserializer#loadResource
+ */
+@Mojo(
+	name = "warmup",
+	defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+	requiresDependencyResolution = ResolutionScope.COMPILE,
+	requiresProject = true)
+public class Antlr4WarmupMojo extends AbstractMojo {
+	/**
+	 * The fully qualified name of the generated lexer.
+	 */
+	@Parameter(property = "antlr4.warmup.lexer", required = true)
+	protected String lexer;
+
+	/**
+	 * The fully qualified name of the generated parser. If this is not
+	 * specified, only the lexer DFA is pre-computed.
+	 */
+	@Parameter(property = "antlr4.warmup.parser")
+	protected String parser;
+
+	/**
+	 * The parser rule used to parse each sample input. This is required when
+	 * {@link #parser} is specified.
+	 */
+	@Parameter(property = "antlr4.warmup.startRule")
+	protected String startRule;
+
+	/**
+	 * The directory containing the sample inputs.
+	 */
+	@Parameter(defaultValue = "${basedir}/src/main/antlr4-samples")
+	protected File sampleDirectory;
+
+	/**
+	 * A set of Ant-like inclusion patterns used to select sample inputs from
+	 * the sample directory. By default, all files are used.
+	 */
+	@Parameter
+	protected Set<String> includes = new HashSet<String>();
+
+	/**
+	 * A set of Ant-like exclusion patterns used to prevent sample inputs from
+	 * being used.
+	 */
+	@Parameter
+	protected Set<String> excludes = new HashSet<String>();
+
+	/**
+	 * The encoding of the sample inputs.
+	 */
+	@Parameter(property = "project.build.sourceEncoding")
+	protected String inputEncoding;
+
+	/**
+	 * Skip the pre-computation of the DFA.
+	 */
+	@Parameter(property = "antlr4.warmup.skip", defaultValue = "false")
+	protected boolean skip;
+
+	/**
+	 * The current Maven project.
+	 */
+	@Parameter(property = "project", required = true, readonly = true)
+	protected MavenProject project;
+
+	/**
+	 * The directory containing the compiled recognizers. The DFA snapshots
+	 * are written to this directory.
+	 */
+	@Parameter(defaultValue = "${project.build.outputDirectory}")
+	private File classesDirectory;
+
+	@Component
+	private BuildContext buildContext;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		Log log = getLog();
+		if (skip) {
+			log.info("Skipping ANTLR 4 DFA warmup");
+			return;
+		}
+
+		if (parser != null && startRule == null) {
+			throw new MojoExecutionException("The startRule parameter is required when a parser is specified.");
+		}
+
+		if (!sampleDirectory.isDirectory()) {
+			log.info("No ANTLR 4 sample inputs in " + sampleDirectory.getAbsolutePath());
+			return;
+		}
+
+		String[] samples = getSampleFiles();
+		if (samples.length == 0) {
+			log.info("No ANTLR 4 sample inputs in " + sampleDirectory.getAbsolutePath());
+			return;
+		}
+
+		Charset charset = inputEncoding == null ? Charset.defaultCharset() : Charset.forName(inputEncoding.trim());
+		URLClassLoader classLoader = createClassLoader();
+		try {
+			Class<? extends Lexer> lexerClass = loadClass(classLoader, lexer, Lexer.class);
+			Class<? extends Parser> parserClass = parser != null ? loadClass(classLoader, parser, Parser.class) : null;
+			Method startMethod = parserClass != null ? getStartMethod(parserClass) : null;
+
+			Lexer lexerInstance = null;
+			Parser parserInstance = null;
+			int syntaxErrors = 0;
+			for (String sample : samples) {
+				File sampleFile = new File(sampleDirectory, sample);
+				log.debug("  Warming up with " + sampleFile);
+				CharStream input = CharStreams.fromFile(sampleFile, charset);
+				lexerInstance = createRecognizer(lexerClass, CharStream.class, input);
+				lexerInstance.removeErrorListeners();
+				if (parserClass == null) {
+					lexerInstance.getAllTokens();
+					continue;
+				}
+
+				parserInstance = createRecognizer(parserClass, TokenStream.class, new CommonTokenStream(lexerInstance));
+				parserInstance.removeErrorListeners();
+				invokeStartRule(startMethod, parserInstance);
+				syntaxErrors += parserInstance.getNumberOfSyntaxErrors();
+			}
+
+			if (syntaxErrors > 0) {
+				log.warn("ANTLR 4 DFA warmup encountered " + syntaxErrors + " syntax errors in the sample inputs");
+			}
+
+			writeSnapshot(lexerClass, lexerInstance.getATN());
+			if (parserInstance != null) {
+				writeSnapshot(parserClass, parserInstance.getATN());
+			}
+		} catch (IOException ex) {
+			throw new MojoExecutionException("Failed to pre-compute the DFA from the sample inputs", ex);
+		} finally {
+			try {
+				classLoader.close();
+			} catch (IOException ex) {
+				log.debug("Failed to close the recognizer class loader", ex);
+			}
+		}
+	}
+
+	private String[] getSampleFiles() {
+		DirectoryScanner scanner = new DirectoryScanner();
+		scanner.setBasedir(sampleDirectory);
+		if (includes != null && !includes.isEmpty()) {
+			scanner.setIncludes(includes.toArray(new String[includes.size()]));
+		}
+
+		if (excludes != null && !excludes.isEmpty()) {
+			scanner.setExcludes(excludes.toArray(new String[excludes.size()]));
+		}
+
+		scanner.addDefaultExcludes();
+		scanner.scan();
+		return scanner.getIncludedFiles();
+	}
+
+	/**
+	 * Creates a class loader for the compiled project classes. The ANTLR
+	 * runtime is resolved through the plugin class loader, so the recognizers
+	 * share the runtime classes used by this goal.
+	 */
+	private URLClassLoader createClassLoader() throws MojoExecutionException {
+		List<URL> urls = new ArrayList<URL>();
+		try {
+			urls.add(classesDirectory.toURI().toURL());
+			for (String element : project.getCompileClasspathElements()) {
+				urls.add(new File(element).toURI().toURL());
+			}
+		} catch (DependencyResolutionRequiredException ex) {
+			throw new MojoExecutionException("Failed to resolve the compile classpath", ex);
+		} catch (MalformedURLException ex) {
+			throw new MojoExecutionException("Invalid classpath element", ex);
+		}
+
+		return new URLClassLoader(urls.toArray(new URL[urls.size()]), getClass().getClassLoader());
+	}
+
+	private static <T> Class<? extends T> loadClass(ClassLoader classLoader, String name, Class<T> baseType) throws MojoExecutionException {
+		Class<?> result;
+		try {
+			result = Class.forName(name, true, classLoader);
+		} catch (ClassNotFoundException ex) {
+			throw new MojoExecutionException("Could not find the recognizer " + name + "; make sure the warmup goal runs after compilation", ex);
+		}
+
+		if (!baseType.isAssignableFrom(result)) {
+			throw new MojoExecutionException(name + " is not a subclass of " + baseType.getName());
+		}
+
+		return result.asSubclass(baseType);
+	}
+
+	private Method getStartMethod(Class<? extends Parser> parserClass) throws MojoExecutionException {
+		try {
+			return parserClass.getMethod(startRule);
+		} catch (NoSuchMethodException ex) {
+			throw new MojoExecutionException("The parser " + parserClass.getName() + " does not have a rule named " + startRule, ex);
+		}
+	}
+
+	private static <T, A> T createRecognizer(Class<? extends T> recognizerClass, Class<A> argumentType, A argument) throws MojoExecutionException {
+		try {
+			return recognizerClass.getConstructor(argumentType).newInstance(argument);
+		} catch (InvocationTargetException ex) {
+			throw new MojoExecutionException("Failed to create " + recognizerClass.getName(), ex.getCause());
+		} catch (ReflectiveOperationException ex) {
+			throw new MojoExecutionException("Failed to create " + recognizerClass.getName(), ex);
+		}
+	}
+
+	private static void invokeStartRule(Method startMethod, Parser parser) throws MojoExecutionException {
+		try {
+			startMethod.invoke(parser);
+		} catch (InvocationTargetException ex) {
+			throw new MojoExecutionException("Failed to parse a sample input with rule " + startMethod.getName(), ex.getCause());
+		} catch (IllegalAccessException ex) {
+			throw new MojoExecutionException("Failed to parse a sample input with rule " + startMethod.getName(), ex);
+		}
+	}
+
+	private void writeSnapshot(Class<?> recognizerClass, ATN atn) throws IOException {
+		String packagePath = recognizerClass.getPackage() != null ? recognizerClass.getPackage().getName().replace('.', File.separatorChar) : "";
+		File outputDir = new File(classesDirectory, packagePath);
+		if (!outputDir.exists()) {
+			outputDir.mkdirs();
+		}
+
+		File outputFile = new File(outputDir, recognizerClass.getSimpleName() + DFASnapshotDeserializer.RESOURCE_EXTENSION);
+		getLog().info("Writing pre-computed DFA: " + outputFile);
+		OutputStream output = new BufferedOutputStream(buildContext.newFileOutputStream(outputFile));
+		try {
+			new DFASnapshotSerializer(atn).serialize(output);
+		} finally {
+			output.close();
+		}
+	}
+}
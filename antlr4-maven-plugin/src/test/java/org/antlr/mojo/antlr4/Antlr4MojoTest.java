@@ -8,6 +8,14 @@ package org.antlr.mojo.antlr4;
 
 import io.takari.maven.testing.TestMavenRuntime;
 import io.takari.maven.testing.TestResources;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.Utils;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecution;
@@ -18,13 +26,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.function.ThrowingRunnable;
 
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
@@ -370,6 +385,115 @@ public class Antlr4MojoTest {
 		}
     }
 
+    @Test
+    public void warmup() throws Exception {
+        File baseDir = resources.getBasedir("warmup");
+        File generatedSources = new File(baseDir, "target/generated-sources/antlr4");
+        File classesDir = new File(baseDir, "target/classes");
+
+        File lexerSnapshot = new File(classesDir, "test/ExprLexer.dfa");
+        File parserSnapshot = new File(classesDir, "test/ExprParser.dfa");
+
+        final MavenProject project = maven.readMavenProject(baseDir);
+        final MavenSession session = maven.newMavenSession(project);
+
+        // the warmup goal runs on the compiled recognizers
+        maven.executeMojo(session, project, maven.newMojoExecution("antlr4"));
+        compile(new File(generatedSources, "test"), classesDir);
+
+        Xpp3Dom lexer = TestMavenRuntime.newParameter("lexer", "test.ExprLexer");
+        Xpp3Dom parser = TestMavenRuntime.newParameter("parser", "test.ExprParser");
+        Xpp3Dom startRule = TestMavenRuntime.newParameter("startRule", "prog");
+
+        ////////////////////////////////////////////////////////////////////////
+        // 1st - the snapshots are written next to the compiled recognizers
+        ////////////////////////////////////////////////////////////////////////
+
+        assertFalse(lexerSnapshot.exists());
+        assertFalse(parserSnapshot.exists());
+
+        maven.executeMojo(session, project, maven.newMojoExecution("warmup", lexer, parser, startRule));
+
+        assertTrue(lexerSnapshot.isFile());
+        assertTrue(parserSnapshot.isFile());
+
+        ////////////////////////////////////////////////////////////////////////
+        // 2nd - the generated recognizers load the snapshots when constructed
+        ////////////////////////////////////////////////////////////////////////
+
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { classesDir.toURI().toURL() }, getClass().getClassLoader());
+        try {
+            Lexer lexerInstance = classLoader.loadClass("test.ExprLexer").asSubclass(Lexer.class)
+                .getConstructor(CharStream.class)
+                .newInstance(CharStreams.fromString(""));
+            assertFalse(lexerInstance.getATN().modeToDFA[Lexer.DEFAULT_MODE].isEmpty());
+
+            Parser parserInstance = classLoader.loadClass("test.ExprParser").asSubclass(Parser.class)
+                .getConstructor(TokenStream.class)
+                .newInstance(new CommonTokenStream(lexerInstance));
+            assertTrue(hasDFAStates(parserInstance.getATN()));
+        } finally {
+            classLoader.close();
+        }
+
+        ////////////////////////////////////////////////////////////////////////
+        // 3rd - a parser without a start rule is rejected
+        ////////////////////////////////////////////////////////////////////////
+
+        final MojoExecution missingStartRule = maven.newMojoExecution("warmup", lexer, parser);
+        Throwable t = assertThrows(MojoExecutionException.class, new ThrowingRunnable() {
+            @Override
+            public void run() throws Throwable {
+                maven.executeMojo(session, project, missingStartRule);
+            }
+        });
+
+        assertEquals("The startRule parameter is required when a parser is specified.", t.getMessage());
+
+        ////////////////////////////////////////////////////////////////////////
+        // 4th - nothing is written when the goal is skipped
+        ////////////////////////////////////////////////////////////////////////
+
+        assertTrue(lexerSnapshot.delete());
+        assertTrue(parserSnapshot.delete());
+
+        Xpp3Dom skip = TestMavenRuntime.newParameter("skip", "true");
+        maven.executeMojo(session, project, maven.newMojoExecution("warmup", lexer, parser, startRule, skip));
+
+        assertFalse(lexerSnapshot.exists());
+        assertFalse(parserSnapshot.exists());
+    }
+
+    private static void compile(File sourceDir, File classesDir) throws Exception {
+        List<String> arguments = new ArrayList<String>();
+        arguments.add("-d");
+        arguments.add(classesDir.getAbsolutePath());
+        arguments.add("-classpath");
+        arguments.add(new File(ATN.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath());
+        File[] sources = sourceDir.listFiles();
+        assertNotNull(sources);
+        for (File source : sources) {
+            if (source.getName().endsWith(".java")) {
+                arguments.add(source.getAbsolutePath());
+            }
+        }
+
+        assertTrue(classesDir.isDirectory() || classesDir.mkdirs());
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeTrue(compiler != null);
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])));
+    }
+
+    private static boolean hasDFAStates(ATN atn) {
+        for (DFA dfa : atn.decisionToDFA) {
+            if (!dfa.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private byte[] checksum(File path) throws IOException {
         return MojoUtils.checksum(path);
     }
@@ -0,0 +1,12 @@
+grammar Expr;
+prog : stat* EOF ;
+stat : ID '=' expr ';' ;
+expr : expr ('*' | '/') expr
+     | expr ('+' | '-') expr
+     | '(' expr ')'
+     | ID
+     | INT
+     ;
+ID : [a-z]+ ;
+INT : [0-9]+ ;
+WS : [ \r\t\n]+ -> skip ;
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.test.runtime.java.api.JavaLexer;
+import org.antlr.v4.test.runtime.java.api.JavaParser;
+import org.antlr.v4.test.runtime.java.api.perf.TimeParserContention;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** The inputs shared by the benchmarks. Every benchmark reads the same
+ *  runtime sources, which are packaged as resources of the perf-testsuite
+ *  module, and parses them with the Java grammar of that module.
+ */
+public final class BenchmarkInputs {
+	public static final String[] SOURCE_FILES = TimeParserContention.SOURCE_FILES;
+
+	private BenchmarkInputs() {
+	}
+
+	public static List<String> loadSources() throws IOException {
+		List<String> sources = new ArrayList<String>();
+		ClassLoader loader = BenchmarkInputs.class.getClassLoader();
+		for (String resourceName : SOURCE_FILES) {
+			InputStream stream = loader.getResourceAsStream(resourceName);
+			if (stream == null) {
+				throw new IOException("Could not find resource " + resourceName);
+			}
+
+			try {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				byte[] chunk = new byte[8192];
+				for (int n = stream.read(chunk); n >= 0; n = stream.read(chunk)) {
+					buffer.write(chunk, 0, n);
+				}
+
+				sources.add(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+			}
+			finally {
+				stream.close();
+			}
+		}
+
+		return sources;
+	}
+
+	/** Lexes each source, so parser benchmarks do not measure the lexer. */
+	public static List<List<Token>> lexSources(List<String> sources) {
+		List<List<Token>> result = new ArrayList<List<Token>>();
+		for (String source : sources) {
+			JavaLexer lexer = new JavaLexer(CharStreams.fromString(source));
+			CommonTokenStream tokens = new CommonTokenStream(lexer);
+			tokens.fill();
+			result.add(new ArrayList<Token>(tokens.getTokens()));
+		}
+
+		return result;
+	}
+
+	public static JavaParser createParser(List<? extends Token> tokens) {
+		JavaParser parser = new JavaParser(new CommonTokenStream(new ListTokenSource(tokens)));
+		parser.removeErrorListeners();
+		return parser;
+	}
+
+	/** Parses the tokens and fails if the input has syntax errors, so a
+	 *  broken setup cannot produce meaningless numbers.
+	 */
+	public static ParserRuleContext parse(JavaParser parser) {
+		ParserRuleContext tree = parser.compilationUnit();
+		if (parser.getNumberOfSyntaxErrors() > 0) {
+			throw new IllegalStateException("Unexpected syntax errors in " + parser.getInputStream().getSourceName());
+		}
+
+		return tree;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.test.runtime.java.api.JavaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Parses the runtime sources on several threads at once. Every thread has
+ *  its own parser instances, and all of them share the ATN and DFA of
+ *  {@link JavaParser}. Compare the throughput with {@code -t 1} to see how
+ *  parsing scales; the number of threads defaults to 4.
+ *
+ *  @see org.antlr.v4.test.runtime.java.api.perf.TimeParserContention
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+@Threads(4)
+public class ConcurrentParseBenchmark {
+	private List<List<Token>> tokens;
+
+	@Setup(Level.Trial)
+	public void lexSources() throws IOException {
+		// each thread lexes its own copy, since the token stream updates the tokens
+		tokens = BenchmarkInputs.lexSources(BenchmarkInputs.loadSources());
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for (List<Token> fileTokens : tokens) {
+			blackhole.consume(BenchmarkInputs.parse(BenchmarkInputs.createParser(fileTokens)));
+		}
+	}
+}
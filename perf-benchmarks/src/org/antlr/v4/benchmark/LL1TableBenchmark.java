@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.misc.ConcurrentLongIntHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/** Compares lookups in the LL(1) table of the ATN, which maps a decision and
+ *  a token type to the predicted alternative, for a boxed
+ *  {@link ConcurrentHashMap} and {@link ConcurrentLongIntHashMap}. The table
+ *  resembles the one of a Java parser, and some lookups miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LL1TableBenchmark {
+	private static final int DECISIONS = 150;
+	private static final int TOKEN_TYPES = 110;
+	private static final int LOOKUPS = 1 << 12;
+
+	private final ConcurrentMap<Integer, Integer> boxedTable = new ConcurrentHashMap<Integer, Integer>();
+	private final ConcurrentLongIntHashMap primitiveTable = new ConcurrentLongIntHashMap();
+	private final int[] decisions = new int[LOOKUPS];
+	private final int[] symbols = new int[LOOKUPS];
+
+	@Setup(Level.Trial)
+	public void fillTables() {
+		for (int decision = 0; decision < DECISIONS; decision++) {
+			for (int symbol = 1; symbol < TOKEN_TYPES; symbol += 3) {
+				int alt = symbol % 5 + 1;
+				boxedTable.put((decision << 16) + symbol, alt);
+				primitiveTable.put(((long)decision << 32) | symbol, alt);
+			}
+		}
+
+		Random random = new Random(0);
+		for (int i = 0; i < LOOKUPS; i++) {
+			decisions[i] = random.nextInt(DECISIONS);
+			symbols[i] = 1 + random.nextInt(TOKEN_TYPES);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public int boxed() {
+		int result = 0;
+		for (int i = 0; i < LOOKUPS; i++) {
+			Integer alt = boxedTable.get((decisions[i] << 16) + symbols[i]);
+			if (alt != null) {
+				result += alt;
+			}
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public int primitive() {
+		int result = 0;
+		for (int i = 0; i < LOOKUPS; i++) {
+			result += primitiveTable.get(((long)decisions[i] << 32) | symbols[i], 0);
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.test.runtime.java.api.JavaLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Lexes the runtime sources with each {@link CharStream} implementation.
+ *  The "cold" variant clears the lexer DFA before every invocation, and the
+ *  "frozen" variant freezes the lexer DFA after lexing the sources once
+ *  during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+public class LexerBenchmark {
+	@Param({ "CodePointCharStream", "ANTLRInputStream", "UnbufferedCharStream" })
+	public String charStream;
+
+	@Param({ "warm", "frozen", "cold" })
+	public String dfa;
+
+	private List<String> sources;
+
+	@Setup(Level.Trial)
+	public void loadSources() throws IOException {
+		sources = BenchmarkInputs.loadSources();
+		if ("frozen".equals(dfa)) {
+			BenchmarkInputs.lexSources(sources);
+			JavaLexer._ATN.freezeDFA();
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void clearDFA() {
+		if ("cold".equals(dfa)) {
+			JavaLexer._ATN.clearDFA();
+		}
+	}
+
+	@Benchmark
+	public int lex() {
+		int tokenCount = 0;
+		for (String source : sources) {
+			JavaLexer lexer = new JavaLexer(createCharStream(source));
+			if ("UnbufferedCharStream".equals(charStream)) {
+				// the characters are gone by the time the token text is requested
+				lexer.setTokenFactory(new CommonTokenFactory(true));
+			}
+
+			for (Token t = lexer.nextToken(); t.getType() != Token.EOF; t = lexer.nextToken()) {
+				tokenCount++;
+			}
+		}
+
+		return tokenCount;
+	}
+
+	@SuppressWarnings("deprecation")
+	private CharStream createCharStream(String source) {
+		if ("CodePointCharStream".equals(charStream)) {
+			return CharStreams.fromString(source);
+		}
+		else if ("ANTLRInputStream".equals(charStream)) {
+			return new ANTLRInputStream(source);
+		}
+		else if ("UnbufferedCharStream".equals(charStream)) {
+			return new UnbufferedCharStream(new StringReader(source));
+		}
+
+		throw new IllegalArgumentException("Unknown char stream: " + charStream);
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TwoStageParser;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.test.runtime.java.api.JavaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Parses the runtime sources with a warm DFA, using SLL prediction, LL
+ *  prediction, or the two-stage strategy which parses with SLL and falls back
+ *  to LL after a syntax error. Each mode is measured with and without
+ *  building the parse tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+public class ParseBenchmark {
+	@Param({ "SLL", "LL", "TWO_STAGE" })
+	public String predictionMode;
+
+	@Param({ "true", "false" })
+	public boolean buildParseTree;
+
+	private List<List<Token>> tokens;
+
+	@Setup(Level.Trial)
+	public void lexSources() throws IOException {
+		tokens = BenchmarkInputs.lexSources(BenchmarkInputs.loadSources());
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for (List<Token> fileTokens : tokens) {
+			blackhole.consume(parse(fileTokens));
+		}
+	}
+
+	private ParserRuleContext parse(List<Token> fileTokens) {
+		JavaParser parser = BenchmarkInputs.createParser(fileTokens);
+		parser.setBuildParseTree(buildParseTree);
+		if ("LL".equals(predictionMode)) {
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			return BenchmarkInputs.parse(parser);
+		}
+
+		if ("SLL".equals(predictionMode)) {
+			parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+			return BenchmarkInputs.parse(parser);
+		}
+
+		return new TwoStageParser<JavaParser>(parser).parse(BenchmarkInputs::parse);
+	}
+}
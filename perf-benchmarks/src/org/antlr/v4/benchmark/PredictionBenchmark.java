@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.test.runtime.java.api.JavaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures {@code adaptivePredict} with an empty DFA ("cold"), which
+ *  simulates the ATN for every new decision, with the DFA left over from
+ *  the previous invocations ("warm"), and with a DFA which was warmed up and
+ *  frozen into compact tables during setup ("frozen"). The input is lexed
+ *  during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+public class PredictionBenchmark {
+	@Param({ "warm", "frozen", "cold" })
+	public String dfa;
+
+	private List<List<Token>> tokens;
+
+	@Setup(Level.Trial)
+	public void lexSources() throws IOException {
+		tokens = BenchmarkInputs.lexSources(BenchmarkInputs.loadSources());
+		if ("frozen".equals(dfa)) {
+			for (List<Token> fileTokens : tokens) {
+				BenchmarkInputs.parse(BenchmarkInputs.createParser(fileTokens));
+			}
+
+			JavaParser._ATN.freezeDFA();
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void clearDFA() {
+		if ("cold".equals(dfa)) {
+			JavaParser._ATN.clearDFA();
+		}
+	}
+
+	@Benchmark
+	public void parse(Blackhole blackhole) {
+		for (List<Token> fileTokens : tokens) {
+			JavaParser parser = BenchmarkInputs.createParser(fileTokens);
+			parser.setBuildParseTree(false);
+			ParserRuleContext tree = BenchmarkInputs.parse(parser);
+			blackhole.consume(tree);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenStreamRewriter;
+import org.antlr.v4.test.runtime.java.api.JavaLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures {@link TokenStreamRewriter#getText()} for the runtime sources
+ *  with one edit every {@link #editInterval} tokens, alternating between
+ *  inserts, replacements and deletions. An interval of 0 makes no edits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+public class RewriterBenchmark {
+	@Param({ "0", "100", "10" })
+	public int editInterval;
+
+	private final List<TokenStreamRewriter> rewriters = new ArrayList<TokenStreamRewriter>();
+
+	@Setup(Level.Trial)
+	public void createRewriters() throws IOException {
+		for (String source : BenchmarkInputs.loadSources()) {
+			CommonTokenStream tokens = new CommonTokenStream(new JavaLexer(CharStreams.fromString(source)));
+			tokens.fill();
+			TokenStreamRewriter rewriter = new TokenStreamRewriter(tokens);
+			if (editInterval > 0) {
+				// leave the EOF token alone
+				for (int i = 0; i < tokens.size() - 1; i += editInterval) {
+					switch ((i / editInterval) % 3) {
+					case 0:
+						rewriter.insertBefore(i, "/*x*/");
+						break;
+
+					case 1:
+						rewriter.replace(i, "y");
+						break;
+
+					default:
+						rewriter.delete(i);
+						break;
+					}
+				}
+			}
+
+			rewriters.add(rewriter);
+		}
+	}
+
+	@Benchmark
+	public void getText(Blackhole blackhole) {
+		for (TokenStreamRewriter rewriter : rewriters) {
+			blackhole.consume(rewriter.getText());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmark;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Walks the parse trees of the runtime sources with
+ *  {@link ParseTreeWalker#DEFAULT} and a listener which visits every node.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms1G", "-Xmx1G" })
+public class TreeWalkBenchmark {
+	private final List<ParserRuleContext> trees = new ArrayList<ParserRuleContext>();
+
+	@Setup(Level.Trial)
+	public void parseSources() throws IOException {
+		for (List<Token> fileTokens : BenchmarkInputs.lexSources(BenchmarkInputs.loadSources())) {
+			trees.add(BenchmarkInputs.parse(BenchmarkInputs.createParser(fileTokens)));
+		}
+	}
+
+	@Benchmark
+	public int walk() {
+		CountingListener listener = new CountingListener();
+		for (ParserRuleContext tree : trees) {
+			ParseTreeWalker.DEFAULT.walk(listener, tree);
+		}
+
+		return listener.count;
+	}
+
+	private static final class CountingListener implements ParseTreeListener {
+		int count;
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			count += node.getSymbol().getType();
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+			count++;
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			count += ctx.getRuleIndex();
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			count++;
+		}
+	}
+}
@@ -10,6 +10,7 @@ import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.MappedUTF8CharStream;
 import org.antlr.v4.test.runtime.java.api.JavaLexer;
 import org.openjdk.jol.info.GraphLayout;
 
@@ -196,6 +197,9 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 		tests.load_new_utf8(Parser_java_file, n);
 		tests.load_new_utf8(RuleContext_java_file, n);
 		tests.load_new_utf8(PerfDir+"/udhr_hin.txt", n);
+		tests.load_mapped_utf8(Parser_java_file, n);
+		tests.load_mapped_utf8(RuleContext_java_file, n);
+		tests.load_mapped_utf8(PerfDir+"/udhr_hin.txt", n);
 		System.out.println();
 
 		n = 2000;
@@ -203,6 +207,8 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 		tests.lex_legacy_java_utf8(n, true);
 		tests.lex_new_java_utf8(n, false);
 		tests.lex_new_java_utf8(n, true);
+		tests.lex_mapped_java_utf8(n, false);
+		tests.lex_mapped_java_utf8(n, true);
 		System.out.println();
 
 		n = 400;
@@ -219,6 +225,13 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 		tests.lex_new_grapheme_utf8("emoji.txt", n, false);
 		tests.lex_new_grapheme_utf8("emoji.txt", n, true);
 
+		tests.lex_mapped_grapheme_utf8("udhr_kor.txt", n, false);
+		tests.lex_mapped_grapheme_utf8("udhr_kor.txt", n, true);
+		tests.lex_mapped_grapheme_utf8("udhr_hin.txt", n, false);
+		tests.lex_mapped_grapheme_utf8("udhr_hin.txt", n, true);
+		tests.lex_mapped_grapheme_utf8("emoji.txt", n, false);
+		tests.lex_mapped_grapheme_utf8("emoji.txt", n, true);
+
 		for (String streamFootprint : tests.streamFootprints) {
 			System.out.print(streamFootprint);
 		}
@@ -383,6 +396,33 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 						basename(resourceName));
 	}
 
+	public void load_mapped_utf8(String resourceName, int n) throws Exception {
+		File file = getResourceFile(resourceName);
+		if ( file==null ) {
+			System.err.println("Can't run load_mapped_utf8 from jar (or can't find "+resourceName+")");
+			return;
+		}
+		CharStream[] input = new CharStream[n]; // keep refs around so we can average memory
+		long start = System.nanoTime();
+		for (int i = 0; i<n; i++) {
+			input[i] = MappedUTF8CharStream.fromPath(file.toPath());
+			input[i].LA(1); // time to first symbol, not to decode the whole file
+		}
+		long stop = System.nanoTime();
+		long tus = (stop-start)/1000;
+		int size = input[0].size();
+		long streamSize = GraphLayout.parseInstance((Object)input[0]).totalSize();
+		streamFootprints.add(basename(resourceName)+" ("+size+" char): "+GraphLayout.parseInstance((Object)input[0]).toFootprint());
+		String currentMethodName = new Exception().getStackTrace()[0].getMethodName();
+		if ( output ) System.out.printf("%27s average time %5dus size %6db over %4d loads of %5d symbols from %s\n",
+						currentMethodName,
+						tus/n,
+						streamSize,
+						n,
+						size,
+						basename(resourceName));
+	}
+
 	public void lex_legacy_java_utf8(int n, boolean clearLexerDFACache) throws Exception {
 		InputStream is = TimeLexerSpeed.class.getClassLoader().getResourceAsStream(Parser_java_file);
 		try {
@@ -436,6 +476,24 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 		}
 	}
 
+	public void lex_mapped_java_utf8(int n, boolean clearLexerDFACache) throws Exception {
+		File file = getResourceFile(Parser_java_file);
+		if ( file==null ) {
+			System.err.println("Can't run lex_mapped_java_utf8 from jar (or can't find "+Parser_java_file+")");
+			return;
+		}
+		CharStream input = MappedUTF8CharStream.fromPath(file.toPath());
+		JavaLexer lexer = new JavaLexer(input);
+		double avg = tokenize(lexer, n, clearLexerDFACache);
+		String currentMethodName = new Exception().getStackTrace()[0].getMethodName();
+		if ( output ) System.out.printf("%27s average time %5dus over %4d runs of %5d symbols%s\n",
+						currentMethodName,
+						(int)avg,
+						n,
+						input.size(),
+						clearLexerDFACache ? " DFA cleared" : "");
+	}
+
 	public void lex_legacy_grapheme_utf8(String fileName, int n, boolean clearLexerDFACache) throws Exception {
 		InputStream is = TimeLexerSpeed.class.getClassLoader().getResourceAsStream(PerfDir+"/"+fileName);
 		try {
@@ -492,6 +550,26 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 		}
 	}
 
+	public void lex_mapped_grapheme_utf8(String fileName, int n, boolean clearLexerDFACache) throws Exception {
+		String resourceName = PerfDir+"/"+fileName;
+		File file = getResourceFile(resourceName);
+		if ( file==null ) {
+			System.err.println("Can't run lex_mapped_grapheme_utf8 from jar (or can't find "+resourceName+")");
+			return;
+		}
+		CharStream input = MappedUTF8CharStream.fromPath(file.toPath());
+		graphemesLexer lexer = new graphemesLexer(input);
+		double avg = tokenize(lexer, n, clearLexerDFACache);
+		String currentMethodName = new Exception().getStackTrace()[0].getMethodName();
+		if ( output ) System.out.printf("%27s average time %5dus over %4d runs of %5d symbols from %s%s\n",
+						currentMethodName,
+						(int)avg,
+						n,
+						input.size(),
+						fileName,
+						clearLexerDFACache ? " DFA cleared" : "");
+	}
+
 	public double tokenize(Lexer lexer, int n, boolean clearLexerDFACache) {
 		// always wipe the DFA before we begin tests so previous tests
 		// don't affect this run!
@@ -540,6 +618,16 @@ public class TimeLexerSpeed { // don't call it Test else it'll run during "mvn t
 		return file.getName();
 	}
 
+	/** Returns the file containing a resource, or null if the resource is not a plain file, e.g. it is in a jar. */
+	public static File getResourceFile(String resourceName) {
+		URL url = TimeLexerSpeed.class.getClassLoader().getResource(resourceName);
+		if ( url==null || !"file".equals(url.getProtocol()) ) {
+			return null;
+		}
+		File file = new File(url.getFile());
+		return file.exists() ? file : null;
+	}
+
 	public static final long getResourceSize(ClassLoader loader, String resourceName) throws IOException {
 		URLConnection uc = null;
 		try {
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.runtime.java.api.perf;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.test.runtime.java.api.JavaLexer;
+import org.antlr.v4.test.runtime.java.api.JavaParser;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Measure how parsing throughput scales with the number of threads sharing
+ *  the DFA of a single parser. Each thread repeatedly parses the runtime
+ *  sources with its own lexer and parser instances.
+ *
+ *  The parsers force full-context prediction and cache the results in the
+ *  DFA, so the hot DFA states are context sensitive and every prediction
+ *  reads the context edge maps of those states. Without lock-free context
+ *  edges, the threads serialize on these states and throughput stops
+ *  scaling after a few threads.
+ *
+ *  Each thread count is measured twice: "cold" clears the DFA first, so
+ *  the threads race to build the context edges; "warm" reuses the DFA from
+ *  the cold run, so the threads only read them.
+ *
+ *  Run with enough heap to avoid GC noise, e.g. -Xms4G -Xmx4G. The thread
+ *  counts default to powers of two up to twice the number of available
+ *  processors, and can be given on the command line instead.
+ */
+public class TimeParserContention { // don't call it Test else it'll run during "mvn test"
+	public static final String[] SOURCE_FILES = {
+		TimeLexerSpeed.Parser_java_file,
+		TimeLexerSpeed.RuleContext_java_file,
+		"Java/src/org/antlr/v4/runtime/atn/ParserATNSimulator.java",
+		"Java/src/org/antlr/v4/runtime/atn/LexerATNSimulator.java",
+	};
+
+	public static final int PARSES_PER_THREAD = 20;
+
+	private final List<String> inputs = new ArrayList<String>();
+	private final List<String> inputNames = new ArrayList<String>();
+
+	public static void main(String[] args) throws Exception {
+		List<Integer> threadCounts = new ArrayList<Integer>();
+		for (String arg : args) {
+			threadCounts.add(Integer.parseInt(arg));
+		}
+
+		if (threadCounts.isEmpty()) {
+			int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+			for (int i = 1; i <= maxThreads; i *= 2) {
+				threadCounts.add(i);
+			}
+		}
+
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+
+		TimeParserContention tests = new TimeParserContention();
+		tests.loadInputs();
+
+		System.out.print("Warming up Java compiler");
+		for (int i = 0; i < 3; i++) {
+			tests.parse(2, 2, true);
+			System.out.print('.');
+		}
+		System.out.println();
+
+		double baseline = 0;
+		for (int threads : threadCounts) {
+			double cold = tests.parse(threads, PARSES_PER_THREAD, true);
+			double warm = tests.parse(threads, PARSES_PER_THREAD, false);
+			if (baseline == 0) {
+				baseline = warm;
+			}
+
+			System.out.printf("%3d threads: cold %8.1f files/s, warm %8.1f files/s, warm speedup %5.2fx\n",
+							  threads,
+							  cold,
+							  warm,
+							  warm / baseline);
+		}
+	}
+
+	public void loadInputs() throws Exception {
+		ClassLoader loader = TimeParserContention.class.getClassLoader();
+		for (String resourceName : SOURCE_FILES) {
+			InputStream is = loader.getResourceAsStream(resourceName);
+			if (is == null) {
+				System.err.println("Can't find " + resourceName);
+				continue;
+			}
+
+			try {
+				long size = TimeLexerSpeed.getResourceSize(loader, resourceName);
+				inputs.add(CharStreams.fromStream(is, Charset.forName("UTF-8"), resourceName, size).toString());
+				inputNames.add(resourceName);
+			}
+			finally {
+				is.close();
+			}
+		}
+	}
+
+	/** Parse {@code parsesPerThread} files on each of {@code threads} threads,
+	 *  and return the combined throughput in files per second.
+	 */
+	public double parse(int threads, final int parsesPerThread, boolean clearDFA) throws Exception {
+		if (clearDFA) {
+			JavaParser._ATN.clearDFA();
+		}
+
+		final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < threads; i++) {
+				final int offset = i;
+				results.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						barrier.await();
+						int errors = 0;
+						for (int j = 0; j < parsesPerThread; j++) {
+							int index = (offset + j) % inputs.size();
+							CharStream input = CharStreams.fromString(inputs.get(index), inputNames.get(index));
+							JavaLexer lexer = new JavaLexer(input);
+							JavaParser parser = new JavaParser(new CommonTokenStream(lexer));
+							ParserATNSimulator interpreter = parser.getInterpreter();
+							interpreter.force_global_context = true;
+							interpreter.enable_global_context_dfa = true;
+							parser.compilationUnit();
+							errors += parser.getNumberOfSyntaxErrors();
+						}
+
+						barrier.await();
+						return errors;
+					}
+				}));
+			}
+
+			barrier.await();
+			long start = System.nanoTime();
+			barrier.await();
+			long stop = System.nanoTime();
+
+			for (Future<Integer> result : results) {
+				if (result.get() > 0) {
+					System.err.println("Syntax errors while parsing the input");
+				}
+			}
+
+			double seconds = (stop - start) / 1e9;
+			return threads * parsesPerThread / seconds;
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
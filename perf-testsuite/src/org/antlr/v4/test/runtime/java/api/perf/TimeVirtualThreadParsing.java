@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.runtime.java.api.perf;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import org.antlr.v4.runtime.BatchParser;
+import org.antlr.v4.test.runtime.java.api.JavaLexer;
+import org.antlr.v4.test.runtime.java.api.JavaParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Stress test parsing many small documents on virtual threads, one thread
+ *  per document, through a {@link BatchParser} sharing the DFA of the
+ *  generated Java parser.
+ *
+ *  A virtual thread which blocks while holding a monitor pins its carrier
+ *  thread, so a monitor contended in the runtime would stall every virtual
+ *  thread scheduled on that carrier. The test records the
+ *  jdk.VirtualThreadPinned events of each run with Flight Recorder and
+ *  reports their number and total duration next to the throughput. The
+ *  runtime does not block in a monitor while parsing, so the count should
+ *  stay at zero.
+ *
+ *  Virtual threads require Java 21. On older versions the test runs the
+ *  same workload on a platform thread pool, and does not report pinning.
+ *  The number of documents defaults to {@link #DOCUMENTS} and can be given
+ *  on the command line instead.
+ */
+public class TimeVirtualThreadParsing { // don't call it Test else it'll run during "mvn test"
+	public static final int DOCUMENTS = 100000;
+
+	public static final int MAX_PENDING = 4096;
+
+	private final List<String> inputs = new ArrayList<String>();
+
+	public static void main(String[] args) throws Exception {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : DOCUMENTS;
+
+		System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+
+		TimeVirtualThreadParsing tests = new TimeVirtualThreadParsing();
+		tests.generateInputs(documents);
+
+		ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+		if (virtualThreads == null) {
+			System.out.println("Virtual threads are not supported by Java " + System.getProperty("java.version") + "; using platform threads");
+		}
+
+		ExecutorService platformThreads = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			System.out.print("Warming up Java compiler");
+			for (int i = 0; i < 3; i++) {
+				tests.parse(platformThreads, Math.min(documents, 10000));
+				System.out.print('.');
+			}
+			System.out.println();
+
+			double platform = tests.parse(platformThreads, documents);
+			System.out.printf("platform threads: %10.1f docs/s\n", platform);
+
+			if (virtualThreads != null) {
+				tests.parseWithPinningRecording(virtualThreads, documents);
+			}
+		}
+		finally {
+			platformThreads.shutdown();
+			if (virtualThreads != null) {
+				virtualThreads.shutdown();
+			}
+		}
+	}
+
+	/** Creates an executor which starts a virtual thread for each task, or
+	 *  returns {@code null} if the running Java version does not support
+	 *  virtual threads. The test is compiled for Java 8, so the factory method
+	 *  is found by reflection.
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException ex) {
+			return null;
+		}
+	}
+
+	/** Generate {@code documents} small compilation units. The documents are
+	 *  all different, but use the same constructs, so the DFA is warm after
+	 *  the first few.
+	 */
+	public void generateInputs(int documents) {
+		for (int i = 0; i < documents; i++) {
+			StringBuilder input = new StringBuilder();
+			input.append("package p").append(i % 97).append(";\n");
+			input.append("import java.util.List;\n");
+			input.append("public class C").append(i).append(" extends Base<List<String>> {\n");
+			input.append("  private int f").append(i).append(" = ").append(i).append(";\n");
+			for (int j = 0; j < 1 + i % 4; j++) {
+				input.append("  public int m").append(j).append("(int a, String b) {\n");
+				input.append("    if (a > ").append(j).append(" && b != null) {\n");
+				input.append("      f").append(i).append(" += a * (").append(j).append(" + b.length());\n");
+				input.append("    }\n");
+				input.append("    for (int k = 0; k < a; k++) { a = foo(a, k)[k]; }\n");
+				input.append("    return a;\n");
+				input.append("  }\n");
+			}
+			input.append("}\n");
+			inputs.add(input.toString());
+		}
+	}
+
+	/** Parse the first {@code documents} inputs, each in its own task on
+	 *  {@code executor}, and return the throughput in documents per second.
+	 */
+	public double parse(ExecutorService executor, int documents) throws Exception {
+		BatchParser<JavaParser, Integer> batch = new BatchParser<JavaParser, Integer>(
+			JavaLexer::new, JavaParser::new,
+			parser -> {
+				parser.compilationUnit();
+				return parser.getNumberOfSyntaxErrors();
+			},
+			executor, MAX_PENDING);
+
+		long start = System.nanoTime();
+		List<CompletableFuture<Integer>> results = new ArrayList<CompletableFuture<Integer>>(documents);
+		for (int i = 0; i < documents; i++) {
+			results.add(batch.submit(inputs.get(i)));
+		}
+
+		int errors = 0;
+		for (CompletableFuture<Integer> result : results) {
+			errors += result.get();
+		}
+
+		long stop = System.nanoTime();
+		if (errors > 0) {
+			System.err.println("Syntax errors while parsing the input");
+		}
+
+		double seconds = (stop - start) / 1e9;
+		return documents / seconds;
+	}
+
+	/** Parse the inputs on virtual threads while Flight Recorder records the
+	 *  pinned virtual threads, and print the throughput, the pinned events and
+	 *  the frames most often found on top of their stacks.
+	 */
+	public void parseWithPinningRecording(ExecutorService executor, int documents) throws Exception {
+		Path file = Files.createTempFile("pinning", ".jfr");
+		try {
+			double throughput;
+			Recording recording = new Recording();
+			try {
+				recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+				recording.start();
+				throughput = parse(executor, documents);
+				recording.stop();
+				recording.dump(file);
+			}
+			finally {
+				recording.close();
+			}
+
+			Duration pinned = Duration.ZERO;
+			Map<String, Integer> frames = new TreeMap<String, Integer>();
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			for (RecordedEvent event : events) {
+				pinned = pinned.plus(event.getDuration());
+				RecordedStackTrace stackTrace = event.getStackTrace();
+				if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+					RecordedFrame frame = stackTrace.getFrames().get(0);
+					String name = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+					Integer count = frames.get(name);
+					frames.put(name, count != null ? count + 1 : 1);
+				}
+			}
+
+			System.out.printf("virtual threads:  %10.1f docs/s, %d pinned events, %.3f ms pinned\n",
+							  throughput,
+							  events.size(),
+							  pinned.toNanos() / 1e6);
+			for (Map.Entry<String, Integer> entry : frames.entrySet()) {
+				System.out.printf("  %6d pinned at %s\n", entry.getValue(), entry.getKey());
+			}
+		}
+		finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
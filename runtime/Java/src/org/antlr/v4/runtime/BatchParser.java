@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Parses many inputs concurrently, reusing lexers and parsers between them.
+ *
+ * <p>Each input is lexed and parsed by a task on the executor, which borrows a
+ * lexer and a parser from a pool, attaches them to the input with
+ * {@link Lexer#setInputStream} and {@link Parser#setInputStream}, applies the
+ * action (usually the start rule) to the parser, and returns them to the pool
+ * detached from the input. The lexers and parsers are created by the factories
+ * when the pool is empty, so at most one pair is created for each input parsed
+ * at the same time. Generated recognizers share their ATN and DFA between
+ * instances, so a recognizer created for one task warms up the prediction of
+ * every other task.</p>
+ *
+ * <p>The executor can be any {@link Executor}, including a thread pool, a
+ * {@link ForkJoinPool} or an executor starting a virtual thread per task.
+ * Files and channels are read by the task, not by the thread submitting them.
+ * The number of inputs submitted but not parsed yet is limited: when the limit
+ * is reached, {@link #submit(CharStream)} blocks until a parse completes.</p>
+ *
+ * <pre>
+ * BatchParser&lt;JavaParser, CompilationUnitContext&gt; batch = new BatchParser&lt;JavaParser, CompilationUnitContext&gt;(
+ *     JavaLexer::new, JavaParser::new, JavaParser::compilationUnit,
+ *     Executors.newFixedThreadPool(8), 64);
+ * List&lt;CompletableFuture&lt;CompilationUnitContext&gt;&gt; results = new ArrayList&lt;&gt;();
+ * for (File file : files) {
+ *     results.add(batch.submit(file));
+ * }
+ * </pre>
+ *
+ * <p>Error listeners, the error strategy and parse listeners are configured by
+ * the factories and kept while a recognizer is pooled; the action must not
+ * leave additional listeners on the parser. The number of syntax errors is
+ * reset for each input, so the action can read it with
+ * {@link Parser#getNumberOfSyntaxErrors}. A recognizer whose action threw an
+ * exception is discarded.</p>
+ *
+ * @param <P> the type of the parsers
+ * @param <R> the type of the results
+ */
+public class BatchParser<P extends Parser, R> {
+	/**
+	 * The default maximum number of inputs submitted and not parsed yet.
+	 */
+	public static final int DEFAULT_MAX_PENDING = 256;
+
+	@NotNull
+	private final Function<? super CharStream, ? extends Lexer> lexerFactory;
+
+	@NotNull
+	private final Function<? super TokenStream, ? extends P> parserFactory;
+
+	@NotNull
+	private final Function<? super P, ? extends R> action;
+
+	@NotNull
+	private final Executor executor;
+
+	private final int maxPending;
+
+	@NotNull
+	private final Semaphore pendingPermits;
+
+	@NotNull
+	private final ConcurrentLinkedQueue<Recognizers<P>> pool = new ConcurrentLinkedQueue<Recognizers<P>>();
+
+	@NotNull
+	private final AtomicInteger createdCount = new AtomicInteger();
+
+	public BatchParser(@NotNull Function<? super CharStream, ? extends Lexer> lexerFactory,
+					   @NotNull Function<? super TokenStream, ? extends P> parserFactory,
+					   @NotNull Function<? super P, ? extends R> action)
+	{
+		this(lexerFactory, parserFactory, action, ForkJoinPool.commonPool(), DEFAULT_MAX_PENDING);
+	}
+
+	/**
+	 * Constructs a new batch parser.
+	 *
+	 * @param lexerFactory creates a lexer reading the specified input
+	 * @param parserFactory creates a parser reading the specified tokens
+	 * @param action parses the input of a parser and returns the result
+	 * @param executor runs the parse of each input
+	 * @param maxPending the maximum number of inputs submitted and not parsed
+	 * yet
+	 */
+	public BatchParser(@NotNull Function<? super CharStream, ? extends Lexer> lexerFactory,
+					   @NotNull Function<? super TokenStream, ? extends P> parserFactory,
+					   @NotNull Function<? super P, ? extends R> action,
+					   @NotNull Executor executor, int maxPending)
+	{
+		if (maxPending <= 0) {
+			throw new IllegalArgumentException("maxPending must be positive");
+		}
+
+		this.lexerFactory = lexerFactory;
+		this.parserFactory = parserFactory;
+		this.action = action;
+		this.executor = executor;
+		this.maxPending = maxPending;
+		this.pendingPermits = new Semaphore(maxPending);
+	}
+
+	@NotNull
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public int getMaxPending() {
+		return maxPending;
+	}
+
+	/**
+	 * Gets the number of inputs submitted and not parsed yet.
+	 */
+	public int getPendingCount() {
+		return maxPending - pendingPermits.availablePermits();
+	}
+
+	/**
+	 * Gets the number of lexer and parser pairs created by the factories.
+	 */
+	public int getCreatedCount() {
+		return createdCount.get();
+	}
+
+	/**
+	 * Parses {@code input}, blocking while the maximum number of inputs are
+	 * pending.
+	 *
+	 * @return the result of the action, or an exception thrown by the action
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws RejectedExecutionException if the executor rejects the task
+	 */
+	@NotNull
+	public CompletableFuture<R> submit(@NotNull final CharStream input) throws InterruptedException {
+		return submitInput(() -> input);
+	}
+
+	/**
+	 * Parses {@code text}.
+	 *
+	 * @see #submit(CharStream)
+	 */
+	@NotNull
+	public CompletableFuture<R> submit(@NotNull final String text) throws InterruptedException {
+		return submitInput(() -> CharStreams.fromString(text));
+	}
+
+	/**
+	 * Parses the UTF-8 content of {@code file}, which is read by the task.
+	 *
+	 * @see #submit(CharStream)
+	 */
+	@NotNull
+	public CompletableFuture<R> submit(@NotNull final File file) throws InterruptedException {
+		return submitInput(() -> CharStreams.fromFile(file));
+	}
+
+	/**
+	 * Parses the UTF-8 content of {@code channel}, which is read and closed by
+	 * the task.
+	 *
+	 * @see #submit(CharStream)
+	 */
+	@NotNull
+	public CompletableFuture<R> submit(@NotNull final ReadableByteChannel channel) throws InterruptedException {
+		return submitInput(() -> {
+			try {
+				return CharStreams.fromChannel(channel);
+			}
+			finally {
+				channel.close();
+			}
+		});
+	}
+
+	@NotNull
+	private CompletableFuture<R> submitInput(@NotNull final InputSource source) throws InterruptedException {
+		pendingPermits.acquire();
+		final CompletableFuture<R> result = new CompletableFuture<R>();
+		try {
+			executor.execute(() -> {
+				try {
+					result.complete(parse(source.open()));
+				}
+				catch (Throwable ex) {
+					result.completeExceptionally(ex);
+				}
+				finally {
+					pendingPermits.release();
+				}
+			});
+		}
+		catch (RuntimeException ex) {
+			pendingPermits.release();
+			throw ex;
+		}
+
+		return result;
+	}
+
+	private R parse(@NotNull CharStream input) {
+		Recognizers<P> recognizers = pool.poll();
+		CommonTokenStream tokens;
+		if (recognizers == null) {
+			Lexer lexer = lexerFactory.apply(input);
+			tokens = new CommonTokenStream(lexer);
+			recognizers = new Recognizers<P>(lexer, parserFactory.apply(tokens));
+			createdCount.incrementAndGet();
+		}
+		else {
+			recognizers.lexer.setInputStream(input);
+			tokens = new CommonTokenStream(recognizers.lexer);
+			recognizers.parser.setInputStream(tokens);
+		}
+
+		R result = action.apply(recognizers.parser);
+
+		recognizers.detach();
+		pool.offer(recognizers);
+		return result;
+	}
+
+	private interface InputSource {
+		CharStream open() throws IOException;
+	}
+
+	/**
+	 * A pooled lexer and the parser reading its tokens.
+	 */
+	private static final class Recognizers<P extends Parser> {
+		@NotNull
+		final Lexer lexer;
+
+		@NotNull
+		final P parser;
+
+		Recognizers(@NotNull Lexer lexer, @NotNull P parser) {
+			this.lexer = lexer;
+			this.parser = parser;
+		}
+
+		/**
+		 * Releases the input and the tokens of the last parse, so a pooled
+		 * recognizer does not keep them reachable.
+		 */
+		void detach() {
+			parser.setInputStream(null);
+			lexer.setInputStream(null);
+		}
+	}
+}
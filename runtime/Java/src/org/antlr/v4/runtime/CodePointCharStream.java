@@ -39,6 +39,13 @@ public abstract class CodePointCharStream implements UnicodeCharStream, CharStre
 	// Visible for testing.
 	abstract Object getInternalStorage();
 
+	/**
+	 * Creates a stream over the same code points as this stream, with its own
+	 * position starting at index 0. The code points are shared, so the
+	 * streams can be read by different threads.
+	 */
+	public abstract CodePointCharStream duplicate();
+
 	/**
 	 * Constructs a {@link CodePointCharStream} which provides access
 	 * to the Unicode code points stored in {@code codePointBuffer}.
@@ -191,6 +198,11 @@ public abstract class CodePointCharStream implements UnicodeCharStream, CharStre
 		Object getInternalStorage() {
 			return byteArray;
 		}
+
+		@Override
+		public CodePointCharStream duplicate() {
+			return new CodePoint8BitCharStream(0, size, name, byteArray, 0);
+		}
 	}
 
 	// 16-bit internal storage for code points between U+0100 and U+FFFF.
@@ -246,6 +258,11 @@ public abstract class CodePointCharStream implements UnicodeCharStream, CharStre
 		Object getInternalStorage() {
 			return charArray;
 		}
+
+		@Override
+		public CodePointCharStream duplicate() {
+			return new CodePoint16BitCharStream(0, size, name, charArray, 0);
+		}
 	}
 
 	// 32-bit internal storage for code points between U+10000 and U+10FFFF.
@@ -297,5 +314,10 @@ public abstract class CodePointCharStream implements UnicodeCharStream, CharStre
 		Object getInternalStorage() {
 			return intArray;
 		}
+
+		@Override
+		public CodePointCharStream duplicate() {
+			return new CodePoint32BitCharStream(0, size, name, intArray, 0);
+		}
 	}
 }
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.LongObjectHashMap;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.Tuple2;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of tokens which stores the type, channel, start and stop index, line
+ * and position in line of each token in parallel arrays instead of keeping a
+ * {@link CommonToken} object per token. {@link #get} returns a lightweight
+ * view of the stored token, which is only allocated when a token is
+ * requested.
+ *
+ * <p>A {@link CommonToken} is stored in the arrays when its token index is its
+ * position in the list and it has the same source as the other tokens of the
+ * list. Explicit token text, set by a lexer action for example, is stored
+ * separately for the tokens which have it. Other tokens, including instances
+ * of subclasses of {@link CommonToken}, are kept as objects, so {@link #get}
+ * returns them unchanged.</p>
+ *
+ * <p>The views returned by {@link #get} implement {@link WritableToken}, and
+ * changes made through a view update the list. Two views of the same token
+ * are equal, but they are not always the same object. Tokens can only be
+ * added to the end of the list or removed with {@link #clear}, after which
+ * existing views refer to the tokens added at their positions later.</p>
+ *
+ * @see CompactTokenStream
+ */
+public class CompactTokenList extends AbstractList<Token> implements RandomAccess {
+	private static final int INITIAL_CAPACITY = 100;
+
+	/**
+	 * The number of views which are cached, so repeated requests for the
+	 * same token, e.g. {@link TokenStream#LT LT(1)}, return the same object.
+	 * Must be a power of 2.
+	 */
+	private static final int VIEW_CACHE_SIZE = 8;
+
+	private int[] types;
+	private int[] channels;
+	private int[] startIndexes;
+	private int[] stopIndexes;
+	private int[] lines;
+	private int[] charPositions;
+	private int size;
+
+	/**
+	 * The source of the tokens which are stored in the arrays, or
+	 * {@code null} if no token has been stored yet.
+	 */
+	@Nullable
+	private Tuple2<? extends TokenSource, CharStream> source;
+
+	/**
+	 * The explicit text of tokens stored in the arrays, by token index.
+	 */
+	@NotNull
+	private final LongObjectHashMap<String> texts = new LongObjectHashMap<String>();
+
+	/**
+	 * The tokens which are not stored in the arrays, by token index.
+	 */
+	@NotNull
+	private final LongObjectHashMap<Token> tokenObjects = new LongObjectHashMap<Token>();
+
+	@NotNull
+	private final TokenView[] viewCache = new TokenView[VIEW_CACHE_SIZE];
+
+	public CompactTokenList() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public CompactTokenList(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity cannot be negative");
+		}
+
+		types = new int[initialCapacity];
+		channels = new int[initialCapacity];
+		startIndexes = new int[initialCapacity];
+		stopIndexes = new int[initialCapacity];
+		lines = new int[initialCapacity];
+		charPositions = new int[initialCapacity];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean add(@NotNull Token token) {
+		if (size == types.length) {
+			grow();
+		}
+
+		int index = size;
+		types[index] = token.getType();
+		channels[index] = token.getChannel();
+		startIndexes[index] = token.getStartIndex();
+		stopIndexes[index] = token.getStopIndex();
+		lines[index] = token.getLine();
+		charPositions[index] = token.getCharPositionInLine();
+
+		if (isCompact(token, index)) {
+			CommonToken commonToken = (CommonToken)token;
+			if (source == null) {
+				source = commonToken.source;
+			}
+
+			if (commonToken.text != null) {
+				texts.put(index, commonToken.text);
+			}
+		}
+		else {
+			tokenObjects.put(index, token);
+		}
+
+		size++;
+		modCount++;
+		if (token.getType() == Token.EOF) {
+			// the token stream does not add tokens after EOF
+			trimToSize();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reduces the capacity of the arrays to the number of tokens in the list.
+	 */
+	public void trimToSize() {
+		if (size < types.length) {
+			resize(size);
+		}
+	}
+
+	/**
+	 * Gets the token at {@code index}. If the token is stored in the arrays,
+	 * the result is a view which reads the arrays.
+	 */
+	@NotNull
+	@Override
+	public Token get(int index) {
+		checkIndex(index);
+		if (!tokenObjects.isEmpty()) {
+			Token token = tokenObjects.get(index);
+			if (token != null) {
+				return token;
+			}
+		}
+
+		int slot = index & (VIEW_CACHE_SIZE - 1);
+		TokenView view = viewCache[slot];
+		if (view == null || view.index != index) {
+			view = new TokenView(this, index);
+			viewCache[slot] = view;
+		}
+
+		return view;
+	}
+
+	/**
+	 * Gets the type of the token at {@code index} without creating a view.
+	 */
+	public final int getType(int index) {
+		checkIndex(index);
+		return types[index];
+	}
+
+	/**
+	 * Gets the channel of the token at {@code index} without creating a view.
+	 */
+	public final int getChannel(int index) {
+		checkIndex(index);
+		return channels[index];
+	}
+
+	/**
+	 * Gets the text of the token at {@code index} without creating a view.
+	 */
+	@Nullable
+	public String getText(int index) {
+		checkIndex(index);
+		if (!tokenObjects.isEmpty()) {
+			Token token = tokenObjects.get(index);
+			if (token != null) {
+				return token.getText();
+			}
+		}
+
+		if (!texts.isEmpty()) {
+			String text = texts.get(index);
+			if (text != null) {
+				return text;
+			}
+		}
+
+		// same as CommonToken.getText
+		CharStream input = source != null ? source.getItem2() : null;
+		if (input == null) {
+			return null;
+		}
+
+		int n = input.size();
+		int start = startIndexes[index];
+		int stop = stopIndexes[index];
+		if (start < n && stop < n) {
+			return input.getText(Interval.of(start, stop));
+		}
+		else {
+			return "<EOF>";
+		}
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		source = null;
+		texts.clear();
+		tokenObjects.clear();
+		Arrays.fill(viewCache, null);
+		modCount++;
+	}
+
+	private boolean isCompact(Token token, int index) {
+		if (token.getClass() != CommonToken.class || token.getTokenIndex() != index) {
+			return false;
+		}
+
+		Tuple2<? extends TokenSource, CharStream> tokenSource = ((CommonToken)token).source;
+		return source == null
+			|| source == tokenSource
+			|| (source.getItem1() == tokenSource.getItem1() && source.getItem2() == tokenSource.getItem2());
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("token index " + index + " out of range 0.." + (size - 1));
+		}
+	}
+
+	private void grow() {
+		resize(Math.max(types.length * 2, INITIAL_CAPACITY));
+	}
+
+	private void resize(int capacity) {
+		types = Arrays.copyOf(types, capacity);
+		channels = Arrays.copyOf(channels, capacity);
+		startIndexes = Arrays.copyOf(startIndexes, capacity);
+		stopIndexes = Arrays.copyOf(stopIndexes, capacity);
+		lines = Arrays.copyOf(lines, capacity);
+		charPositions = Arrays.copyOf(charPositions, capacity);
+	}
+
+	/**
+	 * A token stored in the arrays of a {@link CompactTokenList}.
+	 */
+	private static final class TokenView implements WritableToken {
+		@NotNull
+		private final CompactTokenList list;
+		private final int index;
+
+		TokenView(@NotNull CompactTokenList list, int index) {
+			this.list = list;
+			this.index = index;
+		}
+
+		@Override
+		public String getText() {
+			return list.getText(index);
+		}
+
+		@Override
+		public int getType() {
+			return list.types[index];
+		}
+
+		@Override
+		public int getLine() {
+			return list.lines[index];
+		}
+
+		@Override
+		public int getCharPositionInLine() {
+			return list.charPositions[index];
+		}
+
+		@Override
+		public int getChannel() {
+			return list.channels[index];
+		}
+
+		@Override
+		public int getTokenIndex() {
+			return index;
+		}
+
+		@Override
+		public int getStartIndex() {
+			return list.startIndexes[index];
+		}
+
+		@Override
+		public int getStopIndex() {
+			return list.stopIndexes[index];
+		}
+
+		@Override
+		public TokenSource getTokenSource() {
+			return list.source != null ? list.source.getItem1() : null;
+		}
+
+		@Override
+		public CharStream getInputStream() {
+			return list.source != null ? list.source.getItem2() : null;
+		}
+
+		@Override
+		public void setText(String text) {
+			if (text != null) {
+				list.texts.put(index, text);
+			}
+			else {
+				list.texts.remove(index);
+			}
+		}
+
+		@Override
+		public void setType(int ttype) {
+			list.types[index] = ttype;
+		}
+
+		@Override
+		public void setLine(int line) {
+			list.lines[index] = line;
+		}
+
+		@Override
+		public void setCharPositionInLine(int pos) {
+			list.charPositions[index] = pos;
+		}
+
+		@Override
+		public void setChannel(int channel) {
+			list.channels[index] = channel;
+		}
+
+		/**
+		 * The index of a token in a {@link CompactTokenList} is its position in
+		 * the list, so it cannot be changed.
+		 */
+		@Override
+		public void setTokenIndex(int index) {
+			if (index != this.index) {
+				throw new UnsupportedOperationException("The index of a token in a CompactTokenList cannot be changed.");
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			else if (!(obj instanceof TokenView)) {
+				return false;
+			}
+
+			TokenView other = (TokenView)obj;
+			return list == other.list && index == other.index;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(list) * 31 + index;
+		}
+
+		@Override
+		public String toString() {
+			return new CommonToken(this).toString();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+/**
+ * A {@link CommonTokenStream} which buffers its tokens in a
+ * {@link CompactTokenList} instead of an {@link java.util.ArrayList}. The
+ * tokens created by the lexer are copied into the primitive arrays of the
+ * list as they are fetched, so they can be garbage collected immediately, and
+ * a stream holding a large input needs much less memory.
+ *
+ * <p>The stream behaves like a {@link CommonTokenStream}, except that the
+ * tokens returned by {@link #get}, {@link #LT} and {@link #getTokens} are
+ * views of the buffered tokens instead of the objects created by the lexer.
+ * {@link #LA} and the channel filtering read the arrays directly and do not
+ * create views at all.</p>
+ */
+public class CompactTokenStream extends CommonTokenStream {
+	@NotNull
+	private final CompactTokenList compactTokens;
+
+	/**
+	 * Constructs a new {@link CompactTokenStream} using the specified token
+	 * source and the default token channel ({@link Token#DEFAULT_CHANNEL}).
+	 *
+	 * @param tokenSource The token source.
+	 */
+	public CompactTokenStream(@NotNull TokenSource tokenSource) {
+		this(tokenSource, Token.DEFAULT_CHANNEL);
+	}
+
+	/**
+	 * Constructs a new {@link CompactTokenStream} using the specified token
+	 * source and filtering tokens to the specified channel.
+	 *
+	 * @param tokenSource The token source.
+	 * @param channel The channel to use for filtering tokens.
+	 */
+	public CompactTokenStream(@NotNull TokenSource tokenSource, int channel) {
+		super(tokenSource, channel);
+		this.compactTokens = new CompactTokenList();
+		this.tokens = compactTokens;
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i <= 0) {
+			return super.LA(i);
+		}
+
+		// same as LT(i).getType(), without creating a view
+		lazyInit();
+		int index = p;
+		for (int n = 1; n < i; n++) {
+			if (sync(index + 1)) {
+				index = nextTokenOnChannel(index + 1, channel);
+			}
+		}
+
+		return compactTokens.getType(index);
+	}
+
+	@Override
+	protected int nextTokenOnChannel(int i, int channel) {
+		sync(i);
+		if (i >= size()) {
+			return size() - 1;
+		}
+
+		while (compactTokens.getChannel(i) != channel) {
+			if (compactTokens.getType(i) == Token.EOF) {
+				return i;
+			}
+
+			i++;
+			sync(i);
+		}
+
+		return i;
+	}
+
+	@Override
+	protected int previousTokenOnChannel(int i, int channel) {
+		sync(i);
+		if (i >= size()) {
+			// the EOF token is on every channel
+			return size() - 1;
+		}
+
+		while (i >= 0) {
+			if (compactTokens.getType(i) == Token.EOF || compactTokens.getChannel(i) == channel) {
+				return i;
+			}
+
+			i--;
+		}
+
+		return i;
+	}
+
+	@NotNull
+	@Override
+	public String getText(Interval interval) {
+		int start = interval.a;
+		int stop = interval.b;
+		if (start < 0 || stop < 0) {
+			return "";
+		}
+
+		sync(stop);
+		if (stop >= size()) {
+			stop = size() - 1;
+		}
+
+		StringBuilder buf = new StringBuilder();
+		for (int i = start; i <= stop; i++) {
+			if (compactTokens.getType(i) == Token.EOF) {
+				break;
+			}
+
+			buf.append(compactTokens.getText(i));
+		}
+
+		return buf.toString();
+	}
+}
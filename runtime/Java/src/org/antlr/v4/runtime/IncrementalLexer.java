@@ -0,0 +1,649 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tokenizes successive versions of a document, lexing again only the part of
+ * the document which was affected by the edits made since the previous
+ * version.
+ *
+ * <p>For each token, the state of the lexer when it started matching the
+ * token (position, line, mode and mode stack) is recorded, along with the
+ * last symbol of the input examined while matching it. After an edit, the
+ * tokens which did not examine an edited symbol are kept, and the lexer is
+ * restarted from the state recorded for the first token which did. It stops
+ * when it reaches a position after the edited text where it started matching
+ * a token of the previous version in the same mode and with the same mode
+ * stack. The remaining tokens of the previous version are reused, and their
+ * offsets, lines and token indexes are adjusted in place.</p>
+ *
+ * <p>The tokens are the same as the tokens of a full lex as long as the lexer
+ * does not keep state other than its mode and mode stack between tokens, and
+ * its predicates and actions do not depend on the position of a token in the
+ * document. Lexers which create tokens which are not {@link CommonToken}s are
+ * always lexed from the start of the input.</p>
+ *
+ * <p>Token objects are shared between versions, so the reused tokens of a
+ * parse tree for the previous version describe their place in the current
+ * version after {@link #relex} returns, and the text of every token is read
+ * from the current version. Like the lexer, instances of this class are not
+ * thread-safe.</p>
+ *
+ * @see IncrementalParser
+ */
+public class IncrementalLexer {
+	@NotNull
+	private final Lexer lexer;
+
+	/**
+	 * The input of the lexer. Tokens refer to this stream, which reads the
+	 * current version of the document.
+	 */
+	@NotNull
+	private LookaheadTrackingCharStream input = new LookaheadTrackingCharStream();
+
+	@NotNull
+	private final ArrayList<Token> tokens = new ArrayList<Token>();
+
+	/**
+	 * The state recorded for each token: the index where the lexer started
+	 * matching it, which includes any text skipped before the token, the
+	 * line, position in the line, mode and mode stack ({@code null} if empty)
+	 * at that index, and the last index examined while matching this or a
+	 * previous token.
+	 */
+	@NotNull
+	private TokenStates states = new TokenStates(16);
+
+	/**
+	 * The states of the tokens lexed by {@link #relex}, before they are
+	 * copied to {@link #states}.
+	 */
+	@NotNull
+	private final TokenStates lexedStates = new TokenStates(16);
+
+	private int documentSize;
+
+	@NotNull
+	private List<Token> replacedTokens = Collections.emptyList();
+
+	private boolean reusable;
+	private boolean lastLexIncremental;
+	private int damageStart;
+	private int oldDamageEnd;
+	private int newDamageEnd;
+
+	public IncrementalLexer(@NotNull Lexer lexer) {
+		this.lexer = lexer;
+	}
+
+	@NotNull
+	public final Lexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * Gets the tokens of the current version of the document, ending with the
+	 * {@link Token#EOF} token. The index of each token is its index in the
+	 * list.
+	 */
+	@NotNull
+	public List<Token> getTokens() {
+		return Collections.unmodifiableList(tokens);
+	}
+
+	/**
+	 * Tokenizes all of {@code input}, which becomes the current version of
+	 * the document.
+	 *
+	 * @return the tokens of the document
+	 */
+	@NotNull
+	public List<Token> lex(@NotNull CharStream input) {
+		int oldSize = tokens.size();
+		// the tokens of the previous version keep reading its text
+		this.input = new LookaheadTrackingCharStream();
+		this.input.setDelegate(input);
+		replacedTokens = new ArrayList<Token>(tokens);
+		tokens.clear();
+		reusable = true;
+		restart(0);
+		lexFrom(tokens, states, 0, null);
+		documentSize = input.size();
+		lastLexIncremental = false;
+		damageStart = 0;
+		oldDamageEnd = oldSize;
+		newDamageEnd = tokens.size();
+		return getTokens();
+	}
+
+	/**
+	 * Tokenizes {@code input}, the current version of the document, which was
+	 * produced by applying {@code edits} to the previous version. Each edit is
+	 * relative to the document produced by the edits before it. The whole
+	 * input is lexed if the document was not lexed before or its tokens
+	 * cannot be reused.
+	 *
+	 * @return the tokens of the document
+	 * @throws IllegalArgumentException if the size of {@code input} does not
+	 * match the size of the previous version and the edits
+	 */
+	@NotNull
+	public List<Token> relex(@NotNull CharStream input, @NotNull List<TextEdit> edits) {
+		if (tokens.isEmpty() || !reusable) {
+			return lex(input);
+		}
+
+		int oldSize = tokens.size();
+		TextEdit edit = new TextEdit(documentSize, 0, 0);
+		if (!edits.isEmpty()) {
+			edit = edits.get(0);
+			for (int i = 1; i < edits.size(); i++) {
+				edit = edit.then(edits.get(i));
+			}
+		}
+
+		int sizeDelta = edit.getNewLength() - edit.getOldLength();
+		if (edit.getOldEnd() > documentSize || input.size() != documentSize + sizeDelta) {
+			throw new IllegalArgumentException("the edits do not match the size of the document");
+		}
+
+		// the first token which examined an edited symbol
+		int first = states.firstExamining(edit.getStart(), oldSize);
+		CharStream previousInput = this.input.delegate;
+		this.input.setDelegate(input);
+		restart(first);
+
+		ArrayList<Token> lexed = new ArrayList<Token>();
+		Resync resync = new Resync(states, first, oldSize, edit.getNewEnd(), sizeDelta);
+		lexFrom(lexed, lexedStates, first, resync);
+		if (!reusable) {
+			return lex(input);
+		}
+
+		int reusedStart = resync.oldIndex >= 0 ? resync.oldIndex : oldSize;
+		replacedTokens = new ArrayList<Token>(tokens.subList(first, reusedStart));
+		if (resync.oldIndex >= 0) {
+			// the deltas are relative to the state of the first reused token
+			resync.lineDelta = resync.line - states.line[reusedStart];
+			resync.oldLine = states.line[reusedStart];
+			resync.charPositionDelta = resync.charPositionInLine - states.charPositionInLine[reusedStart];
+		}
+
+		if (reusedStart - first == lexed.size()) {
+			for (int i = 0; i < lexed.size(); i++) {
+				tokens.set(first + i, lexed.get(i));
+			}
+		}
+		else {
+			tokens.subList(first, reusedStart).clear();
+			tokens.addAll(first, lexed);
+		}
+
+		states.replace(first, reusedStart, oldSize, lexedStates, lexed.size());
+		documentSize = input.size();
+		lastLexIncremental = true;
+		damageStart = first;
+		oldDamageEnd = reusedStart;
+		newDamageEnd = first + lexed.size();
+		if (resync.oldIndex >= 0) {
+			shiftReused(resync);
+		}
+
+		keepUnchangedTokens(edit);
+		for (Token token : replacedTokens) {
+			// the replaced tokens keep the text of the previous version
+			CommonToken replacedToken = (CommonToken)token;
+			if (replacedToken.text == null && replacedToken.type != Token.EOF) {
+				replacedToken.text = previousInput.getText(Interval.of(replacedToken.start, replacedToken.stop));
+			}
+		}
+
+		return getTokens();
+	}
+
+	/**
+	 * Puts the tokens of the previous version back in place of the tokens at
+	 * the ends of the damaged range which are equal to them, so the damaged
+	 * range only covers the tokens which changed. This happens for example
+	 * when the lexer examined the edited text after the end of a token, or
+	 * when the edited text was skipped.
+	 */
+	private void keepUnchangedTokens(TextEdit edit) {
+		int oldCount = replacedTokens.size();
+		int newCount = newDamageEnd - damageStart;
+		int prefix = 0;
+		while (prefix < oldCount && prefix < newCount) {
+			CommonToken oldToken = (CommonToken)replacedTokens.get(prefix);
+			CommonToken newToken = (CommonToken)tokens.get(damageStart + prefix);
+			if (newToken.stop >= edit.getStart() || !isSameToken(oldToken, newToken, 0) || oldToken.line != newToken.line || oldToken.charPositionInLine != newToken.charPositionInLine) {
+				break;
+			}
+
+			tokens.set(damageStart + prefix, oldToken);
+			prefix++;
+		}
+
+		int sizeDelta = edit.getNewLength() - edit.getOldLength();
+		int suffix = 0;
+		while (suffix < oldCount - prefix && suffix < newCount - prefix) {
+			CommonToken oldToken = (CommonToken)replacedTokens.get(oldCount - 1 - suffix);
+			CommonToken newToken = (CommonToken)tokens.get(newDamageEnd - 1 - suffix);
+			if (oldToken.start < edit.getOldEnd() || !isSameToken(oldToken, newToken, sizeDelta)) {
+				break;
+			}
+
+			oldToken.index = newToken.index;
+			oldToken.start = newToken.start;
+			oldToken.stop = newToken.stop;
+			oldToken.line = newToken.line;
+			oldToken.charPositionInLine = newToken.charPositionInLine;
+			tokens.set(newDamageEnd - 1 - suffix, oldToken);
+			suffix++;
+		}
+
+		damageStart += prefix;
+		oldDamageEnd -= suffix;
+		newDamageEnd -= suffix;
+		replacedTokens = replacedTokens.subList(prefix, oldCount - suffix);
+	}
+
+	/**
+	 * Determines whether two tokens have the same type, channel and text,
+	 * where the offsets of {@code newToken} are {@code offset} symbols after
+	 * the offsets of {@code oldToken}, and the text between them is the same
+	 * in both versions.
+	 */
+	private static boolean isSameToken(CommonToken oldToken, CommonToken newToken, int offset) {
+		if (oldToken.type != newToken.type || oldToken.channel != newToken.channel) {
+			return false;
+		}
+
+		if (oldToken.start + offset != newToken.start || oldToken.stop + offset != newToken.stop) {
+			return false;
+		}
+
+		return oldToken.text == null ? newToken.text == null : oldToken.text.equals(newToken.text);
+	}
+
+	/**
+	 * Gets whether the last call to {@link #relex} reused tokens of the
+	 * previous version.
+	 */
+	public boolean isLastLexIncremental() {
+		return lastLexIncremental;
+	}
+
+	/**
+	 * Gets the index of the first token which was lexed by the last call to
+	 * {@link #lex} or {@link #relex}. The tokens before it are the same
+	 * objects as in the previous version.
+	 */
+	public int getDamageStart() {
+		return damageStart;
+	}
+
+	/**
+	 * Gets the index, in the previous version, of the first token which was
+	 * reused after the tokens which were lexed again. The tokens from this
+	 * index to the end of the previous version became the tokens from
+	 * {@link #getNewDamageEnd} to the end of the current version.
+	 */
+	public int getOldDamageEnd() {
+		return oldDamageEnd;
+	}
+
+	/**
+	 * Gets the index, in the current version, of the first token which was
+	 * reused after the tokens which were lexed again.
+	 */
+	public int getNewDamageEnd() {
+		return newDamageEnd;
+	}
+
+	/**
+	 * Gets the tokens of the previous version from {@link #getDamageStart} to
+	 * {@link #getOldDamageEnd}, which were replaced by the tokens from
+	 * {@link #getDamageStart} to {@link #getNewDamageEnd} in the current
+	 * version. Their offsets, token indexes and text are the ones they had in
+	 * the previous version.
+	 */
+	@NotNull
+	public List<Token> getReplacedTokens() {
+		return Collections.unmodifiableList(replacedTokens);
+	}
+
+	/**
+	 * Sets up the lexer to lex from the state recorded for the token at
+	 * {@code index}.
+	 */
+	private void restart(int index) {
+		lexer.setInputStream(input);
+		if (index > 0) {
+			LexerATNSimulator interpreter = lexer.getInterpreter();
+			input.seek(states.callStart[index]);
+			interpreter.setLine(states.line[index]);
+			interpreter.setCharPositionInLine(states.charPositionInLine[index]);
+			lexer._mode = states.mode[index];
+			if (states.modeStack[index] != null) {
+				lexer._modeStack.addAll(states.modeStack[index]);
+			}
+
+			input.maxIndex = states.lookahead[index - 1];
+		}
+		else {
+			input.maxIndex = -1;
+		}
+	}
+
+	/**
+	 * Adds tokens to {@code out} and their states to {@code outStates} until
+	 * the EOF token or the resync point. The first token gets the index
+	 * {@code firstIndex}.
+	 */
+	private void lexFrom(List<Token> out, TokenStates outStates, int firstIndex, Resync resync) {
+		LexerATNSimulator interpreter = lexer.getInterpreter();
+		while (true) {
+			int start = input.index();
+			int currentMode = lexer._mode;
+			int[] currentModeStack = lexer._modeStack.isEmpty() ? null : lexer._modeStack.toArray();
+			if (resync != null && resync.matches(start, currentMode, currentModeStack)) {
+				resync.line = interpreter.getLine();
+				resync.charPositionInLine = interpreter.getCharPositionInLine();
+				return;
+			}
+
+			int currentLine = interpreter.getLine();
+			int currentCharPositionInLine = interpreter.getCharPositionInLine();
+			Token token = lexer.nextToken();
+			if (!(token instanceof CommonToken)) {
+				reusable = false;
+			}
+
+			if (token instanceof WritableToken) {
+				((WritableToken)token).setTokenIndex(firstIndex + out.size());
+			}
+
+			outStates.set(out.size(), start, currentLine, currentCharPositionInLine, currentMode, currentModeStack, input.maxIndex);
+			out.add(token);
+			if (token.getType() == Token.EOF) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adjusts the offsets, lines, positions in the line and token indexes of
+	 * the reused tokens after the lexed tokens.
+	 */
+	private void shiftReused(Resync resync) {
+		int indexDelta = newDamageEnd - oldDamageEnd;
+		int charDelta = resync.sizeDelta;
+		int lineDelta = resync.lineDelta;
+		int oldLine = resync.oldLine;
+		int charPositionDelta = resync.charPositionDelta;
+		// if the tokens did not move, only the positions in the line of the
+		// tokens on the line of the first reused token change
+		boolean moved = indexDelta != 0 || charDelta != 0 || lineDelta != 0;
+		for (int i = newDamageEnd; i < tokens.size(); i++) {
+			CommonToken token = (CommonToken)tokens.get(i);
+			if (!moved && token.line != oldLine) {
+				break;
+			}
+
+			if (token.line == oldLine) {
+				token.charPositionInLine += charPositionDelta;
+			}
+
+			token.line += lineDelta;
+			token.start += charDelta;
+			token.stop += charDelta;
+			token.index = i;
+		}
+
+		states.shift(newDamageEnd, tokens.size(), moved, charDelta, lineDelta, oldLine, charPositionDelta);
+	}
+
+	/**
+	 * Finds the position after the edited text where the lexer is in the same
+	 * state as when it started matching a token of the previous version.
+	 */
+	private static final class Resync {
+		private final TokenStates oldStates;
+		private final int first;
+		private final int oldSize;
+		private final int newEnd;
+		private final int sizeDelta;
+
+		/** The index of the first reused token, or -1 if none was found. */
+		int oldIndex = -1;
+		int line;
+		int charPositionInLine;
+
+		int oldLine;
+		int lineDelta;
+		int charPositionDelta;
+
+		Resync(TokenStates oldStates, int first, int oldSize, int newEnd, int sizeDelta) {
+			this.oldStates = oldStates;
+			this.first = first;
+			this.oldSize = oldSize;
+			this.newEnd = newEnd;
+			this.sizeDelta = sizeDelta;
+		}
+
+		boolean matches(int start, int mode, int[] modeStack) {
+			if (start < newEnd) {
+				return false;
+			}
+
+			int index = Arrays.binarySearch(oldStates.callStart, first, oldSize, start - sizeDelta);
+			if (index < 0 || oldStates.mode[index] != mode || !Arrays.equals(oldStates.modeStack[index], modeStack)) {
+				return false;
+			}
+
+			oldIndex = index;
+			return true;
+		}
+	}
+
+	private static final class TokenStates {
+		int[] callStart;
+		int[] line;
+		int[] charPositionInLine;
+		int[] mode;
+		int[][] modeStack;
+		int[] lookahead;
+
+		TokenStates(int capacity) {
+			callStart = new int[capacity];
+			line = new int[capacity];
+			charPositionInLine = new int[capacity];
+			mode = new int[capacity];
+			modeStack = new int[capacity][];
+			lookahead = new int[capacity];
+		}
+
+		/**
+		 * Gets the first of the first {@code size} tokens whose lookahead
+		 * reached {@code index}.
+		 */
+		int firstExamining(int index, int size) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (lookahead[mid] < index) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+
+			return low;
+		}
+
+		void set(int i, int callStart, int line, int charPositionInLine, int mode, int[] modeStack, int lookahead) {
+			ensureCapacity(i + 1);
+			this.callStart[i] = callStart;
+			this.line[i] = line;
+			this.charPositionInLine[i] = charPositionInLine;
+			this.mode[i] = mode;
+			this.modeStack[i] = modeStack;
+			this.lookahead[i] = lookahead;
+		}
+
+		/**
+		 * Replaces the states from {@code from} to {@code to} with the first
+		 * {@code length} states of {@code source}, moving the states from
+		 * {@code to} to {@code size}.
+		 */
+		void replace(int from, int to, int size, TokenStates source, int length) {
+			int newTo = from + length;
+			if (newTo != to) {
+				ensureCapacity(size - to + newTo);
+				move(to, newTo, size - to);
+			}
+
+			System.arraycopy(source.callStart, 0, callStart, from, length);
+			System.arraycopy(source.line, 0, line, from, length);
+			System.arraycopy(source.charPositionInLine, 0, charPositionInLine, from, length);
+			System.arraycopy(source.mode, 0, mode, from, length);
+			System.arraycopy(source.modeStack, 0, modeStack, from, length);
+			System.arraycopy(source.lookahead, 0, lookahead, from, length);
+			if (newTo < to) {
+				Arrays.fill(modeStack, size - to + newTo, size, null);
+			}
+		}
+
+		private void move(int from, int to, int length) {
+			System.arraycopy(callStart, from, callStart, to, length);
+			System.arraycopy(line, from, line, to, length);
+			System.arraycopy(charPositionInLine, from, charPositionInLine, to, length);
+			System.arraycopy(mode, from, mode, to, length);
+			System.arraycopy(modeStack, from, modeStack, to, length);
+			System.arraycopy(lookahead, from, lookahead, to, length);
+		}
+
+		void shift(int from, int to, boolean moved, int charDelta, int lineDelta, int oldLine, int charPositionDelta) {
+			for (int i = from; i < to; i++) {
+				if (!moved && line[i] != oldLine) {
+					break;
+				}
+
+				callStart[i] += charDelta;
+				lookahead[i] += charDelta;
+				if (line[i] == oldLine) {
+					charPositionInLine[i] += charPositionDelta;
+				}
+
+				line[i] += lineDelta;
+			}
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity <= callStart.length) {
+				return;
+			}
+
+			int newCapacity = Math.max(capacity, callStart.length * 2);
+			callStart = Arrays.copyOf(callStart, newCapacity);
+			line = Arrays.copyOf(line, newCapacity);
+			charPositionInLine = Arrays.copyOf(charPositionInLine, newCapacity);
+			mode = Arrays.copyOf(mode, newCapacity);
+			modeStack = Arrays.copyOf(modeStack, newCapacity);
+			lookahead = Arrays.copyOf(lookahead, newCapacity);
+		}
+	}
+
+	/**
+	 * Forwards to the current version of the document, and records the last
+	 * index examined by {@link #LA}.
+	 */
+	private static final class LookaheadTrackingCharStream implements UnicodeCharStream {
+		private CharStream delegate;
+
+		int maxIndex = -1;
+
+		void setDelegate(CharStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public int LA(int i) {
+			if (i > 0) {
+				int index = delegate.index() + i - 1;
+				if (index > maxIndex) {
+					maxIndex = index;
+				}
+			}
+
+			return delegate.LA(i);
+		}
+
+		@Override
+		public void consume() {
+			delegate.consume();
+		}
+
+		@Override
+		public int mark() {
+			return delegate.mark();
+		}
+
+		@Override
+		public void release(int marker) {
+			delegate.release(marker);
+		}
+
+		@Override
+		public int index() {
+			return delegate.index();
+		}
+
+		@Override
+		public void seek(int index) {
+			delegate.seek(index);
+		}
+
+		@Override
+		public int size() {
+			return delegate.size();
+		}
+
+		@Override
+		public String getSourceName() {
+			return delegate.getSourceName();
+		}
+
+		@NotNull
+		@Override
+		public String getText(@NotNull Interval interval) {
+			return delegate.getText(interval);
+		}
+
+		@Override
+		public boolean supportsUnicodeCodePoints() {
+			return delegate instanceof UnicodeCharStream && ((UnicodeCharStream)delegate).supportsUnicodeCodePoints();
+		}
+
+		@Override
+		public String toString() {
+			return delegate.toString();
+		}
+	}
+}
@@ -0,0 +1,669 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Parses successive versions of a document, reusing the parts of the parse
+ * tree of the previous version which were not affected by the edits made
+ * since then.
+ *
+ * <p>The tokens are produced by an {@link IncrementalLexer}, which only lexes
+ * the edited part of the document again. The parse tree is then updated at the
+ * granularity of <em>item rules</em>: rules such as a member declaration or a
+ * statement, which are repeated in a list. For each context of an item rule,
+ * the furthest token examined by the parser when the context was entered and
+ * exited is recorded. After an edit, the deepest context which holds a list
+ * of items containing the edited tokens is located, and the items from the
+ * first one which examined an edited token are parsed again, by invoking the
+ * item rule with the list as the parent context, until the parser reaches
+ * the start of an item after the edit or the end of the list. When no item
+ * examined an edited token, for example when a statement is inserted between
+ * two others, the new items are parsed after the item preceding the edit. The
+ * contexts before and after these items, and every context outside of the
+ * list, are reused as they are, so their tokens, lines and offsets are updated
+ * in place.</p>
+ *
+ * <pre>
+ * IncrementalParser&lt;JavaParser&gt; incremental = new IncrementalParser&lt;JavaParser&gt;(parser, new IncrementalLexer(lexer), JavaParser::compilationUnit);
+ * incremental.addItemRule(JavaParser.RULE_classBodyDeclaration, JavaParser::classBodyDeclaration);
+ * incremental.addItemRule(JavaParser.RULE_blockStatement, JavaParser::blockStatement);
+ * ParserRuleContext tree = incremental.parse(CharStreams.fromString(text));
+ * ...
+ * tree = incremental.reparse(CharStreams.fromString(newText), edits);
+ * </pre>
+ *
+ * <p>The document is parsed from the start when no list of items can be
+ * reused, when the items parsed again have a syntax error, or when the
+ * previous version had syntax errors, so the errors are reported the same way
+ * as for a full parse. Otherwise the items are parsed with a
+ * {@link BailErrorStrategy} and without error listeners.</p>
+ *
+ * <p>The result is the same as the result of a full parse for grammars which
+ * are not ambiguous and whose predicates and actions do not depend on
+ * state outside of the parse tree. Item rules cannot be left-recursive, and a
+ * list of items is only parsed again if none of the contexts containing it is
+ * the context of a left-recursive rule. The parser must read the tokens of
+ * the default channel. Parse listeners of the parser only see the events for
+ * the items which are parsed again, and the tree of the previous version must
+ * not be used once {@link #reparse} is called, since it is updated in place.
+ * Like the parser, instances of this class are not thread-safe.</p>
+ *
+ * @param <T> the type of the parser
+ */
+public class IncrementalParser<T extends Parser> {
+	@NotNull
+	private final T parser;
+
+	@NotNull
+	private final IncrementalLexer lexer;
+
+	@NotNull
+	private final Function<? super T, ? extends ParserRuleContext> startRule;
+
+	@NotNull
+	private final Function<? super T, ? extends ParserRuleContext>[] itemRules;
+
+	@NotNull
+	private final LookaheadTrackingTokenStream tokenStream;
+
+	@NotNull
+	private final ItemListener itemListener = new ItemListener();
+
+	/**
+	 * The furthest tokens examined when each item context of the current tree
+	 * was entered and exited.
+	 */
+	@NotNull
+	private final Map<ParserRuleContext, ItemLookahead> itemLookahead = new IdentityHashMap<ParserRuleContext, ItemLookahead>();
+
+	@Nullable
+	private ParserRuleContext tree;
+
+	private boolean lastParseHadErrors;
+	private boolean lastParseIncremental;
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public IncrementalParser(@NotNull T parser, @NotNull IncrementalLexer lexer, @NotNull Function<? super T, ? extends ParserRuleContext> startRule) {
+		this.parser = parser;
+		this.lexer = lexer;
+		this.startRule = startRule;
+		this.itemRules = new Function[parser.getRuleNames().length];
+		this.tokenStream = new LookaheadTrackingTokenStream(lexer.getLexer());
+	}
+
+	@NotNull
+	public final T getParser() {
+		return parser;
+	}
+
+	@NotNull
+	public final IncrementalLexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * Declares {@code ruleIndex} as an item rule, which is parsed again by
+	 * invoking {@code rule} while the current context of the parser is the
+	 * context which contains the item. For a {@link ParserInterpreter}, the
+	 * rule is
+	 * {@code p -> p.parse(ruleIndex, p.getContext(), p.getState())}.
+	 *
+	 * @throws IllegalArgumentException if the rule is left-recursive
+	 */
+	public void addItemRule(int ruleIndex, @NotNull Function<? super T, ? extends ParserRuleContext> rule) {
+		if (parser.getATN().ruleToStartState[ruleIndex].isPrecedenceRule) {
+			throw new IllegalArgumentException("left-recursive rule " + parser.getRuleNames()[ruleIndex] + " cannot be an item rule");
+		}
+
+		itemRules[ruleIndex] = rule;
+	}
+
+	/**
+	 * Gets the parse tree of the current version of the document.
+	 */
+	@Nullable
+	public ParserRuleContext getTree() {
+		return tree;
+	}
+
+	/**
+	 * Gets the tokens of the current version of the document.
+	 */
+	@NotNull
+	public List<Token> getTokens() {
+		return lexer.getTokens();
+	}
+
+	/**
+	 * Gets whether the last call to {@link #reparse} reused the tree of the
+	 * previous version.
+	 */
+	public boolean isLastParseIncremental() {
+		return lastParseIncremental;
+	}
+
+	/**
+	 * Lexes and parses all of {@code input}, which becomes the current
+	 * version of the document.
+	 */
+	public ParserRuleContext parse(@NotNull CharStream input) {
+		lexer.lex(input);
+		return parseTokens();
+	}
+
+	/**
+	 * Parses {@code input}, the current version of the document, which was
+	 * produced by applying {@code edits} to the previous version. Each edit is
+	 * relative to the document produced by the edits before it.
+	 *
+	 * @see IncrementalLexer#relex
+	 */
+	public ParserRuleContext reparse(@NotNull CharStream input, @NotNull List<TextEdit> edits) {
+		lexer.relex(input, edits);
+		if (tree == null || lastParseHadErrors || !lexer.isLastLexIncremental()) {
+			return parseTokens();
+		}
+
+		int damageStart = lexer.getDamageStart();
+		int oldDamageEnd = lexer.getOldDamageEnd();
+		int newDamageEnd = lexer.getNewDamageEnd();
+		tokenStream.setTokens(lexer.getTokens());
+		if (isOffChannel(lexer.getReplacedTokens()) && isOffChannel(lexer.getTokens().subList(damageStart, newDamageEnd))) {
+			// the parser reads the same tokens as before
+			lastParseIncremental = true;
+			return tree;
+		}
+
+		Damage damage = new Damage(damageStart, oldDamageEnd, newDamageEnd);
+		List<ParserRuleContext> path = new ArrayList<ParserRuleContext>();
+		for (ParserRuleContext context = tree; context != null; context = damage.childContaining(context)) {
+			if (parser.getATN().ruleToStartState[context.getRuleIndex()].isPrecedenceRule) {
+				break;
+			}
+
+			path.add(context);
+		}
+
+		for (int i = path.size() - 1; i >= 0; i--) {
+			ReparseResult result = reparseItems(path.get(i), damage);
+			if (result == ReparseResult.SUCCESS) {
+				lastParseIncremental = true;
+				return tree;
+			}
+			else if (result == ReparseResult.FAILURE) {
+				break;
+			}
+		}
+
+		return parseTokens();
+	}
+
+	/**
+	 * Parses the current tokens with the start rule.
+	 */
+	private ParserRuleContext parseTokens() {
+		itemLookahead.clear();
+		tokenStream.setTokens(lexer.getTokens());
+		parser.setInputStream(tokenStream);
+		parser.addParseListener(itemListener);
+		try {
+			tree = startRule.apply(parser);
+		}
+		finally {
+			parser.removeParseListener(itemListener);
+		}
+
+		lastParseHadErrors = parser.getNumberOfSyntaxErrors() > 0;
+		lastParseIncremental = false;
+		return tree;
+	}
+
+	/**
+	 * Parses again the items of {@code container} which examined an edited
+	 * token.
+	 */
+	private ReparseResult reparseItems(ParserRuleContext container, Damage damage) {
+		List<ParseTree> children = container.children;
+		if (children == null) {
+			return ReparseResult.NOT_APPLICABLE;
+		}
+
+		// the first item which examined an edited token; the lookahead of the
+		// items increases with their index, and the items after the last child
+		// starting at or before the first edited token did not examine it
+		// before they were entered
+		int first = -1;
+		int previous = -1;
+		for (int i = damage.lastChildStartingBefore(container); i >= 0; i--) {
+			ParseTree child = children.get(i);
+			ItemLookahead lookahead = child instanceof ParserRuleContext ? itemLookahead.get(child) : null;
+			if (lookahead == null) {
+				continue;
+			}
+
+			if (lookahead.exit.getTokenIndex() < damage.start) {
+				previous = i;
+				break;
+			}
+
+			first = i;
+		}
+
+		ParserRuleContext item;
+		Token startToken;
+		int enterIndex;
+		if (first >= 0 && itemLookahead.get(children.get(first)).enter.getTokenIndex() < damage.start) {
+			item = (ParserRuleContext)children.get(first);
+			startToken = item.start;
+			enterIndex = itemLookahead.get(item).enter.getTokenIndex();
+		}
+		else if (previous >= 0 && (previous + 1 == children.size() || damage.oldIndex(startToken(children.get(previous + 1))) >= damage.start)) {
+			// the edited tokens are between two items, or after the last item
+			// of the list, so new items are parsed after the previous item
+			first = previous + 1;
+			item = (ParserRuleContext)children.get(previous);
+			startToken = tokenStream.get(item.stop.getTokenIndex() + 1);
+			enterIndex = itemLookahead.get(item).exit.getTokenIndex();
+		}
+		else {
+			return ReparseResult.NOT_APPLICABLE;
+		}
+
+		int ruleIndex = item.getRuleIndex();
+		int invokingState = item.invokingState;
+
+		// the end of the list must be after the edited tokens; the items
+		// following an item which starts after them are reused or parsed again
+		// as the parser reaches them, so only the items starting in the edited
+		// tokens are checked here
+		int end = first;
+		while (end < children.size() && isItem(children.get(end), ruleIndex, invokingState) && damage.newIndexAfter(((ParserRuleContext)children.get(end)).start) < 0) {
+			end++;
+		}
+
+		if (end == children.size() || !isItem(children.get(end), ruleIndex, invokingState)) {
+			Token endToken = end < children.size() ? startToken(children.get(end)) : nextStartToken(container);
+			if (endToken == null || damage.newIndexAfter(endToken) < 0) {
+				return ReparseResult.NOT_APPLICABLE;
+			}
+		}
+
+		int childCount = children.size();
+		List<ParseTree> replaced = new ArrayList<ParseTree>(children.subList(first, childCount));
+		children.subList(first, childCount).clear();
+		Token oldStop = container.stop;
+
+		Function<? super T, ? extends ParserRuleContext> rule = itemRules[ruleIndex];
+		int resync = -1;
+		int resyncIndex = -1;
+		Map<ParserRuleContext, ItemLookahead> added;
+		ANTLRErrorStrategy errorHandler = parser.getErrorHandler();
+		List<? extends ANTLRErrorListener<? super Token>> errorListeners = parser.getErrorListeners();
+		parser.setInputStream(tokenStream);
+		tokenStream.seek(startToken.getTokenIndex());
+		tokenStream.maxIndex = enterIndex;
+		parser.setContext(container);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.addParseListener(itemListener);
+		itemListener.added = new IdentityHashMap<ParserRuleContext, ItemLookahead>();
+		try {
+			int position = tokenStream.index();
+			// the next child of the container which may start where an item
+			// parsed again ends
+			int next = first;
+			while (resync < 0) {
+				parser.setState(invokingState);
+				rule.apply(parser);
+				if (tokenStream.index() <= position) {
+					return ReparseResult.FAILURE;
+				}
+
+				position = tokenStream.index();
+				int nextIndex = -1;
+				for (; next < childCount; next++) {
+					ParseTree child = replaced.get(next - first);
+					if (!isItem(child, ruleIndex, invokingState)) {
+						break;
+					}
+
+					nextIndex = damage.newIndexAfter(((ParserRuleContext)child).start);
+					if (nextIndex >= position) {
+						break;
+					}
+				}
+
+				if (next == childCount || !isItem(replaced.get(next - first), ruleIndex, invokingState)) {
+					// the end of the list
+					Token endToken = next < childCount ? startToken(replaced.get(next - first)) : nextStartToken(container);
+					nextIndex = endToken != null ? damage.newIndexAfter(endToken) : -1;
+				}
+
+				if (nextIndex < position) {
+					return ReparseResult.FAILURE;
+				}
+
+				if (nextIndex == position) {
+					resync = next;
+					resyncIndex = position;
+				}
+			}
+		}
+		catch (ParseCancellationException ex) {
+			if (!(ex.getCause() instanceof RecognitionException)) {
+				throw ex;
+			}
+
+			return ReparseResult.FAILURE;
+		}
+		finally {
+			parser.removeParseListener(itemListener);
+			added = itemListener.added;
+			itemListener.added = null;
+			parser.setErrorHandler(errorHandler);
+			for (ANTLRErrorListener<? super Token> listener : errorListeners) {
+				parser.addErrorListener(listener);
+			}
+		}
+
+		children.addAll(replaced.subList(resync - first, replaced.size()));
+		for (ParseTree discarded : replaced.subList(0, resync - first)) {
+			removeItemLookahead(discarded);
+		}
+
+		boolean lastChildReplaced = resync == childCount;
+		if (lastChildReplaced) {
+			// the last child of the container was parsed again
+			Token newStop = tokenStream.LT(-1);
+			for (ParserRuleContext context = container; context != null && context.stop == oldStop; context = context.getParent()) {
+				context.stop = newStop;
+			}
+		}
+
+		if (tokenStream.maxIndex > resyncIndex || lastChildReplaced) {
+			// the items which were parsed again examined the reused tokens, or
+			// the last token of the container changed
+			raiseItemLookahead(damage, tokenStream.get(tokenStream.maxIndex));
+		}
+
+		itemLookahead.putAll(added);
+		return ReparseResult.SUCCESS;
+	}
+
+	/**
+	 * Raises the recorded lookahead of the items which were parsed after the
+	 * first edited token to at least {@code maxToken}, the furthest token
+	 * examined by the items which were parsed again.
+	 */
+	private void raiseItemLookahead(Damage damage, Token maxToken) {
+		for (ItemLookahead lookahead : itemLookahead.values()) {
+			lookahead.enter = raise(damage, lookahead.enter, maxToken);
+			lookahead.exit = raise(damage, lookahead.exit, maxToken);
+		}
+	}
+
+	private Token raise(Damage damage, Token token, Token maxToken) {
+		if (!damage.isCurrent(token)) {
+			return maxToken;
+		}
+
+		if (token.getTokenIndex() < damage.start || token.getTokenIndex() >= maxToken.getTokenIndex()) {
+			return token;
+		}
+
+		return maxToken;
+	}
+
+	private void removeItemLookahead(ParseTree tree) {
+		if (!(tree instanceof ParserRuleContext)) {
+			return;
+		}
+
+		ParserRuleContext context = (ParserRuleContext)tree;
+		itemLookahead.remove(context);
+		if (context.children != null) {
+			for (ParseTree child : context.children) {
+				removeItemLookahead(child);
+			}
+		}
+	}
+
+	private static boolean isItem(ParseTree tree, int ruleIndex, int invokingState) {
+		return tree instanceof ParserRuleContext && ((ParserRuleContext)tree).getRuleIndex() == ruleIndex && ((ParserRuleContext)tree).invokingState == invokingState;
+	}
+
+	@Nullable
+	private static Token startToken(ParseTree tree) {
+		if (tree instanceof TerminalNode) {
+			return ((TerminalNode)tree).getSymbol();
+		}
+
+		return ((ParserRuleContext)tree).start;
+	}
+
+	/**
+	 * Gets the first token of the tree which follows {@code context}, or
+	 * {@code null} if no tree follows it.
+	 */
+	@Nullable
+	private static Token nextStartToken(ParserRuleContext context) {
+		for (ParserRuleContext child = context; child.getParent() != null; child = child.getParent()) {
+			List<ParseTree> siblings = child.getParent().children;
+			int index = siblings.indexOf(child);
+			if (index >= 0 && index + 1 < siblings.size()) {
+				return startToken(siblings.get(index + 1));
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isOffChannel(List<Token> tokens) {
+		for (Token token : tokens) {
+			if (token.getChannel() == Token.DEFAULT_CHANNEL || token.getType() == Token.EOF) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private enum ReparseResult {
+		/** The items were parsed again. */
+		SUCCESS,
+		/** The container cannot be used; an outer container can be tried. */
+		NOT_APPLICABLE,
+		/** The items could not be parsed again; the whole document is parsed. */
+		FAILURE,
+	}
+
+	/**
+	 * The tokens which were replaced by {@link IncrementalLexer#relex}. Tokens
+	 * in the current tree which are still in the token list have their new
+	 * index, and the replaced tokens kept their old index.
+	 */
+	private final class Damage {
+		final int start;
+		final int oldEnd;
+		final int newEnd;
+
+		Damage(int start, int oldEnd, int newEnd) {
+			this.start = start;
+			this.oldEnd = oldEnd;
+			this.newEnd = newEnd;
+		}
+
+		boolean isCurrent(Token token) {
+			int index = token.getTokenIndex();
+			return index >= 0 && index < tokenStream.size() && tokenStream.get(index) == token;
+		}
+
+		int oldIndex(Token token) {
+			int index = token.getTokenIndex();
+			if (isCurrent(token) && index >= start) {
+				return index - (newEnd - oldEnd);
+			}
+
+			return index;
+		}
+
+		/**
+		 * Gets the index of {@code token} in the current version if it follows
+		 * the edited tokens, or -1.
+		 */
+		int newIndexAfter(Token token) {
+			if (token == null || !isCurrent(token) || token.getTokenIndex() < newEnd) {
+				return -1;
+			}
+
+			return token.getTokenIndex();
+		}
+
+		/**
+		 * Gets the child context of {@code context} which contains the first
+		 * edited token, or {@code null}.
+		 */
+		@Nullable
+		ParserRuleContext childContaining(ParserRuleContext context) {
+			int found = lastChildStartingBefore(context);
+			if (found < 0 || !(context.children.get(found) instanceof ParserRuleContext)) {
+				return null;
+			}
+
+			ParserRuleContext child = (ParserRuleContext)context.children.get(found);
+			return child.stop != null && oldIndex(child.stop) >= start ? child : null;
+		}
+
+		/**
+		 * Gets the index of the last child of {@code context} which starts at
+		 * or before the first edited token, or -1.
+		 */
+		int lastChildStartingBefore(ParserRuleContext context) {
+			List<ParseTree> children = context.children;
+			if (children == null) {
+				return -1;
+			}
+
+			int low = 0;
+			int high = children.size() - 1;
+			int found = -1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				Token token = startToken(children.get(mid));
+				if (token == null) {
+					return -1;
+				}
+
+				if (oldIndex(token) <= start) {
+					found = mid;
+					low = mid + 1;
+				}
+				else {
+					high = mid - 1;
+				}
+			}
+
+			return found;
+		}
+	}
+
+	/**
+	 * The furthest tokens examined by the parser when an item was entered and
+	 * exited. The tokens are kept instead of their indexes, so they follow
+	 * the reused tokens when their indexes change.
+	 */
+	private static final class ItemLookahead {
+		Token enter;
+		Token exit;
+
+		ItemLookahead(Token enter) {
+			this.enter = enter;
+			this.exit = enter;
+		}
+	}
+
+	/**
+	 * Records the lookahead of the item contexts.
+	 */
+	private final class ItemListener implements ParseTreeListener {
+		/**
+		 * If not {@code null}, the items are added to this map instead of
+		 * {@link #itemLookahead}.
+		 */
+		@Nullable
+		Map<ParserRuleContext, ItemLookahead> added;
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			if (itemRules[ctx.getRuleIndex()] != null) {
+				ItemLookahead lookahead = new ItemLookahead(tokenStream.get(tokenStream.maxIndex));
+				(added != null ? added : itemLookahead).put(ctx, lookahead);
+			}
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			if (itemRules[ctx.getRuleIndex()] != null) {
+				ItemLookahead lookahead = (added != null ? added : itemLookahead).get(ctx);
+				if (lookahead != null) {
+					lookahead.exit = tokenStream.get(tokenStream.maxIndex);
+				}
+			}
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+		}
+	}
+
+	/**
+	 * A token stream over the tokens of the {@link IncrementalLexer}, which
+	 * records the largest index of a token returned by {@link #LT}.
+	 */
+	private static final class LookaheadTrackingTokenStream extends CommonTokenStream {
+		int maxIndex = -1;
+
+		LookaheadTrackingTokenStream(TokenSource tokenSource) {
+			super(tokenSource);
+		}
+
+		void setTokens(List<Token> tokens) {
+			this.tokens = tokens;
+			this.fetchedEOF = true;
+			this.p = -1;
+			this.maxIndex = -1;
+		}
+
+		@Override
+		public Token LT(int k) {
+			Token token = super.LT(k);
+			if (k > 0 && token.getTokenIndex() > maxIndex) {
+				maxIndex = token.getTokenIndex();
+			}
+
+			return token;
+		}
+	}
+}
@@ -9,6 +9,7 @@ import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.misc.IntegerStack;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Tuple;
 import org.antlr.v4.runtime.misc.Tuple2;
@@ -34,6 +35,12 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 	public static final int MIN_CHAR_VALUE = 0x0000;
 	public static final int MAX_CHAR_VALUE = 0x10FFFF;
 
+	/**
+	 * The number of values stored per token by
+	 * {@link #scan(int[], int, int)}.
+	 */
+	public static final int SCAN_RECORD_SIZE = 6;
+
 	public CharStream _input;
 	protected Tuple2<? extends TokenSource, CharStream> _tokenFactorySourcePair;
 
@@ -119,44 +126,13 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		// guaranteed at least have text of current token
 		int tokenStartMarker = _input.mark();
 		try{
-			outer:
-			while (true) {
-				if (_hitEOF) {
-					emitEOF();
-					return _token;
-				}
-
-				_token = null;
-				_channel = Token.DEFAULT_CHANNEL;
-				_tokenStartCharIndex = _input.index();
-				_tokenStartCharPositionInLine = getInterpreter().getCharPositionInLine();
-				_tokenStartLine = getInterpreter().getLine();
-				_text = null;
-				do {
-					_type = Token.INVALID_TYPE;
-//				System.out.println("nextToken line "+tokenStartLine+" at "+((char)input.LA(1))+
-//								   " in mode "+mode+
-//								   " at index "+input.index());
-					int ttype;
-					try {
-						ttype = getInterpreter().match(_input, _mode);
-					}
-					catch (LexerNoViableAltException e) {
-						notifyListeners(e);		// report error
-						recover(e);
-						ttype = SKIP;
-					}
-					if ( _input.LA(1)==IntStream.EOF ) {
-						_hitEOF = true;
-					}
-					if ( _type == Token.INVALID_TYPE ) _type = ttype;
-					if ( _type ==SKIP ) {
-						continue outer;
-					}
-				} while ( _type ==MORE );
-				if ( _token == null ) emit();
+			if (!matchNextToken()) {
+				emitEOF();
 				return _token;
 			}
+
+			if ( _token == null ) emit();
+			return _token;
 		}
 		finally {
 			// make sure we release marker after match or
@@ -165,6 +141,130 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		}
 	}
 
+	/**
+	 * Matches lexer rules until a rule produces a token, following
+	 * {@link #more} and {@link #skip}. When this method returns {@code true},
+	 * {@link #_type}, {@link #_channel}, {@link #_text} and the token start
+	 * fields describe the token, and {@link #_token} is set if a lexer action
+	 * emitted a token explicitly.
+	 *
+	 * @return {@code true} if a token was matched, or {@code false} if the
+	 * input is exhausted and the next token is {@link Token#EOF}.
+	 */
+	private boolean matchNextToken() {
+		outer:
+		while (true) {
+			if (_hitEOF) {
+				return false;
+			}
+
+			_token = null;
+			_channel = Token.DEFAULT_CHANNEL;
+			_tokenStartCharIndex = _input.index();
+			_tokenStartCharPositionInLine = getInterpreter().getCharPositionInLine();
+			_tokenStartLine = getInterpreter().getLine();
+			_text = null;
+			do {
+				_type = Token.INVALID_TYPE;
+//				System.out.println("nextToken line "+tokenStartLine+" at "+((char)input.LA(1))+
+//								   " in mode "+mode+
+//								   " at index "+input.index());
+				int ttype;
+				try {
+					ttype = getInterpreter().match(_input, _mode);
+				}
+				catch (LexerNoViableAltException e) {
+					notifyListeners(e);		// report error
+					recover(e);
+					ttype = SKIP;
+				}
+				if ( _input.LA(1)==IntStream.EOF ) {
+					_hitEOF = true;
+				}
+				if ( _type == Token.INVALID_TYPE ) _type = ttype;
+				if ( _type ==SKIP ) {
+					continue outer;
+				}
+			} while ( _type ==MORE );
+
+			return true;
+		}
+	}
+
+	/**
+	 * Matches tokens from the current position of the input and reports each
+	 * one to {@code sink} as primitive values, until the {@link Token#EOF}
+	 * token is reported or {@code sink} asks to stop. Unlike
+	 * {@link #nextToken}, this method does not create a {@link Token} for each
+	 * token, so once the lexer DFA is warmed up scanning does not allocate.
+	 *
+	 * <p>Modes, {@link #more}, {@link #skip} and lexer actions are handled
+	 * exactly as in {@link #nextToken}, and scanning can be mixed with calls
+	 * to {@link #nextToken}. Text set with {@link #setText} is not reported.
+	 * If an action emits a token with {@link #emit(Token)}, the properties of
+	 * that token are reported.</p>
+	 *
+	 * @return the number of tokens reported to {@code sink}
+	 */
+	public int scan(@NotNull TokenSink sink) {
+		if (_input == null) {
+			throw new IllegalStateException("scan requires a non-null input stream.");
+		}
+
+		int count = 0;
+		while (true) {
+			boolean more;
+			int tokenStartMarker = _input.mark();
+			try {
+				if (!matchNextToken()) {
+					sink.token(Token.EOF, Token.DEFAULT_CHANNEL, _input.index(), _input.index() - 1, getLine(), getCharPositionInLine());
+					return count + 1;
+				}
+
+				Token token = _token;
+				if (token != null) {
+					more = sink.token(token.getType(), token.getChannel(), token.getStartIndex(), token.getStopIndex(), token.getLine(), token.getCharPositionInLine());
+				}
+				else {
+					more = sink.token(_type, _channel, _tokenStartCharIndex, getCharIndex() - 1, _tokenStartLine, _tokenStartCharPositionInLine);
+				}
+			}
+			finally {
+				_input.release(tokenStartMarker);
+			}
+
+			count++;
+			if (!more) {
+				return count;
+			}
+		}
+	}
+
+	/**
+	 * Matches tokens like {@link #scan(TokenSink)}, and stores
+	 * {@link #SCAN_RECORD_SIZE} values per token in {@code buffer}: the type,
+	 * channel, start index, stop index, line and position in line. Scanning
+	 * stops after {@code maxTokens} tokens or after the {@link Token#EOF}
+	 * token, so a caller can scan a large input in chunks by calling this
+	 * method until the last record has the type {@link Token#EOF}.
+	 *
+	 * @param buffer the buffer receiving the tokens
+	 * @param offset the index in {@code buffer} of the first record
+	 * @param maxTokens the maximum number of tokens to scan
+	 * @return the number of tokens stored in {@code buffer}
+	 */
+	public int scan(@NotNull int[] buffer, int offset, int maxTokens) {
+		if (offset < 0 || maxTokens < 0 || offset + (long)maxTokens * SCAN_RECORD_SIZE > buffer.length) {
+			throw new IndexOutOfBoundsException("buffer cannot hold " + maxTokens + " tokens at offset " + offset);
+		}
+
+		if (maxTokens == 0) {
+			return 0;
+		}
+
+		return scan(new BufferTokenSink(buffer, offset, maxTokens));
+	}
+
 	/** Instruct the lexer to skip creating a token for current lexer rule
 	 *  and look for another token.  nextToken() knows to keep looking when
 	 *  a lexer rule finishes with token set to SKIP_TOKEN.  Recall that
@@ -218,6 +318,11 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 	}
 
 	protected void validateInputStream(ATN atn, CharStream input) {
+		if (input == null) {
+			// Detaching the lexer from its input does not require code points.
+			return;
+		}
+
 		if (atn != null && !atn.hasUnicodeSMPTransitions()) {
 			// This grammar should work with inputs that stream UTF-16 or Unicode code points.
 			return;
@@ -424,4 +529,28 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		// TODO: Do we lose character or line position information?
 		_input.consume();
 	}
+
+	private static final class BufferTokenSink implements TokenSink {
+		private final int[] buffer;
+		private int position;
+		private int remaining;
+
+		BufferTokenSink(int[] buffer, int offset, int maxTokens) {
+			this.buffer = buffer;
+			this.position = offset;
+			this.remaining = maxTokens;
+		}
+
+		@Override
+		public boolean token(int type, int channel, int startIndex, int stopIndex, int line, int charPositionInLine) {
+			buffer[position++] = type;
+			buffer[position++] = channel;
+			buffer[position++] = startIndex;
+			buffer[position++] = stopIndex;
+			buffer[position++] = line;
+			buffer[position++] = charPositionInLine;
+			remaining--;
+			return remaining > 0;
+		}
+	}
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+/**
+ * A {@link CharStream} which can hold more than {@link Integer#MAX_VALUE}
+ * symbols. The {@code int} indexes used by {@link CharStream} are relative to
+ * an origin, which the stream can move forward when no mark is held, so they
+ * remain valid for the duration of a token. The absolute position of an index
+ * is {@code getIndexOrigin() + index}.
+ *
+ * <p>Since the {@link Lexer} holds a mark while it matches a token, the
+ * {@code int} indexes it passes to its {@link TokenFactory} can be converted to
+ * absolute positions by the factory. {@link LongTokenFactory} creates tokens
+ * which store the absolute positions.</p>
+ *
+ * @see SegmentedCharStream
+ */
+public interface LongCharStream extends CharStream {
+	/**
+	 * Gets the absolute position of the symbol returned by {@code LA(1)}.
+	 */
+	long longIndex();
+
+	/**
+	 * Gets the absolute position of the symbol at index 0, i.e. the value
+	 * to add to an index returned by {@link #index} to get its absolute
+	 * position. The origin only changes when no mark is held.
+	 */
+	long getIndexOrigin();
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.Tuple2;
+
+/**
+ * A {@link CommonToken} which also stores the absolute positions of the token
+ * in a {@link LongCharStream}. The values returned by {@link #getStartIndex}
+ * and {@link #getStopIndex} are the indexes relative to the origin of the
+ * stream at the time the token was created.
+ *
+ * @see LongTokenFactory
+ */
+public class LongCommonToken extends CommonToken implements LongToken {
+	private static final long serialVersionUID = 5380916417446522218L;
+
+	/**
+	 * This is the backing field for {@link #getLongStartIndex}.
+	 */
+	protected long longStart;
+	/**
+	 * This is the backing field for {@link #getLongStopIndex}.
+	 */
+	protected long longStop;
+
+	public LongCommonToken(@NotNull Tuple2<? extends TokenSource, CharStream> source, int type, int channel, int start, int stop, long longStart, long longStop) {
+		super(source, type, channel, start, stop);
+		this.longStart = longStart;
+		this.longStop = longStop;
+	}
+
+	public LongCommonToken(int type, String text) {
+		super(type, text);
+		this.longStart = -1;
+		this.longStop = -1;
+	}
+
+	@Override
+	public long getLongStartIndex() {
+		return longStart;
+	}
+
+	public void setLongStartIndex(long longStart) {
+		this.longStart = longStart;
+	}
+
+	@Override
+	public long getLongStopIndex() {
+		return longStop;
+	}
+
+	public void setLongStopIndex(long longStop) {
+		this.longStop = longStop;
+	}
+
+	@Override
+	public String toString(@Nullable Recognizer<?, ?> r) {
+		// replace the relative range with the absolute one
+		String result = super.toString(r);
+		int rangeStart = result.indexOf(',') + 1;
+		int rangeStop = result.indexOf('=', rangeStart);
+		return result.substring(0, rangeStart) + longStart + ":" + longStop + result.substring(rangeStop);
+	}
+}
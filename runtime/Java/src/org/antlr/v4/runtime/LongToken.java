@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+/**
+ * A {@link Token} which knows the absolute positions of its first and last
+ * symbols in a {@link LongCharStream}, which can exceed the range of
+ * {@link #getStartIndex} and {@link #getStopIndex}.
+ */
+public interface LongToken extends Token {
+	/**
+	 * Gets the absolute position of the first symbol of this token in the
+	 * input, or -1 if the token was not created from the input.
+	 */
+	long getLongStartIndex();
+
+	/**
+	 * Gets the absolute position of the last symbol of this token in the
+	 * input, or -1 if the token was not created from the input.
+	 */
+	long getLongStopIndex();
+}
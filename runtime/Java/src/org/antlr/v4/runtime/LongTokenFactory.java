@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Tuple2;
+
+/**
+ * A {@link TokenFactory} which creates {@link LongCommonToken} instances. When
+ * the input is a {@link LongCharStream}, the absolute positions of the tokens
+ * are computed from the index origin of the stream; otherwise they are the
+ * same as the {@code int} indexes.
+ */
+public class LongTokenFactory implements TokenFactory {
+	/**
+	 * The default {@link LongTokenFactory} instance, which copies the token
+	 * text.
+	 */
+	public static final LongTokenFactory DEFAULT = new LongTokenFactory();
+
+	/**
+	 * Indicates whether {@link CommonToken#setText} should be called after
+	 * constructing tokens to explicitly set the text. A stream such as
+	 * {@link SegmentedCharStream} discards the text of a token once the lexer
+	 * moves on, so the text is only available later if it was copied.
+	 */
+	protected final boolean copyText;
+
+	/**
+	 * Constructs a {@link LongTokenFactory} with the specified value for
+	 * {@link #copyText}.
+	 *
+	 * @param copyText The value for {@link #copyText}.
+	 */
+	public LongTokenFactory(boolean copyText) {
+		this.copyText = copyText;
+	}
+
+	/**
+	 * Constructs a {@link LongTokenFactory} with {@link #copyText} set to
+	 * {@code true}.
+	 */
+	public LongTokenFactory() {
+		this(true);
+	}
+
+	@Override
+	public LongCommonToken create(Tuple2<? extends TokenSource, CharStream> source, int type, String text,
+								  int channel, int start, int stop,
+								  int line, int charPositionInLine)
+	{
+		CharStream input = source.getItem2();
+		long origin = input instanceof LongCharStream ? ((LongCharStream)input).getIndexOrigin() : 0;
+		long longStart = start >= 0 ? origin + start : -1;
+		long longStop = start >= 0 ? origin + stop : -1;
+		LongCommonToken t = new LongCommonToken(source, type, channel, start, stop, longStart, longStop);
+		t.setLine(line);
+		t.setCharPositionInLine(charPositionInLine);
+		if ( text!=null ) {
+			t.setText(text);
+		}
+		else if ( copyText && input != null ) {
+			// same text as CommonToken.getText, without asking for the input size
+			t.setText(type == Token.EOF ? "<EOF>" : input.getText(Interval.of(start,stop)));
+		}
+
+		return t;
+	}
+
+	@Override
+	public LongCommonToken create(int type, String text) {
+		return new LongCommonToken(type, text);
+	}
+}
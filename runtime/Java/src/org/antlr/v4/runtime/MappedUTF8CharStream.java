@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link CharStream} which reads the Unicode code points of UTF-8 encoded
+ * input directly from a {@link ByteBuffer}, usually a memory-mapped file
+ * created by {@link #fromPath}. Unlike the streams created by
+ * {@link CharStreams}, the input is not decoded into a separate buffer before
+ * lexing starts: {@link #LA} reads ASCII characters straight from the bytes
+ * and decodes multi-byte sequences on demand, so the stream needs no memory
+ * in proportion to the input besides the mapping itself and the first token
+ * is available immediately.
+ *
+ * <p>The stream keeps the byte offset of every {@value #CHECKPOINT_INTERVAL}th
+ * code point it has passed, so {@link #seek} and {@link #getText} only need to
+ * decode from the closest preceding checkpoint (or from the current position)
+ * to find the byte offset of a code point index. {@link #size} decodes the
+ * remainder of the input the first time it is called, unless the input has
+ * already been read to the end.</p>
+ *
+ * <p>Malformed input is decoded like {@link java.nio.charset.CodingErrorAction#REPLACE}
+ * decoding with {@link java.nio.charset.StandardCharsets#UTF_8}: each maximal
+ * ill-formed subsequence, and each encoded surrogate, becomes one U+FFFD code
+ * point. A byte order mark is returned as U+FEFF, as it is by
+ * {@link CharStreams}.</p>
+ *
+ * <p>Inputs larger than {@link Integer#MAX_VALUE} bytes are not supported.</p>
+ */
+public class MappedUTF8CharStream implements UnicodeCharStream, CharStream {
+	/**
+	 * The number of code points between two byte offset checkpoints.
+	 */
+	public static final int CHECKPOINT_INTERVAL = 256;
+
+	private static final int CHECKPOINT_SHIFT = 8;
+	private static final int CHECKPOINT_MASK = CHECKPOINT_INTERVAL - 1;
+
+	private static final int REPLACEMENT_CHARACTER = 0xFFFD;
+
+	/**
+	 * {@link #decode} returns the code point in the low bits of its result and
+	 * the length of the byte sequence above this shift.
+	 */
+	private static final int LENGTH_SHIFT = 24;
+	private static final int CODE_POINT_MASK = (1 << LENGTH_SHIFT) - 1;
+
+	@NotNull
+	private final ByteBuffer bytes;
+	private final int byteLength;
+	private final String name;
+
+	/** The code point index of the current position. */
+	private int position;
+	/** The byte offset of the current position. */
+	private int byteOffset;
+	/** The byte offset of the code point before the current position, or -1. */
+	private int previousByteOffset = -1;
+
+	/** The number of code points in the input, or -1 if not known yet. */
+	private int size = -1;
+
+	/** {@code checkpoints[k]} is the byte offset of code point {@code k * CHECKPOINT_INTERVAL}. */
+	@NotNull
+	private int[] checkpoints = new int[16];
+	private int checkpointCount = 1;
+
+	/** The result of the last call to {@link #offsetOf}. */
+	private int cachedIndex;
+	private int cachedOffset;
+
+	/**
+	 * Constructs a stream which reads the UTF-8 encoded bytes between the
+	 * position and the limit of {@code bytes}. Later changes to the position
+	 * or limit of {@code bytes} do not affect the stream, but the content must
+	 * not be modified while the stream is used.
+	 */
+	public MappedUTF8CharStream(@NotNull ByteBuffer bytes, String name) {
+		this.bytes = bytes.slice();
+		this.byteLength = this.bytes.limit();
+		this.name = name;
+		if (byteLength == 0) {
+			size = 0;
+		}
+	}
+
+	/**
+	 * Maps the UTF-8 encoded file {@code path} into memory and constructs a
+	 * {@link MappedUTF8CharStream} which reads it. The file is closed before
+	 * this method returns; the mapping stays valid until the stream is garbage
+	 * collected.
+	 */
+	@NotNull
+	public static MappedUTF8CharStream fromPath(@NotNull Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException(String.format("file size %d larger than max %d", length, Integer.MAX_VALUE));
+			}
+
+			ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			return new MappedUTF8CharStream(mapped, path.toString());
+		}
+		finally {
+			channel.close();
+		}
+	}
+
+	@Override
+	public final void consume() {
+		if (byteOffset >= byteLength) {
+			assert LA(1) == IntStream.EOF;
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		previousByteOffset = byteOffset;
+		byteOffset += sequenceLength(byteOffset);
+		position++;
+		if ((position & CHECKPOINT_MASK) == 0) {
+			recordCheckpoint(position, byteOffset);
+		}
+
+		if (byteOffset >= byteLength) {
+			size = position;
+		}
+	}
+
+	@Override
+	public final int LA(int i) {
+		if (i == 1) {
+			if (byteOffset >= byteLength) {
+				return IntStream.EOF;
+			}
+
+			int b = bytes.get(byteOffset);
+			if (b >= 0) {
+				return b;
+			}
+
+			return decode(byteOffset) & CODE_POINT_MASK;
+		}
+		else if (i > 1) {
+			int offset = byteOffset;
+			for (int n = 1; n < i; n++) {
+				if (offset >= byteLength) {
+					return IntStream.EOF;
+				}
+
+				offset += sequenceLength(offset);
+			}
+
+			if (offset >= byteLength) {
+				return IntStream.EOF;
+			}
+
+			return decode(offset) & CODE_POINT_MASK;
+		}
+		else if (i == 0) {
+			// Undefined
+			return 0;
+		}
+		else if (position + i < 0) {
+			return IntStream.EOF;
+		}
+		else if (i == -1) {
+			return decode(previousByteOffset) & CODE_POINT_MASK;
+		}
+		else {
+			return decode(offsetOf(position + i)) & CODE_POINT_MASK;
+		}
+	}
+
+	@Override
+	public final int index() {
+		return position;
+	}
+
+	@Override
+	public final int size() {
+		if (size < 0) {
+			offsetOf(Integer.MAX_VALUE);
+		}
+
+		return size;
+	}
+
+	/** mark/release do nothing; we have entire buffer */
+	@Override
+	public final int mark() {
+		return -1;
+	}
+
+	@Override
+	public final void release(int marker) {
+	}
+
+	@Override
+	public final void seek(int index) {
+		if (index == position) {
+			return;
+		}
+		else if (index == position + 1 && byteOffset < byteLength) {
+			consume();
+			return;
+		}
+
+		if (index > 0) {
+			int offset = offsetOf(index - 1);
+			if (offset >= byteLength) {
+				// seeking past the end of the input stops at EOF
+				index = size();
+				if (index > 0) {
+					offset = offsetOf(index - 1);
+				}
+			}
+
+			if (index > 0) {
+				position = index;
+				previousByteOffset = offset;
+				byteOffset = offset + sequenceLength(offset);
+				return;
+			}
+		}
+
+		position = 0;
+		previousByteOffset = -1;
+		byteOffset = 0;
+	}
+
+	@Override
+	public final String getText(Interval interval) {
+		int start = Math.max(interval.a, 0);
+		int stop = interval.b;
+		if (stop < start) {
+			return "";
+		}
+
+		int startOffset = offsetOf(start);
+		int stopOffset = stop == Integer.MAX_VALUE ? byteLength : offsetOf(stop + 1);
+		StringBuilder builder = new StringBuilder(stopOffset - startOffset);
+		for (int offset = startOffset; offset < stopOffset; ) {
+			int b = bytes.get(offset);
+			if (b >= 0) {
+				builder.append((char)b);
+				offset++;
+			}
+			else {
+				int decoded = decode(offset);
+				builder.appendCodePoint(decoded & CODE_POINT_MASK);
+				offset += decoded >>> LENGTH_SHIFT;
+			}
+		}
+
+		return builder.toString();
+	}
+
+	@Override
+	public final String getSourceName() {
+		if (name == null || name.isEmpty()) {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		return name;
+	}
+
+	@Override
+	public final String toString() {
+		return getText(Interval.of(0, Integer.MAX_VALUE));
+	}
+
+	@Override
+	public final boolean supportsUnicodeCodePoints() {
+		return true;
+	}
+
+	/**
+	 * Gets the byte offset of the code point at {@code index}, or the length
+	 * of the input if {@code index} is not less than {@link #size}. The index
+	 * reached is stored in {@link #cachedIndex}.
+	 */
+	private int offsetOf(int index) {
+		int checkpoint = Math.min(index >>> CHECKPOINT_SHIFT, checkpointCount - 1);
+		int currentIndex = checkpoint << CHECKPOINT_SHIFT;
+		int offset = checkpoints[checkpoint];
+		if (position <= index && position > currentIndex) {
+			currentIndex = position;
+			offset = byteOffset;
+		}
+
+		if (cachedIndex <= index && cachedIndex > currentIndex) {
+			currentIndex = cachedIndex;
+			offset = cachedOffset;
+		}
+
+		while (currentIndex < index && offset < byteLength) {
+			offset += sequenceLength(offset);
+			currentIndex++;
+			if ((currentIndex & CHECKPOINT_MASK) == 0) {
+				recordCheckpoint(currentIndex, offset);
+			}
+		}
+
+		if (offset >= byteLength) {
+			size = currentIndex;
+		}
+
+		cachedIndex = currentIndex;
+		cachedOffset = offset;
+		return offset;
+	}
+
+	private void recordCheckpoint(int index, int offset) {
+		int checkpoint = index >>> CHECKPOINT_SHIFT;
+		if (checkpoint != checkpointCount) {
+			// already recorded
+			return;
+		}
+
+		if (checkpointCount == checkpoints.length) {
+			checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+		}
+
+		checkpoints[checkpointCount++] = offset;
+	}
+
+	private int sequenceLength(int offset) {
+		if (bytes.get(offset) >= 0) {
+			return 1;
+		}
+
+		return decode(offset) >>> LENGTH_SHIFT;
+	}
+
+	/**
+	 * Decodes the UTF-8 sequence starting at {@code offset}, which must be
+	 * less than {@link #byteLength}.
+	 *
+	 * @return the code point, or U+FFFD for a malformed sequence, combined
+	 * with the number of bytes of the sequence shifted left by
+	 * {@link #LENGTH_SHIFT}
+	 */
+	private int decode(int offset) {
+		int b0 = bytes.get(offset) & 0xFF;
+		if (b0 < 0x80) {
+			return (1 << LENGTH_SHIFT) | b0;
+		}
+
+		int length;
+		int codePoint;
+		// the valid range of the second byte depends on the first byte, to
+		// exclude overlong encodings and values above U+10FFFF
+		int lower = 0x80;
+		int upper = 0xBF;
+		if (b0 >= 0xC2 && b0 <= 0xDF) {
+			length = 2;
+			codePoint = b0 & 0x1F;
+		}
+		else if (b0 >= 0xE0 && b0 <= 0xEF) {
+			length = 3;
+			codePoint = b0 & 0x0F;
+			if (b0 == 0xE0) {
+				lower = 0xA0;
+			}
+		}
+		else if (b0 >= 0xF0 && b0 <= 0xF4) {
+			length = 4;
+			codePoint = b0 & 0x07;
+			if (b0 == 0xF0) {
+				lower = 0x90;
+			}
+			else if (b0 == 0xF4) {
+				upper = 0x8F;
+			}
+		}
+		else {
+			return (1 << LENGTH_SHIFT) | REPLACEMENT_CHARACTER;
+		}
+
+		for (int i = 1; i < length; i++) {
+			if (offset + i >= byteLength) {
+				return (i << LENGTH_SHIFT) | REPLACEMENT_CHARACTER;
+			}
+
+			int b = bytes.get(offset + i) & 0xFF;
+			if (b < lower || b > upper) {
+				return (i << LENGTH_SHIFT) | REPLACEMENT_CHARACTER;
+			}
+
+			codePoint = (codePoint << 6) | (b & 0x3F);
+			lower = 0x80;
+			upper = 0xBF;
+		}
+
+		if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+			// an encoded surrogate is replaced as a whole, as the JDK decoder does
+			return (length << LENGTH_SHIFT) | REPLACEMENT_CHARACTER;
+		}
+
+		return (length << LENGTH_SHIFT) | codePoint;
+	}
+}
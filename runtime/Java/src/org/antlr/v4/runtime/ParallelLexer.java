@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.misc.IntegerStack;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Tokenizes a large input on several threads.
+ *
+ * <p>The input is split into chunks, preferably after a line break, and each
+ * chunk is lexed on a {@link ForkJoinPool} by its own lexer, which starts in
+ * the default mode at the start of the chunk and stops at the first token
+ * starting in the next chunk. The chunks are then joined in order: the lexer
+ * of the previous chunk reached a position in the next chunk where it would
+ * start a token, and if the lexer of the next chunk started a token at the
+ * same position, in the same mode and with the same mode stack, the tokens of
+ * the next chunk are kept from there on. Otherwise the lexer of the previous
+ * chunk keeps lexing until the tokens synchronize, and the tokens of a chunk
+ * it passes completely are discarded. The lexer of a chunk stops at an
+ * exception, such as popping a mode which a sequential lex would have pushed
+ * before the chunk, and its tokens can only synchronize before that point.</p>
+ *
+ * <p>The tokens are the same as the tokens of a sequential lex as long as the
+ * lexer does not keep state other than its mode and mode stack between
+ * tokens. For grammars without modes, the chunks almost always synchronize
+ * within a few tokens, so the lexing scales with the number of threads. The
+ * lexers of the chunks report no errors; if a kept token was matched with an
+ * error, or a token cannot be updated with its position in the input, the
+ * whole input is lexed again by a single lexer, which reports the errors to
+ * the listeners set by the lexer factory.</p>
+ *
+ * <pre>
+ * ParallelLexer lexer = new ParallelLexer(JsonLexer::new);
+ * List&lt;Token&gt; tokens = lexer.tokenize(CharStreams.fromFileName(fileName));
+ * JsonParser parser = new JsonParser(new CommonTokenStream(new ListTokenSource(tokens)));
+ * </pre>
+ *
+ * <p>Each token reads its text from a stream over the code points of the
+ * input, which is not the input itself.</p>
+ */
+public class ParallelLexer {
+	/**
+	 * The default minimum number of code points in a chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * The number of code points after the position of a chunk boundary which
+	 * are searched for a line break to start the chunk at.
+	 */
+	private static final int LINE_BREAK_SEARCH_LIMIT = 1024;
+
+	@NotNull
+	private final Function<? super CharStream, ? extends Lexer> lexerFactory;
+
+	@NotNull
+	private final ForkJoinPool pool;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	public ParallelLexer(@NotNull Function<? super CharStream, ? extends Lexer> lexerFactory) {
+		this(lexerFactory, ForkJoinPool.commonPool());
+	}
+
+	public ParallelLexer(@NotNull Function<? super CharStream, ? extends Lexer> lexerFactory, @NotNull ForkJoinPool pool) {
+		this.lexerFactory = lexerFactory;
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the minimum number of code points in a chunk. An input smaller than
+	 * twice this size is lexed on the calling thread.
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Tokenizes all of {@code input}.
+	 *
+	 * <p>The chunks are lexed from duplicates of the input, so the input must
+	 * be a {@link CodePointCharStream}. Every stream created by
+	 * {@link CharStreams} is one.</p>
+	 *
+	 * @return the tokens of the input, ending with the {@link Token#EOF} token.
+	 * The index of each token is its index in the list.
+	 * @throws IllegalArgumentException if {@code input} is not a
+	 * {@link CodePointCharStream}
+	 */
+	@NotNull
+	public List<Token> tokenize(@NotNull CharStream input) {
+		if (!(input instanceof CodePointCharStream)) {
+			throw new IllegalArgumentException("input must be a CodePointCharStream, such as a stream created by CharStreams");
+		}
+
+		return tokenizeCodePoints((CodePointCharStream)input);
+	}
+
+	private List<Token> tokenizeCodePoints(CodePointCharStream input) {
+		int[] boundaries = getBoundaries(input);
+		if (boundaries.length <= 2) {
+			return lexSequentially(input);
+		}
+
+		List<ForkJoinTask<Chunk>> tasks = new ArrayList<ForkJoinTask<Chunk>>(boundaries.length - 1);
+		for (int i = 0; i < boundaries.length - 1; i++) {
+			final int start = boundaries[i];
+			final int end = i == boundaries.length - 2 ? Integer.MAX_VALUE : boundaries[i + 1];
+			final CodePointCharStream chunkInput = input.duplicate();
+			tasks.add(pool.submit(() -> lexChunk(chunkInput, start, end)));
+		}
+
+		List<Token> tokens = join(tasks, boundaries);
+		if (tokens == null) {
+			return lexSequentially(input);
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Gets the positions where the chunks start, followed by the size of the
+	 * input.
+	 */
+	private int[] getBoundaries(CodePointCharStream input) {
+		int size = input.size();
+		int count = Math.min(size / chunkSize, pool.getParallelism() * 4);
+		if (count <= 1) {
+			return new int[] { 0, size };
+		}
+
+		CodePointCharStream probe = input.duplicate();
+		int[] boundaries = new int[count + 1];
+		int length = 1;
+		for (int i = 1; i < count; i++) {
+			int boundary = (int)((long)size * i / count);
+			probe.seek(boundary);
+			for (int j = 0; j < LINE_BREAK_SEARCH_LIMIT && probe.LA(1) != IntStream.EOF; j++) {
+				probe.consume();
+				if (probe.LA(-1) == '\n') {
+					boundary = probe.index();
+					break;
+				}
+			}
+
+			if (boundary > boundaries[length - 1] && boundary < size) {
+				boundaries[length++] = boundary;
+			}
+		}
+
+		boundaries[length++] = size;
+		return Arrays.copyOf(boundaries, length);
+	}
+
+	/**
+	 * Lexes the tokens starting from {@code start} until the first token
+	 * which starts at or after {@code end}.
+	 */
+	private Chunk lexChunk(CodePointCharStream input, int start, int end) {
+		Lexer lexer = lexerFactory.apply(input);
+		Chunk chunk = new Chunk(lexer);
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(chunk);
+		input.seek(start);
+		try {
+			chunk.lexUntil(end);
+		}
+		catch (RuntimeException ex) {
+			// the state before the chunk may differ from the initial state
+			chunk.failure = ex;
+		}
+
+		return chunk;
+	}
+
+	/**
+	 * Joins the tokens of the chunks, or returns {@code null} if the input
+	 * must be lexed sequentially.
+	 */
+	@Nullable
+	private List<Token> join(List<ForkJoinTask<Chunk>> tasks, int[] boundaries) {
+		List<Token> tokens = new ArrayList<Token>();
+		Chunk current = tasks.get(0).join();
+		if (current.failure != null || !current.append(tokens, 0, current.size())) {
+			return null;
+		}
+
+		for (int i = 1; i < tasks.size() && !current.hitEOF; i++) {
+			Chunk next = tasks.get(i).join();
+			int end = i + 1 < boundaries.length - 1 ? boundaries[i + 1] : Integer.MAX_VALUE;
+			int first = -1;
+			while (!current.hitEOF) {
+				first = next.find(current.lexer._input.index(), current.lexer._mode, current.lexer._modeStack);
+				if (first >= 0 || current.lexer._input.index() >= end) {
+					break;
+				}
+
+				// the lexer of the previous chunk keeps lexing in this chunk
+				int index = current.size();
+				current.lexUntil(current.lexer._input.index() + 1);
+				if (!current.append(tokens, index, current.size())) {
+					return null;
+				}
+			}
+
+			if (first < 0) {
+				// the tokens of this chunk were all discarded
+				continue;
+			}
+
+			if (next.failure != null) {
+				// the lexer was in the same state as a sequential lex when it
+				// failed, so the sequential lex reports the same exception
+				return null;
+			}
+
+			LexerATNSimulator interpreter = current.lexer.getInterpreter();
+			next.lineDelta = current.lineDelta + interpreter.getLine() - next.line[first];
+			next.deltaLine = next.line[first];
+			next.charPositionDelta = current.toCharPositionInLine(interpreter.getLine(), interpreter.getCharPositionInLine()) - next.charPositionInLine[first];
+			if (!next.append(tokens, first, next.size())) {
+				return null;
+			}
+
+			current = next;
+		}
+
+		return tokens;
+	}
+
+	@NotNull
+	private List<Token> lexSequentially(CodePointCharStream input) {
+		Lexer lexer = lexerFactory.apply(input.duplicate());
+		List<Token> tokens = new ArrayList<Token>();
+		while (true) {
+			Token token = lexer.nextToken();
+			if (token instanceof WritableToken) {
+				((WritableToken)token).setTokenIndex(tokens.size());
+			}
+
+			tokens.add(token);
+			if (token.getType() == Token.EOF) {
+				return tokens;
+			}
+		}
+	}
+
+	/**
+	 * The tokens lexed by the lexer of a chunk, and the state of the lexer
+	 * when it started matching each of them. Lines and positions in the line
+	 * are relative to the start of the chunk until the chunk is joined.
+	 */
+	private static final class Chunk implements ANTLRErrorListener<Integer> {
+		@NotNull
+		final Lexer lexer;
+
+		final List<Token> tokens = new ArrayList<Token>();
+		int[] callStart = new int[16];
+		int[] line = new int[16];
+		int[] charPositionInLine = new int[16];
+		int[] mode = new int[16];
+		int[][] modeStack = new int[16][];
+
+		/** The tokens whose match reported an error. */
+		final BitSet errors = new BitSet();
+		boolean hitEOF;
+
+		/** The exception which stopped the lexer, if any. */
+		@Nullable
+		RuntimeException failure;
+
+		/**
+		 * The difference between the line numbers of the input and the line
+		 * numbers of this chunk, and the difference between the positions in
+		 * the line on the line {@link #deltaLine} of this chunk.
+		 */
+		int lineDelta;
+		int deltaLine = 1;
+		int charPositionDelta;
+
+		Chunk(@NotNull Lexer lexer) {
+			this.lexer = lexer;
+		}
+
+		int size() {
+			return tokens.size();
+		}
+
+		void lexUntil(int end) {
+			LexerATNSimulator interpreter = lexer.getInterpreter();
+			while (!hitEOF && lexer._input.index() < end) {
+				int i = tokens.size();
+				if (i == callStart.length) {
+					int capacity = i * 2;
+					callStart = Arrays.copyOf(callStart, capacity);
+					line = Arrays.copyOf(line, capacity);
+					charPositionInLine = Arrays.copyOf(charPositionInLine, capacity);
+					mode = Arrays.copyOf(mode, capacity);
+					modeStack = Arrays.copyOf(modeStack, capacity);
+				}
+
+				callStart[i] = lexer._input.index();
+				line[i] = interpreter.getLine();
+				charPositionInLine[i] = interpreter.getCharPositionInLine();
+				mode[i] = lexer._mode;
+				modeStack[i] = lexer._modeStack.isEmpty() ? null : lexer._modeStack.toArray();
+				Token token = lexer.nextToken();
+				tokens.add(token);
+				hitEOF = token.getType() == Token.EOF;
+			}
+		}
+
+		/**
+		 * Gets the token which the lexer started to match at {@code index},
+		 * in the mode {@code mode} and with the mode stack {@code stack}, or
+		 * -1 if there is none.
+		 */
+		int find(int index, int mode, IntegerStack stack) {
+			int i = Arrays.binarySearch(callStart, 0, tokens.size(), index);
+			if (i < 0 || this.mode[i] != mode) {
+				return -1;
+			}
+
+			int[] expected = modeStack[i];
+			if (expected == null) {
+				return stack.isEmpty() ? i : -1;
+			}
+
+			return Arrays.equals(expected, stack.toArray()) ? i : -1;
+		}
+
+		int toCharPositionInLine(int line, int charPositionInLine) {
+			return line == deltaLine ? charPositionInLine + charPositionDelta : charPositionInLine;
+		}
+
+		/**
+		 * Adds the tokens from {@code from} to {@code to} to {@code result},
+		 * with their position in the input. Returns {@code false} if one of
+		 * them had an error or cannot be updated.
+		 */
+		boolean append(List<Token> result, int from, int to) {
+			if (errors.nextSetBit(from) >= 0 && errors.nextSetBit(from) < to) {
+				return false;
+			}
+
+			for (int i = from; i < to; i++) {
+				Token token = tokens.get(i);
+				if (!(token instanceof WritableToken)) {
+					return false;
+				}
+
+				WritableToken writable = (WritableToken)token;
+				if (lineDelta != 0 || charPositionDelta != 0) {
+					writable.setCharPositionInLine(toCharPositionInLine(token.getLine(), token.getCharPositionInLine()));
+					writable.setLine(token.getLine() + lineDelta);
+				}
+
+				writable.setTokenIndex(result.size());
+				result.add(token);
+			}
+
+			return true;
+		}
+
+		@Override
+		public <T extends Integer> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+			errors.set(tokens.size());
+		}
+	}
+}
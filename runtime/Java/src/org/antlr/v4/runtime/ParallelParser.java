@@ -0,0 +1,548 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.RuleStartState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Parses a list of independent constructs, such as the statements of a
+ * script or the entries of a log, on several threads.
+ *
+ * <p>The start rule must contain a loop over a single <em>child rule</em>, as
+ * in {@code file : statement* EOF}. The tokens are split into partitions
+ * after tokens of one of the <em>synchronization token types</em>, which
+ * usually end a child, such as the {@code ';'} ending a statement. The
+ * partitions between the first and the last one are parsed on a
+ * {@link ForkJoinPool}: each is parsed by its own parser, which invokes the
+ * child rule repeatedly as the start rule would. A partition which starts
+ * inside a child, for example after the {@code ';'} of a nested statement,
+ * usually fails to parse; it then starts again after the next synchronization
+ * token following the error. Meanwhile the start rule is parsed on the calling
+ * thread over the tokens of the first and the last partition.</p>
+ *
+ * <p>The partitions are then joined in order: if the children of the previous
+ * partition end where the next partition started a child, the children of the
+ * next partition are kept from there on. Otherwise the parser of the previous
+ * partition keeps parsing children until they synchronize, and the children
+ * of a partition it passes completely are discarded. The children are finally
+ * inserted in the tree of the start rule, which has the same structure, parent
+ * links and token indexes as the tree of a sequential parse.</p>
+ *
+ * <p>The partitions are parsed with a {@link BailErrorStrategy} and without
+ * error listeners. If a kept child cannot be parsed, or the children do not
+ * fit between two children of the start rule, the tokens are parsed again
+ * sequentially by a single parser, which reports the errors to the error
+ * listeners and error strategy set by the parser factory.</p>
+ *
+ * <p>Each parser is created by the parser factory. The parsers should share
+ * the {@link ATN} (and with it the DFA), as generated parsers do. Parse
+ * listeners added by the factory receive the events of each partition on the
+ * thread which parses it, including the events of children which are later
+ * discarded, and predicates and actions must not depend on state outside of
+ * the rule which is being parsed. While the start rule is parsed, the tokens
+ * of the last partition directly follow the tokens of the first partition in
+ * its token stream.</p>
+ *
+ * <pre>
+ * ParallelParser&lt;ScriptParser&gt; parallel = new ParallelParser&lt;ScriptParser&gt;(ScriptParser::new,
+ *     ScriptParser.RULE_file, ScriptParser::file,
+ *     ScriptParser.RULE_statement, ScriptParser::statement,
+ *     ScriptParser.SEMI);
+ * ParserRuleContext tree = parallel.parse(tokens);
+ * </pre>
+ *
+ * @param <T> the type of the parsers
+ */
+public class ParallelParser<T extends Parser> {
+	/**
+	 * The default minimum number of tokens in a partition.
+	 */
+	public static final int DEFAULT_PARTITION_SIZE = 1 << 14;
+
+	@NotNull
+	private final Function<? super TokenStream, ? extends T> parserFactory;
+
+	private final int startRuleIndex;
+
+	@NotNull
+	private final Function<? super T, ? extends ParserRuleContext> startRule;
+
+	private final int childRuleIndex;
+
+	@NotNull
+	private final Function<? super T, ? extends ParserRuleContext> childRule;
+
+	@NotNull
+	private final IntervalSet syncTokenTypes;
+
+	@NotNull
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	private int partitionSize = DEFAULT_PARTITION_SIZE;
+
+	/**
+	 * The state of the start rule which invokes the child rule, or
+	 * {@link ATNState#INVALID_STATE_NUMBER} before it is computed.
+	 */
+	private volatile int invokingState = ATNState.INVALID_STATE_NUMBER;
+
+	private boolean lastParseParallel;
+
+	/**
+	 * Constructs a new parallel parser.
+	 *
+	 * @param parserFactory creates a parser reading the specified tokens
+	 * @param startRuleIndex the index of the start rule
+	 * @param startRule invokes the start rule on a parser
+	 * @param childRuleIndex the index of the child rule
+	 * @param childRule invokes the child rule on a parser. For a
+	 * {@link ParserInterpreter}, the rule is
+	 * {@code p -> p.parse(childRuleIndex, p.getContext(), p.getState())}.
+	 * @param syncTokenTypes the types of the tokens after which the tokens can
+	 * be split
+	 */
+	public ParallelParser(@NotNull Function<? super TokenStream, ? extends T> parserFactory,
+						  int startRuleIndex, @NotNull Function<? super T, ? extends ParserRuleContext> startRule,
+						  int childRuleIndex, @NotNull Function<? super T, ? extends ParserRuleContext> childRule,
+						  int... syncTokenTypes)
+	{
+		this.parserFactory = parserFactory;
+		this.startRuleIndex = startRuleIndex;
+		this.startRule = startRule;
+		this.childRuleIndex = childRuleIndex;
+		this.childRule = childRule;
+		this.syncTokenTypes = new IntervalSet();
+		for (int type : syncTokenTypes) {
+			this.syncTokenTypes.add(type);
+		}
+	}
+
+	@NotNull
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public void setPool(@NotNull ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the minimum number of tokens in a partition. The tokens are parsed
+	 * sequentially when they do not make at least three partitions.
+	 */
+	public int getPartitionSize() {
+		return partitionSize;
+	}
+
+	public void setPartitionSize(int partitionSize) {
+		if (partitionSize <= 0) {
+			throw new IllegalArgumentException("partitionSize must be positive");
+		}
+
+		this.partitionSize = partitionSize;
+	}
+
+	/**
+	 * Gets whether the tree returned by the last call to {@link #parse} was
+	 * assembled from partitions parsed in parallel.
+	 */
+	public boolean isLastParseParallel() {
+		return lastParseParallel;
+	}
+
+	/**
+	 * Parses {@code tokens} with the start rule.
+	 *
+	 * @param tokens the tokens to parse, ending with the {@link Token#EOF}
+	 * token. The index of each token must be its index in the list, as for
+	 * the tokens of a {@link BufferedTokenStream} after
+	 * {@link BufferedTokenStream#fill}.
+	 * @return the context of the start rule
+	 */
+	public ParserRuleContext parse(@NotNull List<? extends Token> tokens) {
+		@SuppressWarnings("unchecked")
+		List<Token> tokenList = (List<Token>)tokens;
+		lastParseParallel = false;
+		int[] boundaries = getBoundaries(tokenList);
+		if (boundaries.length < 4) {
+			return parseSequentially(tokenList);
+		}
+
+		List<ForkJoinTask<Partition>> tasks = new ArrayList<ForkJoinTask<Partition>>(boundaries.length - 3);
+		for (int i = 1; i < boundaries.length - 2; i++) {
+			final int start = boundaries[i];
+			final int end = boundaries[i + 1];
+			tasks.add(pool.submit(() -> parsePartition(tokenList, start, end)));
+		}
+
+		// the start rule is parsed while the partitions are parsed, assuming
+		// that their children start and end at the boundaries
+		int lastStart = boundaries[boundaries.length - 2];
+		ParserRuleContext tree = parseOuter(tokenList, boundaries[1], lastStart);
+
+		Partition current = tasks.get(0).join();
+		if (current.size == 0) {
+			return parseSequentially(tokenList);
+		}
+
+		int childrenStart = current.starts[0];
+		List<ParseTree> children = new ArrayList<ParseTree>(current.parent.children);
+		for (int i = 1; i < tasks.size(); i++) {
+			Partition next = tasks.get(i).join();
+			int end = boundaries[i + 2];
+			int first = -1;
+			while (true) {
+				first = next.find(current.stream.index());
+				if (first >= 0 || current.stream.index() >= end) {
+					break;
+				}
+
+				// the parser of the previous partition keeps parsing in this partition
+				if (!current.parseChild()) {
+					return parseSequentially(tokenList);
+				}
+
+				children.add(current.parent.children.get(current.size - 1));
+			}
+
+			if (first < 0) {
+				// the children of this partition were all discarded
+				continue;
+			}
+
+			children.addAll(next.parent.children.subList(first, next.size));
+			current = next;
+		}
+
+		int childrenEnd = current.stream.index();
+		if (childrenStart != boundaries[1] || childrenEnd != lastStart) {
+			tree = parseOuter(tokenList, childrenStart, childrenEnd);
+		}
+
+		if (tree == null || tree.children == null) {
+			return parseSequentially(tokenList);
+		}
+
+		int index = 0;
+		while (index < tree.children.size() && getStartIndex(tree.children.get(index)) < childrenEnd) {
+			index++;
+		}
+
+		if (index == 0 || getStopIndex(tree.children.get(index - 1)) >= childrenStart) {
+			// a child of the start rule spans the children of the partitions
+			return parseSequentially(tokenList);
+		}
+
+		for (ParseTree child : children) {
+			((ParserRuleContext)child).setParent(tree);
+		}
+
+		tree.children.addAll(index, children);
+		lastParseParallel = true;
+		return tree;
+	}
+
+	/**
+	 * Gets the indexes of the first token of each partition, followed by the
+	 * number of tokens.
+	 */
+	private int[] getBoundaries(List<Token> tokens) {
+		int size = tokens.size();
+		int count = Math.min(size / partitionSize, pool.getParallelism() * 4 + 2);
+		if (count < 3) {
+			return new int[] { 0, size };
+		}
+
+		int[] boundaries = new int[count + 1];
+		int length = 1;
+		for (int i = 1; i < count; i++) {
+			int target = Math.max((int)((long)size * i / count), boundaries[length - 1] + 1);
+			int boundary = nextSyncPoint(tokens, target - 1, size - 1);
+			if (boundary >= 0) {
+				boundaries[length++] = boundary;
+			}
+		}
+
+		boundaries[length++] = size;
+		return Arrays.copyOf(boundaries, length);
+	}
+
+	/**
+	 * Gets the index of the first token on the default channel after
+	 * {@code index} which follows a token of a synchronization type, or -1 if
+	 * there is none before {@code end}.
+	 */
+	private int nextSyncPoint(List<Token> tokens, int index, int end) {
+		int previousType = Token.INVALID_TYPE;
+		for (int i = index; i >= 0; i--) {
+			if (tokens.get(i).getChannel() == Token.DEFAULT_CHANNEL) {
+				previousType = tokens.get(i).getType();
+				break;
+			}
+		}
+
+		for (int i = index + 1; i < end; i++) {
+			Token token = tokens.get(i);
+			if (token.getChannel() != Token.DEFAULT_CHANNEL) {
+				continue;
+			}
+
+			if (syncTokenTypes.contains(previousType)) {
+				return i;
+			}
+
+			previousType = token.getType();
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Parses the children of a partition from the first position at or after
+	 * {@code start} where they can be parsed until they reach {@code end}.
+	 */
+	@NotNull
+	private Partition parsePartition(List<Token> tokens, int start, int end) {
+		Partition partition = new Partition(tokens);
+		int candidate = start;
+		while (candidate >= 0) {
+			int failure = partition.parseFrom(candidate, end);
+			if (failure < 0) {
+				return partition;
+			}
+
+			candidate = nextSyncPoint(tokens, failure, end);
+		}
+
+		partition.clear();
+		return partition;
+	}
+
+	/**
+	 * Parses the start rule over the tokens before {@code childrenStart} and
+	 * from {@code childrenEnd} on, or returns {@code null} if they cannot be
+	 * parsed.
+	 */
+	@Nullable
+	private ParserRuleContext parseOuter(List<Token> tokens, int childrenStart, int childrenEnd) {
+		List<Token> outerTokens = new ArrayList<Token>(childrenStart + tokens.size() - childrenEnd);
+		outerTokens.addAll(tokens.subList(0, childrenStart));
+		outerTokens.addAll(tokens.subList(childrenEnd, tokens.size()));
+		TokenListStream stream = new TokenListStream(outerTokens);
+		T parser = createPartitionParser(stream);
+		try {
+			ParserRuleContext tree = startRule.apply(parser);
+			return stream.LA(1) == Token.EOF ? tree : null;
+		}
+		catch (ParseCancellationException ex) {
+			if (!(ex.getCause() instanceof RecognitionException)) {
+				throw ex;
+			}
+
+			return null;
+		}
+	}
+
+	private T createPartitionParser(TokenStream tokens) {
+		T parser = parserFactory.apply(tokens);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		return parser;
+	}
+
+	private ParserRuleContext parseSequentially(List<Token> tokens) {
+		T parser = parserFactory.apply(new TokenListStream(tokens));
+		return startRule.apply(parser);
+	}
+
+	/**
+	 * Gets the state of the start rule which invokes the child rule.
+	 *
+	 * @throws IllegalArgumentException if the start rule does not invoke the
+	 * child rule from exactly one state
+	 */
+	private int getInvokingState(ATN atn) {
+		int result = invokingState;
+		if (result != ATNState.INVALID_STATE_NUMBER) {
+			return result;
+		}
+
+		RuleStartState childStartState = atn.ruleToStartState[childRuleIndex];
+		for (ATNState state : atn.states) {
+			if (state == null || state.ruleIndex != startRuleIndex) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+				Transition transition = state.transition(i);
+				if (transition instanceof RuleTransition && transition.target == childStartState) {
+					if (result != ATNState.INVALID_STATE_NUMBER) {
+						throw new IllegalArgumentException("the start rule invokes the child rule from more than one state");
+					}
+
+					result = state.stateNumber;
+				}
+			}
+		}
+
+		if (result == ATNState.INVALID_STATE_NUMBER) {
+			throw new IllegalArgumentException("the start rule does not invoke the child rule");
+		}
+
+		invokingState = result;
+		return result;
+	}
+
+	private static int getStartIndex(ParseTree tree) {
+		if (tree instanceof TerminalNode) {
+			return ((TerminalNode)tree).getSymbol().getTokenIndex();
+		}
+
+		return ((ParserRuleContext)tree).start.getTokenIndex();
+	}
+
+	private static int getStopIndex(ParseTree tree) {
+		if (tree instanceof TerminalNode) {
+			return ((TerminalNode)tree).getSymbol().getTokenIndex();
+		}
+
+		Token stop = ((ParserRuleContext)tree).stop;
+		return stop != null ? stop.getTokenIndex() : -1;
+	}
+
+	/**
+	 * The children parsed by the parser of a partition, which are added to a
+	 * placeholder parent, and the index of the token where each of them
+	 * starts.
+	 */
+	private final class Partition {
+		@NotNull
+		final TokenListStream stream;
+
+		@NotNull
+		final T parser;
+
+		final int state;
+
+		@NotNull
+		final ParserRuleContext parent = new ParserRuleContext();
+
+		int[] starts = new int[16];
+		int size;
+
+		Partition(List<Token> tokens) {
+			this.stream = new TokenListStream(tokens);
+			this.parser = createPartitionParser(stream);
+			this.state = getInvokingState(parser.getATN());
+		}
+
+		/**
+		 * Parses children from {@code start} until they reach {@code end}.
+		 *
+		 * @return -1 if the children were parsed, otherwise the index of the
+		 * token where the parser failed
+		 */
+		int parseFrom(int start, int end) {
+			clear();
+			stream.seek(start);
+			while (stream.index() < end) {
+				int index = stream.index();
+				if (!parseChild()) {
+					return Math.max(index, stream.index());
+				}
+			}
+
+			return -1;
+		}
+
+		/**
+		 * Parses the child starting at the current token, and returns
+		 * {@code false} if it cannot be parsed.
+		 */
+		boolean parseChild() {
+			int index = stream.index();
+			parser.setContext(parent);
+			parser.setState(state);
+			try {
+				childRule.apply(parser);
+			}
+			catch (ParseCancellationException ex) {
+				if (!(ex.getCause() instanceof RecognitionException)) {
+					throw ex;
+				}
+
+				Token offendingToken = ((RecognitionException)ex.getCause()).getOffendingToken();
+				if (offendingToken != null && offendingToken.getTokenIndex() > stream.index()) {
+					stream.seek(offendingToken.getTokenIndex());
+				}
+
+				removeFailedChild();
+				return false;
+			}
+
+			if (stream.index() <= index) {
+				removeFailedChild();
+				return false;
+			}
+
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+			}
+
+			starts[size++] = index;
+			return true;
+		}
+
+		/**
+		 * Gets the child starting at the token {@code index}, or -1 if there
+		 * is none.
+		 */
+		int find(int index) {
+			int i = Arrays.binarySearch(starts, 0, size, index);
+			return i >= 0 ? i : -1;
+		}
+
+		void clear() {
+			size = 0;
+			parent.children = null;
+		}
+
+		private void removeFailedChild() {
+			if (parent.children != null && parent.children.size() > size) {
+				parent.children.subList(size, parent.children.size()).clear();
+			}
+		}
+	}
+
+	/**
+	 * A token stream over a list of tokens which were already lexed.
+	 */
+	private static final class TokenListStream extends CommonTokenStream {
+		TokenListStream(List<Token> tokens) {
+			super(new ListTokenSource(tokens));
+			this.tokens = tokens;
+			this.fetchedEOF = true;
+		}
+	}
+}
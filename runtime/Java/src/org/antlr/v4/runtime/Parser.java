@@ -29,10 +29,12 @@ import org.antlr.v4.runtime.tree.pattern.ParseTreePattern;
 import org.antlr.v4.runtime.tree.pattern.ParseTreePatternMatcher;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /** This is all the parsing support code essentially; most of it is error recovery stuff. */
 public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
@@ -94,6 +96,13 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	private static final Map<String, ATN> bypassAltsAtnCache =
 		new WeakHashMap<String, ATN>();
 
+	/**
+	 * Guards {@link #bypassAltsAtnCache}. A lock is used instead of a monitor
+	 * so a virtual thread waiting while another thread deserializes the ATN
+	 * does not pin its carrier thread.
+	 */
+	private static final ReentrantLock bypassAltsAtnCacheLock = new ReentrantLock();
+
 	/**
 	 * The error handling strategy for the parser. The default value is a new
 	 * instance of {@link DefaultErrorStrategy}.
@@ -151,6 +160,16 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	@Nullable
 	protected List<ParseTreeListener> _parseListeners;
 
+	/**
+	 * The indexes of the rules whose contexts are detached from the parse tree
+	 * after their exit rule event, or {@code null} if the complete parse tree
+	 * is kept.
+	 *
+	 * @see #setEmitRules
+	 */
+	@Nullable
+	protected BitSet _emitRules;
+
 	/**
 	 * The number of syntax errors reported during parsing. This value is
 	 * incremented each time {@link #notifyErrorListeners} is called.
@@ -169,6 +188,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		if ( getInputStream()!=null ) getInputStream().seek(0);
 		_errHandler.reset(this);
 		_ctx = null;
+		setState(ATNState.INVALID_STATE_NUMBER);
 		_syntaxErrors = 0;
 		matchedEOF = false;
 		setTrace(false);
@@ -315,6 +335,49 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		return getParseListeners().contains(TrimToSizeListener.INSTANCE);
 	}
 
+	/**
+	 * Parse the input in streaming mode, where the context of each of the
+	 * specified rules is removed from the {@link ParserRuleContext#children}
+	 * list of its parent after the rule is parsed. Parse listeners receive
+	 * each of these contexts with its complete subtree in
+	 * {@link ParseTreeListener#exitEveryRule}, after which the parser no longer
+	 * references it, so a long sequence of statements can be parsed in memory
+	 * proportional to the size of one statement.
+	 *
+	 * <p>The detached contexts keep their {@link ParserRuleContext#parent}
+	 * reference, but labels in the grammar which refer to them still keep them
+	 * reachable from the parent. Rules which are invoked from a left-factored
+	 * rule cannot be emitted, since the parser moves their context after it
+	 * was parsed. Streaming only has an effect while
+	 * {@link #getBuildParseTree} is {@code true}.</p>
+	 *
+	 * @param ruleIndexes the indexes of the rules to emit, or no indexes to
+	 * keep the complete parse tree
+	 */
+	public void setEmitRules(int... ruleIndexes) {
+		if (ruleIndexes.length == 0) {
+			_emitRules = null;
+			return;
+		}
+
+		BitSet emitRules = new BitSet();
+		for (int ruleIndex : ruleIndexes) {
+			emitRules.set(ruleIndex);
+		}
+
+		_emitRules = emitRules;
+	}
+
+	/**
+	 * Gets whether the contexts of the rule {@code ruleIndex} are detached
+	 * from the parse tree after they are parsed.
+	 *
+	 * @see #setEmitRules
+	 */
+	public boolean isEmitRule(int ruleIndex) {
+		return _emitRules != null && ruleIndex >= 0 && _emitRules.get(ruleIndex);
+	}
+
 	@NotNull
     public List<ParseTreeListener> getParseListeners() {
 		List<ParseTreeListener> listeners = _parseListeners;
@@ -449,7 +512,8 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			throw new UnsupportedOperationException("The current parser does not support an ATN with bypass alternatives.");
 		}
 
-		synchronized (bypassAltsAtnCache) {
+		bypassAltsAtnCacheLock.lock();
+		try {
 			ATN result = bypassAltsAtnCache.get(serializedAtn);
 			if (result == null) {
 				ATNDeserializationOptions deserializationOptions = new ATNDeserializationOptions();
@@ -460,6 +524,9 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 
 			return result;
 		}
+		finally {
+			bypassAltsAtnCacheLock.unlock();
+		}
 	}
 
 	/**
@@ -664,6 +731,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		}
         // trigger event on _ctx, before it reverts to parent
         if ( _parseListeners != null) triggerExitRuleEvent();
+		if ( _buildParseTrees && _emitRules != null ) detachEmittedContext();
 		setState(_ctx.invokingState);
 		_ctx = (ParserRuleContext)_ctx.parent;
     }
@@ -754,12 +822,30 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		// hook into tree
 		retctx.parent = _parentctx;
 
-		if (_buildParseTrees && _parentctx != null) {
+		if (_buildParseTrees && _parentctx != null && !isEmitRule(retctx.getRuleIndex())) {
 			// add return ctx into invoking rule's tree
 			_parentctx.addChild(retctx);
 		}
 	}
 
+	/**
+	 * Removes the current context from the children of its parent if it is
+	 * the context of an emit rule. Called after the exit rule event.
+	 *
+	 * @see #setEmitRules
+	 */
+	protected void detachEmittedContext() {
+		ParserRuleContext parent = (ParserRuleContext)_ctx.parent;
+		if (parent == null || !isEmitRule(_ctx.getRuleIndex())) {
+			return;
+		}
+
+		int last = parent.getChildCount() - 1;
+		if (last >= 0 && parent.getChild(last) == _ctx) {
+			parent.removeLastChild();
+		}
+	}
+
 	public ParserRuleContext getInvokingContext(int ruleIndex) {
 		ParserRuleContext p = _ctx;
 		while ( p!=null ) {
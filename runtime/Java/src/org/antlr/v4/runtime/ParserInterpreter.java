@@ -20,6 +20,7 @@ import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.atn.StarLoopEntryState;
 import org.antlr.v4.runtime.atn.Transition;
 import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Tuple;
 import org.antlr.v4.runtime.misc.Tuple2;
 
@@ -180,9 +181,32 @@ public class ParserInterpreter extends Parser {
 
 	/** Begin parsing at startRuleIndex */
 	public ParserRuleContext parse(int startRuleIndex) {
+		return parse(startRuleIndex, null, ATNState.INVALID_STATE_NUMBER);
+	}
+
+	/**
+	 * Parses the rule {@code startRuleIndex} as if it was invoked from the ATN
+	 * state {@code invokingState} of the rule context {@code parent}, the
+	 * same way a generated parser parses a rule when its rule method is called
+	 * while {@code parent} is the current context. The result is added to the
+	 * children of {@code parent}, and the method returns when the rule is
+	 * complete, without following the return transitions of {@code parent}.
+	 *
+	 * @param startRuleIndex the rule to parse
+	 * @param parent the context which invokes the rule, or {@code null} to
+	 * parse a start rule
+	 * @param invokingState the ATN state of {@code parent} which invokes the
+	 * rule, or {@link ATNState#INVALID_STATE_NUMBER} if {@code parent} is
+	 * {@code null}
+	 * @return the context of the rule
+	 *
+	 * @see IncrementalParser
+	 */
+	public ParserRuleContext parse(int startRuleIndex, @Nullable ParserRuleContext parent, int invokingState) {
 		RuleStartState startRuleStartState = atn.ruleToStartState[startRuleIndex];
 
-		rootContext = createInterpreterRuleContext(null, ATNState.INVALID_STATE_NUMBER, startRuleIndex);
+		_ctx = parent;
+		rootContext = createInterpreterRuleContext(parent, invokingState, startRuleIndex);
 		if (startRuleStartState.isPrecedenceRule) {
 			enterRecursionRule(rootContext, startRuleStartState.stateNumber, startRuleIndex, 0);
 		}
@@ -195,7 +219,7 @@ public class ParserInterpreter extends Parser {
 			switch ( p.getStateType() ) {
 			case ATNState.RULE_STOP :
 				// pop; return from rule
-				if ( _ctx.isEmpty() ) {
+				if ( _ctx.parent == parent ) {
 					if (startRuleStartState.isPrecedenceRule) {
 						ParserRuleContext result = _ctx;
 						Tuple2<ParserRuleContext, Integer> parentContext = _parentContextStack.pop();
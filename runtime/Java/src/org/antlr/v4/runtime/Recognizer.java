@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 	public static final int EOF=-1;
@@ -29,6 +30,11 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 		new WeakHashMap<Vocabulary, Map<String, Integer>>();
 	private static final Map<String[], Map<String, Integer>> ruleIndexMapCache =
 		new WeakHashMap<String[], Map<String, Integer>>();
+	/**
+	 * Guards the map caches. A lock is used instead of a monitor so a virtual
+	 * thread waiting for it does not pin its carrier thread.
+	 */
+	private static final ReentrantLock mapCacheLock = new ReentrantLock();
 
 	@SuppressWarnings("serial")
 	@NotNull
@@ -70,7 +76,8 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 	@NotNull
 	public Map<String, Integer> getTokenTypeMap() {
 		Vocabulary vocabulary = getVocabulary();
-		synchronized (tokenTypeMapCache) {
+		mapCacheLock.lock();
+		try {
 			Map<String, Integer> result = tokenTypeMapCache.get(vocabulary);
 			if (result == null) {
 				result = new HashMap<String, Integer>();
@@ -93,6 +100,9 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 
 			return result;
 		}
+		finally {
+			mapCacheLock.unlock();
+		}
 	}
 
 	/**
@@ -107,7 +117,8 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 			throw new UnsupportedOperationException("The current recognizer does not provide a list of rule names.");
 		}
 
-		synchronized (ruleIndexMapCache) {
+		mapCacheLock.lock();
+		try {
 			Map<String, Integer> result = ruleIndexMapCache.get(ruleNames);
 			if (result == null) {
 				result = Collections.unmodifiableMap(Utils.toMap(ruleNames));
@@ -116,6 +127,9 @@ public abstract class Recognizer<Symbol, ATNInterpreter extends ATNSimulator> {
 
 			return result;
 		}
+		finally {
+			mapCacheLock.unlock();
+		}
 	}
 
 	public int getTokenType(String tokenName) {
@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link LongCharStream} which decodes its input incrementally into a chain
+ * of fixed-size segments of Unicode code points, so inputs larger than
+ * {@link Integer#MAX_VALUE} symbols can be lexed in a single pass with a
+ * bounded amount of memory. The bytes are read from a
+ * {@link ReadableByteChannel}, or from consecutive memory-mapped regions of a
+ * file when the stream is created by {@link #fromPath(Path, Charset, boolean)}.
+ *
+ * <p>Like {@link UnbufferedCharStream}, the stream only keeps the segments
+ * which are still needed: while a mark is held, every symbol from the marked
+ * position on is kept, and otherwise only the segment holding the current and
+ * the previous symbol. {@link #seek}, {@link #LA} and {@link #getText} throw
+ * {@link UnsupportedOperationException} for positions which were discarded.
+ * Since token text cannot be read from the stream after the token is
+ * finished, a lexer reading this stream should use a token factory which
+ * copies the text, e.g. {@link LongTokenFactory#DEFAULT}.</p>
+ *
+ * <p>The {@code int} indexes of this stream are relative to
+ * {@link #getIndexOrigin}. When no mark is held and the current index
+ * reaches {@link #indexRebaseThreshold}, the origin is moved to the current
+ * position, so {@link #index} starts over at 0. For inputs shorter than the
+ * threshold the indexes are the absolute positions.</p>
+ *
+ * <p>{@link #size} is not supported, since the size is unknown until the end
+ * of the input is reached and it may exceed the range of {@code int}.</p>
+ */
+public class SegmentedCharStream implements LongCharStream, UnicodeCharStream, Closeable {
+	/**
+	 * The default number of code points in a segment.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 16;
+
+	/**
+	 * The default value of {@link #indexRebaseThreshold}.
+	 */
+	public static final int DEFAULT_INDEX_REBASE_THRESHOLD = 1 << 30;
+
+	private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The size of the regions of a file which are mapped at a time.
+	 */
+	private static final int MAP_REGION_SIZE = 1 << 26;
+
+	/**
+	 * When no mark is held and {@link #index} reaches this value, the index
+	 * origin is moved to the current position.
+	 */
+	protected int indexRebaseThreshold = DEFAULT_INDEX_REBASE_THRESHOLD;
+
+	/** The name or source of this char stream. */
+	public String name;
+
+	private final int segmentShift;
+	private final int segmentMask;
+
+	/**
+	 * The buffered segments. {@code segments[0]} holds the code points from
+	 * {@link #bufferStart}, which is always a multiple of the segment size.
+	 */
+	@NotNull
+	private int[][] segments = new int[4][];
+	private int segmentCount;
+	/** A discarded segment which is reused for the next segment. */
+	private int[] spareSegment;
+
+	/** The absolute position of the first buffered code point. */
+	private long bufferStart;
+	/** The absolute position after the last buffered code point. */
+	private long bufferEnd;
+	/** The absolute position of {@code LA(1)}. */
+	private long position;
+	/** The absolute position of index 0. */
+	private long origin;
+
+	/**
+	 * Count up with {@link #mark mark()} and down with
+	 * {@link #release release()}.
+	 */
+	private int numMarkers;
+
+	private final ReadableByteChannel channel;
+	/** The file which is mapped, or {@code null} to read from {@link #channel}. */
+	private final FileChannel mappedFile;
+	/** The position in {@link #mappedFile} of the start of {@link #bytes}. */
+	private long mappedOffset;
+
+	@NotNull
+	private ByteBuffer bytes;
+	@NotNull
+	private final CharBuffer chars;
+	@NotNull
+	private final CharsetDecoder decoder;
+	/** A high surrogate at the end of the last decoded chunk, or -1. */
+	private int pendingHighSurrogate = -1;
+	/** {@code true} when all bytes have been read from the source. */
+	private boolean endOfBytes;
+	/** {@code true} when all code points have been decoded. */
+	private boolean endOfInput;
+
+	/**
+	 * Constructs a stream which decodes the bytes read from {@code channel}
+	 * with {@code charset}. Malformed input is replaced with U+FFFD. The
+	 * channel is closed when the end of the input is reached or the stream is
+	 * closed.
+	 *
+	 * @param segmentSize the number of code points in a segment, which must
+	 * be a power of 2
+	 */
+	public SegmentedCharStream(@NotNull ReadableByteChannel channel, @NotNull Charset charset, int segmentSize, String sourceName) {
+		this(channel, null, charset, segmentSize, sourceName);
+	}
+
+	public SegmentedCharStream(@NotNull ReadableByteChannel channel, @NotNull Charset charset, String sourceName) {
+		this(channel, null, charset, DEFAULT_SEGMENT_SIZE, sourceName);
+	}
+
+	private SegmentedCharStream(ReadableByteChannel channel, FileChannel mappedFile, Charset charset, int segmentSize, String sourceName) {
+		if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+			throw new IllegalArgumentException("segmentSize must be a power of 2");
+		}
+
+		this.channel = channel;
+		this.mappedFile = mappedFile;
+		this.name = sourceName;
+		this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+		this.segmentMask = segmentSize - 1;
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.chars = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+		if (mappedFile != null) {
+			this.bytes = ByteBuffer.allocate(0);
+		}
+		else {
+			this.bytes = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+			this.bytes.flip();
+		}
+	}
+
+	/**
+	 * Constructs a stream which reads the file {@code path}. When
+	 * {@code memoryMapped} is {@code true}, the file is read through
+	 * consecutive memory-mapped regions instead of a read buffer.
+	 */
+	@NotNull
+	public static SegmentedCharStream fromPath(@NotNull Path path, @NotNull Charset charset, boolean memoryMapped) throws IOException {
+		FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+		return new SegmentedCharStream(file, memoryMapped ? file : null, charset, DEFAULT_SEGMENT_SIZE, path.toString());
+	}
+
+	/**
+	 * Constructs a stream which reads the UTF-8 encoded file {@code path}
+	 * through memory-mapped regions.
+	 */
+	@NotNull
+	public static SegmentedCharStream fromPath(@NotNull Path path) throws IOException {
+		return fromPath(path, StandardCharsets.UTF_8, true);
+	}
+
+	@Override
+	public void consume() {
+		if (LA(1) == IntStream.EOF) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		position++;
+		if (numMarkers == 0) {
+			if (position - bufferStart > segmentMask + 1) {
+				// LA(-1) moved past the first segment, which can be discarded
+				discardBefore(position - 1);
+			}
+
+			rebaseIfNeeded();
+		}
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i == 0) {
+			// Undefined
+			return 0;
+		}
+
+		long index = i > 0 ? position + i - 1 : position + i;
+		if (index < 0) {
+			return IntStream.EOF;
+		}
+
+		if (index >= bufferEnd) {
+			if (!fill(index)) {
+				return IntStream.EOF;
+			}
+		}
+		else if (index < bufferStart) {
+			throw new UnsupportedOperationException("LA(" + i + ") at " + index + " is outside buffer: " + bufferStart + ".." + (bufferEnd - 1));
+		}
+
+		return segments[(int)((index - bufferStart) >>> segmentShift)][(int)index & segmentMask];
+	}
+
+	/**
+	 * Return a marker that we can release later.
+	 *
+	 * <p>The specific marker value used for this class allows for some level of
+	 * protection against misuse where {@code seek()} is called on a mark or
+	 * {@code release()} is called in the wrong order.</p>
+	 */
+	@Override
+	public int mark() {
+		int mark = -numMarkers - 1;
+		numMarkers++;
+		return mark;
+	}
+
+	/** Decrement number of markers, discarding old segments if we hit 0. */
+	@Override
+	public void release(int marker) {
+		int expectedMark = -numMarkers;
+		if ( marker!=expectedMark ) {
+			throw new IllegalStateException("release() called with an invalid marker.");
+		}
+
+		numMarkers--;
+		if (numMarkers == 0) {
+			discardBefore(position - 1);
+			rebaseIfNeeded();
+		}
+	}
+
+	@Override
+	public int index() {
+		return (int)(position - origin);
+	}
+
+	@Override
+	public long longIndex() {
+		return position;
+	}
+
+	@Override
+	public long getIndexOrigin() {
+		return origin;
+	}
+
+	/**
+	 * Seek to a character index, which must be in the buffer or ahead of the
+	 * current position. Seeking past the end of the input stops at EOF.
+	 */
+	@Override
+	public void seek(int index) {
+		long target = origin + index;
+		if (target == position) {
+			return;
+		}
+
+		if (target > position) {
+			if (target > bufferEnd) {
+				fill(target - 1);
+			}
+
+			target = Math.min(target, bufferEnd);
+		}
+		else if (target < bufferStart) {
+			throw new UnsupportedOperationException("seek to index outside buffer: " +
+				index + " not in " + (bufferStart - origin) + ".." + (bufferEnd - origin));
+		}
+
+		position = target;
+	}
+
+	@Override
+	public int size() {
+		throw new UnsupportedOperationException("Segmented stream cannot know its size");
+	}
+
+	@Override
+	public String getSourceName() {
+		if (name == null || name.isEmpty()) {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		return name;
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		long start = origin + interval.a;
+		long stop = origin + interval.b;
+		if (start < 0 || stop < start - 1) {
+			throw new IllegalArgumentException("invalid interval");
+		}
+
+		if (stop >= bufferEnd) {
+			fill(stop);
+		}
+
+		if (start < bufferStart || stop >= bufferEnd) {
+			throw new UnsupportedOperationException("interval " + interval + " outside buffer: " +
+				(bufferStart - origin) + ".." + (bufferEnd - origin - 1));
+		}
+
+		StringBuilder builder = new StringBuilder((int)(stop - start + 1));
+		for (long i = start; i <= stop; ) {
+			int[] segment = segments[(int)((i - bufferStart) >>> segmentShift)];
+			int offset = (int)i & segmentMask;
+			int length = (int)Math.min(stop - i + 1, segment.length - offset);
+			for (int j = 0; j < length; j++) {
+				builder.appendCodePoint(segment[offset + j]);
+			}
+
+			i += length;
+		}
+
+		return builder.toString();
+	}
+
+	@Override
+	public boolean supportsUnicodeCodePoints() {
+		return true;
+	}
+
+	/**
+	 * Closes the source of the stream. The stream is closed automatically
+	 * when the end of the input is reached.
+	 */
+	@Override
+	public void close() throws IOException {
+		endOfBytes = true;
+		channel.close();
+	}
+
+	/**
+	 * Decodes input until the code point at {@code index} is buffered.
+	 *
+	 * @return {@code true} if the code point at {@code index} is buffered, or
+	 * {@code false} if the input ends before {@code index}
+	 */
+	private boolean fill(long index) {
+		try {
+			while (bufferEnd <= index && !endOfInput) {
+				decode();
+			}
+		}
+		catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+
+		return index < bufferEnd;
+	}
+
+	private void decode() throws IOException {
+		CoderResult result = decoder.decode(bytes, chars, endOfBytes);
+		if (result.isUnderflow()) {
+			if (endOfBytes) {
+				decoder.flush(chars);
+				endOfInput = true;
+			}
+			else {
+				readBytes();
+			}
+		}
+
+		chars.flip();
+		char[] array = chars.array();
+		for (int i = chars.position(); i < chars.limit(); i++) {
+			char c = array[i];
+			if (pendingHighSurrogate >= 0) {
+				int high = pendingHighSurrogate;
+				pendingHighSurrogate = -1;
+				if (Character.isLowSurrogate(c)) {
+					append(Character.toCodePoint((char)high, c));
+					continue;
+				}
+
+				append(high);
+			}
+
+			if (Character.isHighSurrogate(c)) {
+				pendingHighSurrogate = c;
+			}
+			else {
+				append(c);
+			}
+		}
+
+		chars.clear();
+		if (endOfInput) {
+			if (pendingHighSurrogate >= 0) {
+				append(pendingHighSurrogate);
+				pendingHighSurrogate = -1;
+			}
+
+			channel.close();
+		}
+	}
+
+	private void readBytes() throws IOException {
+		if (mappedFile != null) {
+			long start = mappedOffset + bytes.position();
+			long length = Math.min(MAP_REGION_SIZE, mappedFile.size() - start);
+			if (length <= bytes.remaining()) {
+				// only an incomplete sequence at the end of the file is left
+				endOfBytes = true;
+				return;
+			}
+
+			bytes = mappedFile.map(FileChannel.MapMode.READ_ONLY, start, length);
+			mappedOffset = start;
+			return;
+		}
+
+		bytes.compact();
+		int n = channel.read(bytes);
+		bytes.flip();
+		if (n < 0) {
+			endOfBytes = true;
+		}
+	}
+
+	private void append(int codePoint) {
+		int segment = (int)((bufferEnd - bufferStart) >>> segmentShift);
+		if (segment == segmentCount) {
+			if (segmentCount == segments.length) {
+				segments = Arrays.copyOf(segments, segments.length * 2);
+			}
+
+			int[] array = spareSegment;
+			spareSegment = null;
+			if (array == null) {
+				array = new int[segmentMask + 1];
+			}
+
+			segments[segmentCount++] = array;
+		}
+
+		segments[segment][(int)bufferEnd & segmentMask] = codePoint;
+		bufferEnd++;
+	}
+
+	/**
+	 * Discards the segments which only hold code points before
+	 * {@code index}.
+	 */
+	private void discardBefore(long index) {
+		long keep = Math.min(index, bufferEnd);
+		if (keep - bufferStart <= segmentMask) {
+			return;
+		}
+
+		int discard = (int)((keep - bufferStart) >>> segmentShift);
+
+		spareSegment = segments[discard - 1];
+		System.arraycopy(segments, discard, segments, 0, segmentCount - discard);
+		Arrays.fill(segments, segmentCount - discard, segmentCount, null);
+		segmentCount -= discard;
+		bufferStart += (long)discard << segmentShift;
+	}
+
+	private void rebaseIfNeeded() {
+		if (position - origin >= indexRebaseThreshold) {
+			origin = position;
+		}
+	}
+}
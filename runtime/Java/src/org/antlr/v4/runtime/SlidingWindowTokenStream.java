@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A {@link CommonTokenStream} which only keeps a window of the tokens fetched
+ * from the token source, so the memory used by the stream does not grow with
+ * the length of the input.
+ *
+ * <p>Unlike {@link UnbufferedTokenStream}, this stream filters tokens to a
+ * channel and supports the other {@link BufferedTokenStream} operations, e.g.
+ * {@link #getHiddenTokensToLeft}, as long as the tokens they access are
+ * still in the window. Token indexes are the same as the indexes assigned by
+ * a {@link CommonTokenStream}, and {@link #size} is the number of tokens
+ * fetched so far.</p>
+ *
+ * <p>When the buffer is full, the tokens before the previous on-channel token
+ * ({@code LT(-1)}) are discarded, except for the last {@link #getLookBehind}
+ * of them. While a {@link #mark mark()} is outstanding, the position where
+ * the oldest outstanding mark was taken is used instead of the current
+ * position, so the parser can always {@link #seek} back to the position where
+ * a prediction started. Applications which need the text or tokens of a whole
+ * rule after it was parsed should hold a mark while the rule is parsed.</p>
+ *
+ * <p>Accessing a discarded token throws an exception. In particular,
+ * {@link Parser#reset} seeks to index 0, so it can only be used before
+ * tokens were discarded, and {@link #fill} keeps every token of the
+ * input.</p>
+ */
+public class SlidingWindowTokenStream extends CommonTokenStream {
+	/**
+	 * The default number of tokens before {@code LT(-1)} which are not
+	 * discarded.
+	 */
+	public static final int DEFAULT_LOOK_BEHIND = 16;
+
+	@NotNull
+	private final TokenWindow window;
+
+	private final int lookBehind;
+
+	/**
+	 * Count up with {@link #mark mark()} and down with
+	 * {@link #release release()}.
+	 */
+	protected int numMarkers = 0;
+
+	/**
+	 * When {@code numMarkers > 0}, this is the index of the current token when
+	 * the oldest outstanding mark was taken.
+	 */
+	protected int markIndex = -1;
+
+	/**
+	 * Constructs a new {@link SlidingWindowTokenStream} using the specified
+	 * token source and the default token channel
+	 * ({@link Token#DEFAULT_CHANNEL}).
+	 *
+	 * @param tokenSource The token source.
+	 */
+	public SlidingWindowTokenStream(@NotNull TokenSource tokenSource) {
+		this(tokenSource, Token.DEFAULT_CHANNEL, DEFAULT_LOOK_BEHIND);
+	}
+
+	/**
+	 * Constructs a new {@link SlidingWindowTokenStream} using the specified
+	 * token source and filtering tokens to the specified channel.
+	 *
+	 * @param tokenSource The token source.
+	 * @param channel The channel to use for filtering tokens.
+	 * @param lookBehind The number of tokens before {@code LT(-1)} which are
+	 * not discarded, e.g. to support {@link #getHiddenTokensToLeft} for the
+	 * last token consumed by the parser.
+	 */
+	public SlidingWindowTokenStream(@NotNull TokenSource tokenSource, int channel, int lookBehind) {
+		super(tokenSource, channel);
+		if (lookBehind < 0) {
+			throw new IllegalArgumentException("lookBehind cannot be negative");
+		}
+
+		this.lookBehind = lookBehind;
+		this.window = new TokenWindow();
+		this.tokens = window;
+	}
+
+	/**
+	 * Gets the number of tokens before {@code LT(-1)} which are not
+	 * discarded.
+	 */
+	public final int getLookBehind() {
+		return lookBehind;
+	}
+
+	/**
+	 * Gets the index of the first token which was not discarded.
+	 */
+	public int getWindowStart() {
+		return window.first;
+	}
+
+	/**
+	 * Return a marker that we can release later. The specific marker values
+	 * are the same as the ones used by {@link UnbufferedTokenStream}.
+	 */
+	@Override
+	public int mark() {
+		if (numMarkers == 0) {
+			markIndex = p;
+		}
+
+		int mark = -numMarkers - 1;
+		numMarkers++;
+		return mark;
+	}
+
+	@Override
+	public void release(int marker) {
+		int expectedMark = -numMarkers;
+		if (marker != expectedMark) {
+			throw new IllegalStateException("release() called with an invalid marker.");
+		}
+
+		numMarkers--;
+	}
+
+	@Override
+	public void seek(int index) {
+		if (index < window.first) {
+			throw new UnsupportedOperationException("cannot seek to token index " + index + " before the window start " + window.first);
+		}
+
+		super.seek(index);
+	}
+
+	@Override
+	public void setTokenSource(TokenSource tokenSource) {
+		super.setTokenSource(tokenSource);
+		numMarkers = 0;
+		markIndex = -1;
+	}
+
+	@Override
+	protected int fetch(int n) {
+		if (window.isFull()) {
+			discardTokens();
+		}
+
+		return super.fetch(n);
+	}
+
+	/**
+	 * Discards the tokens which are no longer needed. Called before tokens
+	 * are added to a full buffer.
+	 */
+	protected void discardTokens() {
+		int position = numMarkers > 0 ? markIndex : p;
+		if (position <= window.first) {
+			return;
+		}
+
+		int keep = previousTokenOnChannel(position - 1, channel);
+		if (keep < window.first) {
+			keep = position;
+		}
+
+		keep = Math.max(window.first, keep - lookBehind);
+		window.discardBefore(keep);
+	}
+
+	@Override
+	protected int previousTokenOnChannel(int i, int channel) {
+		sync(i);
+		if (i >= size()) {
+			// the EOF token is on every channel
+			return size() - 1;
+		}
+
+		// the discarded tokens are treated as the start of the input, except
+		// that the index before the window start is returned
+		while (i >= window.first) {
+			Token token = tokens.get(i);
+			if (token.getType() == Token.EOF || token.getChannel() == channel) {
+				return i;
+			}
+
+			i--;
+		}
+
+		return window.first > 0 ? window.first - 1 : -1;
+	}
+
+	/**
+	 * Get the tokens in the window.
+	 */
+	@Override
+	public List<Token> getTokens() {
+		return tokens.subList(window.first, tokens.size());
+	}
+
+	/** Get the text of all tokens in the window. */
+	@NotNull
+	@Override
+	public String getText() {
+		return getText(Interval.of(window.first, size() - 1));
+	}
+
+	@NotNull
+	@Override
+	public String getText(Interval interval) {
+		if (interval.a >= 0 && interval.a < window.first) {
+			throw new UnsupportedOperationException("interval " + interval + " not in token buffer window: " + window.first + ".." + (size() - 1));
+		}
+
+		return super.getText(interval);
+	}
+
+	/**
+	 * The list of the tokens in the window. Indexes are the indexes of the
+	 * tokens in the stream, and {@link #size} is the number of tokens added to
+	 * the list, including the ones which were discarded.
+	 */
+	private static final class TokenWindow extends AbstractList<Token> implements RandomAccess {
+		private static final int INITIAL_CAPACITY = 256;
+
+		private Token[] buffer = new Token[INITIAL_CAPACITY];
+
+		/** The index of the token stored in {@code buffer[0]}. */
+		private int start;
+
+		/** The index of the first token which was not discarded. */
+		private int first;
+
+		private int size;
+
+		public boolean isFull() {
+			return size - start == buffer.length;
+		}
+
+		@Override
+		public Token get(int index) {
+			if (index < first || index >= size) {
+				throw new IndexOutOfBoundsException("token index " + index + " not in token buffer window: " + first + ".." + (size - 1));
+			}
+
+			return buffer[index - start];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean add(Token token) {
+			if (isFull()) {
+				int retained = size - first;
+				if (retained <= buffer.length / 2) {
+					// shift the retained tokens to the start of the buffer
+					System.arraycopy(buffer, first - start, buffer, 0, retained);
+					Arrays.fill(buffer, retained, buffer.length, null);
+					start = first;
+				}
+				else {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+			}
+
+			buffer[size - start] = token;
+			size++;
+			modCount++;
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			Arrays.fill(buffer, null);
+			start = 0;
+			first = 0;
+			size = 0;
+			modCount++;
+		}
+
+		public void discardBefore(int index) {
+			for (int i = first; i < index; i++) {
+				buffer[i - start] = null;
+			}
+
+			first = index;
+		}
+	}
+}
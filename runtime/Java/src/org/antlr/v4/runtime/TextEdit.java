@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+/**
+ * Describes a change to the text of a document: {@code oldLength} symbols
+ * starting at index {@code start} were replaced with {@code newLength}
+ * symbols. Indexes and lengths are measured in the symbols of the
+ * {@link CharStream} holding the document, i.e. code points for the streams
+ * created by {@link CharStreams}.
+ *
+ * @see IncrementalLexer
+ */
+public final class TextEdit {
+	private final int start;
+	private final int oldLength;
+	private final int newLength;
+
+	public TextEdit(int start, int oldLength, int newLength) {
+		if (start < 0 || oldLength < 0 || newLength < 0) {
+			throw new IllegalArgumentException("start and lengths cannot be negative");
+		}
+
+		this.start = start;
+		this.oldLength = oldLength;
+		this.newLength = newLength;
+	}
+
+	/**
+	 * Creates an edit which replaces {@code oldLength} symbols starting at
+	 * {@code start} with the code points of {@code text}.
+	 */
+	public static TextEdit replace(int start, int oldLength, String text) {
+		return new TextEdit(start, oldLength, text.codePointCount(0, text.length()));
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getOldLength() {
+		return oldLength;
+	}
+
+	public int getNewLength() {
+		return newLength;
+	}
+
+	/**
+	 * Gets the index after the replaced text in the document before the edit.
+	 */
+	public int getOldEnd() {
+		return start + oldLength;
+	}
+
+	/**
+	 * Gets the index after the inserted text in the document after the edit.
+	 */
+	public int getNewEnd() {
+		return start + newLength;
+	}
+
+	/**
+	 * Combines this edit with an edit applied to the document after this
+	 * edit. The result is a single edit which covers the text changed by
+	 * either of them.
+	 */
+	public TextEdit then(TextEdit next) {
+		int mergedStart = Math.min(start, next.start);
+		int end = Math.max(getNewEnd(), next.getOldEnd());
+		int mergedOldEnd = end - (getNewEnd() - getOldEnd());
+		int mergedNewEnd = end + (next.getNewEnd() - next.getOldEnd());
+		return new TextEdit(mergedStart, mergedOldEnd - mergedStart, mergedNewEnd - mergedStart);
+	}
+
+	@Override
+	public String toString() {
+		return "TextEdit{start=" + start + ", oldLength=" + oldLength + ", newLength=" + newLength + "}";
+	}
+}
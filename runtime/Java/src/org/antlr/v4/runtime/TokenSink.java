@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+/**
+ * Receives the tokens matched by {@link Lexer#scan(TokenSink)} as primitive
+ * values, so tokenizer-only applications do not need a {@link Token} object
+ * per token.
+ */
+public interface TokenSink {
+	/**
+	 * Called for each token matched by the lexer, including the final
+	 * {@link Token#EOF} token. The arguments have the same meaning as the
+	 * corresponding properties of {@link Token}.
+	 *
+	 * @return {@code true} to continue scanning, or {@code false} to stop
+	 * after this token
+	 */
+	boolean token(int type, int channel, int startIndex, int stopIndex, int line, int charPositionInLine);
+}
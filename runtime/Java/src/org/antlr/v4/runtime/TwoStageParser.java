@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Runs a start rule of a parser using two-stage parsing. The first stage
+ * parses with {@link PredictionMode#SLL} and a {@link BailErrorStrategy}. Most
+ * inputs parse successfully in this stage, which is considerably faster than
+ * full {@link PredictionMode#LL} prediction. If the first stage reports a
+ * syntax error, the input is rewound and parsed again with
+ * {@link PredictionMode#LL} and the error strategy of the parser, so the
+ * result and the reported errors are the same as for a single LL parse.
+ *
+ * <pre>
+ * TwoStageParser&lt;JavaParser&gt; twoStage = new TwoStageParser&lt;JavaParser&gt;(parser);
+ * CompilationUnitContext tree = twoStage.parse(JavaParser::compilationUnit);
+ * </pre>
+ *
+ * <p>The error listeners of the parser are detached during the first stage, so
+ * they only see the errors of the second stage. Parse listeners stay attached
+ * for both stages; a listener which keeps state can discard the events of an
+ * abandoned first stage by overriding {@link #beforeSecondStage}. The error
+ * strategy, the prediction mode and the trace setting of the parser are
+ * restored when {@link #parse} returns.</p>
+ *
+ * <p>Each call to {@link #parse} records which stages ran and how long each one
+ * took, and the totals over all calls are kept so applications can monitor
+ * how often the slow path is taken. Like the parser, instances of this class
+ * are not thread-safe.</p>
+ *
+ * @param <T> the type of the parser
+ */
+public class TwoStageParser<T extends Parser> {
+	@NotNull
+	private final T parser;
+
+	private int parseCount;
+	private int secondStageCount;
+	private long totalFirstStageNanos;
+	private long totalSecondStageNanos;
+
+	private boolean secondStageUsed;
+	private long firstStageNanos;
+	private long secondStageNanos;
+	@Nullable
+	private ParseCancellationException firstStageException;
+
+	public TwoStageParser(@NotNull T parser) {
+		this.parser = parser;
+	}
+
+	@NotNull
+	public final T getParser() {
+		return parser;
+	}
+
+	/**
+	 * Parses the input of the parser, starting at its current position, by
+	 * invoking {@code startRule} in up to two stages.
+	 *
+	 * <p>A {@link ParseCancellationException} which was not thrown in response
+	 * to a syntax error, for example one thrown by a parse listener to cancel
+	 * the operation, is not retried and propagates to the caller.</p>
+	 *
+	 * @param startRule the start rule to invoke, e.g.
+	 * {@code JavaParser::compilationUnit}
+	 * @return the result of the last stage which ran
+	 */
+	public <R extends ParserRuleContext> R parse(@NotNull Function<? super T, ? extends R> startRule) {
+		TokenStream input = parser.getInputStream();
+		// a buffered stream which has not been read yet reports -1
+		int startIndex = Math.max(input.index(), 0);
+		ParserATNSimulator interpreter = parser.getInterpreter();
+		PredictionMode predictionMode = interpreter.getPredictionMode();
+		ANTLRErrorStrategy errorHandler = parser.getErrorHandler();
+		List<? extends ANTLRErrorListener<? super Token>> errorListeners = parser.getErrorListeners();
+		boolean trace = parser.isTrace();
+
+		parseCount++;
+		secondStageUsed = false;
+		secondStageNanos = 0;
+		firstStageException = null;
+
+		long start = System.nanoTime();
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		interpreter.setPredictionMode(PredictionMode.SLL);
+		try {
+			return startRule.apply(parser);
+		}
+		catch (ParseCancellationException ex) {
+			if (!(ex.getCause() instanceof RecognitionException)) {
+				throw ex;
+			}
+
+			firstStageException = ex;
+		}
+		finally {
+			for (ANTLRErrorListener<? super Token> listener : errorListeners) {
+				parser.addErrorListener(listener);
+			}
+
+			parser.setErrorHandler(errorHandler);
+			interpreter.setPredictionMode(predictionMode);
+			firstStageNanos = System.nanoTime() - start;
+			totalFirstStageNanos += firstStageNanos;
+		}
+
+		secondStageUsed = true;
+		secondStageCount++;
+		start = System.nanoTime();
+		try {
+			parser.reset();
+			input.seek(startIndex);
+			parser.setTrace(trace);
+			beforeSecondStage(firstStageException);
+			interpreter.setPredictionMode(predictionMode == PredictionMode.SLL ? PredictionMode.LL : predictionMode);
+			return startRule.apply(parser);
+		}
+		finally {
+			interpreter.setPredictionMode(predictionMode);
+			secondStageNanos = System.nanoTime() - start;
+			totalSecondStageNanos += secondStageNanos;
+		}
+	}
+
+	/**
+	 * Called after the parser is rewound for the second stage, before the
+	 * start rule is invoked again. The default implementation does nothing.
+	 *
+	 * @param firstStageException the exception which ended the first stage
+	 */
+	protected void beforeSecondStage(@NotNull ParseCancellationException firstStageException) {
+	}
+
+	/**
+	 * Gets whether the last call to {@link #parse} needed the second stage.
+	 */
+	public boolean isSecondStageUsed() {
+		return secondStageUsed;
+	}
+
+	/**
+	 * Gets the exception which ended the first stage of the last call to
+	 * {@link #parse}, or {@code null} if the first stage succeeded. The cause
+	 * of the exception is the {@link RecognitionException} for the syntax
+	 * error which SLL prediction could not handle.
+	 */
+	@Nullable
+	public ParseCancellationException getFirstStageException() {
+		return firstStageException;
+	}
+
+	/**
+	 * Gets the time spent in the first stage of the last call to
+	 * {@link #parse}, in nanoseconds.
+	 */
+	public long getFirstStageNanos() {
+		return firstStageNanos;
+	}
+
+	/**
+	 * Gets the time spent in the second stage of the last call to
+	 * {@link #parse}, in nanoseconds, or 0 if the second stage did not run.
+	 */
+	public long getSecondStageNanos() {
+		return secondStageNanos;
+	}
+
+	/**
+	 * Gets the number of calls to {@link #parse} since this instance was
+	 * created or {@link #resetStatistics} was last called.
+	 */
+	public int getParseCount() {
+		return parseCount;
+	}
+
+	/**
+	 * Gets the number of calls to {@link #parse} which needed the second
+	 * stage since this instance was created or {@link #resetStatistics} was
+	 * last called.
+	 */
+	public int getSecondStageCount() {
+		return secondStageCount;
+	}
+
+	/**
+	 * Gets the total time spent in the first stage, in nanoseconds.
+	 */
+	public long getTotalFirstStageNanos() {
+		return totalFirstStageNanos;
+	}
+
+	/**
+	 * Gets the total time spent in the second stage, in nanoseconds.
+	 */
+	public long getTotalSecondStageNanos() {
+		return totalSecondStageNanos;
+	}
+
+	/**
+	 * Clears the totals reported by {@link #getParseCount},
+	 * {@link #getSecondStageCount}, {@link #getTotalFirstStageNanos} and
+	 * {@link #getTotalSecondStageNanos}.
+	 */
+	public void resetStatistics() {
+		parseCount = 0;
+		secondStageCount = 0;
+		totalFirstStageNanos = 0;
+		totalSecondStageNanos = 0;
+	}
+}
@@ -10,7 +10,11 @@ import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RuleContext;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAEvictionPolicy;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.DFASingleFlight;
 import org.antlr.v4.runtime.misc.Args;
+import org.antlr.v4.runtime.misc.ConcurrentLongIntHashMap;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
@@ -22,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /** */
 public class ATN {
@@ -63,6 +68,29 @@ public class ATN {
 
 	private boolean hasUnicodeSMPTransitions;
 
+	/**
+	 * This is the backing field for {@link #getSerializedChecksum()}.
+	 */
+	private int serializedChecksum;
+
+	/**
+	 * Set once the recognizer which owns this ATN attempted to load a DFA
+	 * snapshot resource.
+	 *
+	 * @see DFASnapshotDeserializer#loadResource
+	 */
+	private final AtomicBoolean dfaSnapshotRequested = new AtomicBoolean();
+
+	/**
+	 * This is the backing field for {@link #getDFAEvictionPolicy()}.
+	 */
+	private volatile DFAEvictionPolicy dfaEvictionPolicy;
+
+	/**
+	 * This is the backing field for {@link #getDFASingleFlight()}.
+	 */
+	private volatile DFASingleFlight dfaSingleFlight;
+
 	/**
 	 * For lexer ATNs, this maps the rule index to the resulting token type.
 	 * For parser ATNs, this maps the rule index to the generated bypass token
@@ -89,7 +117,13 @@ public class ATN {
 	@NotNull
 	public DFA[] modeToDFA = new DFA[0];
 
-	protected final ConcurrentMap<Integer, Integer> LL1Table = new ConcurrentHashMap<Integer, Integer>();
+	/**
+	 * Maps a decision and the first lookahead symbol to the alternative
+	 * predicted by that symbol alone, for the decisions where the DFA reached
+	 * a unique prediction after one symbol. The keys are created by
+	 * {@link ParserATNSimulator#getLL1Key}.
+	 */
+	protected final ConcurrentLongIntHashMap LL1Table = new ConcurrentLongIntHashMap();
 
 	/** Used for runtime deserialization of ATNs from strings */
 	public ATN(@NotNull ATNType grammarType, int maxTokenType) {
@@ -110,12 +144,63 @@ public class ATN {
 
 		contextCache.clear();
 		LL1Table.clear();
+
+		DFAEvictionPolicy evictionPolicy = dfaEvictionPolicy;
+		if (evictionPolicy != null) {
+			evictionPolicy.reset(this);
+		}
+	}
+
+	/**
+	 * Freezes the DFA of every decision and lexer mode of this ATN, so the
+	 * current states are used through compact tables. States added after this
+	 * call are still used through the mutable DFA.
+	 *
+	 * @see DFA#freeze
+	 */
+	public final void freezeDFA() {
+		for (DFA dfa : decisionToDFA) {
+			dfa.freeze();
+		}
+
+		for (DFA dfa : modeToDFA) {
+			dfa.freeze();
+		}
+	}
+
+	/**
+	 * Releases the configurations of the DFA states of this ATN which are only
+	 * needed to compute new edges, once the DFA is warmed up. A released state
+	 * keeps an incoming edge as a seed, and its configurations are recomputed
+	 * from the seed the first time a symbol without an edge reaches it. The
+	 * prediction contexts which are no longer referenced by any DFA state are
+	 * removed from the context cache.
+	 *
+	 * <p>This method can be called while other threads use the DFA, and again
+	 * after the DFA has grown further.</p>
+	 *
+	 * @return A report of the states released and the memory reclaimed for
+	 * each decision.
+	 *
+	 * @see DFAState#releaseConfigs
+	 */
+	@NotNull
+	public final ConfigReleaseInfo releaseDFAConfigs() {
+		return new DFAConfigReleaser(this).release();
 	}
 
 	public int getContextCacheSize() {
 		return contextCache.size();
 	}
 
+	/**
+	 * Removes {@code context} from the context cache if it is the cached
+	 * instance, so an equal context used by a DFA state is not removed.
+	 */
+	/*package*/ boolean removeCachedContext(@NotNull PredictionContext context) {
+		return contextCache.get(context) == context && contextCache.remove(context, context);
+	}
+
 	public PredictionContext getCachedContext(PredictionContext context) {
 		return PredictionContext.getCachedContext(context, contextCache, new PredictionContext.IdentityHashMap());
 	}
@@ -266,4 +351,84 @@ public class ATN {
 	public void setHasUnicodeSMPTransitions(boolean value) {
 		hasUnicodeSMPTransitions = value;
 	}
+
+	/**
+	 * Gets a checksum of the serialized ATN this instance was created from,
+	 * combined with the {@link ATNDeserializationOptions} which affect the
+	 * shape of the deserialized ATN. Cached DFA data computed for one ATN may
+	 * only be reused by another ATN with the same checksum.
+	 *
+	 * @return The serialized ATN checksum, or 0 if this ATN was not created by
+	 * {@link ATNDeserializer}.
+	 *
+	 * @see DFASnapshotSerializer
+	 */
+	public int getSerializedChecksum() {
+		return serializedChecksum;
+	}
+
+	public void setSerializedChecksum(int serializedChecksum) {
+		this.serializedChecksum = serializedChecksum;
+	}
+
+	/**
+	 * Gets the policy limiting the number of states held by the DFAs of this
+	 * ATN.
+	 *
+	 * @return The eviction policy, or {@code null} if the DFA cache is not
+	 * limited.
+	 */
+	@Nullable
+	public DFAEvictionPolicy getDFAEvictionPolicy() {
+		return dfaEvictionPolicy;
+	}
+
+	/**
+	 * Sets the policy limiting the number of states held by the DFAs of this
+	 * ATN. States already present in the DFA count towards the new limits.
+	 *
+	 * @param dfaEvictionPolicy The eviction policy, or {@code null} to allow
+	 * the DFA cache to grow without bound.
+	 */
+	public void setDFAEvictionPolicy(@Nullable DFAEvictionPolicy dfaEvictionPolicy) {
+		if (dfaEvictionPolicy != null) {
+			dfaEvictionPolicy.reset(this);
+		}
+
+		this.dfaEvictionPolicy = dfaEvictionPolicy;
+	}
+
+	/**
+	 * Gets the policy collapsing concurrent computations of the same missing
+	 * DFA edge.
+	 *
+	 * @return The single-flight policy, or {@code null} if each thread
+	 * computes the edges it misses.
+	 */
+	@Nullable
+	public DFASingleFlight getDFASingleFlight() {
+		return dfaSingleFlight;
+	}
+
+	/**
+	 * Sets the policy collapsing concurrent computations of the same missing
+	 * DFA edge, for all recognizers sharing this ATN.
+	 *
+	 * @param dfaSingleFlight The single-flight policy, or {@code null} to let
+	 * each thread compute the edges it misses.
+	 */
+	public void setDFASingleFlight(@Nullable DFASingleFlight dfaSingleFlight) {
+		this.dfaSingleFlight = dfaSingleFlight;
+	}
+
+	/**
+	 * Marks this ATN as having been considered for loading a DFA snapshot
+	 * resource.
+	 *
+	 * @return {@code true} if this is the first call for this ATN; otherwise,
+	 * {@code false}.
+	 */
+	/*package*/ boolean requestDFASnapshot() {
+		return !dfaSnapshotRequested.get() && dfaSnapshotRequested.compareAndSet(false, true);
+	}
 }
@@ -117,16 +117,20 @@ public class ATNConfig {
 	}
 
 	public static ATNConfig create(@NotNull ATNState state, int alt, @Nullable PredictionContext context, @NotNull SemanticContext semanticContext, LexerActionExecutor lexerActionExecutor) {
+		return create(state, alt, context, semanticContext, lexerActionExecutor, false);
+	}
+
+	/*package*/ static ATNConfig create(@NotNull ATNState state, int alt, @Nullable PredictionContext context, @NotNull SemanticContext semanticContext, LexerActionExecutor lexerActionExecutor, boolean passedThroughNonGreedyDecision) {
 		if (semanticContext != SemanticContext.NONE) {
-			if (lexerActionExecutor != null) {
-				return new ActionSemanticContextATNConfig(lexerActionExecutor, semanticContext, state, alt, context, false);
+			if (lexerActionExecutor != null || passedThroughNonGreedyDecision) {
+				return new ActionSemanticContextATNConfig(lexerActionExecutor, semanticContext, state, alt, context, passedThroughNonGreedyDecision);
 			}
 			else {
 				return new SemanticContextATNConfig(semanticContext, state, alt, context);
 			}
 		}
-		else if (lexerActionExecutor != null) {
-			return new ActionATNConfig(lexerActionExecutor, state, alt, context, false);
+		else if (lexerActionExecutor != null || passedThroughNonGreedyDecision) {
+			return new ActionATNConfig(lexerActionExecutor, state, alt, context, passedThroughNonGreedyDecision);
 		}
 		else {
 			return new ATNConfig(state, alt, context);
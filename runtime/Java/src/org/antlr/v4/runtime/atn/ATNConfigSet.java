@@ -6,6 +6,7 @@
 
 package org.antlr.v4.runtime.atn;
 
+import org.antlr.v4.runtime.misc.LongObjectHashMap;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Utils;
@@ -13,7 +14,6 @@ import org.antlr.v4.runtime.misc.Utils;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -48,7 +48,7 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	 * This map is only used for optimizing the process of adding configs to the set,
 	 * and is {@code null} for read-only sets stored in the DFA.
 	 */
-	private final HashMap<Long, ATNConfig> mergedConfigs;
+	private final LongObjectHashMap<ATNConfig> mergedConfigs;
 	/**
 	 * This is an "overflow" list holding configs which cannot be merged with one
 	 * of the configs in {@link #mergedConfigs} but have a colliding key. This
@@ -84,7 +84,7 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	private int cachedHashCode = -1;
 
 	public ATNConfigSet() {
-		this.mergedConfigs = new HashMap<Long, ATNConfig>();
+		this.mergedConfigs = new LongObjectHashMap<ATNConfig>();
 		this.unmerged = new ArrayList<ATNConfig>();
 		this.configs = new ArrayList<ATNConfig>();
 
@@ -97,10 +97,10 @@ public class ATNConfigSet implements Set<ATNConfig> {
 			this.mergedConfigs = null;
 			this.unmerged = null;
 		} else if (!set.isReadOnly()) {
-			this.mergedConfigs = (HashMap<Long, ATNConfig>)set.mergedConfigs.clone();
+			this.mergedConfigs = new LongObjectHashMap<ATNConfig>(set.mergedConfigs);
 			this.unmerged = (ArrayList<ATNConfig>)set.unmerged.clone();
 		} else {
-			this.mergedConfigs = new HashMap<Long, ATNConfig>(set.configs.size());
+			this.mergedConfigs = new LongObjectHashMap<ATNConfig>(set.configs.size());
 			this.unmerged = new ArrayList<ATNConfig>();
 		}
 
@@ -397,6 +397,17 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		conflictInfo = null;
 	}
 
+	/**
+	 * Removes all configurations and resets every property of this set,
+	 * including {@link #isOutermostConfigSet}, so the set can be reused as if
+	 * it were newly created. The internal storage is kept.
+	 */
+	/*package*/ void reset() {
+		clear();
+		outermostConfigSet = false;
+		cachedHashCode = -1;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj) {
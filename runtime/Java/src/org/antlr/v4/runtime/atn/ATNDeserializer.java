@@ -10,6 +10,7 @@ import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.MurmurHash;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Tuple;
@@ -166,6 +167,7 @@ public class ATNDeserializer {
 
 	@SuppressWarnings("deprecation")
 	public ATN deserialize(@NotNull char[] data) {
+		int checksum = computeChecksum(data);
 		data = data.clone();
 
 		// Each char value in data is shifted by +2 at the entry to this method.
@@ -608,9 +610,26 @@ public class ATNDeserializer {
 
 		identifyTailCalls(atn);
 
+		atn.setSerializedChecksum(checksum);
 		return atn;
 	}
 
+	/**
+	 * Computes the value reported by {@link ATN#getSerializedChecksum()} for an
+	 * ATN deserialized from {@code data} using the current deserialization
+	 * options.
+	 */
+	protected int computeChecksum(@NotNull char[] data) {
+		int hash = MurmurHash.initialize();
+		for (char c : data) {
+			hash = MurmurHash.update(hash, c);
+		}
+
+		hash = MurmurHash.update(hash, deserializationOptions.isGenerateRuleBypassTransitions() ? 1 : 0);
+		hash = MurmurHash.update(hash, deserializationOptions.isOptimize() ? 1 : 0);
+		return MurmurHash.finish(hash, data.length + 2);
+	}
+
 	private int deserializeSets(char[] data, int p, List<IntervalSet> sets, UnicodeDeserializer unicodeDeserializer) {
 		int nsets = toInt(data[p++]);
 		for (int i=0; i<nsets; i++) {
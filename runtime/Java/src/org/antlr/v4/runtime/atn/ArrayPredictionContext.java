@@ -175,6 +175,27 @@ public class ArrayPredictionContext extends PredictionContext {
 		}
 
 		ArrayPredictionContext other = (ArrayPredictionContext)o;
+		if (!Arrays.equals(returnStates, other.returnStates)) {
+			return false;
+		}
+
+		boolean sameParents = true;
+		for (int i = 0; i < parents.length; i++) {
+			if (parents[i] != other.parents[i]) {
+				if (parents[i].hashCode() != other.parents[i].hashCode()) {
+					return false;
+				}
+
+				sameParents = false;
+			}
+		}
+
+		if (sameParents) {
+			// the common case for contexts from the same cache, which does not
+			// need the work lists
+			return true;
+		}
+
 		return equals(other, new HashSet<IdentityCommutativePredictionContextOperands>());
 	}
 
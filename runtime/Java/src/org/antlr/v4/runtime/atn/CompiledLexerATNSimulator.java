@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerNoViableAltException;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.dfa.AcceptStateInfo;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+/**
+ * A lexer simulator which matches tokens by walking the transition tables of a
+ * {@link CompiledLexerDFA}. Modes which were not compiled are matched by
+ * {@link LexerATNSimulator}.
+ *
+ * <p>The tables describe the same DFA the ATN simulator would build for the
+ * mode, so both simulators produce the same tokens. Since the tables are
+ * complete, matching a token never requires computing DFA states, and the
+ * shared DFA of the ATN is not used for compiled modes.</p>
+ */
+public class CompiledLexerATNSimulator extends LexerATNSimulator {
+	@NotNull
+	private final CompiledLexerDFA compiledDFA;
+
+	public CompiledLexerATNSimulator(@Nullable Lexer recog, @NotNull ATN atn, @NotNull CompiledLexerDFA compiledDFA) {
+		super(recog, atn);
+		if (compiledDFA.getModeCount() != atn.modeToStartState.size()) {
+			throw new IllegalArgumentException("The compiled lexer DFA does not match the ATN.");
+		}
+
+		this.compiledDFA = compiledDFA;
+	}
+
+	@NotNull
+	public final CompiledLexerDFA getCompiledDFA() {
+		return compiledDFA;
+	}
+
+	@Override
+	public int match(@NotNull CharStream input, int mode) {
+		CompiledLexerDFA.ModeTable table = compiledDFA.getMode(mode);
+		if (table == null) {
+			return super.match(input, mode);
+		}
+
+		this.mode = mode;
+		int mark = input.mark();
+		try {
+			this.startIndex = input.index();
+			this.prevAccept.reset();
+			return execTable(input, table);
+		}
+		finally {
+			input.release(mark);
+		}
+	}
+
+	/**
+	 * Matches a single token with the transition table of the current mode.
+	 * This follows the same steps as {@link #execATN}, using the table
+	 * instead of the DFA states of the ATN.
+	 */
+	protected int execTable(@NotNull CharStream input, @NotNull CompiledLexerDFA.ModeTable table) {
+		int acceptState = CompiledLexerDFA.ERROR_STATE;
+		int acceptIndex = -1;
+		int acceptLine = 0;
+		int acceptCharPos = -1;
+
+		int s = CompiledLexerDFA.START_STATE;
+		if (table.getAcceptState(s) != null) {
+			// allow zero-length tokens
+			acceptState = s;
+			acceptIndex = input.index();
+			acceptLine = line;
+			acceptCharPos = charPositionInLine;
+		}
+
+		int t = input.LA(1);
+		while (true) {
+			int target = table.getTarget(s, t);
+			if (target == CompiledLexerDFA.ERROR_STATE) {
+				break;
+			}
+
+			if (t != IntStream.EOF) {
+				if (t == '\n') {
+					line++;
+					charPositionInLine = 0;
+				}
+				else {
+					charPositionInLine++;
+				}
+
+				input.consume();
+			}
+
+			if (table.getAcceptState(target) != null) {
+				acceptState = target;
+				acceptIndex = input.index();
+				acceptLine = line;
+				acceptCharPos = charPositionInLine;
+				if (t == IntStream.EOF) {
+					break;
+				}
+			}
+
+			t = input.LA(1);
+			s = target;
+		}
+
+		if (acceptState != CompiledLexerDFA.ERROR_STATE) {
+			AcceptStateInfo acceptStateInfo = table.getAcceptState(acceptState);
+			accept(input, acceptStateInfo.getLexerActionExecutor(), startIndex, acceptIndex, acceptLine, acceptCharPos);
+			return acceptStateInfo.getPrediction();
+		}
+
+		// if no accept and EOF is first char, return EOF
+		if (t == IntStream.EOF && input.index() == startIndex) {
+			return Token.EOF;
+		}
+
+		throw new LexerNoViableAltException(recog, input, startIndex, null);
+	}
+}
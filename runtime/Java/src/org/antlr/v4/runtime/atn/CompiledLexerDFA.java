@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.dfa.AcceptStateInfo;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.io.InvalidClassException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The transition tables of a lexer DFA which was computed when the lexer was
+ * generated. Lexers generated with the {@code -Xcompile-lexer} tool option
+ * use these tables through {@link CompiledLexerATNSimulator}, so they do not
+ * need to build their DFA from the ATN at runtime.
+ *
+ * <p>Each lexer mode either has a {@link ModeTable}, or is {@code null} when
+ * the mode was not compiled (for example, because it contains semantic
+ * predicates). Modes without a table are matched by interpreting the ATN as
+ * usual.</p>
+ *
+ * <p>The input symbols of a mode are partitioned into classes of symbols which
+ * have the same transitions in every state of the DFA. A table stores one
+ * target state for each combination of state and symbol class.</p>
+ *
+ * @see CompiledLexerATNSimulator
+ */
+public class CompiledLexerDFA {
+	public static final int SERIALIZED_VERSION = 1;
+
+	/**
+	 * The index of the start state of each {@link ModeTable}.
+	 */
+	public static final int START_STATE = 0;
+
+	/**
+	 * The target state of a transition which is not viable.
+	 */
+	public static final int ERROR_STATE = -1;
+
+	@NotNull
+	private final ModeTable[] modes;
+
+	public CompiledLexerDFA(@NotNull ModeTable[] modes) {
+		this.modes = modes.clone();
+	}
+
+	/**
+	 * Gets the number of lexer modes described by this DFA, including the modes
+	 * which were not compiled.
+	 */
+	public final int getModeCount() {
+		return modes.length;
+	}
+
+	/**
+	 * Gets the table for lexer mode {@code mode}, or {@code null} if this mode
+	 * was not compiled and needs to be matched by interpreting the ATN.
+	 */
+	@Nullable
+	public final ModeTable getMode(int mode) {
+		if (mode < 0 || mode >= modes.length) {
+			return null;
+		}
+
+		return modes[mode];
+	}
+
+	/**
+	 * Serializes the tables to a list of values in the range
+	 * {@code 0..0xFFFF}. The lexer actions of accept states are stored as
+	 * indexes into {@link ATN#lexerActions}, so the same ATN is required to
+	 * deserialize the result.
+	 *
+	 * <p>As in the serialized ATN, each value is shifted by +2 so the common
+	 * values 0 and -1 have a compact representation in compiled string
+	 * literals.</p>
+	 */
+	@NotNull
+	public IntegerList serialize(@NotNull ATN atn) {
+		IntegerList data = new IntegerList();
+		data.add(SERIALIZED_VERSION);
+		data.add(modes.length);
+		for (ModeTable table : modes) {
+			if (table == null) {
+				data.add(0);
+				continue;
+			}
+
+			data.add(1);
+			data.add(table.classCount);
+			data.add(table.eofClass);
+
+			data.add(table.rangeStarts.length);
+			for (int i = 0; i < table.rangeStarts.length; i++) {
+				data.add(table.rangeStarts[i] & 0xFFFF);
+				data.add(table.rangeStarts[i] >>> 16);
+				data.add(table.rangeClasses[i]);
+			}
+
+			int stateCount = table.getStateCount();
+			data.add(stateCount);
+			for (int state = 0; state < stateCount; state++) {
+				AcceptStateInfo acceptState = table.acceptStates[state];
+				if (acceptState == null) {
+					data.add(0);
+				}
+				else {
+					data.add(1);
+					data.add(acceptState.getPrediction());
+					LexerActionExecutor executor = acceptState.getLexerActionExecutor();
+					LexerAction[] actions = executor != null ? executor.getLexerActions() : new LexerAction[0];
+					data.add(actions.length);
+					for (LexerAction action : actions) {
+						int actionIndex = Arrays.asList(atn.lexerActions).indexOf(action);
+						if (actionIndex < 0) {
+							throw new IllegalArgumentException("The lexer action " + action + " is not defined by the ATN.");
+						}
+
+						data.add(actionIndex);
+					}
+				}
+			}
+
+			// the transitions of each state are run-length encoded
+			for (int state = 0; state < stateCount; state++) {
+				int offset = state * table.classCount;
+				for (int symbolClass = 0; symbolClass < table.classCount; ) {
+					int target = table.transitions[offset + symbolClass];
+					int runLength = 1;
+					while (symbolClass + runLength < table.classCount && table.transitions[offset + symbolClass + runLength] == target) {
+						runLength++;
+					}
+
+					data.add(runLength);
+					data.add(target + 1);
+					symbolClass += runLength;
+				}
+			}
+		}
+
+		for (int i = 0; i < data.size(); i++) {
+			if (data.get(i) < Character.MIN_VALUE || data.get(i) > Character.MAX_VALUE) {
+				throw new UnsupportedOperationException("Serialized lexer DFA element " + data.get(i) + " at " + i + " is out of range.");
+			}
+
+			data.set(i, (data.get(i) + 2) & 0xFFFF);
+		}
+
+		return data;
+	}
+
+	/**
+	 * Deserializes tables produced by {@link #serialize} for the specified
+	 * ATN.
+	 */
+	@NotNull
+	public static CompiledLexerDFA deserialize(@NotNull char[] data, @NotNull ATN atn) {
+		data = data.clone();
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (char)(data[i] - 2);
+		}
+
+		int p = 0;
+		int version = data[p++];
+		if (version != SERIALIZED_VERSION) {
+			String reason = String.format(Locale.getDefault(), "Could not deserialize compiled lexer DFA with version %d (expected %d).", version, SERIALIZED_VERSION);
+			throw new UnsupportedOperationException(new InvalidClassException(CompiledLexerDFA.class.getName(), reason));
+		}
+
+		int modeCount = data[p++];
+		if (modeCount != atn.modeToStartState.size()) {
+			throw new IllegalArgumentException("The compiled lexer DFA does not match the ATN.");
+		}
+
+		ModeTable[] modes = new ModeTable[modeCount];
+		for (int mode = 0; mode < modeCount; mode++) {
+			if (data[p++] == 0) {
+				continue;
+			}
+
+			int classCount = data[p++];
+			int eofClass = data[p++];
+
+			int rangeCount = data[p++];
+			int[] rangeStarts = new int[rangeCount];
+			int[] rangeClasses = new int[rangeCount];
+			for (int i = 0; i < rangeCount; i++) {
+				rangeStarts[i] = data[p] | (data[p + 1] << 16);
+				rangeClasses[i] = data[p + 2];
+				p += 3;
+			}
+
+			int stateCount = data[p++];
+			AcceptStateInfo[] acceptStates = new AcceptStateInfo[stateCount];
+			for (int state = 0; state < stateCount; state++) {
+				if (data[p++] == 0) {
+					continue;
+				}
+
+				int prediction = data[p++];
+				int actionCount = data[p++];
+				LexerActionExecutor executor = null;
+				if (actionCount > 0) {
+					LexerAction[] actions = new LexerAction[actionCount];
+					for (int i = 0; i < actionCount; i++) {
+						actions[i] = atn.lexerActions[data[p++]];
+					}
+
+					executor = new LexerActionExecutor(actions);
+				}
+
+				acceptStates[state] = new AcceptStateInfo(prediction, executor);
+			}
+
+			int[] transitions = new int[stateCount * classCount];
+			for (int i = 0; i < transitions.length; ) {
+				int runLength = data[p++];
+				int target = data[p++] - 1;
+				Arrays.fill(transitions, i, i + runLength, target);
+				i += runLength;
+			}
+
+			modes[mode] = new ModeTable(rangeStarts, rangeClasses, eofClass, classCount, transitions, acceptStates);
+		}
+
+		return new CompiledLexerDFA(modes);
+	}
+
+	/**
+	 * The transition table of a single lexer mode.
+	 */
+	public static final class ModeTable {
+		/**
+		 * The number of symbols, starting at 0, for which the symbol class is
+		 * looked up directly instead of searching {@link #rangeStarts}.
+		 */
+		private static final int ASCII_SIZE = 128;
+
+		@NotNull
+		private final int[] asciiClasses;
+		@NotNull
+		private final int[] rangeStarts;
+		@NotNull
+		private final int[] rangeClasses;
+		private final int eofClass;
+		private final int classCount;
+		@NotNull
+		private final int[] transitions;
+		@NotNull
+		private final AcceptStateInfo[] acceptStates;
+
+		/**
+		 * Constructs a new mode table.
+		 *
+		 * @param rangeStarts The sorted first symbols of the ranges of symbols
+		 * which belong to the same symbol class. The first range starts at
+		 * {@link org.antlr.v4.runtime.Lexer#MIN_CHAR_VALUE}, and each range ends
+		 * where the next one starts.
+		 * @param rangeClasses The symbol class of each range.
+		 * @param eofClass The symbol class of {@link IntStream#EOF}.
+		 * @param classCount The number of symbol classes.
+		 * @param transitions The target state for each state {@code s} and
+		 * symbol class {@code c} at index {@code s * classCount + c}, or
+		 * {@link #ERROR_STATE}.
+		 * @param acceptStates The accept state information for each state, or
+		 * {@code null} for states which are not accept states.
+		 */
+		public ModeTable(@NotNull int[] rangeStarts, @NotNull int[] rangeClasses, int eofClass, int classCount, @NotNull int[] transitions, @NotNull AcceptStateInfo[] acceptStates) {
+			if (rangeStarts.length == 0 || rangeStarts[0] != 0 || rangeStarts.length != rangeClasses.length) {
+				throw new IllegalArgumentException("The symbol ranges must cover all symbols.");
+			}
+
+			if (transitions.length != acceptStates.length * classCount) {
+				throw new IllegalArgumentException("The transition table does not match the number of states and symbol classes.");
+			}
+
+			this.rangeStarts = rangeStarts;
+			this.rangeClasses = rangeClasses;
+			this.eofClass = eofClass;
+			this.classCount = classCount;
+			this.transitions = transitions;
+			this.acceptStates = acceptStates;
+
+			this.asciiClasses = new int[ASCII_SIZE];
+			for (int i = 0; i < ASCII_SIZE; i++) {
+				asciiClasses[i] = getRangeClass(i);
+			}
+		}
+
+		public int getStateCount() {
+			return acceptStates.length;
+		}
+
+		public int getClassCount() {
+			return classCount;
+		}
+
+		/**
+		 * Gets the symbol class of {@code symbol}, which is a code point or
+		 * {@link IntStream#EOF}.
+		 */
+		public int getSymbolClass(int symbol) {
+			if (symbol >= 0 && symbol < ASCII_SIZE) {
+				return asciiClasses[symbol];
+			}
+
+			if (symbol == IntStream.EOF) {
+				return eofClass;
+			}
+
+			return getRangeClass(symbol);
+		}
+
+		private int getRangeClass(int symbol) {
+			int index = Arrays.binarySearch(rangeStarts, symbol);
+			if (index < 0) {
+				index = -index - 2;
+			}
+
+			return rangeClasses[index];
+		}
+
+		/**
+		 * Gets the target of the transition from {@code state} on
+		 * {@code symbol}, or {@link #ERROR_STATE} if {@code symbol} cannot be
+		 * matched from {@code state}.
+		 */
+		public int getTarget(int state, int symbol) {
+			return transitions[state * classCount + getSymbolClass(symbol)];
+		}
+
+		/**
+		 * Gets the accept state information for {@code state}, or {@code null}
+		 * if {@code state} is not an accept state.
+		 */
+		@Nullable
+		public AcceptStateInfo getAcceptState(int state) {
+			return acceptStates[state];
+		}
+	}
+}
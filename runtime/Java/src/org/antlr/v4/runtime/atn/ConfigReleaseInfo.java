@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Locale;
+
+/**
+ * This class reports the DFA states whose configurations were released by
+ * {@link ATN#releaseDFAConfigs}, and an estimate of the memory reclaimed for
+ * each decision.
+ *
+ * <p>The values are indexed by decision number for a parser ATN, and by mode
+ * for a lexer ATN. The reclaimed memory counts the configuration sets,
+ * configurations and prediction contexts which are no longer referenced by a
+ * DFA state or by the context cache of the ATN, less the seeds kept to
+ * recompute them, assuming a 64-bit JVM with compressed references. Some of
+ * these objects may still be referenced by predictions in progress.</p>
+ */
+public class ConfigReleaseInfo {
+	private final boolean lexer;
+	@NotNull
+	private final int[] releasedStates;
+	@NotNull
+	private final int[] retainedStates;
+	@NotNull
+	private final long[] reclaimedBytes;
+
+	ConfigReleaseInfo(boolean lexer, @NotNull int[] releasedStates, @NotNull int[] retainedStates, @NotNull long[] reclaimedBytes) {
+		this.lexer = lexer;
+		this.releasedStates = releasedStates;
+		this.retainedStates = retainedStates;
+		this.reclaimedBytes = reclaimedBytes;
+	}
+
+	/**
+	 * Gets the number of decisions, or the number of modes for a lexer ATN.
+	 */
+	public int getDecisionCount() {
+		return releasedStates.length;
+	}
+
+	/**
+	 * Gets the number of states of the DFA for {@code decision} whose
+	 * configurations were released by this call.
+	 */
+	public int getReleasedStates(int decision) {
+		return releasedStates[decision];
+	}
+
+	/**
+	 * Gets the number of states of the DFA for {@code decision} which still
+	 * hold their configurations.
+	 */
+	public int getRetainedStates(int decision) {
+		return retainedStates[decision];
+	}
+
+	/**
+	 * Gets the estimated number of bytes reclaimed from the DFA for
+	 * {@code decision}.
+	 */
+	public long getReclaimedBytes(int decision) {
+		return reclaimedBytes[decision];
+	}
+
+	public int getTotalReleasedStates() {
+		int total = 0;
+		for (int count : releasedStates) {
+			total += count;
+		}
+
+		return total;
+	}
+
+	public long getTotalReclaimedBytes() {
+		long total = 0;
+		for (long bytes : reclaimedBytes) {
+			total += bytes;
+		}
+
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < releasedStates.length; i++) {
+			if (releasedStates[i] == 0) {
+				continue;
+			}
+
+			builder.append(String.format(Locale.ROOT, "%s %d: released %d states, retained %d, reclaimed %d bytes%n",
+				lexer ? "mode" : "decision", i, releasedStates[i], retainedStates[i], reclaimedBytes[i]));
+		}
+
+		builder.append(String.format(Locale.ROOT, "total: released %d states, reclaimed %d bytes%n",
+			getTotalReleasedStates(), getTotalReclaimedBytes()));
+		return builder.toString();
+	}
+}
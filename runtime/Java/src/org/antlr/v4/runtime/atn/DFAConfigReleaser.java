@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.DFAStateSeed;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Releases the configurations of the DFA states of an {@link ATN} which can
+ * be recomputed from an incoming edge. This class implements
+ * {@link ATN#releaseDFAConfigs}.
+ *
+ * <p>The states of each DFA are visited breadth-first from its start states,
+ * and each state is seeded with the edge it was first reached through, so the
+ * seeds never form a cycle. A state is only released after its configurations
+ * were recomputed from the seed and found equal to the current ones. The start
+ * states, the states reached by full-context prediction and, in a parser, the
+ * accept states keep their configurations, which prediction reads every time
+ * it reaches them.</p>
+ */
+final class DFAConfigReleaser {
+	// Estimated sizes of the released objects on a 64-bit JVM with compressed
+	// references
+	private static final int CONFIG_SET_SIZE = 40;
+	private static final int ARRAY_LIST_SIZE = 24;
+	private static final int CONFIG_SIZE = 24;
+	private static final int EXTENDED_CONFIG_SIZE = 32;
+	private static final int ACTION_SEMANTIC_CONFIG_SIZE = 40;
+	private static final int CONTEXT_SIZE = 24;
+	private static final int CACHE_ENTRY_SIZE = 32;
+	private static final int SEED_SIZE = 32;
+
+	@NotNull
+	private final ATN atn;
+
+	DFAConfigReleaser(@NotNull ATN atn) {
+		this.atn = atn;
+	}
+
+	@NotNull
+	ConfigReleaseInfo release() {
+		boolean lexer = atn.grammarType == ATNType.LEXER;
+		DFA[] dfas = lexer ? atn.modeToDFA : atn.decisionToDFA;
+
+		// All seeds are verified before any state is released, since
+		// recomputing the configurations of a source state would restore them
+		List<List<Candidate>> candidates = new ArrayList<List<Candidate>>(dfas.length);
+		for (int i = 0; i < dfas.length; i++) {
+			candidates.add(findCandidates(i, dfas[i], lexer));
+		}
+
+		int[] releasedStates = new int[dfas.length];
+		int[] retainedStates = new int[dfas.length];
+		long[] reclaimedBytes = new long[dfas.length];
+		List<Candidate> released = new ArrayList<Candidate>();
+		for (List<Candidate> dfaCandidates : candidates) {
+			for (Candidate candidate : dfaCandidates) {
+				if (candidate.state.releaseConfigs(candidate.seed)) {
+					released.add(candidate);
+				}
+			}
+		}
+
+		Set<ATNConfig> retainedConfigs = Collections.newSetFromMap(new IdentityHashMap<ATNConfig, Boolean>());
+		Set<PredictionContext> retainedContexts = Collections.newSetFromMap(new IdentityHashMap<PredictionContext, Boolean>());
+		for (DFA dfa : atn.decisionToDFA) {
+			addRetained(dfa, retainedConfigs, retainedContexts);
+		}
+
+		for (DFA dfa : atn.modeToDFA) {
+			addRetained(dfa, retainedConfigs, retainedContexts);
+		}
+
+		for (int i = 0; i < dfas.length; i++) {
+			for (DFAState state : dfas[i].states.values()) {
+				if (!state.isConfigsReleased()) {
+					retainedStates[i]++;
+				}
+			}
+		}
+
+		// The states released by a previous call were restored to verify their
+		// seeds, and their memory was already reported by that call
+		Set<ATNConfig> visitedConfigs = Collections.newSetFromMap(new IdentityHashMap<ATNConfig, Boolean>());
+		Set<PredictionContext> visitedContexts = Collections.newSetFromMap(new IdentityHashMap<PredictionContext, Boolean>());
+		for (int pass = 0; pass < 2; pass++) {
+			for (Candidate candidate : released) {
+				if (candidate.previouslyReleased != (pass == 1)) {
+					continue;
+				}
+
+				long bytes = getReleasedBytes(candidate.configs, retainedConfigs, retainedContexts, visitedConfigs, visitedContexts);
+				if (!candidate.previouslyReleased) {
+					releasedStates[candidate.index]++;
+					reclaimedBytes[candidate.index] += bytes;
+				}
+			}
+		}
+
+		return new ConfigReleaseInfo(lexer, releasedStates, retainedStates, reclaimedBytes);
+	}
+
+	/**
+	 * Finds the states of {@code dfa} whose configurations can be released,
+	 * and verifies the seed of each one.
+	 */
+	@NotNull
+	private List<Candidate> findCandidates(int index, @NotNull DFA dfa, boolean lexer) {
+		Set<DFAState> visited = Collections.newSetFromMap(new IdentityHashMap<DFAState, Boolean>());
+		Deque<DFAState> queue = new ArrayDeque<DFAState>();
+		DFAState s0 = dfa.s0.get();
+		if (s0 != null && dfa.isPrecedenceDfa()) {
+			// the edges of the special start state are precedence levels, and
+			// lead to the start state of each level
+			for (DFAState start : s0.getEdgeMap().values()) {
+				if (visited.add(start)) {
+					queue.add(start);
+				}
+			}
+		}
+		else if (s0 != null) {
+			visited.add(s0);
+			queue.add(s0);
+		}
+
+		List<Candidate> result = new ArrayList<Candidate>();
+		while (!queue.isEmpty()) {
+			DFAState source = queue.poll();
+			for (Map.Entry<Integer, DFAState> edge : source.getEdgeMap().entrySet()) {
+				DFAState target = edge.getValue();
+				if (target == ATNSimulator.ERROR || !visited.add(target)) {
+					continue;
+				}
+
+				queue.add(target);
+				if (!lexer && (target.isAcceptState() || target.isContextSensitive())) {
+					continue;
+				}
+
+				boolean previouslyReleased = target.isConfigsReleased();
+				ATNConfigSet configs = target.getConfigs();
+				if (configs.getConflictInfo() != null) {
+					continue;
+				}
+
+				Seed seed = lexer
+					? new LexerSeed(dfa, source, edge.getKey())
+					: new ParserSeed(dfa, source, edge.getKey());
+				if (configs.equals(seed.tryComputeConfigs())) {
+					result.add(new Candidate(index, target, seed, configs, previouslyReleased));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static void addRetained(@NotNull DFA dfa, @NotNull Set<ATNConfig> retainedConfigs, @NotNull Set<PredictionContext> retainedContexts) {
+		for (DFAState state : dfa.states.values()) {
+			if (state.isConfigsReleased()) {
+				continue;
+			}
+
+			for (ATNConfig config : state.getConfigs()) {
+				retainedConfigs.add(config);
+				addContexts(config.getContext(), retainedContexts, null, null);
+			}
+		}
+	}
+
+	/**
+	 * Estimates the memory used by {@code configs} which is no longer
+	 * referenced by the DFA, and removes the prediction contexts which are
+	 * only referenced by {@code configs} from the context cache of the ATN.
+	 */
+	private long getReleasedBytes(@NotNull ATNConfigSet configs,
+								  @NotNull Set<ATNConfig> retainedConfigs,
+								  @NotNull Set<PredictionContext> retainedContexts,
+								  @NotNull Set<ATNConfig> visitedConfigs,
+								  @NotNull Set<PredictionContext> visitedContexts)
+	{
+		long bytes = CONFIG_SET_SIZE + ARRAY_LIST_SIZE + getArraySize(configs.size()) - SEED_SIZE;
+		List<PredictionContext> releasedContexts = new ArrayList<PredictionContext>();
+		for (ATNConfig config : configs) {
+			if (retainedConfigs.contains(config) || !visitedConfigs.add(config)) {
+				continue;
+			}
+
+			bytes += getConfigSize(config);
+			releasedContexts.clear();
+			addContexts(config.getContext(), visitedContexts, retainedContexts, releasedContexts);
+			for (PredictionContext context : releasedContexts) {
+				bytes += CONTEXT_SIZE;
+				if (context.size() > 1) {
+					// the parents and return states of an array context
+					bytes += 2 * getArraySize(context.size());
+				}
+
+				if (atn.removeCachedContext(context)) {
+					bytes += CACHE_ENTRY_SIZE;
+				}
+			}
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Adds {@code context} and its parents to {@code contexts}, except the
+	 * empty contexts and the contexts in {@code excluded}. The contexts which
+	 * were not already in {@code contexts} are also added to {@code added}.
+	 */
+	private static void addContexts(@NotNull PredictionContext context,
+									@NotNull Set<PredictionContext> contexts,
+									@Nullable Set<PredictionContext> excluded,
+									@Nullable List<PredictionContext> added)
+	{
+		Deque<PredictionContext> work = new ArrayDeque<PredictionContext>();
+		work.push(context);
+		while (!work.isEmpty()) {
+			PredictionContext current = work.pop();
+			if (current.isEmpty() || (excluded != null && excluded.contains(current)) || !contexts.add(current)) {
+				continue;
+			}
+
+			if (added != null) {
+				added.add(current);
+			}
+
+			for (int i = 0; i < current.size(); i++) {
+				work.push(current.getParent(i));
+			}
+		}
+	}
+
+	private static long getConfigSize(@NotNull ATNConfig config) {
+		boolean semantic = config.getSemanticContext() != SemanticContext.NONE;
+		boolean action = config.getLexerActionExecutor() != null;
+		if (semantic && action) {
+			return ACTION_SEMANTIC_CONFIG_SIZE;
+		}
+
+		return semantic || action ? EXTENDED_CONFIG_SIZE : CONFIG_SIZE;
+	}
+
+	private static long getArraySize(int length) {
+		return (16 + 4L * length + 7) & ~7L;
+	}
+
+	private static final class Candidate {
+		final int index;
+		@NotNull
+		final DFAState state;
+		@NotNull
+		final Seed seed;
+		@NotNull
+		final ATNConfigSet configs;
+		final boolean previouslyReleased;
+
+		Candidate(int index, @NotNull DFAState state, @NotNull Seed seed, @NotNull ATNConfigSet configs, boolean previouslyReleased) {
+			this.index = index;
+			this.state = state;
+			this.seed = seed;
+			this.configs = configs;
+			this.previouslyReleased = previouslyReleased;
+		}
+	}
+
+	private abstract static class Seed extends DFAStateSeed {
+		@NotNull
+		protected final DFA dfa;
+
+		Seed(@NotNull DFA dfa, @NotNull DFAState source, int symbol) {
+			super(source, symbol);
+			this.dfa = dfa;
+		}
+
+		@Override
+		public final ATNConfigSet computeConfigs() {
+			ATNConfigSet configs = tryComputeConfigs();
+			if (configs == null) {
+				throw new IllegalStateException("The configurations of a DFA state could not be recomputed.");
+			}
+
+			return configs;
+		}
+
+		/**
+		 * Computes the configurations of the target of the seed edge, or
+		 * returns {@code null} if the edge does not lead to a state. A new
+		 * simulator is used for each computation, since simulators are not
+		 * thread safe.
+		 */
+		@Nullable
+		abstract ATNConfigSet tryComputeConfigs();
+	}
+
+	/**
+	 * Recomputes the configurations of a parser DFA state with an SLL reach
+	 * operation from its source state.
+	 */
+	private static final class ParserSeed extends Seed {
+		ParserSeed(@NotNull DFA dfa, @NotNull DFAState source, int symbol) {
+			super(dfa, source, symbol);
+		}
+
+		@Override
+		ATNConfigSet tryComputeConfigs() {
+			ParserRecomputer simulator = new ParserRecomputer(dfa.atnStartState.atn);
+			DFAState target = simulator.computeTargetState(dfa, getSource(), null, getSymbol(), false, new PredictionContextCache()).getItem1();
+			return target != ATNSimulator.ERROR ? target.getConfigs() : null;
+		}
+	}
+
+	/**
+	 * Recomputes the configurations of a lexer DFA state with a reach
+	 * operation from its source state.
+	 */
+	private static final class LexerSeed extends Seed {
+		LexerSeed(@NotNull DFA dfa, @NotNull DFAState source, int symbol) {
+			super(dfa, source, symbol);
+		}
+
+		@Override
+		ATNConfigSet tryComputeConfigs() {
+			LexerRecomputer simulator = new LexerRecomputer(dfa);
+			// without a recognizer, the input is only used for the offsets of
+			// position-dependent lexer actions, so states whose
+			// configurations hold such actions usually fail verification
+			CharStream input = CharStreams.fromString("");
+			DFAState target = simulator.computeTargetState(input, getSource(), getSymbol());
+			return target != ATNSimulator.ERROR ? target.getConfigs() : null;
+		}
+	}
+
+	/**
+	 * Prepares the reach set of an edge like {@link ParserATNSimulator}, but
+	 * does not look up the target in the DFA, which would compare it with the
+	 * released state, or add the edge.
+	 */
+	private static final class ParserRecomputer extends ParserATNSimulator {
+		ParserRecomputer(@NotNull ATN atn) {
+			super(atn);
+		}
+
+		@Override
+		protected DFAState addDFAState(@NotNull DFA dfa, @NotNull ATNConfigSet configs, PredictionContextCache contextCache) {
+			// the released states are not accept states, so the configurations
+			// have no conflict information
+			if (!configs.isReadOnly()) {
+				configs.optimizeConfigs(this);
+			}
+
+			return createDFAState(dfa, configs.clone(true));
+		}
+
+		@Override
+		protected void addDFAEdge(@Nullable DFAState p, int t, @Nullable DFAState q) {
+			// the edge is already in the DFA
+		}
+	}
+
+	/**
+	 * Prepares the reach set of an edge like {@link LexerATNSimulator}, but
+	 * does not look up the target in the DFA or add the edge.
+	 */
+	private static final class LexerRecomputer extends LexerATNSimulator {
+		@NotNull
+		private final DFA dfa;
+
+		LexerRecomputer(@NotNull DFA dfa) {
+			super(dfa.atnStartState.atn);
+			this.dfa = dfa;
+		}
+
+		@Override
+		protected DFAState addDFAState(@NotNull ATNConfigSet configs) {
+			configs.optimizeConfigs(this);
+			return new DFAState(dfa, configs.clone(true));
+		}
+
+		@Override
+		protected void addDFAEdge(@NotNull DFAState p, int t, @NotNull DFAState q) {
+			// the edge is already in the DFA
+		}
+	}
+}
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.dfa.AcceptStateInfo;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * Restores a DFA cache written by {@link DFASnapshotSerializer} into an
+ * {@link ATN}.
+ *
+ * <p>The snapshot header is validated against the target ATN before any DFA
+ * state is created. A snapshot written by a different version of the runtime,
+ * or for an ATN which was deserialized from different data or with different
+ * {@link ATNDeserializationOptions}, is rejected with an
+ * {@link InvalidClassException}.</p>
+ *
+ * <p>States restored from the snapshot are merged with any states already
+ * present in the DFA, so a snapshot may be loaded into an ATN which is
+ * already in use.</p>
+ */
+public class DFASnapshotDeserializer {
+	/**
+	 * The file extension of DFA snapshot resources loaded by
+	 * {@link #loadResource}.
+	 */
+	public static final String RESOURCE_EXTENSION = ".dfa";
+
+	@NotNull
+	private final ATN atn;
+
+	private PredictionContext[] contexts;
+	private SemanticContext[] semanticContexts;
+	private LexerActionExecutor[] lexerActionExecutors;
+
+	public DFASnapshotDeserializer(@NotNull ATN atn) {
+		this.atn = atn;
+	}
+
+	/**
+	 * Load the DFA snapshot resource for a generated recognizer into its ATN.
+	 * The resource is named after the simple name of {@code recognizerClass}
+	 * with the {@link #RESOURCE_EXTENSION} extension, and is located next to
+	 * the class on the classpath.
+	 *
+	 * <p>Only the first call for a particular ATN attempts to read the
+	 * resource, so generated recognizers call this method from their
+	 * constructors. A missing, stale or corrupt resource is ignored and the
+	 * DFA is computed at runtime as usual.</p>
+	 *
+	 * @return {@code true} if a snapshot was loaded by this call; otherwise,
+	 * {@code false}.
+	 */
+	public static boolean loadResource(@NotNull ATN atn, @NotNull Class<?> recognizerClass) {
+		if (!atn.requestDFASnapshot()) {
+			return false;
+		}
+
+		InputStream input = recognizerClass.getResourceAsStream(recognizerClass.getSimpleName() + RESOURCE_EXTENSION);
+		if (input == null) {
+			return false;
+		}
+
+		try {
+			try {
+				new DFASnapshotDeserializer(atn).deserialize(new BufferedInputStream(input));
+				return true;
+			}
+			finally {
+				input.close();
+			}
+		}
+		catch (IOException | RuntimeException ex) {
+			// the snapshot is only a cache, so fall back to computing the DFA;
+			// data which passes the structural checks can still fail to decode
+			return false;
+		}
+	}
+
+	/**
+	 * Read a snapshot from {@code input} and add its states to the DFA cache
+	 * of the ATN. The stream is not closed.
+	 *
+	 * @exception InvalidClassException if the snapshot was not created for
+	 * this ATN, or was created by an incompatible version of the runtime
+	 * @exception StreamCorruptedException if the snapshot data is not valid
+	 */
+	public void deserialize(@NotNull InputStream input) throws IOException {
+		DataInputStream data = input instanceof DataInputStream ? (DataInputStream)input : new DataInputStream(input);
+		readHeader(data);
+		readContexts(data);
+		readSemanticContexts(data);
+		readLexerActionExecutors(data);
+
+		// read all DFAs before installing any of them, so a truncated snapshot
+		// does not leave the cache partially populated
+		SnapshotDFA[] decisions = new SnapshotDFA[atn.decisionToDFA.length];
+		for (int i = 0; i < decisions.length; i++) {
+			decisions[i] = readDFA(data, atn.decisionToDFA[i]);
+		}
+
+		SnapshotDFA[] modes = new SnapshotDFA[atn.modeToDFA.length];
+		for (int i = 0; i < modes.length; i++) {
+			modes[i] = readDFA(data, atn.modeToDFA[i]);
+		}
+
+		int ll1Count = readCount(data);
+		long[] ll1Keys = new long[ll1Count];
+		int[] ll1Alts = new int[ll1Count];
+		for (int i = 0; i < ll1Count; i++) {
+			ll1Keys[i] = data.readLong();
+			ll1Alts[i] = data.readInt();
+		}
+
+		for (SnapshotDFA dfa : decisions) {
+			dfa.install();
+		}
+
+		for (SnapshotDFA dfa : modes) {
+			dfa.install();
+		}
+
+		for (int i = 0; i < ll1Count; i++) {
+			atn.LL1Table.putIfAbsent(ll1Keys[i], ll1Alts[i]);
+		}
+	}
+
+	private void readHeader(@NotNull DataInputStream data) throws IOException {
+		if (data.readInt() != DFASnapshotSerializer.MAGIC) {
+			throw new StreamCorruptedException("The input is not a DFA snapshot.");
+		}
+
+		int version = data.readInt();
+		if (version != DFASnapshotSerializer.SERIALIZED_VERSION) {
+			String reason = String.format("Could not deserialize DFA snapshot with version %d (expected %d).", version, DFASnapshotSerializer.SERIALIZED_VERSION);
+			throw new InvalidClassException(ATN.class.getName(), reason);
+		}
+
+		UUID uuid = new UUID(data.readLong(), data.readLong());
+		if (!uuid.equals(ATNDeserializer.SERIALIZED_UUID)) {
+			String reason = String.format("Could not deserialize DFA snapshot with UUID %s (expected %s).", uuid, ATNDeserializer.SERIALIZED_UUID);
+			throw new InvalidClassException(ATN.class.getName(), reason);
+		}
+
+		int checksum = data.readInt();
+		if (checksum != atn.getSerializedChecksum()) {
+			String reason = String.format("The DFA snapshot was created for a different serialized ATN (checksum %08x, expected %08x).", checksum, atn.getSerializedChecksum());
+			throw new InvalidClassException(ATN.class.getName(), reason);
+		}
+
+		int structureHash = data.readInt();
+		int grammarType = data.readInt();
+		int maxTokenType = data.readInt();
+		int stateCount = data.readInt();
+		int decisionCount = data.readInt();
+		int modeCount = data.readInt();
+		if (structureHash != DFASnapshotSerializer.computeStructureHash(atn)
+			|| grammarType != atn.grammarType.ordinal()
+			|| maxTokenType != atn.maxTokenType
+			|| stateCount != atn.states.size()
+			|| decisionCount != atn.decisionToDFA.length
+			|| modeCount != atn.modeToDFA.length)
+		{
+			throw new InvalidClassException(ATN.class.getName(), "The DFA snapshot was created for a different ATN.");
+		}
+	}
+
+	private void readContexts(@NotNull DataInputStream data) throws IOException {
+		int count = readCount(data);
+		contexts = new PredictionContext[count + 2];
+		contexts[DFASnapshotSerializer.EMPTY_LOCAL_CONTEXT] = PredictionContext.EMPTY_LOCAL;
+		contexts[DFASnapshotSerializer.EMPTY_FULL_CONTEXT] = PredictionContext.EMPTY_FULL;
+		for (int i = 2; i < contexts.length; i++) {
+			int size = readCount(data);
+			if (size == 0) {
+				throw new StreamCorruptedException("Invalid prediction context.");
+			}
+
+			PredictionContext[] parents = new PredictionContext[size];
+			int[] returnStates = new int[size];
+			for (int j = 0; j < size; j++) {
+				parents[j] = readReference(data, contexts, i);
+				returnStates[j] = data.readInt();
+			}
+
+			PredictionContext context;
+			if (size == 1) {
+				context = new SingletonPredictionContext(parents[0], returnStates[0]);
+			}
+			else {
+				context = new ArrayPredictionContext(parents, returnStates);
+			}
+
+			contexts[i] = atn.getCachedContext(context);
+		}
+	}
+
+	private void readSemanticContexts(@NotNull DataInputStream data) throws IOException {
+		int count = readCount(data);
+		semanticContexts = new SemanticContext[count + 1];
+		semanticContexts[DFASnapshotSerializer.SEMANTIC_NONE] = SemanticContext.NONE;
+		for (int i = 1; i < semanticContexts.length; i++) {
+			byte type = data.readByte();
+			switch (type) {
+			case DFASnapshotSerializer.SEMANTIC_PREDICATE:
+				int ruleIndex = data.readInt();
+				int predIndex = data.readInt();
+				boolean isCtxDependent = data.readBoolean();
+				semanticContexts[i] = new SemanticContext.Predicate(ruleIndex, predIndex, isCtxDependent);
+				break;
+
+			case DFASnapshotSerializer.SEMANTIC_PRECEDENCE:
+				semanticContexts[i] = new SemanticContext.PrecedencePredicate(data.readInt());
+				break;
+
+			case DFASnapshotSerializer.SEMANTIC_AND:
+			case DFASnapshotSerializer.SEMANTIC_OR:
+				int operandCount = readCount(data);
+				if (operandCount == 0) {
+					throw new StreamCorruptedException("Invalid semantic context.");
+				}
+
+				SemanticContext[] operands = new SemanticContext[operandCount];
+				for (int j = 0; j < operands.length; j++) {
+					operands[j] = readReference(data, semanticContexts, i);
+				}
+
+				// the operand arrays are flattened when operators are combined
+				boolean and = type == DFASnapshotSerializer.SEMANTIC_AND;
+				SemanticContext result = combine(and, operands[0], operands.length > 1 ? operands[1] : operands[0]);
+				for (int j = 2; j < operands.length; j++) {
+					result = combine(and, result, operands[j]);
+				}
+
+				semanticContexts[i] = result;
+				break;
+
+			default:
+				throw new StreamCorruptedException("Invalid semantic context type: " + type);
+			}
+		}
+	}
+
+	@NotNull
+	private static SemanticContext combine(boolean and, @NotNull SemanticContext a, @NotNull SemanticContext b) {
+		return and ? new SemanticContext.AND(a, b) : new SemanticContext.OR(a, b);
+	}
+
+	private void readLexerActionExecutors(@NotNull DataInputStream data) throws IOException {
+		int count = readCount(data);
+		lexerActionExecutors = new LexerActionExecutor[count];
+		for (int i = 0; i < count; i++) {
+			LexerAction[] lexerActions = new LexerAction[readCount(data)];
+			for (int j = 0; j < lexerActions.length; j++) {
+				int offset = data.readInt();
+				int index = data.readInt();
+				if (atn.lexerActions == null || index < 0 || index >= atn.lexerActions.length) {
+					throw new StreamCorruptedException("Invalid lexer action index: " + index);
+				}
+
+				LexerAction lexerAction = atn.lexerActions[index];
+				if (offset >= 0) {
+					lexerAction = new LexerIndexedCustomAction(offset, lexerAction);
+				}
+
+				lexerActions[j] = lexerAction;
+			}
+
+			lexerActionExecutors[i] = new LexerActionExecutor(lexerActions);
+		}
+	}
+
+	@NotNull
+	private SnapshotDFA readDFA(@NotNull DataInputStream data, @NotNull DFA dfa) throws IOException {
+		int stateCount = readCount(data);
+		SnapshotDFA result = new SnapshotDFA(dfa, stateCount);
+		for (int i = 0; i < stateCount; i++) {
+			result.registered[i] = data.readBoolean();
+			DFAState state = new DFAState(dfa, readConfigs(data));
+
+			if (data.readBoolean()) {
+				int prediction = data.readInt();
+				LexerActionExecutor lexerActionExecutor = readLexerActionExecutor(data);
+				state.setAcceptState(new AcceptStateInfo(prediction, lexerActionExecutor));
+			}
+
+			int predicateCount = data.readInt();
+			if (predicateCount >= 0) {
+				DFAState.PredPrediction[] predicates = new DFAState.PredPrediction[predicateCount];
+				for (int j = 0; j < predicateCount; j++) {
+					SemanticContext pred = readReference(data, semanticContexts, semanticContexts.length);
+					predicates[j] = new DFAState.PredPrediction(pred, data.readInt());
+				}
+
+				state.predicates = predicates;
+			}
+
+			if (data.readBoolean()) {
+				int[] contextSymbols = new int[readCount(data)];
+				for (int j = 0; j < contextSymbols.length; j++) {
+					contextSymbols[j] = data.readInt();
+				}
+
+				result.contextSymbols[i] = contextSymbols;
+			}
+
+			result.states[i] = state;
+		}
+
+		for (int i = 0; i < stateCount; i++) {
+			result.edges[i] = readEdges(data, stateCount);
+			result.contextEdges[i] = readEdges(data, stateCount);
+		}
+
+		if (dfa.isPrecedenceDfa()) {
+			result.s0 = readEdges(data, stateCount);
+			result.s0full = readEdges(data, stateCount);
+		}
+		else {
+			result.s0 = new int[] { 0, readStateId(data, stateCount) };
+			result.s0full = new int[] { 0, readStateId(data, stateCount) };
+		}
+
+		return result;
+	}
+
+	@NotNull
+	private ATNConfigSet readConfigs(@NotNull DataInputStream data) throws IOException {
+		int flags = data.readUnsignedByte();
+		ConflictInfo conflictInfo = null;
+		if ((flags & DFASnapshotSerializer.CONFIG_SET_CONFLICT) != 0) {
+			long[] words = new long[readCount(data)];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = data.readLong();
+			}
+
+			conflictInfo = new ConflictInfo(BitSet.valueOf(words), (flags & DFASnapshotSerializer.CONFIG_SET_EXACT_CONFLICT) != 0);
+		}
+
+		ATNConfigSet configs = (flags & DFASnapshotSerializer.CONFIG_SET_ORDERED) != 0 ? new OrderedATNConfigSet() : new ATNConfigSet();
+		configs.setOutermostConfigSet((flags & DFASnapshotSerializer.CONFIG_SET_OUTERMOST) != 0);
+
+		int size = readCount(data);
+		for (int i = 0; i < size; i++) {
+			int stateNumber = data.readInt();
+			if (stateNumber < 0 || stateNumber >= atn.states.size() || atn.states.get(stateNumber) == null) {
+				throw new StreamCorruptedException("Invalid ATN state number: " + stateNumber);
+			}
+
+			int alt = data.readInt();
+			int outerContextDepth = data.readInt();
+			int configFlags = data.readUnsignedByte();
+			PredictionContext context = readReference(data, contexts, contexts.length);
+			SemanticContext semanticContext = readReference(data, semanticContexts, semanticContexts.length);
+			LexerActionExecutor lexerActionExecutor = readLexerActionExecutor(data);
+
+			boolean passedThroughNonGreedyDecision = (configFlags & DFASnapshotSerializer.CONFIG_PASSED_THROUGH_NON_GREEDY) != 0;
+			ATNConfig config = ATNConfig.create(atn.states.get(stateNumber), alt, context, semanticContext, lexerActionExecutor, passedThroughNonGreedyDecision);
+			config.setOuterContextDepth(outerContextDepth);
+			config.setPrecedenceFilterSuppressed((configFlags & DFASnapshotSerializer.CONFIG_PRECEDENCE_FILTER_SUPPRESSED) != 0);
+			configs.add(config);
+		}
+
+		if ((flags & DFASnapshotSerializer.CONFIG_SET_HAS_SEMANTIC_CONTEXT) != 0) {
+			configs.markExplicitSemanticContext();
+		}
+		else {
+			configs.clearExplicitSemanticContext();
+		}
+
+		configs.setConflictInfo(conflictInfo);
+		return configs.clone(true);
+	}
+
+	private LexerActionExecutor readLexerActionExecutor(@NotNull DataInputStream data) throws IOException {
+		int id = data.readInt();
+		if (id == -1) {
+			return null;
+		}
+
+		return readReference(id, lexerActionExecutors, lexerActionExecutors.length);
+	}
+
+	@NotNull
+	private static int[] readEdges(@NotNull DataInputStream data, int stateCount) throws IOException {
+		int[] edges = new int[readCount(data) * 2];
+		for (int i = 0; i < edges.length; i += 2) {
+			edges[i] = data.readInt();
+			edges[i + 1] = readStateId(data, stateCount);
+		}
+
+		return edges;
+	}
+
+	private static int readStateId(@NotNull DataInputStream data, int stateCount) throws IOException {
+		int id = data.readInt();
+		if (id < DFASnapshotSerializer.NO_STATE || id >= stateCount) {
+			throw new StreamCorruptedException("Invalid DFA state reference: " + id);
+		}
+
+		return id;
+	}
+
+	private static <T> T readReference(@NotNull DataInputStream data, @NotNull T[] table, int limit) throws IOException {
+		return readReference(data.readInt(), table, limit);
+	}
+
+	private static <T> T readReference(int id, @NotNull T[] table, int limit) throws IOException {
+		if (id < 0 || id >= limit || table[id] == null) {
+			throw new StreamCorruptedException("Invalid reference: " + id);
+		}
+
+		return table[id];
+	}
+
+	private static int readCount(@NotNull DataInputStream data) throws IOException {
+		int count = data.readInt();
+		if (count < 0) {
+			throw new StreamCorruptedException("Invalid element count: " + count);
+		}
+
+		return count;
+	}
+
+	/**
+	 * The content of one DFA read from a snapshot, held until the complete
+	 * snapshot has been read.
+	 */
+	private final class SnapshotDFA {
+		@NotNull
+		private final DFA dfa;
+		private final DFAState[] states;
+		private final boolean[] registered;
+		private final int[][] contextSymbols;
+		private final int[][] edges;
+		private final int[][] contextEdges;
+
+		/** Pairs of (precedence, state id); precedence is 0 for non-precedence DFAs. */
+		private int[] s0;
+		private int[] s0full;
+
+		public SnapshotDFA(@NotNull DFA dfa, int stateCount) {
+			this.dfa = dfa;
+			this.states = new DFAState[stateCount];
+			this.registered = new boolean[stateCount];
+			this.contextSymbols = new int[stateCount][];
+			this.edges = new int[stateCount][];
+			this.contextEdges = new int[stateCount][];
+		}
+
+		public void install() {
+			for (int i = 0; i < states.length; i++) {
+				if (registered[i]) {
+					// reuse an equivalent state if the DFA already has one
+					states[i] = dfa.addState(states[i]);
+				}
+			}
+
+			for (int i = 0; i < states.length; i++) {
+				DFAState state = states[i];
+				if (contextSymbols[i] != null) {
+					state.setContextSensitive(atn);
+					for (int symbol : contextSymbols[i]) {
+						state.setContextSymbol(symbol);
+					}
+				}
+
+				for (int j = 0; j < edges[i].length; j += 2) {
+					DFAState target = getState(edges[i][j + 1]);
+					if (target != null) {
+						state.setTarget(edges[i][j], target);
+					}
+				}
+
+				for (int j = 0; j < contextEdges[i].length; j += 2) {
+					DFAState target = getState(contextEdges[i][j + 1]);
+					if (target != null) {
+						state.setContextSensitive(atn);
+						state.setContextTarget(contextEdges[i][j], target);
+					}
+				}
+			}
+
+			if (dfa.isPrecedenceDfa()) {
+				for (int i = 0; i < s0.length; i += 2) {
+					DFAState target = getState(s0[i + 1]);
+					if (target != null && dfa.getPrecedenceStartState(s0[i], false) == null) {
+						dfa.setPrecedenceStartState(s0[i], false, target);
+					}
+				}
+
+				for (int i = 0; i < s0full.length; i += 2) {
+					DFAState target = getState(s0full[i + 1]);
+					if (target != null && dfa.getPrecedenceStartState(s0full[i], true) == null) {
+						dfa.setPrecedenceStartState(s0full[i], true, target);
+					}
+				}
+			}
+			else {
+				DFAState target = getState(s0[1]);
+				if (target != null) {
+					dfa.s0.compareAndSet(null, target);
+				}
+
+				target = getState(s0full[1]);
+				if (target != null) {
+					dfa.s0full.compareAndSet(null, target);
+				}
+			}
+		}
+
+		private DFAState getState(int id) {
+			if (id == DFASnapshotSerializer.NO_STATE) {
+				return null;
+			}
+			else if (id == DFASnapshotSerializer.ERROR_STATE) {
+				return ATNSimulator.ERROR;
+			}
+
+			return states[id];
+		}
+	}
+}
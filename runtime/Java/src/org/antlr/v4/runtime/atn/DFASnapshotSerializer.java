@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.dfa.AcceptStateInfo;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.MurmurHash;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the DFA cache of an {@link ATN} to a stream so it can be restored by
+ * {@link DFASnapshotDeserializer} in another process.
+ *
+ * <p>The snapshot contains every {@link DFAState} reachable from
+ * {@link ATN#decisionToDFA} and {@link ATN#modeToDFA}, including the
+ * full-context start states, context edges, accept state information,
+ * predicate predictions and lexer action executors, along with the
+ * configuration sets required to extend the DFA after it is restored. The
+ * snapshot is keyed by {@link ATNDeserializer#SERIALIZED_UUID},
+ * {@link ATN#getSerializedChecksum()} and a hash of the ATN structure, so a
+ * snapshot can only be loaded into an ATN for the same grammar.</p>
+ *
+ * <p>The DFA may be modified by other threads while it is being written. In
+ * that case the snapshot contains some consistent subset of the states and
+ * edges which were present during the operation.</p>
+ */
+public class DFASnapshotSerializer {
+	/**
+	 * The first four bytes of every snapshot ({@code "DFAS"}).
+	 */
+	public static final int MAGIC = 0x44464153;
+
+	/**
+	 * The version of the snapshot format. Snapshots written with a different
+	 * version are rejected by {@link DFASnapshotDeserializer}.
+	 */
+	public static final int SERIALIZED_VERSION = 2;
+
+	/*package*/ static final int ERROR_STATE = -1;
+	/*package*/ static final int NO_STATE = -2;
+
+	/*package*/ static final int EMPTY_LOCAL_CONTEXT = 0;
+	/*package*/ static final int EMPTY_FULL_CONTEXT = 1;
+
+	/*package*/ static final int SEMANTIC_NONE = 0;
+	/*package*/ static final byte SEMANTIC_PREDICATE = 1;
+	/*package*/ static final byte SEMANTIC_PRECEDENCE = 2;
+	/*package*/ static final byte SEMANTIC_AND = 3;
+	/*package*/ static final byte SEMANTIC_OR = 4;
+
+	/*package*/ static final int CONFIG_SET_OUTERMOST = 0x01;
+	/*package*/ static final int CONFIG_SET_HAS_SEMANTIC_CONTEXT = 0x02;
+	/*package*/ static final int CONFIG_SET_CONFLICT = 0x04;
+	/*package*/ static final int CONFIG_SET_EXACT_CONFLICT = 0x08;
+	/*package*/ static final int CONFIG_SET_ORDERED = 0x10;
+
+	/*package*/ static final int CONFIG_PRECEDENCE_FILTER_SUPPRESSED = 0x01;
+	/*package*/ static final int CONFIG_PASSED_THROUGH_NON_GREEDY = 0x02;
+
+	private static final Comparator<DFAState> STATE_NUMBER_ORDER = new Comparator<DFAState>() {
+		@Override
+		public int compare(DFAState o1, DFAState o2) {
+			return Integer.compare(o1.stateNumber, o2.stateNumber);
+		}
+	};
+
+	@NotNull
+	private final ATN atn;
+
+	private final Map<PredictionContext, Integer> contextIds = new IdentityHashMap<PredictionContext, Integer>();
+	private final List<PredictionContext> contexts = new ArrayList<PredictionContext>();
+
+	private final Map<SemanticContext, Integer> semanticContextIds = new HashMap<SemanticContext, Integer>();
+	private final List<SemanticContext> semanticContexts = new ArrayList<SemanticContext>();
+
+	private final Map<LexerActionExecutor, Integer> lexerActionExecutorIds = new HashMap<LexerActionExecutor, Integer>();
+	private final List<LexerActionExecutor> lexerActionExecutors = new ArrayList<LexerActionExecutor>();
+
+	private final Map<LexerAction, Integer> lexerActionIndexes = new HashMap<LexerAction, Integer>();
+
+	public DFASnapshotSerializer(@NotNull ATN atn) {
+		this.atn = atn;
+		if (atn.lexerActions != null) {
+			for (int i = 0; i < atn.lexerActions.length; i++) {
+				lexerActionIndexes.put(atn.lexerActions[i], i);
+			}
+		}
+	}
+
+	/**
+	 * Write a snapshot of the current DFA cache to {@code output}. The stream
+	 * is flushed but not closed.
+	 *
+	 * @throws NotSerializableException if the DFA contains a semantic context
+	 * or lexer action which cannot be written to a snapshot
+	 */
+	public void serialize(@NotNull OutputStream output) throws IOException {
+		// collect everything before writing so the shared tables precede the
+		// states referencing them
+		List<List<DFAState>> decisionStates = new ArrayList<List<DFAState>>();
+		for (DFA dfa : atn.decisionToDFA) {
+			decisionStates.add(collectStates(dfa));
+		}
+
+		List<List<DFAState>> modeStates = new ArrayList<List<DFAState>>();
+		for (DFA dfa : atn.modeToDFA) {
+			modeStates.add(collectStates(dfa));
+		}
+
+		DataOutputStream data = new DataOutputStream(output);
+		data.writeInt(MAGIC);
+		data.writeInt(SERIALIZED_VERSION);
+		UUID uuid = ATNDeserializer.SERIALIZED_UUID;
+		data.writeLong(uuid.getMostSignificantBits());
+		data.writeLong(uuid.getLeastSignificantBits());
+		data.writeInt(atn.getSerializedChecksum());
+		data.writeInt(computeStructureHash(atn));
+		data.writeInt(atn.grammarType.ordinal());
+		data.writeInt(atn.maxTokenType);
+		data.writeInt(atn.states.size());
+		data.writeInt(atn.decisionToDFA.length);
+		data.writeInt(atn.modeToDFA.length);
+
+		writeContexts(data);
+		writeSemanticContexts(data);
+		writeLexerActionExecutors(data);
+
+		for (int i = 0; i < atn.decisionToDFA.length; i++) {
+			writeDFA(data, atn.decisionToDFA[i], decisionStates.get(i));
+		}
+
+		for (int i = 0; i < atn.modeToDFA.length; i++) {
+			writeDFA(data, atn.modeToDFA[i], modeStates.get(i));
+		}
+
+		long[] ll1Keys = atn.LL1Table.keys();
+		int[] ll1Alts = new int[ll1Keys.length];
+		int ll1Count = 0;
+		for (long key : ll1Keys) {
+			// skip the entries removed if the table is cleared concurrently
+			int alt = atn.LL1Table.get(key, ATN.INVALID_ALT_NUMBER);
+			if (alt != ATN.INVALID_ALT_NUMBER) {
+				ll1Keys[ll1Count] = key;
+				ll1Alts[ll1Count] = alt;
+				ll1Count++;
+			}
+		}
+
+		data.writeInt(ll1Count);
+		for (int i = 0; i < ll1Count; i++) {
+			data.writeLong(ll1Keys[i]);
+			data.writeInt(ll1Alts[i]);
+		}
+
+		data.flush();
+	}
+
+	/**
+	 * Computes a hash of the structure of an ATN. Two ATNs with the same
+	 * structure hash assign the same numbers to equivalent states, decisions
+	 * and modes, which is required for a DFA snapshot to be meaningful.
+	 */
+	/*package*/ static int computeStructureHash(@NotNull ATN atn) {
+		int hash = MurmurHash.initialize();
+		int count = 0;
+		hash = MurmurHash.update(hash, atn.grammarType.ordinal());
+		hash = MurmurHash.update(hash, atn.maxTokenType);
+		count += 2;
+		for (ATNState state : atn.states) {
+			if (state == null) {
+				hash = MurmurHash.update(hash, ATNState.INVALID_TYPE);
+				count++;
+				continue;
+			}
+
+			hash = MurmurHash.update(hash, state.getStateType());
+			hash = MurmurHash.update(hash, state.ruleIndex);
+			hash = MurmurHash.update(hash, state.getNumberOfOptimizedTransitions());
+			count += 3;
+			for (int i = 0; i < state.getNumberOfOptimizedTransitions(); i++) {
+				Transition transition = state.getOptimizedTransition(i);
+				hash = MurmurHash.update(hash, transition.getSerializationType());
+				hash = MurmurHash.update(hash, transition.target.stateNumber);
+				count += 2;
+			}
+		}
+
+		hash = MurmurHash.update(hash, atn.decisionToState.size());
+		hash = MurmurHash.update(hash, atn.modeToStartState.size());
+		count += 2;
+		return MurmurHash.finish(hash, count);
+	}
+
+	@NotNull
+	private List<DFAState> collectStates(@NotNull DFA dfa) {
+		List<DFAState> roots = new ArrayList<DFAState>(dfa.states.values());
+		roots.sort(STATE_NUMBER_ORDER);
+		if (dfa.isPrecedenceDfa()) {
+			roots.addAll(dfa.s0.get().getEdgeMap().values());
+			roots.addAll(dfa.s0full.get().getEdgeMap().values());
+		}
+		else {
+			roots.add(dfa.s0.get());
+			roots.add(dfa.s0full.get());
+		}
+
+		List<DFAState> result = new ArrayList<DFAState>();
+		Map<DFAState, Boolean> visited = new IdentityHashMap<DFAState, Boolean>();
+		Deque<DFAState> workList = new ArrayDeque<DFAState>();
+		for (DFAState root : roots) {
+			visitState(root, visited, result, workList);
+		}
+
+		while (!workList.isEmpty()) {
+			DFAState state = workList.pop();
+			for (DFAState target : state.getEdgeMap().values()) {
+				visitState(target, visited, result, workList);
+			}
+
+			for (DFAState target : state.getContextEdgeMap().values()) {
+				visitState(target, visited, result, workList);
+			}
+		}
+
+		for (DFAState state : result) {
+			registerConfigs(state.getConfigs());
+			AcceptStateInfo acceptStateInfo = state.getAcceptStateInfo();
+			if (acceptStateInfo != null) {
+				getLexerActionExecutorId(acceptStateInfo.getLexerActionExecutor());
+			}
+
+			if (state.predicates != null) {
+				for (DFAState.PredPrediction predicate : state.predicates) {
+					getSemanticContextId(predicate.pred);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static void visitState(DFAState state, Map<DFAState, Boolean> visited, List<DFAState> result, Deque<DFAState> workList) {
+		if (state == null || state == ATNSimulator.ERROR || visited.containsKey(state)) {
+			return;
+		}
+
+		visited.put(state, Boolean.TRUE);
+		result.add(state);
+		workList.add(state);
+	}
+
+	private void registerConfigs(@NotNull ATNConfigSet configs) {
+		for (ATNConfig config : configs) {
+			getContextId(config.getContext());
+			getSemanticContextId(config.getSemanticContext());
+			getLexerActionExecutorId(config.getLexerActionExecutor());
+		}
+	}
+
+	private int getContextId(@NotNull PredictionContext context) {
+		if (context == PredictionContext.EMPTY_LOCAL) {
+			return EMPTY_LOCAL_CONTEXT;
+		}
+		else if (context == PredictionContext.EMPTY_FULL) {
+			return EMPTY_FULL_CONTEXT;
+		}
+
+		Integer id = contextIds.get(context);
+		if (id != null) {
+			return id;
+		}
+
+		// parents are always written before the contexts referencing them
+		for (int i = 0; i < context.size(); i++) {
+			getContextId(context.getParent(i));
+		}
+
+		id = contexts.size() + 2;
+		contexts.add(context);
+		contextIds.put(context, id);
+		return id;
+	}
+
+	private int getSemanticContextId(@NotNull SemanticContext semanticContext) {
+		if (semanticContext == SemanticContext.NONE) {
+			return SEMANTIC_NONE;
+		}
+
+		Integer id = semanticContextIds.get(semanticContext);
+		if (id != null) {
+			return id;
+		}
+
+		if (semanticContext instanceof SemanticContext.Operator) {
+			for (SemanticContext operand : ((SemanticContext.Operator)semanticContext).getOperands()) {
+				getSemanticContextId(operand);
+			}
+		}
+
+		id = semanticContexts.size() + 1;
+		semanticContexts.add(semanticContext);
+		semanticContextIds.put(semanticContext, id);
+		return id;
+	}
+
+	private int getLexerActionExecutorId(LexerActionExecutor lexerActionExecutor) {
+		if (lexerActionExecutor == null) {
+			return -1;
+		}
+
+		Integer id = lexerActionExecutorIds.get(lexerActionExecutor);
+		if (id != null) {
+			return id;
+		}
+
+		id = lexerActionExecutors.size();
+		lexerActionExecutors.add(lexerActionExecutor);
+		lexerActionExecutorIds.put(lexerActionExecutor, id);
+		return id;
+	}
+
+	private void writeContexts(@NotNull DataOutputStream data) throws IOException {
+		data.writeInt(contexts.size());
+		for (PredictionContext context : contexts) {
+			data.writeInt(context.size());
+			for (int i = 0; i < context.size(); i++) {
+				data.writeInt(getContextId(context.getParent(i)));
+				data.writeInt(context.getReturnState(i));
+			}
+		}
+	}
+
+	private void writeSemanticContexts(@NotNull DataOutputStream data) throws IOException {
+		data.writeInt(semanticContexts.size());
+		for (SemanticContext semanticContext : semanticContexts) {
+			if (semanticContext instanceof SemanticContext.Predicate) {
+				SemanticContext.Predicate predicate = (SemanticContext.Predicate)semanticContext;
+				data.writeByte(SEMANTIC_PREDICATE);
+				data.writeInt(predicate.ruleIndex);
+				data.writeInt(predicate.predIndex);
+				data.writeBoolean(predicate.isCtxDependent);
+			}
+			else if (semanticContext instanceof SemanticContext.PrecedencePredicate) {
+				data.writeByte(SEMANTIC_PRECEDENCE);
+				data.writeInt(((SemanticContext.PrecedencePredicate)semanticContext).precedence);
+			}
+			else if (semanticContext instanceof SemanticContext.AND || semanticContext instanceof SemanticContext.OR) {
+				data.writeByte(semanticContext instanceof SemanticContext.AND ? SEMANTIC_AND : SEMANTIC_OR);
+				SemanticContext[] operands = semanticContext instanceof SemanticContext.AND
+					? ((SemanticContext.AND)semanticContext).opnds
+					: ((SemanticContext.OR)semanticContext).opnds;
+				data.writeInt(operands.length);
+				for (SemanticContext operand : operands) {
+					data.writeInt(getSemanticContextId(operand));
+				}
+			}
+			else {
+				throw new NotSerializableException("Unsupported semantic context type: " + semanticContext.getClass().getName());
+			}
+		}
+	}
+
+	private void writeLexerActionExecutors(@NotNull DataOutputStream data) throws IOException {
+		data.writeInt(lexerActionExecutors.size());
+		for (LexerActionExecutor lexerActionExecutor : lexerActionExecutors) {
+			LexerAction[] lexerActions = lexerActionExecutor.getLexerActions();
+			data.writeInt(lexerActions.length);
+			for (LexerAction lexerAction : lexerActions) {
+				if (lexerAction instanceof LexerIndexedCustomAction) {
+					LexerIndexedCustomAction indexedAction = (LexerIndexedCustomAction)lexerAction;
+					data.writeInt(indexedAction.getOffset());
+					data.writeInt(getLexerActionIndex(indexedAction.getAction()));
+				}
+				else {
+					data.writeInt(-1);
+					data.writeInt(getLexerActionIndex(lexerAction));
+				}
+			}
+		}
+	}
+
+	private int getLexerActionIndex(@NotNull LexerAction lexerAction) throws NotSerializableException {
+		Integer index = lexerActionIndexes.get(lexerAction);
+		if (index == null) {
+			throw new NotSerializableException("The lexer action " + lexerAction + " is not defined by the ATN.");
+		}
+
+		return index;
+	}
+
+	private void writeDFA(@NotNull DataOutputStream data, @NotNull DFA dfa, @NotNull List<DFAState> states) throws IOException {
+		Map<DFAState, Integer> stateIds = new IdentityHashMap<DFAState, Integer>();
+		for (DFAState state : states) {
+			stateIds.put(state, stateIds.size());
+		}
+
+		data.writeInt(states.size());
+		for (DFAState state : states) {
+			data.writeBoolean(dfa.states.get(state) == state);
+			writeConfigs(data, state.getConfigs());
+
+			AcceptStateInfo acceptStateInfo = state.getAcceptStateInfo();
+			data.writeBoolean(acceptStateInfo != null);
+			if (acceptStateInfo != null) {
+				data.writeInt(acceptStateInfo.getPrediction());
+				data.writeInt(getLexerActionExecutorId(acceptStateInfo.getLexerActionExecutor()));
+			}
+
+			DFAState.PredPrediction[] predicates = state.predicates;
+			data.writeInt(predicates != null ? predicates.length : -1);
+			if (predicates != null) {
+				for (DFAState.PredPrediction predicate : predicates) {
+					data.writeInt(getSemanticContextId(predicate.pred));
+					data.writeInt(predicate.alt);
+				}
+			}
+
+			data.writeBoolean(state.isContextSensitive());
+			if (state.isContextSensitive()) {
+				List<Integer> contextSymbols = new ArrayList<Integer>();
+				for (int symbol = dfa.getMinDfaEdge(); symbol <= dfa.getMaxDfaEdge(); symbol++) {
+					if (state.isContextSymbol(symbol)) {
+						contextSymbols.add(symbol);
+					}
+				}
+
+				data.writeInt(contextSymbols.size());
+				for (int symbol : contextSymbols) {
+					data.writeInt(symbol);
+				}
+			}
+		}
+
+		for (DFAState state : states) {
+			writeEdges(data, state.getEdgeMap(), stateIds);
+			writeEdges(data, state.getContextEdgeMap(), stateIds);
+		}
+
+		if (dfa.isPrecedenceDfa()) {
+			writeEdges(data, dfa.s0.get().getEdgeMap(), stateIds);
+			writeEdges(data, dfa.s0full.get().getEdgeMap(), stateIds);
+		}
+		else {
+			data.writeInt(getStateId(dfa.s0.get(), stateIds));
+			data.writeInt(getStateId(dfa.s0full.get(), stateIds));
+		}
+	}
+
+	private void writeConfigs(@NotNull DataOutputStream data, @NotNull ATNConfigSet configs) throws IOException {
+		int flags = 0;
+		if (configs.isOutermostConfigSet()) {
+			flags |= CONFIG_SET_OUTERMOST;
+		}
+
+		if (configs.hasSemanticContext()) {
+			flags |= CONFIG_SET_HAS_SEMANTIC_CONTEXT;
+		}
+
+		ConflictInfo conflictInfo = configs.getConflictInfo();
+		if (conflictInfo != null) {
+			flags |= CONFIG_SET_CONFLICT;
+			if (conflictInfo.isExact()) {
+				flags |= CONFIG_SET_EXACT_CONFLICT;
+			}
+		}
+
+		if (configs instanceof OrderedATNConfigSet) {
+			flags |= CONFIG_SET_ORDERED;
+		}
+
+		data.writeByte(flags);
+		if (conflictInfo != null) {
+			writeBitSet(data, conflictInfo.getConflictedAlts());
+		}
+
+		data.writeInt(configs.size());
+		for (ATNConfig config : configs) {
+			data.writeInt(config.getState().stateNumber);
+			data.writeInt(config.getAlt());
+			data.writeInt(config.getOuterContextDepth());
+			int configFlags = 0;
+			if (config.isPrecedenceFilterSuppressed()) {
+				configFlags |= CONFIG_PRECEDENCE_FILTER_SUPPRESSED;
+			}
+
+			if (config.hasPassedThroughNonGreedyDecision()) {
+				configFlags |= CONFIG_PASSED_THROUGH_NON_GREEDY;
+			}
+
+			data.writeByte(configFlags);
+			data.writeInt(getContextId(config.getContext()));
+			data.writeInt(getSemanticContextId(config.getSemanticContext()));
+			data.writeInt(getLexerActionExecutorId(config.getLexerActionExecutor()));
+		}
+	}
+
+	private static void writeBitSet(@NotNull DataOutputStream data, @NotNull BitSet bits) throws IOException {
+		long[] words = bits.toLongArray();
+		data.writeInt(words.length);
+		for (long word : words) {
+			data.writeLong(word);
+		}
+	}
+
+	private static void writeEdges(@NotNull DataOutputStream data, @NotNull Map<Integer, DFAState> edges, @NotNull Map<DFAState, Integer> stateIds) throws IOException {
+		data.writeInt(edges.size());
+		for (Map.Entry<Integer, DFAState> entry : edges.entrySet()) {
+			data.writeInt(entry.getKey());
+			data.writeInt(getStateId(entry.getValue(), stateIds));
+		}
+	}
+
+	private static int getStateId(DFAState state, @NotNull Map<DFAState, Integer> stateIds) {
+		if (state == null) {
+			return NO_STATE;
+		}
+		else if (state == ATNSimulator.ERROR) {
+			return ERROR_STATE;
+		}
+
+		return stateIds.get(state);
+	}
+}
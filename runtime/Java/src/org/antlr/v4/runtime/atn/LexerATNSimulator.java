@@ -13,7 +13,9 @@ import org.antlr.v4.runtime.LexerNoViableAltException;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.dfa.AcceptStateInfo;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFASingleFlight;
 import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.FrozenDFA;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
@@ -30,6 +32,13 @@ public class LexerATNSimulator extends ATNSimulator {
 	public static final int MAX_DFA_EDGE = Character.MAX_CODE_POINT;
 
 	public boolean optimize_tail_calls = true;
+	/**
+	 * When {@code true}, tokens are matched by following the edges of the
+	 * {@link FrozenDFA} of the current mode before using its mutable DFA.
+	 *
+	 * @see DFA#freeze
+	 */
+	public boolean use_frozen_dfa = true;
 
 	/** When we hit an accept state in either the DFA or the ATN, we
 	 *  have to notify the character stream to start buffering characters
@@ -162,9 +171,9 @@ public class LexerATNSimulator extends ATNSimulator {
 	}
 
 	protected int execATN(@NotNull CharStream input, @NotNull DFAState ds0) {
-		//System.out.println("enter exec index "+input.index()+" from "+ds0.configs);
+		//System.out.println("enter exec index "+input.index()+" from "+ds0.getConfigs());
 		if ( debug ) {
-			System.out.format(Locale.getDefault(), "start state closure=%s\n", ds0.configs);
+			System.out.format(Locale.getDefault(), "start state closure=%s\n", ds0.getConfigs());
 		}
 
 		if (ds0.isAcceptState()) {
@@ -176,9 +185,42 @@ public class LexerATNSimulator extends ATNSimulator {
 		@NotNull
 		DFAState s = ds0; // s is current/from DFA state
 
+		FrozenDFA frozenDFA = use_frozen_dfa && !debug ? atn.modeToDFA[mode].getFrozenDFA() : null;
+		if (frozenDFA != null) {
+			int id = frozenDFA.getStateId(s);
+			while (id >= 0) {
+				int target = frozenDFA.getTarget(id, t);
+				if (target == FrozenDFA.ERROR_STATE) {
+					return failOrAccept(prevAccept, input, frozenDFA.getState(id), t);
+				}
+
+				if (target == FrozenDFA.UNKNOWN_STATE) {
+					// continue with the mutable DFA, which computes the edge
+					s = frozenDFA.getState(id);
+					break;
+				}
+
+				frozenDFA.markReferenced(target);
+
+				if (t != IntStream.EOF) {
+					consume(input);
+				}
+
+				if (frozenDFA.isAcceptState(target)) {
+					captureSimState(prevAccept, input, frozenDFA.getState(target));
+					if (t == IntStream.EOF) {
+						return failOrAccept(prevAccept, input, frozenDFA.getState(id), t);
+					}
+				}
+
+				t = input.LA(1);
+				id = target;
+			}
+		}
+
 		while ( true ) { // while more work
 			if ( debug ) {
-				System.out.format(Locale.getDefault(), "execATN loop starting closure: %s\n", s.configs);
+				System.out.format(Locale.getDefault(), "execATN loop starting closure: %s\n", s.getConfigs());
 			}
 
 			// As we move src->trg, src->trg, we keep track of the previous trg to
@@ -200,13 +242,25 @@ public class LexerATNSimulator extends ATNSimulator {
 			// that already has lots of edges out of it. e.g., .* in comments.
 			DFAState target = getExistingTargetState(s, t);
 			if (target == null) {
-				target = computeTargetState(input, s, t);
+				// Edges on EOF are not added to the DFA, so there is nothing to
+				// share with other threads
+				DFASingleFlight singleFlight = t != IntStream.EOF ? atn.getDFASingleFlight() : null;
+				if (singleFlight != null) {
+					final DFAState source = s;
+					final int symbol = t;
+					target = singleFlight.computeTarget(s, t, () -> computeTargetState(input, source, symbol));
+				}
+				else {
+					target = computeTargetState(input, s, t);
+				}
 			}
 
 			if (target == ERROR) {
 				break;
 			}
 
+			target.markReferenced();
+
 			// If this is a consumable input element, make sure to consume before
 			// capturing the accept state so the input index, line, and char
 			// position accurately reflect the state of the interpreter at the
@@ -226,7 +280,7 @@ public class LexerATNSimulator extends ATNSimulator {
 			s = target; // flip; current DFA target becomes new src/from state
 		}
 
-		return failOrAccept(prevAccept, input, s.configs, t);
+		return failOrAccept(prevAccept, input, s, t);
 	}
 
 	/**
@@ -269,7 +323,7 @@ public class LexerATNSimulator extends ATNSimulator {
 
 		// if we don't find an existing DFA state
 		// Fill reach starting from closure, following t transitions
-		getReachableConfigSet(input, s.configs, reach, t);
+		getReachableConfigSet(input, s.getConfigs(), reach, t);
 
 		if ( reach.isEmpty() ) { // we got nowhere on t from s
 			if (!reach.hasSemanticContext()) {
@@ -286,6 +340,19 @@ public class LexerATNSimulator extends ATNSimulator {
 		return addDFAEdge(s, t, reach);
 	}
 
+	/**
+	 * Accepts the token matched by {@code prevAccept}, or reports an error
+	 * with the configurations of {@code s}, the last state reached by the
+	 * DFA. The configurations are only needed for the error, so they are not
+	 * recomputed if they were released for an accepted token.
+	 */
+	protected int failOrAccept(SimState prevAccept, CharStream input,
+							   @NotNull DFAState s, int t)
+	{
+		ATNConfigSet reach = prevAccept.dfaState == null ? s.getConfigs() : null;
+		return failOrAccept(prevAccept, input, reach, t);
+	}
+
 	protected int failOrAccept(SimState prevAccept, CharStream input,
 							   ATNConfigSet reach, int t)
 	{
@@ -19,7 +19,9 @@ import org.antlr.v4.runtime.Vocabulary;
 import org.antlr.v4.runtime.VocabularyImpl;
 import org.antlr.v4.runtime.dfa.AcceptStateInfo;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFASingleFlight;
 import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.FrozenDFA;
 import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.Interval;
 import org.antlr.v4.runtime.misc.NotNull;
@@ -294,6 +296,13 @@ public class ParserATNSimulator extends ATNSimulator {
 	public boolean enable_global_context_dfa = false;
 	public boolean optimize_unique_closure = true;
 	public boolean optimize_ll1 = true;
+	/**
+	 * When {@code true}, SLL prediction follows the edges of the
+	 * {@link FrozenDFA} of a decision before using its mutable DFA.
+	 *
+	 * @see DFA#freeze
+	 */
+	public boolean use_frozen_dfa = true;
 	/**
 	 * @deprecated This flag is not currently used by the ATN simulator.
 	 */
@@ -327,6 +336,40 @@ public class ParserATNSimulator extends ATNSimulator {
 
 	private DFA dfa;
 
+	/**
+	 * The largest number of configurations in a scratch configuration set or
+	 * closure-busy set which is kept for reuse. Larger sets are left to the
+	 * garbage collector so clearing them does not cost more than it saves.
+	 */
+	private static final int MAX_SCRATCH_SIZE = 256;
+
+	/**
+	 * Cleared configuration sets which are reused for the intermediate
+	 * results of closure and reach operations, so an ATN step mostly
+	 * allocates only the sets which are added to the DFA. When
+	 * {@link #optimize_unique_closure} lets {@link #computeReachSet} return
+	 * the intermediate set itself, that set becomes the configurations of a
+	 * DFA state; it is kept and must never be returned to the pool. Like the
+	 * rest of the simulator state, these sets are only used by the thread
+	 * running the owning parser.
+	 */
+	private final ArrayList<ATNConfigSet> scratchConfigSets = new ArrayList<ATNConfigSet>();
+
+	/**
+	 * A cleared closure-busy set which is reused by the next closure
+	 * operation, or {@code null} if it is in use.
+	 */
+	@Nullable
+	private Set<ATNConfig> scratchClosureBusy = new HashSet<ATNConfig>();
+
+	/**
+	 * A cleared context cache which is reused by the next call to
+	 * {@link #execATN} or {@link #computeStartState}, or {@code null} if it is
+	 * in use.
+	 */
+	@Nullable
+	private PredictionContextCache scratchContextCache = new PredictionContextCache();
+
 	/** Testing only! */
 	public ParserATNSimulator(@NotNull ATN atn) {
 		this(null, atn);
@@ -350,6 +393,14 @@ public class ParserATNSimulator extends ATNSimulator {
 	public void reset() {
 	}
 
+	/**
+	 * Gets the key of {@link ATN#LL1Table} for a decision and its first
+	 * lookahead symbol.
+	 */
+	protected static long getLL1Key(int decision, int symbol) {
+		return ((long)decision << 32) | (symbol & 0xFFFFFFFFL);
+	}
+
 	public int adaptivePredict(@NotNull TokenStream input, int decision,
 							   @Nullable ParserRuleContext outerContext)
 	{
@@ -364,13 +415,9 @@ public class ParserATNSimulator extends ATNSimulator {
 		DFA dfa = atn.decisionToDFA[decision];
 		assert dfa != null;
 		if (optimize_ll1 && !dfa.isPrecedenceDfa() && !dfa.isEmpty()) {
-			int ll_1 = input.LA(1);
-			if (ll_1 >= 0 && ll_1 <= Short.MAX_VALUE) {
-				int key = (decision << 16) + ll_1;
-				Integer alt = atn.LL1Table.get(key);
-				if (alt != null) {
-					return alt;
-				}
+			int alt = atn.LL1Table.get(getLL1Key(decision, input.LA(1)), ATN.INVALID_ALT_NUMBER);
+			if (alt != ATN.INVALID_ALT_NUMBER) {
+				return alt;
 			}
 		}
 
@@ -483,10 +530,41 @@ public class ParserATNSimulator extends ATNSimulator {
 											", outerContext="+outerContext.toString(parser));
 		if ( dfa_debug ) System.out.print(dfa.toString(parser.getVocabulary(), parser.getRuleNames()));
 		DFAState s = state.s0;
+		s.markReferenced();
 
 		int t = input.LA(1);
 		ParserRuleContext remainingOuterContext = state.remainingOuterContext;
 
+		FrozenDFA frozenDFA = use_frozen_dfa && !state.useContext && !dfa_debug ? dfa.getFrozenDFA() : null;
+		if (frozenDFA != null) {
+			int id = frozenDFA.getStateId(s);
+			if (id >= 0) {
+				// Follow the frozen edges until reaching an accept state or an
+				// edge which is not frozen, which the loop below handles like
+				// any other state
+				while (!frozenDFA.isAcceptState(id)) {
+					int target = frozenDFA.getTarget(id, t);
+					if (target < 0) {
+						break;
+					}
+
+					id = target;
+					frozenDFA.markReferenced(id);
+					if (!frozenDFA.isAcceptState(id) && t != IntStream.EOF) {
+						input.consume();
+						t = input.LA(1);
+					}
+				}
+
+				int prediction = frozenDFA.getPrediction(id);
+				if (prediction != ATN.INVALID_ALT_NUMBER) {
+					return prediction;
+				}
+
+				s = frozenDFA.getState(id);
+			}
+		}
+
 		while ( true ) {
 			if ( dfa_debug ) System.out.println("DFA state "+s.stateNumber+" LA(1)=="+getLookaheadName(input));
 			if ( state.useContext ) {
@@ -506,6 +584,7 @@ public class ParserATNSimulator extends ATNSimulator {
 					assert remainingOuterContext != null;
 					remainingOuterContext = remainingOuterContext.getParent();
 					s = next;
+					s.markReferenced();
 				}
 			}
 
@@ -555,6 +634,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				return handleNoViableAlt(input, startIndex, errorState);
 			}
 			s = target;
+			s.markReferenced();
 			if (!isAcceptState(s, state.useContext) && t != IntStream.EOF) {
 				input.consume();
 				t = input.LA(1);
@@ -565,10 +645,10 @@ public class ParserATNSimulator extends ATNSimulator {
 //			return -1;
 //		}
 
-		if ( !state.useContext && s.configs.getConflictInfo()!=null ) {
+		if ( !state.useContext && s.getConfigs().getConflictInfo()!=null ) {
 			if ( dfa.atnStartState instanceof DecisionState ) {
 				if (!userWantsCtxSensitive ||
-					(!s.configs.getDipsIntoOuterContext() && s.configs.isExactConflict()) ||
+					(!s.getConfigs().getDipsIntoOuterContext() && s.getConfigs().isExactConflict()) ||
 					(treat_sllk1_conflict_as_ambiguity && input.index() == startIndex))
 				{
 					// we don't report the ambiguity again
@@ -625,7 +705,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			BitSet alts = evalSemanticContext(predicates, outerContext, reportAmbiguities && predictionMode == PredictionMode.LL_EXACT_AMBIG_DETECTION);
 			switch (alts.cardinality()) {
 			case 0:
-				throw noViableAlt(input, outerContext, s.configs, startIndex);
+				throw noViableAlt(input, outerContext, s.getConfigs(), startIndex);
 
 			case 1:
 				return alts.nextSetBit(0);
@@ -637,7 +717,7 @@ public class ParserATNSimulator extends ATNSimulator {
 					input.seek(stopIndex);
 				}
 
-				reportAmbiguity(dfa, s, startIndex, stopIndex, s.configs.isExactConflict(), alts, s.configs);
+				reportAmbiguity(dfa, s, startIndex, stopIndex, s.getConfigs().isExactConflict(), alts, s.getConfigs());
 				return alts.nextSetBit(0);
 			}
 		}
@@ -675,14 +755,14 @@ public class ParserATNSimulator extends ATNSimulator {
 			return false;
 		}
 
-		if (state.configs.getConflictingAlts() == null) {
+		if (state.getConfigs().getConflictingAlts() == null) {
 			// unambiguous
 			return true;
 		}
 
 		// More picky when we need exact conflicts
 		if (useContext && predictionMode == PredictionMode.LL_EXACT_AMBIG_DETECTION) {
-			return state.configs.isExactConflict();
+			return state.getConfigs().isExactConflict();
 		}
 
 		return true;
@@ -737,6 +817,25 @@ public class ParserATNSimulator extends ATNSimulator {
 	{
 		if ( debug ) System.out.println("execATN decision "+dfa.decision+" exec LA(1)=="+ getLookaheadName(input));
 
+		PredictionContextCache contextCache = acquireContextCache();
+		try {
+			return execATN(dfa, input, startIndex, initialState, contextCache);
+		}
+		finally {
+			releaseContextCache(contextCache);
+		}
+	}
+
+	/**
+	 * Performs the work of {@link #execATN(DFA, TokenStream, int, SimulatorState)}
+	 * using {@code contextCache} for the prediction contexts created along
+	 * the way.
+	 */
+	protected int execATN(@NotNull DFA dfa,
+					   @NotNull TokenStream input, int startIndex,
+					   @NotNull SimulatorState initialState,
+					   @NotNull PredictionContextCache contextCache)
+	{
 		final ParserRuleContext outerContext = initialState.outerContext;
 		final boolean useContext = initialState.useContext;
 
@@ -744,7 +843,6 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		SimulatorState previous = initialState;
 
-		PredictionContextCache contextCache = new PredictionContextCache();
 		while (true) { // while more work
 			SimulatorState nextState = computeReachSet(dfa, previous, t, contextCache);
 			if (nextState == null) {
@@ -753,14 +851,15 @@ public class ParserATNSimulator extends ATNSimulator {
 			}
 
 			DFAState D = nextState.s0;
+			D.markReferenced();
 
 			// predicted alt => accept state
 			assert D.isAcceptState() || D.getPrediction() == ATN.INVALID_ALT_NUMBER;
 			// conflicted => accept state
-			assert D.isAcceptState() || D.configs.getConflictInfo() == null;
+			assert D.isAcceptState() || D.getConfigs().getConflictInfo() == null;
 
 			if (isAcceptState(D, useContext)) {
-				BitSet conflictingAlts = D.configs.getConflictingAlts();
+				BitSet conflictingAlts = D.getConfigs().getConflictingAlts();
 				int predictedAlt = conflictingAlts == null ? D.getPrediction() : ATN.INVALID_ALT_NUMBER;
 				if ( predictedAlt!=ATN.INVALID_ALT_NUMBER ) {
 					if (optimize_ll1
@@ -768,12 +867,9 @@ public class ParserATNSimulator extends ATNSimulator {
 						&& !dfa.isPrecedenceDfa()
 						&& nextState.outerContext == nextState.remainingOuterContext
 						&& dfa.decision >= 0
-						&& !D.configs.hasSemanticContext())
+						&& !D.getConfigs().hasSemanticContext())
 					{
-						if (t >= 0 && t <= Short.MAX_VALUE) {
-							int key = (dfa.decision << 16) + t;
-							atn.LL1Table.put(key, predictedAlt);
-						}
+						atn.LL1Table.put(getLL1Key(dfa.decision, t), predictedAlt);
 					}
 
 					if (useContext && always_try_local_context) {
@@ -789,11 +885,11 @@ public class ParserATNSimulator extends ATNSimulator {
 					// Only exact conflicts are known to be ambiguous when local
 					// prediction does not step out of the decision rule.
 					attemptFullContext = !useContext
-						&& (D.configs.getDipsIntoOuterContext() || !D.configs.isExactConflict())
+						&& (D.getConfigs().getDipsIntoOuterContext() || !D.getConfigs().isExactConflict())
 						&& (!treat_sllk1_conflict_as_ambiguity || input.index() != startIndex);
 				}
 
-				if ( D.configs.hasSemanticContext() ) {
+				if ( D.getConfigs().hasSemanticContext() ) {
 					DFAState.PredPrediction[] predPredictions = D.predicates;
 					if (predPredictions != null) {
 						int conflictIndex = input.index();
@@ -805,7 +901,7 @@ public class ParserATNSimulator extends ATNSimulator {
 						conflictingAlts = evalSemanticContext(predPredictions, outerContext, attemptFullContext || reportAmbiguities);
 						switch (conflictingAlts.cardinality()) {
 						case 0:
-							throw noViableAlt(input, outerContext, D.configs, startIndex);
+							throw noViableAlt(input, outerContext, D.getConfigs(), startIndex);
 
 						case 1:
 							return conflictingAlts.nextSetBit(0);
@@ -825,7 +921,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				if (!attemptFullContext) {
 					if (conflictingAlts != null) {
 						if (reportAmbiguities && conflictingAlts.cardinality() > 1) {
-							reportAmbiguity(dfa, D, startIndex, input.index(), D.configs.isExactConflict(), conflictingAlts, D.configs);
+							reportAmbiguity(dfa, D, startIndex, input.index(), D.getConfigs().isExactConflict(), conflictingAlts, D.getConfigs());
 						}
 
 						predictedAlt = conflictingAlts.nextSetBit(0);
@@ -919,7 +1015,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		if (previous.s0 != null) {
 			BitSet alts = new BitSet();
 			int maxAlt = 0;
-			for (ATNConfig config : previous.s0.configs) {
+			for (ATNConfig config : previous.s0.getConfigs()) {
 				if (config.getReachesIntoOuterContext() || config.getState() instanceof RuleStopState) {
 					alts.set(config.getAlt());
 					maxAlt = Math.max(maxAlt, config.getAlt());
@@ -934,7 +1030,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				return alts.nextSetBit(0);
 
 			default:
-				if (!previous.s0.configs.hasSemanticContext()) {
+				if (!previous.s0.getConfigs().hasSemanticContext()) {
 					// configs doesn't contain any predicates, so the predicate
 					// filtering code below would be pointless
 					return alts.nextSetBit(0);
@@ -945,7 +1041,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				 * context, but also isn't eliminated by a predicate.
 				 */
 				ATNConfigSet filteredConfigs = new ATNConfigSet();
-				for (ATNConfig config : previous.s0.configs) {
+				for (ATNConfig config : previous.s0.getConfigs()) {
 					if (config.getReachesIntoOuterContext() || config.getState() instanceof RuleStopState) {
 						filteredConfigs.add(config);
 					}
@@ -981,7 +1077,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			}
 		}
 
-		throw noViableAlt(input, previous.outerContext, previous.s0.configs, startIndex);
+		throw noViableAlt(input, previous.outerContext, previous.s0.getConfigs(), startIndex);
 	}
 
 	protected SimulatorState computeReachSet(DFA dfa, SimulatorState previous, int t, PredictionContextCache contextCache) {
@@ -1016,16 +1112,25 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		DFAState target = getExistingTargetState(s0, t);
 		if (target == null) {
-			Tuple2<DFAState, ParserRuleContext> result = computeTargetState(dfa, s0, remainingGlobalContext, t, useContext, contextCache);
-			target = result.getItem1();
-			remainingGlobalContext = result.getItem2();
+			DFASingleFlight singleFlight = !useContext ? atn.getDFASingleFlight() : null;
+			if (singleFlight != null) {
+				// Without the full context, the target only depends on the edge
+				// and remainingGlobalContext is not updated
+				final ParserRuleContext outerContext = remainingGlobalContext;
+				target = singleFlight.computeTarget(s0, t, () -> computeTargetState(dfa, s0, outerContext, t, false, contextCache).getItem1());
+			}
+			else {
+				Tuple2<DFAState, ParserRuleContext> result = computeTargetState(dfa, s0, remainingGlobalContext, t, useContext, contextCache);
+				target = result.getItem1();
+				remainingGlobalContext = result.getItem2();
+			}
 		}
 
 		if (target == ERROR) {
 			return null;
 		}
 
-		assert !useContext || !target.configs.getDipsIntoOuterContext();
+		assert !useContext || !target.getConfigs().getDipsIntoOuterContext();
 		return new SimulatorState(previous.outerContext, target, useContext, remainingGlobalContext);
 	}
 
@@ -1062,7 +1167,7 @@ public class ParserATNSimulator extends ATNSimulator {
 	 */
 	@NotNull
 	protected Tuple2<DFAState, ParserRuleContext> computeTargetState(@NotNull DFA dfa, @NotNull DFAState s, ParserRuleContext remainingGlobalContext, int t, boolean useContext, PredictionContextCache contextCache) {
-		List<ATNConfig> closureConfigs = new ArrayList<ATNConfig>(s.configs);
+		List<ATNConfig> closureConfigs = new ArrayList<ATNConfig>(s.getConfigs());
 		IntegerList contextElements = null;
 		ATNConfigSet reach = new ATNConfigSet();
 		boolean stepIntoGlobal;
@@ -1072,7 +1177,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				reach.setOutermostConfigSet(true);
 			}
 
-			ATNConfigSet reachIntermediate = new ATNConfigSet();
+			ATNConfigSet reachIntermediate = acquireScratchConfigSet();
 
 			/* Configurations already in a rule stop state indicate reaching the end
 			 * of the decision rule (local context) or end of the start rule (full
@@ -1123,6 +1228,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			 * withheld in skippedStopStates, or when the current symbol is EOF.
 			 */
 			if (optimize_unique_closure && skippedStopStates == null && t != Token.EOF && reachIntermediate.getUniqueAlt() != ATN.INVALID_ALT_NUMBER) {
+				// the scratch set becomes the result, so it is not released
 				reachIntermediate.setOutermostConfigSet(reach.isOutermostConfigSet());
 				reach = reachIntermediate;
 				break;
@@ -1134,6 +1240,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			final boolean collectPredicates = false;
 			boolean treatEofAsEpsilon = t == Token.EOF;
 			closure(reachIntermediate, reach, collectPredicates, hasMoreContext, contextCache, treatEofAsEpsilon);
+			releaseScratchConfigSet(reachIntermediate);
 			stepIntoGlobal = reach.getDipsIntoOuterContext();
 
 			if (t == IntStream.EOF) {
@@ -1254,129 +1361,135 @@ public class ParserATNSimulator extends ATNSimulator {
 		int previousContext = 0;
 		ParserRuleContext remainingGlobalContext = globalContext;
 		PredictionContext initialContext = useContext ? PredictionContext.EMPTY_FULL : PredictionContext.EMPTY_LOCAL; // always at least the implicit call to start rule
-		PredictionContextCache contextCache = new PredictionContextCache();
-		if (useContext) {
-			if (!enable_global_context_dfa) {
-				while (remainingGlobalContext != null) {
+		PredictionContextCache contextCache = acquireContextCache();
+		try {
+			if (useContext) {
+				if (!enable_global_context_dfa) {
+					while (remainingGlobalContext != null) {
+						if (remainingGlobalContext.isEmpty()) {
+							previousContext = PredictionContext.EMPTY_FULL_STATE_KEY;
+							remainingGlobalContext = null;
+						}
+						else {
+							previousContext = getReturnState(remainingGlobalContext);
+							initialContext = initialContext.appendContext(previousContext, contextCache);
+							remainingGlobalContext = remainingGlobalContext.getParent();
+						}
+					}
+				}
+
+				while (s0 != null && s0.isContextSensitive() && remainingGlobalContext != null) {
+					DFAState next;
+					remainingGlobalContext = skipTailCalls(remainingGlobalContext);
 					if (remainingGlobalContext.isEmpty()) {
+						next = s0.getContextTarget(PredictionContext.EMPTY_FULL_STATE_KEY);
 						previousContext = PredictionContext.EMPTY_FULL_STATE_KEY;
 						remainingGlobalContext = null;
 					}
 					else {
 						previousContext = getReturnState(remainingGlobalContext);
+						next = s0.getContextTarget(previousContext);
 						initialContext = initialContext.appendContext(previousContext, contextCache);
 						remainingGlobalContext = remainingGlobalContext.getParent();
 					}
-				}
-			}
 
-			while (s0 != null && s0.isContextSensitive() && remainingGlobalContext != null) {
-				DFAState next;
-				remainingGlobalContext = skipTailCalls(remainingGlobalContext);
-				if (remainingGlobalContext.isEmpty()) {
-					next = s0.getContextTarget(PredictionContext.EMPTY_FULL_STATE_KEY);
-					previousContext = PredictionContext.EMPTY_FULL_STATE_KEY;
-					remainingGlobalContext = null;
-				}
-				else {
-					previousContext = getReturnState(remainingGlobalContext);
-					next = s0.getContextTarget(previousContext);
-					initialContext = initialContext.appendContext(previousContext, contextCache);
-					remainingGlobalContext = remainingGlobalContext.getParent();
-				}
+					if (next == null) {
+						break;
+					}
 
-				if (next == null) {
-					break;
+					s0 = next;
 				}
-
-				s0 = next;
 			}
-		}
 
-		if (s0 != null && !s0.isContextSensitive()) {
-			return new SimulatorState(globalContext, s0, useContext, remainingGlobalContext);
-		}
-
-		ATNConfigSet configs = new ATNConfigSet();
-		while (true) {
-			ATNConfigSet reachIntermediate = new ATNConfigSet();
-			int n = p.getNumberOfTransitions();
-			for (int ti=0; ti<n; ti++) {
-				// for each transition
-				ATNState target = p.transition(ti).target;
-				reachIntermediate.add(ATNConfig.create(target, ti + 1, initialContext));
+			if (s0 != null && !s0.isContextSensitive()) {
+				return new SimulatorState(globalContext, s0, useContext, remainingGlobalContext);
 			}
 
-			boolean hasMoreContext = remainingGlobalContext != null;
-			if (!hasMoreContext) {
-				configs.setOutermostConfigSet(true);
-			}
+			ATNConfigSet configs = new ATNConfigSet();
+			while (true) {
+				ATNConfigSet reachIntermediate = acquireScratchConfigSet();
+				int n = p.getNumberOfTransitions();
+				for (int ti=0; ti<n; ti++) {
+					// for each transition
+					ATNState target = p.transition(ti).target;
+					reachIntermediate.add(ATNConfig.create(target, ti + 1, initialContext));
+				}
 
-			final boolean collectPredicates = true;
-			closure(reachIntermediate, configs, collectPredicates, hasMoreContext, contextCache, false);
-			boolean stepIntoGlobal = configs.getDipsIntoOuterContext();
+				boolean hasMoreContext = remainingGlobalContext != null;
+				if (!hasMoreContext) {
+					configs.setOutermostConfigSet(true);
+				}
 
-			DFAState next;
-			if (useContext && !enable_global_context_dfa) {
-				s0 = addDFAState(dfa, configs, contextCache);
-				break;
-			}
-			else if (s0 == null) {
-				if (!dfa.isPrecedenceDfa()) {
-					AtomicReference<DFAState> reference = useContext ? dfa.s0full : dfa.s0;
-					next = addDFAState(dfa, configs, contextCache);
-					if (!reference.compareAndSet(null, next)) {
-						next = reference.get();
+				final boolean collectPredicates = true;
+				closure(reachIntermediate, configs, collectPredicates, hasMoreContext, contextCache, false);
+				releaseScratchConfigSet(reachIntermediate);
+				boolean stepIntoGlobal = configs.getDipsIntoOuterContext();
+
+				DFAState next;
+				if (useContext && !enable_global_context_dfa) {
+					s0 = addDFAState(dfa, configs, contextCache);
+					break;
+				}
+				else if (s0 == null) {
+					if (!dfa.isPrecedenceDfa()) {
+						AtomicReference<DFAState> reference = useContext ? dfa.s0full : dfa.s0;
+						next = addDFAState(dfa, configs, contextCache);
+						if (!reference.compareAndSet(null, next)) {
+							next = reference.get();
+						}
+					}
+					else {
+						/* If this is a precedence DFA, we use applyPrecedenceFilter
+						 * to convert the computed start state to a precedence start
+						 * state. We then use DFA.setPrecedenceStartState to set the
+						 * appropriate start state for the precedence level rather
+						 * than simply setting DFA.s0.
+						 */
+						configs = applyPrecedenceFilter(configs, globalContext, contextCache);
+						next = addDFAState(dfa, configs, contextCache);
+						dfa.setPrecedenceStartState(parser.getPrecedence(), useContext, next);
 					}
 				}
 				else {
-					/* If this is a precedence DFA, we use applyPrecedenceFilter
-					 * to convert the computed start state to a precedence start
-					 * state. We then use DFA.setPrecedenceStartState to set the
-					 * appropriate start state for the precedence level rather
-					 * than simply setting DFA.s0.
-					 */
-					configs = applyPrecedenceFilter(configs, globalContext, contextCache);
+					if (dfa.isPrecedenceDfa()) {
+						configs = applyPrecedenceFilter(configs, globalContext, contextCache);
+					}
+
 					next = addDFAState(dfa, configs, contextCache);
-					dfa.setPrecedenceStartState(parser.getPrecedence(), useContext, next);
-				}
-			}
-			else {
-				if (dfa.isPrecedenceDfa()) {
-					configs = applyPrecedenceFilter(configs, globalContext, contextCache);
+					s0.setContextTarget(previousContext, next);
 				}
 
-				next = addDFAState(dfa, configs, contextCache);
-				s0.setContextTarget(previousContext, next);
-			}
+				s0 = next;
 
-			s0 = next;
+				if (!useContext || !stepIntoGlobal) {
+					break;
+				}
 
-			if (!useContext || !stepIntoGlobal) {
-				break;
-			}
+				// TODO: make sure it distinguishes empty stack states
+				next.setContextSensitive(atn);
 
-			// TODO: make sure it distinguishes empty stack states
-			next.setContextSensitive(atn);
+				configs.clear();
+				remainingGlobalContext = skipTailCalls(remainingGlobalContext);
+				int nextContextElement = getReturnState(remainingGlobalContext);
 
-			configs.clear();
-			remainingGlobalContext = skipTailCalls(remainingGlobalContext);
-			int nextContextElement = getReturnState(remainingGlobalContext);
+				if (remainingGlobalContext.isEmpty()) {
+					remainingGlobalContext = null;
+				} else {
+					remainingGlobalContext = remainingGlobalContext.getParent();
+				}
 
-			if (remainingGlobalContext.isEmpty()) {
-				remainingGlobalContext = null;
-			} else {
-				remainingGlobalContext = remainingGlobalContext.getParent();
-			}
+				if (nextContextElement != PredictionContext.EMPTY_FULL_STATE_KEY) {
+					initialContext = initialContext.appendContext(nextContextElement, contextCache);
+				}
 
-			if (nextContextElement != PredictionContext.EMPTY_FULL_STATE_KEY) {
-				initialContext = initialContext.appendContext(nextContextElement, contextCache);
+				previousContext = nextContextElement;
 			}
 
-			previousContext = nextContextElement;
+			return new SimulatorState(globalContext, s0, useContext, remainingGlobalContext);
+		}
+		finally {
+			releaseContextCache(contextCache);
 		}
-
-		return new SimulatorState(globalContext, s0, useContext, remainingGlobalContext);
 	}
 
 	/**
@@ -1674,15 +1787,101 @@ public class ParserATNSimulator extends ATNSimulator {
 		}
 
 		ATNConfigSet currentConfigs = sourceConfigs;
-		Set<ATNConfig> closureBusy = new HashSet<ATNConfig>();
-		while (currentConfigs.size() > 0) {
-			ATNConfigSet intermediate = new ATNConfigSet();
-			for (ATNConfig config : currentConfigs) {
-				closure(config, configs, intermediate, closureBusy, collectPredicates, hasMoreContext, contextCache, 0, treatEofAsEpsilon);
+		Set<ATNConfig> closureBusy = acquireClosureBusy();
+		try {
+			while (currentConfigs.size() > 0) {
+				ATNConfigSet intermediate = acquireScratchConfigSet();
+				for (ATNConfig config : currentConfigs) {
+					closure(config, configs, intermediate, closureBusy, collectPredicates, hasMoreContext, contextCache, 0, treatEofAsEpsilon);
+				}
+
+				if (currentConfigs != sourceConfigs) {
+					releaseScratchConfigSet(currentConfigs);
+				}
+
+				currentConfigs = intermediate;
+			}
+
+			if (currentConfigs != sourceConfigs) {
+				releaseScratchConfigSet(currentConfigs);
 			}
+		}
+		finally {
+			releaseClosureBusy(closureBusy);
+		}
+	}
+
+	/**
+	 * Gets an empty configuration set for an intermediate result which is
+	 * returned with {@link #releaseScratchConfigSet} once it is no longer
+	 * used.
+	 */
+	@NotNull
+	protected final ATNConfigSet acquireScratchConfigSet() {
+		int count = scratchConfigSets.size();
+		if (count == 0) {
+			return new ATNConfigSet();
+		}
+
+		return scratchConfigSets.remove(count - 1);
+	}
+
+	/**
+	 * Returns a configuration set obtained from
+	 * {@link #acquireScratchConfigSet} for reuse. The caller must not keep any
+	 * reference to the set, although the configurations it contained are not
+	 * affected.
+	 */
+	protected final void releaseScratchConfigSet(@NotNull ATNConfigSet configs) {
+		if (configs.size() > MAX_SCRATCH_SIZE) {
+			return;
+		}
+
+		configs.reset();
+		scratchConfigSets.add(configs);
+	}
+
+	@NotNull
+	private Set<ATNConfig> acquireClosureBusy() {
+		Set<ATNConfig> closureBusy = scratchClosureBusy;
+		if (closureBusy == null) {
+			// a closure operation is already in progress
+			return new HashSet<ATNConfig>();
+		}
+
+		scratchClosureBusy = null;
+		return closureBusy;
+	}
 
-			currentConfigs = intermediate;
+	private void releaseClosureBusy(@NotNull Set<ATNConfig> closureBusy) {
+		if (closureBusy.size() > MAX_SCRATCH_SIZE) {
+			return;
 		}
+
+		closureBusy.clear();
+		scratchClosureBusy = closureBusy;
+	}
+
+	@NotNull
+	private PredictionContextCache acquireContextCache() {
+		PredictionContextCache contextCache = scratchContextCache;
+		if (contextCache == null) {
+			// a prediction is already in progress, e.g. full-context
+			// prediction started from execATN
+			return new PredictionContextCache();
+		}
+
+		scratchContextCache = null;
+		return contextCache;
+	}
+
+	private void releaseContextCache(@NotNull PredictionContextCache contextCache) {
+		if (contextCache.size() > MAX_SCRATCH_SIZE) {
+			return;
+		}
+
+		contextCache.clear();
+		scratchContextCache = contextCache;
 	}
 
 	protected void closure(@NotNull ATNConfig config,
@@ -2255,7 +2454,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		if (contextTransitions != null) {
 			for (int context : contextTransitions.toArray()) {
 				if (context == PredictionContext.EMPTY_FULL_STATE_KEY) {
-					if (from.configs.isOutermostConfigSet()) {
+					if (from.getConfigs().isOutermostConfigSet()) {
 						continue;
 					}
 				}
@@ -2268,8 +2467,8 @@ public class ParserATNSimulator extends ATNSimulator {
 					continue;
 				}
 
-				next = addDFAContextState(dfa, from.configs, context, contextCache);
-				assert context != PredictionContext.EMPTY_FULL_STATE_KEY || next.configs.isOutermostConfigSet();
+				next = addDFAContextState(dfa, from.getConfigs(), context, contextCache);
+				assert context != PredictionContext.EMPTY_FULL_STATE_KEY || next.getConfigs().isOutermostConfigSet();
 				from.setContextTarget(context, next);
 				from = next;
 			}
@@ -2332,7 +2531,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		if ( predictedAlt!=ATN.INVALID_ALT_NUMBER ) {
 			newState.setAcceptState(new AcceptStateInfo(predictedAlt));
 		} else if (configs.getConflictingAlts() != null) {
-			newState.setAcceptState(new AcceptStateInfo(newState.configs.getConflictingAlts().nextSetBit(0)));
+			newState.setAcceptState(new AcceptStateInfo(newState.getConfigs().getConflictingAlts().nextSetBit(0)));
 		}
 
 		if (newState.isAcceptState() && configs.hasSemanticContext()) {
@@ -2356,7 +2555,7 @@ public class ParserATNSimulator extends ATNSimulator {
 	protected void reportAttemptingFullContext(@NotNull DFA dfa, @Nullable BitSet conflictingAlts, @NotNull SimulatorState conflictState, int startIndex, int stopIndex) {
         if ( debug || retry_debug ) {
 			Interval interval = Interval.of(startIndex, stopIndex);
-            System.out.println("reportAttemptingFullContext decision="+dfa.decision+":"+conflictState.s0.configs+
+            System.out.println("reportAttemptingFullContext decision="+dfa.decision+":"+conflictState.s0.getConfigs()+
                                ", input="+parser.getInputStream().getText(interval));
         }
         if ( parser!=null ) parser.getErrorListenerDispatch().reportAttemptingFullContext(parser, dfa, startIndex, stopIndex, conflictingAlts, conflictState);
@@ -2365,7 +2564,7 @@ public class ParserATNSimulator extends ATNSimulator {
 	protected void reportContextSensitivity(@NotNull DFA dfa, int prediction, @NotNull SimulatorState acceptState, int startIndex, int stopIndex) {
         if ( debug || retry_debug ) {
 			Interval interval = Interval.of(startIndex, stopIndex);
-            System.out.println("reportContextSensitivity decision="+dfa.decision+":"+acceptState.s0.configs+
+            System.out.println("reportContextSensitivity decision="+dfa.decision+":"+acceptState.s0.getConfigs()+
                                ", input="+parser.getInputStream().getText(interval));
         }
         if ( parser!=null ) parser.getErrorListenerDispatch().reportContextSensitivity(parser, dfa, startIndex, stopIndex, prediction, acceptState);
@@ -6,25 +6,41 @@
 
 package org.antlr.v4.runtime.atn;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import org.antlr.v4.runtime.misc.LongObjectHashMap;
 
 /** Used to cache {@link PredictionContext} objects. Its used for the shared
  *  context cash associated with contexts in DFA states. This cache
  *  can be used for both lexers and parsers.
  *
+ *  <p>All three maps are keyed by hash codes, and keys which collide replace
+ *  each other. Every entry is verified before it is used, so a collision only
+ *  costs a cache miss. This class is not thread-safe.</p>
+ *
  * @author Sam Harwell
  */
 public class PredictionContextCache {
     public static final PredictionContextCache UNCACHED = new PredictionContextCache(false);
 
-    private final Map<PredictionContext, PredictionContext> contexts =
-        new HashMap<PredictionContext, PredictionContext>();
-    private final Map<PredictionContextAndInt, PredictionContext> childContexts =
-        new HashMap<PredictionContextAndInt, PredictionContext>();
-    private final Map<IdentityCommutativePredictionContextOperands, PredictionContext> joinContexts =
-        new HashMap<IdentityCommutativePredictionContextOperands, PredictionContext>();
+    /**
+     * Maps the hash code of a context to the cached context. The entry is
+     * only used if it equals the requested context.
+     */
+    private final LongObjectHashMap<PredictionContext> contexts =
+        new LongObjectHashMap<PredictionContext>();
+    /**
+     * Maps a key created by {@link #getChildKey} to the cached child context.
+     * Keys which collide replace each other, so the entry is only used if
+     * it is a child of the requested context.
+     */
+    private final LongObjectHashMap<PredictionContext> childContexts =
+        new LongObjectHashMap<PredictionContext>();
+    /**
+     * Maps a key created by {@link #getJoinKey} to the cached result of
+     * joining two contexts. Keys which collide replace each other, so the
+     * entry is only used if it was created for the same operands.
+     */
+    private final LongObjectHashMap<JoinEntry> joinContexts =
+        new LongObjectHashMap<JoinEntry>();
 
     private final boolean enableCache;
 
@@ -41,10 +57,10 @@ public class PredictionContextCache {
             return context;
         }
 
-        PredictionContext result = contexts.get(context);
-        if (result == null) {
+        PredictionContext result = contexts.get(context.hashCode());
+        if (result == null || !result.equals(context)) {
             result = context;
-            contexts.put(context, context);
+            contexts.put(context.hashCode(), context);
         }
 
         return result;
@@ -55,12 +71,12 @@ public class PredictionContextCache {
             return context.getChild(invokingState);
         }
 
-        PredictionContextAndInt operands = new PredictionContextAndInt(context, invokingState);
-        PredictionContext result = childContexts.get(operands);
-        if (result == null) {
+        long key = getChildKey(context, invokingState);
+        PredictionContext result = childContexts.get(key);
+        if (result == null || result.getReturnState(0) != invokingState || !result.getParent(0).equals(context)) {
             result = context.getChild(invokingState);
             result = getAsCached(result);
-            childContexts.put(operands, result);
+            childContexts.put(key, result);
         }
 
         return result;
@@ -71,46 +87,69 @@ public class PredictionContextCache {
             return PredictionContext.join(x, y, this);
         }
 
-        IdentityCommutativePredictionContextOperands operands = new IdentityCommutativePredictionContextOperands(x, y);
-        PredictionContext result = joinContexts.get(operands);
-        if (result != null) {
-            return result;
+        long key = getJoinKey(x, y);
+        JoinEntry entry = joinContexts.get(key);
+        if (entry != null && entry.matches(x, y)) {
+            return entry.result;
         }
 
-        result = PredictionContext.join(x, y, this);
+        PredictionContext result = PredictionContext.join(x, y, this);
         result = getAsCached(result);
-        joinContexts.put(operands, result);
+        joinContexts.put(key, new JoinEntry(x, y, result));
         return result;
     }
 
-    protected static final class PredictionContextAndInt {
-        private final PredictionContext obj;
-        private final int value;
+    /**
+     * Gets the number of contexts in this cache.
+     */
+    public int size() {
+        return contexts.size();
+    }
+
+    /**
+     * Removes all entries from this cache. The tables of the cache are kept,
+     * so a cache which is cleared and reused for another prediction does not
+     * need to allocate them again.
+     */
+    public void clear() {
+        contexts.clear();
+        childContexts.clear();
+        joinContexts.clear();
+    }
+
+    private static long getChildKey(PredictionContext context, int invokingState) {
+        return ((long)context.hashCode() << 32) | (invokingState & 0xFFFFFFFFL);
+    }
 
-        public PredictionContextAndInt(PredictionContext obj, int value) {
-            this.obj = obj;
-            this.value = value;
+    /**
+     * Combines the hash codes of the operands of a join so the key does not
+     * depend on their order.
+     */
+    private static long getJoinKey(PredictionContext x, PredictionContext y) {
+        int hx = x.hashCode();
+        int hy = y.hashCode();
+        if (hx > hy) {
+            int tmp = hx;
+            hx = hy;
+            hy = tmp;
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof PredictionContextAndInt)) {
-                return false;
-            } else if (obj == this) {
-                return true;
-            }
+        return ((long)hx << 32) | (hy & 0xFFFFFFFFL);
+    }
+
+    private static final class JoinEntry {
+        private final PredictionContext x;
+        private final PredictionContext y;
+        private final PredictionContext result;
 
-            PredictionContextAndInt other = (PredictionContextAndInt)obj;
-            return this.value == other.value
-                && (Objects.equals(this.obj, other.obj));
+        public JoinEntry(PredictionContext x, PredictionContext y, PredictionContext result) {
+            this.x = x;
+            this.y = y;
+            this.result = result;
         }
 
-        @Override
-        public int hashCode() {
-            int hashCode = 5;
-            hashCode = 7 * hashCode + (obj != null ? obj.hashCode() : 0);
-            hashCode = 7 * hashCode + value;
-            return hashCode;
+        public boolean matches(PredictionContext x, PredictionContext y) {
+            return (this.x == x && this.y == y) || (this.x == y && this.y == x);
         }
     }
 
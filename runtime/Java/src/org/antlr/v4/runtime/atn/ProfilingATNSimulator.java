@@ -47,6 +47,7 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 	public ProfilingATNSimulator(Parser parser) {
 		super(parser, parser.getInterpreter().atn);
 		optimize_ll1 = false;
+		use_frozen_dfa = false;
 		reportAmbiguities = true;
 		numDecisions = atn.decisionToState.size();
 		decisions = new DecisionInfo[numDecisions];
@@ -206,7 +207,7 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 			conflictingAltResolvedBySLL = conflictingAlts.nextSetBit(0);
 		}
 		else {
-			conflictingAltResolvedBySLL = conflictState.s0.configs.getRepresentedAlternatives().nextSetBit(0);
+			conflictingAltResolvedBySLL = conflictState.s0.getConfigs().getRepresentedAlternatives().nextSetBit(0);
 		}
 		decisions[currentDecision].LL_Fallback++;
 		super.reportAttemptingFullContext(dfa, conflictingAlts, conflictState, startIndex, stopIndex);
@@ -13,7 +13,6 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
@@ -84,13 +83,13 @@ public final class ArrayEdgeMap<T> extends AbstractEdgeMap<T> {
 
 		if (m instanceof HashEdgeMap<?>) {
 			HashEdgeMap<? extends T> other = (HashEdgeMap<? extends T>)m;
-			AtomicIntegerArray keys = other.getKeys();
+			int[] keys = other.getKeys();
 			T[] values = other.getValues();
 			ArrayEdgeMap<T> result = this;
 			for (int i = 0; i < values.length; i++) {
 				T value = values[i];
 				if (value != null) {
-					result = result.put(keys.get(i), value);
+					result = result.put(keys[i], value);
 				}
 			}
 
@@ -111,15 +110,19 @@ public final class ArrayEdgeMap<T> extends AbstractEdgeMap<T> {
 			return put(other.getKey(), other.getValue());
 		} else if (m instanceof SparseEdgeMap<?>) {
 			SparseEdgeMap<? extends T> other = (SparseEdgeMap<? extends T>)m;
-			synchronized (other) {
-				int[] keys = other.getKeys();
-				List<? extends T> values = other.getValues();
-				ArrayEdgeMap<T> result = this;
-				for (int i = 0; i < values.size(); i++) {
-					result = result.put(keys[i], values.get(i));
-				}
-				return result;
+			int[] keys = other.getKeys();
+			List<? extends T> values = other.getValues();
+			ArrayEdgeMap<T> result = this;
+			for (int i = 0; i < values.size(); i++) {
+				result = result.put(keys[i], values.get(i));
+			}
+			return result;
+		} else if (m instanceof DenseEdgeMap<?>) {
+			ArrayEdgeMap<T> result = this;
+			for (Map.Entry<Integer, ? extends T> entry : ((DenseEdgeMap<? extends T>)m).toMap().entrySet()) {
+				result = result.put(entry.getKey(), entry.getValue());
 			}
+			return result;
 		} else {
 			throw new UnsupportedOperationException(String.format("EdgeMap of type %s is supported yet.", m.getClass().getName()));
 		}
@@ -19,6 +19,7 @@ import org.antlr.v4.runtime.atn.TokensStartState;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -65,6 +66,22 @@ public class DFA {
 
 	private final AtomicInteger nextStateNumber = new AtomicInteger();
 
+	/**
+	 * The maximum number of hash codes held by {@link #evictedStateHashes}.
+	 */
+	private static final int MAX_EVICTED_STATE_HASHES = 1 << 16;
+
+	/**
+	 * Hash codes of states evicted from this DFA, or {@code null} if no states
+	 * have been evicted.
+	 */
+	private volatile Set<Integer> evictedStateHashes;
+
+	/**
+	 * This is the backing field for {@link #getFrozenDFA()}.
+	 */
+	private volatile FrozenDFA frozenDFA;
+
 	/**
 	 * This is the backing field for {@link #getMinDfaEdge()}.
 	 */
@@ -287,7 +304,7 @@ public class DFA {
 	 * @throws IllegalStateException if this is not a precedence DFA.
 	 * @see #isPrecedenceDfa()
 	 */
-	@SuppressWarnings({"SynchronizeOnNonFinalField", "null"})
+	@SuppressWarnings("null")
 	public final void setPrecedenceStartState(int precedence, boolean fullContext, DFAState startState) {
 		if (!isPrecedenceDfa()) {
 			throw new IllegalStateException("Only precedence DFAs may contain a precedence start state.");
@@ -297,17 +314,13 @@ public class DFA {
 			return;
 		}
 
+		// s0.get() and s0full.get() are never null for a precedence DFA, and
+		// DFAState.setTarget publishes the updated edges atomically
 		if (fullContext) {
-			synchronized (s0full) {
-				// s0full.get() is never null for a precedence DFA
-				s0full.get().setTarget(precedence, startState);
-			}
+			s0full.get().setTarget(precedence, startState);
 		}
 		else {
-			synchronized (s0) {
-				// s0.get() is never null for a precedence DFA
-				s0.get().setTarget(precedence, startState);
-			}
+			s0.get().setTarget(precedence, startState);
 		}
 	}
 
@@ -352,9 +365,74 @@ public class DFA {
 			return existing;
 		}
 
+		DFAEvictionPolicy evictionPolicy = atnStartState.atn != null ? atnStartState.atn.getDFAEvictionPolicy() : null;
+		if (evictionPolicy != null) {
+			evictionPolicy.stateAdded(this, state);
+		}
+
 		return state;
 	}
 
+	/**
+	 * Gets the snapshot of this DFA created by the last call to
+	 * {@link #freeze}.
+	 *
+	 * @return The frozen DFA, or {@code null} if this DFA was not frozen.
+	 */
+	@Nullable
+	public final FrozenDFA getFrozenDFA() {
+		return frozenDFA;
+	}
+
+	/**
+	 * Creates a {@link FrozenDFA} snapshot of the current states and edges of
+	 * this DFA, which the simulators use as a fast path for prediction. States
+	 * added after the DFA is frozen are only reachable through the mutable
+	 * DFA, until it is frozen again.
+	 *
+	 * <p>This method is usually called once the DFA is warmed up, for example
+	 * after parsing representative inputs or loading a DFA snapshot.</p>
+	 *
+	 * @return The new snapshot.
+	 */
+	@NotNull
+	public FrozenDFA freeze() {
+		FrozenDFA result = new FrozenDFA(this);
+		frozenDFA = result;
+		return result;
+	}
+
+	/**
+	 * Discards the snapshot created by {@link #freeze}, so prediction only uses
+	 * the mutable DFA.
+	 */
+	public void thaw() {
+		frozenDFA = null;
+	}
+
+	/**
+	 * Records the hash codes of states evicted by {@link DFAEvictionPolicy}, so
+	 * the policy can detect states which are recreated after eviction.
+	 */
+	/*package*/ void recordEvictedStates(@NotNull Iterable<DFAState> evicted) {
+		Set<Integer> hashes = evictedStateHashes;
+		if (hashes == null) {
+			hashes = evictedStateHashes = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+		}
+		else if (hashes.size() > MAX_EVICTED_STATE_HASHES) {
+			hashes.clear();
+		}
+
+		for (DFAState state : evicted) {
+			hashes.add(state.hashCode());
+		}
+	}
+
+	/*package*/ boolean isRecreatedState(@NotNull DFAState state) {
+		Set<Integer> hashes = evictedStateHashes;
+		return hashes != null && hashes.remove(state.hashCode());
+	}
+
 	@Override
 	public String toString() { return toString(VocabularyImpl.EMPTY_VOCABULARY); }
 
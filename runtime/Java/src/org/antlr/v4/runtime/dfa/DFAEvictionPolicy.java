@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.dfa;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of states held by the DFA cache of an {@link ATN}.
+ *
+ * <p>When a DFA grows beyond {@link #getMaxStatesPerDFA()}, or the DFAs of the
+ * ATN together grow beyond {@link #getMaxTotalStates()}, states are evicted
+ * until the affected DFAs are back to three quarters of the limit. Victims are
+ * selected with the CLOCK (second chance) algorithm: a state which was reached
+ * during prediction since the previous sweep is skipped once, and only evicted
+ * if it is still unused when the sweep comes back to it.</p>
+ *
+ * <p>Evicted states are removed from {@link DFA#states} and all edges to them
+ * are removed from the remaining states. Threads which are currently
+ * predicting with a reference to an evicted state are not affected, since DFA
+ * states are never modified in a way which changes the prediction they
+ * produce. Eviction is performed by at most one thread at a time; other
+ * threads adding states continue without waiting.</p>
+ *
+ * <p>An instance of this class tracks the state count of a single ATN, and
+ * must not be shared between ATNs.</p>
+ *
+ * @see ATN#setDFAEvictionPolicy
+ */
+public class DFAEvictionPolicy {
+	/**
+	 * The value used for a limit which is not enforced.
+	 */
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	private final int maxStatesPerDFA;
+	private final int maxTotalStates;
+
+	private final AtomicInteger totalStates = new AtomicInteger();
+	private final AtomicLong evictedStates = new AtomicLong();
+	private final AtomicLong recreatedStates = new AtomicLong();
+	private final AtomicLong sweeps = new AtomicLong();
+
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	/**
+	 * Constructs a new eviction policy.
+	 *
+	 * @param maxStatesPerDFA The maximum number of states held by the DFA for
+	 * any single decision or lexer mode, or {@link #UNLIMITED}.
+	 * @param maxTotalStates The maximum number of states held by all DFAs of
+	 * the ATN combined, or {@link #UNLIMITED}.
+	 */
+	public DFAEvictionPolicy(int maxStatesPerDFA, int maxTotalStates) {
+		if (maxStatesPerDFA < 1 || maxTotalStates < 1) {
+			throw new IllegalArgumentException("The DFA state limits must be positive.");
+		}
+
+		this.maxStatesPerDFA = maxStatesPerDFA;
+		this.maxTotalStates = maxTotalStates;
+	}
+
+	public final int getMaxStatesPerDFA() {
+		return maxStatesPerDFA;
+	}
+
+	public final int getMaxTotalStates() {
+		return maxTotalStates;
+	}
+
+	/**
+	 * Gets the number of states currently held by the DFAs of the ATN.
+	 */
+	public int getTotalStates() {
+		return totalStates.get();
+	}
+
+	/**
+	 * Gets the number of states which were evicted since this policy was
+	 * assigned to the ATN.
+	 */
+	public long getEvictedStates() {
+		return evictedStates.get();
+	}
+
+	/**
+	 * Gets the number of states which were added to a DFA after an equivalent
+	 * state was evicted from the same DFA. A high value relative to
+	 * {@link #getEvictedStates()} indicates the limits are too small for the
+	 * working set of the application.
+	 *
+	 * <p>Evicted states are tracked by hash code in a bounded set, so this
+	 * value is an approximation.</p>
+	 */
+	public long getRecreatedStates() {
+		return recreatedStates.get();
+	}
+
+	/**
+	 * Gets the number of times states were evicted from one or more DFAs.
+	 */
+	public long getSweeps() {
+		return sweeps.get();
+	}
+
+	/**
+	 * Called by {@link ATN#setDFAEvictionPolicy} and {@link ATN#clearDFA} to
+	 * account for the states already present in the DFAs of {@code atn}.
+	 */
+	public void reset(@NotNull ATN atn) {
+		int total = 0;
+		for (DFA dfa : atn.decisionToDFA) {
+			total += dfa.states.size();
+		}
+
+		for (DFA dfa : atn.modeToDFA) {
+			total += dfa.states.size();
+		}
+
+		totalStates.set(total);
+	}
+
+	/**
+	 * Called by {@link DFA#addState} after a new state was added to
+	 * {@link DFA#states}.
+	 */
+	/*package*/ void stateAdded(@NotNull DFA dfa, @NotNull DFAState state) {
+		if (dfa.isRecreatedState(state)) {
+			recreatedStates.incrementAndGet();
+		}
+
+		int total = totalStates.incrementAndGet();
+		if (dfa.states.size() <= maxStatesPerDFA && total <= maxTotalStates) {
+			return;
+		}
+
+		if (!evictionLock.tryLock()) {
+			// another thread is already evicting states
+			return;
+		}
+
+		try {
+			sweeps.incrementAndGet();
+			if (dfa.states.size() > maxStatesPerDFA) {
+				evict(dfa, getLowWaterMark(maxStatesPerDFA));
+			}
+
+			total = totalStates.get();
+			if (total > maxTotalStates) {
+				ATN atn = dfa.atnStartState.atn;
+				double ratio = (double)getLowWaterMark(maxTotalStates) / total;
+				for (DFA current : atn.decisionToDFA) {
+					evict(current, (int)(current.states.size() * ratio));
+				}
+
+				for (DFA current : atn.modeToDFA) {
+					evict(current, (int)(current.states.size() * ratio));
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private static int getLowWaterMark(int limit) {
+		return limit - limit / 4;
+	}
+
+	/**
+	 * Evicts states from {@code dfa} until it holds at most {@code targetSize}
+	 * states.
+	 */
+	private void evict(@NotNull DFA dfa, int targetSize) {
+		int toEvict = dfa.states.size() - targetSize;
+		if (toEvict <= 0) {
+			return;
+		}
+
+		DFAState s0 = dfa.s0.get();
+		DFAState s0full = dfa.s0full.get();
+		boolean precedenceDfa = dfa.isPrecedenceDfa();
+
+		List<DFAState> victims = new ArrayList<DFAState>();
+		// the first pass clears the reference bit of recently used states,
+		// which are then evicted by the second pass if still unused
+		for (int pass = 0; pass < 2 && victims.size() < toEvict; pass++) {
+			for (DFAState state : dfa.states.values()) {
+				if (victims.size() >= toEvict) {
+					break;
+				}
+
+				if (state.isEvicted() || (!precedenceDfa && (state == s0 || state == s0full))) {
+					continue;
+				}
+
+				if (state.clearReferenced()) {
+					continue;
+				}
+
+				if (dfa.states.remove(state, state)) {
+					state.markEvicted();
+					victims.add(state);
+				}
+			}
+		}
+
+		if (victims.isEmpty()) {
+			return;
+		}
+
+		removeEdgesToEvictedStates(dfa);
+		dfa.recordEvictedStates(victims);
+		totalStates.addAndGet(-victims.size());
+		evictedStates.addAndGet(victims.size());
+	}
+
+	/**
+	 * Removes the edges pointing to evicted states from every state still
+	 * reachable in {@code dfa}, including states reachable through edges
+	 * which were never added to {@link DFA#states}.
+	 */
+	private static void removeEdgesToEvictedStates(@NotNull DFA dfa) {
+		Map<DFAState, Boolean> visited = new IdentityHashMap<DFAState, Boolean>();
+		Deque<DFAState> workList = new ArrayDeque<DFAState>(dfa.states.values());
+		if (dfa.isPrecedenceDfa()) {
+			workList.add(dfa.s0.get());
+			workList.add(dfa.s0full.get());
+		}
+
+		while (!workList.isEmpty()) {
+			DFAState state = workList.pop();
+			if (state == null || visited.put(state, Boolean.TRUE) != null) {
+				continue;
+			}
+
+			state.removeEvictedTargets();
+			for (DFAState target : state.getEdgeMap().values()) {
+				if (!visited.containsKey(target)) {
+					workList.add(target);
+				}
+			}
+
+			for (DFAState target : state.getContextEdgeMap().values()) {
+				if (!visited.containsKey(target)) {
+					workList.add(target);
+				}
+			}
+		}
+	}
+}
@@ -160,7 +160,7 @@ public class DFASerializer {
 
 		if ( s.isContextSensitive() ) {
 			stateStr += "*";
-			for (ATNConfig config : s.configs) {
+			for (ATNConfig config : s.getConfigs()) {
 				if (config.getReachesIntoOuterContext()) {
 					stateStr += "*";
 					break;
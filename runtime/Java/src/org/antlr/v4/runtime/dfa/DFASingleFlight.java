@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.dfa;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent computations of the same missing DFA edge.
+ *
+ * <p>Without this policy, threads which reach a DFA state on a symbol without
+ * an edge all compute the target state with a full closure operation, and all
+ * but one of the equivalent results are discarded when the state is added to
+ * the DFA. When the policy is assigned to an {@link ATN}, the first thread to
+ * miss an edge computes it while the other threads missing the same edge wait
+ * for at most {@link #getMaxWaitNanos()} nanoseconds, then read the edge it
+ * added to the DFA. A thread computes the edge itself if the wait times out,
+ * or if the edge was not added to the DFA because its target depends on
+ * semantic predicates or on the outer context.</p>
+ *
+ * <p>The wait uses a {@link CountDownLatch}, so it does not pin a virtual
+ * thread. The parser only collapses computations which do not use the full
+ * context, whose target depends on the invoking rules of the current parse
+ * and not only on the edge.</p>
+ *
+ * @see ATN#setDFASingleFlight
+ */
+public class DFASingleFlight {
+	/**
+	 * The default maximum time a thread waits for an edge computed by another
+	 * thread.
+	 */
+	public static final long DEFAULT_MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private final long maxWaitNanos;
+
+	private final ConcurrentMap<Edge, CountDownLatch> inFlight = new ConcurrentHashMap<Edge, CountDownLatch>();
+
+	private final AtomicLong computations = new AtomicLong();
+	private final AtomicLong collapsedComputations = new AtomicLong();
+	private final AtomicLong duplicateComputations = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	public DFASingleFlight() {
+		this(DEFAULT_MAX_WAIT_NANOS, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Constructs a new single-flight policy.
+	 *
+	 * @param maxWait The maximum time a thread waits for an edge computed by
+	 * another thread before computing it itself.
+	 * @param unit The unit of {@code maxWait}.
+	 */
+	public DFASingleFlight(long maxWait, @NotNull TimeUnit unit) {
+		if (maxWait < 0) {
+			throw new IllegalArgumentException("maxWait cannot be negative");
+		}
+
+		this.maxWaitNanos = unit.toNanos(maxWait);
+	}
+
+	public final long getMaxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+	/**
+	 * Gets the number of edges computed by a thread while other threads
+	 * missing the same edge waited for it.
+	 */
+	public long getComputations() {
+		return computations.get();
+	}
+
+	/**
+	 * Gets the number of times a thread reused an edge computed by another
+	 * thread instead of computing it again.
+	 */
+	public long getCollapsedComputations() {
+		return collapsedComputations.get();
+	}
+
+	/**
+	 * Gets the number of times a thread waited for another thread, and then
+	 * computed the edge itself because the wait timed out or the edge was not
+	 * added to the DFA.
+	 */
+	public long getDuplicateComputations() {
+		return duplicateComputations.get();
+	}
+
+	/**
+	 * Gets the total time threads spent waiting for edges computed by other
+	 * threads, in nanoseconds.
+	 */
+	public long getWaitNanos() {
+		return waitNanos.get();
+	}
+
+	/**
+	 * Gets the target of the edge from {@code s} on {@code t}, which is
+	 * missing from the DFA, computing it with {@code computation} unless
+	 * another thread is already computing it.
+	 *
+	 * @param s The current DFA state
+	 * @param t The next input symbol
+	 * @param computation Computes the target state, and attempts to add it to
+	 * the DFA
+	 * @return The target state for the edge
+	 */
+	@NotNull
+	public DFAState computeTarget(@NotNull DFAState s, int t, @NotNull Supplier<DFAState> computation) {
+		Edge edge = new Edge(s, t);
+		CountDownLatch latch = new CountDownLatch(1);
+		CountDownLatch existing = inFlight.putIfAbsent(edge, latch);
+		if (existing == null) {
+			try {
+				// The edge could have been added by a thread which completed
+				// its computation after this thread missed the edge
+				DFAState target = s.getTarget(t);
+				if (target != null) {
+					return target;
+				}
+
+				computations.incrementAndGet();
+				return computation.get();
+			}
+			finally {
+				inFlight.remove(edge, latch);
+				latch.countDown();
+			}
+		}
+
+		long start = System.nanoTime();
+		try {
+			existing.await(maxWaitNanos, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			waitNanos.addAndGet(System.nanoTime() - start);
+		}
+
+		DFAState target = s.getTarget(t);
+		if (target != null) {
+			collapsedComputations.incrementAndGet();
+			return target;
+		}
+
+		duplicateComputations.incrementAndGet();
+		return computation.get();
+	}
+
+	/**
+	 * Identifies an edge by the identity of its source state, since the
+	 * equality of {@link DFAState} compares configuration sets.
+	 */
+	private static final class Edge {
+		private final DFAState state;
+		private final int symbol;
+
+		Edge(DFAState state, int symbol) {
+			this.state = state;
+			this.symbol = symbol;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+
+			if (!(obj instanceof Edge)) {
+				return false;
+			}
+
+			Edge other = (Edge)obj;
+			return state == other.state && symbol == other.symbol;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(state) * 31 + symbol;
+		}
+	}
+}
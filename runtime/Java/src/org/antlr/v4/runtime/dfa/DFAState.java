@@ -21,6 +21,7 @@ import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /** A DFA state represents a set of possible ATN configurations.
  *  As Aho, Sethi, Ullman p. 117 says "The DFA uses its state
@@ -49,8 +50,20 @@ import java.util.Map;
 public class DFAState {
 	public int stateNumber = -1;
 
-	@NotNull
-	public final ATNConfigSet configs;
+	/**
+	 * The set of ATN configurations defining this state, or {@code null} if
+	 * the configurations were released by {@link #releaseConfigs}. This is the
+	 * backing field for {@link #getConfigs}.
+	 */
+	@Nullable
+	private volatile ATNConfigSet configs;
+
+	/**
+	 * Recomputes {@link #configs} after they were released, or {@code null} if
+	 * they were never released.
+	 */
+	@Nullable
+	private DFAStateSeed seed;
 
 	/** {@code edges.get(symbol)} points to target of symbol.
 	 */
@@ -63,9 +76,14 @@ public class DFAState {
 	@NotNull
 	private volatile AbstractEdgeMap<DFAState> contextEdges;
 
-	/** Symbols in this set require a global context transition before matching an input symbol. */
+	/**
+	 * Symbols in this set require a global context transition before matching
+	 * an input symbol. The set is never modified after it is assigned to this
+	 * field; symbols are added by atomically replacing it with an updated
+	 * copy.
+	 */
 	@Nullable
-	private BitSet contextSymbols;
+	private volatile BitSet contextSymbols;
 
 	/**
 	 * This list is computed by {@link ParserATNSimulator#predicateDFAState}.
@@ -73,6 +91,33 @@ public class DFAState {
 	@Nullable
 	public PredPrediction[] predicates;
 
+	/**
+	 * The reference bit used by {@link DFAEvictionPolicy}. This field is set
+	 * when the state is reached or used for prediction, and cleared by the
+	 * eviction sweep.
+	 */
+	private boolean referenced;
+
+	/**
+	 * {@code true} if this state was evicted from its DFA by
+	 * {@link DFAEvictionPolicy}.
+	 */
+	private volatile boolean evicted;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<DFAState, AbstractEdgeMap> EDGES_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, AbstractEdgeMap.class, "edges");
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<DFAState, AbstractEdgeMap> CONTEXT_EDGES_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, AbstractEdgeMap.class, "contextEdges");
+
+	private static final AtomicReferenceFieldUpdater<DFAState, BitSet> CONTEXT_SYMBOLS_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, BitSet.class, "contextSymbols");
+
+	private static final AtomicReferenceFieldUpdater<DFAState, ATNConfigSet> CONFIGS_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, ATNConfigSet.class, "configs");
+
 	/** Map a predicate to a predicted alternative. */
 	public static class PredPrediction {
 		@NotNull
@@ -132,16 +177,74 @@ public class DFAState {
 		this.contextEdges = emptyContextEdges;
 	}
 
+	/**
+	 * Gets the set of ATN configurations defining this state. If the
+	 * configurations were released, they are recomputed from the seed passed
+	 * to {@link #releaseConfigs} and kept until they are released again.
+	 */
+	@NotNull
+	public final ATNConfigSet getConfigs() {
+		ATNConfigSet result = configs;
+		if (result != null) {
+			return result;
+		}
+
+		result = seed.computeConfigs();
+		if (!CONFIGS_UPDATER.compareAndSet(this, null, result)) {
+			ATNConfigSet current = configs;
+			if (current != null) {
+				result = current;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Determines if the configurations of this state are currently released,
+	 * in which case {@link #getConfigs} needs to recompute them.
+	 */
+	public final boolean isConfigsReleased() {
+		return configs == null;
+	}
+
+	/**
+	 * Releases the configurations of this state, which are recomputed from
+	 * {@code seed} the next time {@link #getConfigs} is called. The caller is
+	 * responsible for verifying that {@code seed} computes configurations
+	 * equal to the current ones.
+	 *
+	 * <p>States whose configurations have conflict information are not
+	 * released, since it is used by prediction every time the state is
+	 * reached.</p>
+	 *
+	 * @param seed The seed used to recompute the configurations.
+	 * @return {@code true} if the configurations were released; otherwise,
+	 * {@code false}.
+	 */
+	public final boolean releaseConfigs(@NotNull DFAStateSeed seed) {
+		ATNConfigSet current = getConfigs();
+		if (current.getConflictInfo() != null) {
+			return false;
+		}
+
+		seed.stateHashCode = hashCode();
+		this.seed = seed;
+		configs = null;
+		return true;
+	}
+
 	public final boolean isContextSensitive() {
 		return contextSymbols != null;
 	}
 
 	public final boolean isContextSymbol(int symbol) {
-		if (!isContextSensitive() || symbol < edges.minIndex) {
+		BitSet symbols = contextSymbols;
+		if (symbols == null || symbol < edges.minIndex) {
 			return false;
 		}
 
-		return contextSymbols.get(symbol - edges.minIndex);
+		return symbols.get(symbol - edges.minIndex);
 	}
 
 	public final void setContextSymbol(int symbol) {
@@ -150,20 +253,28 @@ public class DFAState {
 			return;
 		}
 
-		contextSymbols.set(symbol - edges.minIndex);
+		int index = symbol - edges.minIndex;
+		while (true) {
+			BitSet current = contextSymbols;
+			if (current.get(index)) {
+				return;
+			}
+
+			BitSet updated = (BitSet)current.clone();
+			updated.set(index);
+			if (CONTEXT_SYMBOLS_UPDATER.compareAndSet(this, current, updated)) {
+				return;
+			}
+		}
 	}
 
 	public void setContextSensitive(ATN atn) {
-		assert !configs.isOutermostConfigSet();
+		assert !getConfigs().isOutermostConfigSet();
 		if (isContextSensitive()) {
 			return;
 		}
 
-		synchronized (this) {
-			if (contextSymbols == null) {
-				contextSymbols = new BitSet();
-			}
-		}
+		CONTEXT_SYMBOLS_UPDATER.compareAndSet(this, null, new BitSet());
 	}
 
 	public final AcceptStateInfo getAcceptStateInfo() {
@@ -195,18 +306,26 @@ public class DFAState {
 	}
 
 	public DFAState getTarget(int symbol) {
+		markReferenced();
 		return edges.get(symbol);
 	}
 
 	public void setTarget(int symbol, DFAState target) {
-		edges = edges.put(symbol, target);
+		while (true) {
+			AbstractEdgeMap<DFAState> current = edges;
+			AbstractEdgeMap<DFAState> updated = current.put(symbol, target);
+			if (updated == current || EDGES_UPDATER.compareAndSet(this, current, updated)) {
+				return;
+			}
+		}
 	}
 
 	public Map<Integer, DFAState> getEdgeMap() {
 		return edges.toMap();
 	}
 
-	public synchronized DFAState getContextTarget(int invokingState) {
+	public DFAState getContextTarget(int invokingState) {
+		markReferenced();
 		if (invokingState == PredictionContext.EMPTY_FULL_STATE_KEY) {
 			invokingState = -1;
 		}
@@ -214,7 +333,7 @@ public class DFAState {
 		return contextEdges.get(invokingState);
 	}
 
-	public synchronized void setContextTarget(int invokingState, DFAState target) {
+	public void setContextTarget(int invokingState, DFAState target) {
 		if (!isContextSensitive()) {
 			throw new IllegalStateException("The state is not context sensitive.");
 		}
@@ -223,7 +342,13 @@ public class DFAState {
 			invokingState = -1;
 		}
 
-		contextEdges = contextEdges.put(invokingState, target);
+		while (true) {
+			AbstractEdgeMap<DFAState> current = contextEdges;
+			AbstractEdgeMap<DFAState> updated = current.put(invokingState, target);
+			if (updated == current || CONTEXT_EDGES_UPDATER.compareAndSet(this, current, updated)) {
+				return;
+			}
+		}
 	}
 
 	public Map<Integer, DFAState> getContextEdgeMap() {
@@ -246,8 +371,81 @@ public class DFAState {
 		return map;
 	}
 
+	/**
+	 * Sets the reference bit of this state. The simulators call this method
+	 * for each state reached during prediction, since accept states are
+	 * usually not used to look up an edge.
+	 */
+	public final void markReferenced() {
+		if (!referenced) {
+			referenced = true;
+		}
+	}
+
+	/**
+	 * Clears the reference bit of this state.
+	 *
+	 * @return {@code true} if the state was used for prediction since the
+	 * reference bit was last cleared; otherwise, {@code false}.
+	 */
+	/*package*/ final boolean clearReferenced() {
+		if (!referenced) {
+			return false;
+		}
+
+		referenced = false;
+		return true;
+	}
+
+	public final boolean isEvicted() {
+		return evicted;
+	}
+
+	/*package*/ final void markEvicted() {
+		evicted = true;
+	}
+
+	/**
+	 * Removes the outgoing edges and context edges of this state which point
+	 * to evicted states.
+	 */
+	/*package*/ void removeEvictedTargets() {
+		for (Map.Entry<Integer, DFAState> entry : edges.toMap().entrySet()) {
+			if (!entry.getValue().isEvicted()) {
+				continue;
+			}
+
+			while (true) {
+				AbstractEdgeMap<DFAState> current = edges;
+				AbstractEdgeMap<DFAState> updated = current.remove(entry.getKey());
+				if (updated == current || EDGES_UPDATER.compareAndSet(this, current, updated)) {
+					break;
+				}
+			}
+		}
+
+		for (Map.Entry<Integer, DFAState> entry : contextEdges.toMap().entrySet()) {
+			if (!entry.getValue().isEvicted()) {
+				continue;
+			}
+
+			while (true) {
+				AbstractEdgeMap<DFAState> current = contextEdges;
+				AbstractEdgeMap<DFAState> updated = current.remove(entry.getKey());
+				if (updated == current || CONTEXT_EDGES_UPDATER.compareAndSet(this, current, updated)) {
+					break;
+				}
+			}
+		}
+	}
+
 	@Override
 	public int hashCode() {
+		ATNConfigSet configs = this.configs;
+		if (configs == null) {
+			return seed.stateHashCode;
+		}
+
 		int hash = MurmurHash.initialize(7);
 		hash = MurmurHash.update(hash, configs.hashCode());
 		hash = MurmurHash.finish(hash, 1);
@@ -277,7 +475,12 @@ public class DFAState {
 		}
 
 		DFAState other = (DFAState)o;
-		boolean sameSet = this.configs.equals(other.configs);
+		if ((this.configs == null || other.configs == null) && hashCode() != other.hashCode()) {
+			// only recompute released configurations which could be equal
+			return false;
+		}
+
+		boolean sameSet = this.getConfigs().equals(other.getConfigs());
 //		System.out.println("DFAState.equals: "+configs+(sameSet?"==":"!=")+other.configs);
 		return sameSet;
 	}
@@ -285,7 +488,7 @@ public class DFAState {
 	@Override
 	public String toString() {
         StringBuilder buf = new StringBuilder();
-        buf.append(stateNumber).append(":").append(configs);
+        buf.append(stateNumber).append(":").append(getConfigs());
         if ( isAcceptState() ) {
             buf.append("=>");
             if ( predicates!=null ) {
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.dfa;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.misc.NotNull;
+
+/**
+ * Recomputes the configurations of a {@link DFAState} after they were
+ * released.
+ *
+ * <p>A seed is an edge of the DFA leading to the state: the configurations of
+ * the state are the reach set of the configurations of {@link #getSource()}
+ * on {@link #getSymbol()}. The configurations of the source state may also
+ * have been released, in which case they are recomputed from its own seed
+ * first. The seeds of the states of a DFA never form a cycle.</p>
+ *
+ * @see DFAState#releaseConfigs
+ * @see ATN#releaseDFAConfigs
+ */
+public abstract class DFAStateSeed {
+	@NotNull
+	private final DFAState source;
+
+	private final int symbol;
+
+	/**
+	 * The hash code of the state whose configurations were released, which
+	 * can no longer be computed from its configurations.
+	 */
+	/*package*/ int stateHashCode;
+
+	protected DFAStateSeed(@NotNull DFAState source, int symbol) {
+		this.source = source;
+		this.symbol = symbol;
+	}
+
+	@NotNull
+	public final DFAState getSource() {
+		return source;
+	}
+
+	public final int getSymbol() {
+		return symbol;
+	}
+
+	/**
+	 * Computes the configurations of the target of the edge from
+	 * {@link #getSource()} on {@link #getSymbol()}. The result must be equal
+	 * to the configurations the state held before they were released.
+	 */
+	@NotNull
+	public abstract ATNConfigSet computeConfigs();
+}
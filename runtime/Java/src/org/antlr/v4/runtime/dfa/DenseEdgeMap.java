@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.dfa;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An edge map for a very large key space where most lookups use the lowest
+ * keys, such as the code points matched by a lexer DFA. Edges for the first
+ * {@link #DENSE_SIZE} keys are stored in a directly indexed array, so looking
+ * them up does not require hashing, searching or boxing. All other edges are
+ * stored in a secondary {@link HashEdgeMap}.
+ *
+ * <p>{@link SingletonEdgeMap} switches to this representation when a second
+ * edge is added to a map with a range of at least {@link #MIN_RANGE}
+ * keys.</p>
+ */
+public final class DenseEdgeMap<T> extends AbstractEdgeMap<T> {
+	/**
+	 * The number of keys, starting at the minimum index, which are stored in
+	 * the directly indexed array. This covers the ASCII character set.
+	 */
+	public static final int DENSE_SIZE = 128;
+
+	/**
+	 * The minimum size of the key range for which edge maps use this
+	 * representation. Smaller ranges, such as the token types of a parser, are
+	 * handled efficiently by {@link HashEdgeMap} and {@link ArrayEdgeMap}.
+	 */
+	public static final int MIN_RANGE = 1 << 16;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<DenseEdgeMap, AbstractEdgeMap> SPARSE_DATA_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DenseEdgeMap.class, AbstractEdgeMap.class, "sparseData");
+
+	private final AtomicReferenceArray<T> denseData;
+	private final AtomicInteger denseSize;
+
+	@NotNull
+	private volatile AbstractEdgeMap<T> sparseData;
+
+	public DenseEdgeMap(int minIndex, int maxIndex) {
+		super(minIndex, maxIndex);
+		int denseLength = (int)Math.min(DENSE_SIZE, (long)maxIndex - minIndex + 1);
+		this.denseData = new AtomicReferenceArray<T>(denseLength);
+		this.denseSize = new AtomicInteger();
+		// The secondary map is never upgraded through SingletonEdgeMap, which
+		// would nest another DenseEdgeMap for the same large range
+		this.sparseData = new HashEdgeMap<T>(minIndex + denseLength, maxIndex);
+	}
+
+	/**
+	 * Gets the edge map holding the edges for the keys after the first
+	 * {@link #DENSE_SIZE} keys.
+	 */
+	@NotNull
+	public AbstractEdgeMap<T> getSparseEdgeMap() {
+		return sparseData;
+	}
+
+	@Override
+	public int size() {
+		return denseSize.get() + sparseData.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(int key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public T get(int key) {
+		int index = key - minIndex;
+		if (index >= 0 && index < denseData.length()) {
+			return denseData.get(index);
+		}
+
+		return sparseData.get(key);
+	}
+
+	@Override
+	public DenseEdgeMap<T> put(int key, T value) {
+		if (key < minIndex || key > maxIndex) {
+			return this;
+		}
+
+		int index = key - minIndex;
+		if (index < denseData.length()) {
+			T existing = denseData.getAndSet(index, value);
+			if (existing == null && value != null) {
+				denseSize.incrementAndGet();
+			} else if (existing != null && value == null) {
+				denseSize.decrementAndGet();
+			}
+
+			return this;
+		}
+
+		while (true) {
+			AbstractEdgeMap<T> current = sparseData;
+			AbstractEdgeMap<T> updated = value == null ? current.remove(key) : current.put(key, value);
+			if (updated == current || SPARSE_DATA_UPDATER.compareAndSet(this, current, updated)) {
+				return this;
+			}
+		}
+	}
+
+	@Override
+	public DenseEdgeMap<T> remove(int key) {
+		return put(key, null);
+	}
+
+	@Override
+	public EmptyEdgeMap<T> clear() {
+		return new EmptyEdgeMap<T>(minIndex, maxIndex);
+	}
+
+	@Override
+	public Map<Integer, T> toMap() {
+		if (isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		Map<Integer, T> result = new LinkedHashMap<Integer, T>();
+		for (int i = 0; i < denseData.length(); i++) {
+			T element = denseData.get(i);
+			if (element != null) {
+				result.put(i + minIndex, element);
+			}
+		}
+
+		result.putAll(sparseData.toMap());
+		return result;
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, T>> entrySet() {
+		return toMap().entrySet();
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.dfa;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the states and edges of a {@link DFA}, stored in
+ * dense {@code int} tables.
+ *
+ * <p>Each state of the snapshot has an id in {@code 0..getStateCount()-1}. The
+ * symbols which appear on at least one edge of the DFA are mapped to columns,
+ * and the target of the edge from state {@code s} on a symbol with column
+ * {@code c} is stored at index {@code s * columnCount + c} of a single array.
+ * Following an edge therefore reads two arrays, instead of the volatile edge
+ * map of a {@link DFAState} and the state it points to.</p>
+ *
+ * <p>A snapshot is created with {@link DFA#freeze} and used by the simulators
+ * as a fast path for prediction. An edge which was not in the DFA when it was
+ * frozen is reported as {@link #UNKNOWN_STATE}; the simulators then continue
+ * from the {@link DFAState} returned by {@link #getState}, so the edge is
+ * computed and new states are added to the mutable DFA as usual. Freezing the
+ * DFA again includes these states in the new snapshot.</p>
+ *
+ * <p>The snapshot holds references to its states, so states evicted by a
+ * {@link DFAEvictionPolicy} after the DFA was frozen remain reachable until it
+ * is frozen again.</p>
+ *
+ * @see DFA#freeze
+ * @see ATN#freezeDFA
+ */
+public final class FrozenDFA {
+	/**
+	 * The target of an edge which was not in the DFA when it was frozen.
+	 */
+	public static final int UNKNOWN_STATE = -1;
+
+	/**
+	 * The target of an edge to {@link ATNSimulator#ERROR}.
+	 */
+	public static final int ERROR_STATE = -2;
+
+	/**
+	 * Lexer symbols above this value are not assigned a column, so the table
+	 * does not grow with the range of code points seen in the input.
+	 */
+	private static final int MAX_COLUMN_SYMBOL = Character.MAX_VALUE;
+
+	@NotNull
+	private final DFAState[] states;
+
+	/**
+	 * The id of each state of the snapshot, indexed by
+	 * {@link DFAState#stateNumber}, or {@link #UNKNOWN_STATE}.
+	 */
+	@NotNull
+	private final int[] stateIds;
+
+	private final int minSymbol;
+
+	/**
+	 * The column of each symbol starting at {@link #minSymbol}, or -1 for
+	 * symbols which do not appear on an edge.
+	 */
+	@NotNull
+	private final int[] columns;
+
+	private final int columnCount;
+
+	@NotNull
+	private final int[] transitions;
+
+	@NotNull
+	private final boolean[] acceptStates;
+
+	/**
+	 * The prediction of each accept state which does not need to evaluate
+	 * predicates or resolve a conflict, or {@link ATN#INVALID_ALT_NUMBER}.
+	 */
+	@NotNull
+	private final int[] predictions;
+
+	FrozenDFA(@NotNull DFA dfa) {
+		Map<DFAState, Integer> ids = new IdentityHashMap<DFAState, Integer>();
+		int maxStateNumber = -1;
+		for (DFAState state : dfa.states.values()) {
+			if (!ids.containsKey(state)) {
+				ids.put(state, ids.size());
+				maxStateNumber = Math.max(maxStateNumber, state.stateNumber);
+			}
+		}
+
+		states = new DFAState[ids.size()];
+		stateIds = new int[maxStateNumber + 1];
+		Arrays.fill(stateIds, UNKNOWN_STATE);
+		for (Map.Entry<DFAState, Integer> entry : ids.entrySet()) {
+			states[entry.getValue()] = entry.getKey();
+			if (entry.getKey().stateNumber >= 0) {
+				stateIds[entry.getKey().stateNumber] = entry.getValue();
+			}
+		}
+
+		// The edges are copied once, since the maps of the states can change
+		// while the DFA is frozen
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Map<Integer, DFAState>[] edges = new Map[states.length];
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		int maxColumnSymbol = Math.min(dfa.getMaxDfaEdge(), MAX_COLUMN_SYMBOL);
+		for (int i = 0; i < states.length; i++) {
+			edges[i] = states[i].getEdgeMap();
+			for (Integer symbol : edges[i].keySet()) {
+				if (symbol <= maxColumnSymbol) {
+					min = Math.min(min, symbol);
+					max = Math.max(max, symbol);
+				}
+			}
+		}
+
+		if (min > max) {
+			min = 0;
+			max = -1;
+		}
+
+		minSymbol = min;
+		columns = new int[max - min + 1];
+		Arrays.fill(columns, -1);
+		int count = 0;
+		for (Map<Integer, DFAState> stateEdges : edges) {
+			for (Integer symbol : stateEdges.keySet()) {
+				if (symbol <= maxColumnSymbol && columns[symbol - min] < 0) {
+					columns[symbol - min] = count++;
+				}
+			}
+		}
+
+		columnCount = count;
+		transitions = new int[states.length * columnCount];
+		Arrays.fill(transitions, UNKNOWN_STATE);
+		acceptStates = new boolean[states.length];
+		predictions = new int[states.length];
+		for (int i = 0; i < states.length; i++) {
+			DFAState state = states[i];
+			for (Map.Entry<Integer, DFAState> edge : edges[i].entrySet()) {
+				int symbol = edge.getKey();
+				if (symbol > maxColumnSymbol) {
+					continue;
+				}
+
+				int target;
+				if (edge.getValue() == ATNSimulator.ERROR) {
+					target = ERROR_STATE;
+				}
+				else {
+					Integer id = ids.get(edge.getValue());
+					target = id != null ? id : UNKNOWN_STATE;
+				}
+
+				transitions[i * columnCount + columns[symbol - min]] = target;
+			}
+
+			acceptStates[i] = state.isAcceptState();
+			// states with conflict information never release their configurations
+			if (state.isAcceptState() && state.predicates == null && (state.isConfigsReleased() || state.getConfigs().getConflictInfo() == null)) {
+				predictions[i] = state.getPrediction();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of states in this snapshot.
+	 */
+	public int getStateCount() {
+		return states.length;
+	}
+
+	/**
+	 * Gets the number of distinct symbols which appear on the edges of this
+	 * snapshot.
+	 */
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * Gets the id of {@code state}, or {@link #UNKNOWN_STATE} if the state was
+	 * added to the DFA after it was frozen.
+	 */
+	public int getStateId(@NotNull DFAState state) {
+		int stateNumber = state.stateNumber;
+		if (stateNumber < 0 || stateNumber >= stateIds.length) {
+			return UNKNOWN_STATE;
+		}
+
+		int id = stateIds[stateNumber];
+		return id >= 0 && states[id] == state ? id : UNKNOWN_STATE;
+	}
+
+	@NotNull
+	public DFAState getState(int id) {
+		return states[id];
+	}
+
+	/**
+	 * Gets the id of the target of the edge from state {@code id} on
+	 * {@code symbol}, {@link #ERROR_STATE} if {@code symbol} cannot be matched
+	 * from this state, or {@link #UNKNOWN_STATE} if the edge was not computed
+	 * when the DFA was frozen.
+	 */
+	public int getTarget(int id, int symbol) {
+		int index = symbol - minSymbol;
+		if (index < 0 || index >= columns.length) {
+			return UNKNOWN_STATE;
+		}
+
+		int column = columns[index];
+		if (column < 0) {
+			return UNKNOWN_STATE;
+		}
+
+		return transitions[id * columnCount + column];
+	}
+
+	/**
+	 * Sets the reference bit of state {@code id}, which is used by
+	 * {@link DFAEvictionPolicy}.
+	 *
+	 * @see DFAState#markReferenced
+	 */
+	public void markReferenced(int id) {
+		states[id].markReferenced();
+	}
+
+	/**
+	 * Determines if state {@code id} is an accept state.
+	 */
+	public boolean isAcceptState(int id) {
+		return acceptStates[id];
+	}
+
+	/**
+	 * Gets the prediction of state {@code id}, or
+	 * {@link ATN#INVALID_ALT_NUMBER} if it is not an accept state, or the
+	 * prediction requires evaluating predicates or resolving a conflict.
+	 */
+	public int getPrediction(int id) {
+		return predictions[id];
+	}
+}
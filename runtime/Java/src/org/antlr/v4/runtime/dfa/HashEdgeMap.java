@@ -11,16 +11,23 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
+ * An edge map which stores each edge in the bucket selected by the low bits of
+ * its key, and grows when two keys collide.
+ *
+ * <p>The map is not modified after it is published: {@link #put} and
+ * {@link #remove} return a modified copy unless the map already contains the
+ * requested edge, and the owner publishes the copy with compare-and-set. A
+ * lookup therefore never sees a key paired with the value of another key, and
+ * no lock is required to read or update the map.</p>
  *
  * @author Sam Harwell
  */
 public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 	private static final int DEFAULT_MAX_SIZE = 2;
 
-	private final AtomicIntegerArray keys;
+	private final int[] keys;
 	private final T[] values;
 
 	public HashEdgeMap(int minIndex, int maxIndex) {
@@ -30,28 +37,23 @@ public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 	@SuppressWarnings("unchecked")
 	public HashEdgeMap(int minIndex, int maxIndex, int maxSparseSize) {
 		super(minIndex, maxIndex);
-		this.keys = new AtomicIntegerArray(maxSparseSize);
+		this.keys = new int[maxSparseSize];
 		this.values = (T[])new Object[maxSparseSize];
 	}
 
 	@SuppressWarnings("unchecked")
 	private HashEdgeMap(@NotNull HashEdgeMap<T> map, int maxSparseSize) {
 		super(map.minIndex, map.maxIndex);
-		synchronized (map) {
-			if (maxSparseSize < map.values.length) {
-				throw new IllegalArgumentException();
-			}
+		if (maxSparseSize < map.values.length) {
+			throw new IllegalArgumentException();
+		}
 
-			keys = new AtomicIntegerArray(maxSparseSize);
-			values = (T[])new Object[maxSparseSize];
-			for (int i = 0; i < map.values.length; i++) {
-				int key = map.keys.get(i);
-				T value = map.values[i];
-				if (value != null) {
-					int bucket = bucket(key);
-					keys.set(bucket, key);
-					values[bucket] = value;
-				}
+		keys = new int[maxSparseSize];
+		values = (T[])new Object[maxSparseSize];
+		for (int i = 0; i < map.values.length; i++) {
+			T value = map.values[i];
+			if (value != null) {
+				set(map.keys[i], value);
 			}
 		}
 	}
@@ -69,7 +71,7 @@ public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 	}
 
 	@NotNull
-	/*package*/ AtomicIntegerArray getKeys() {
+	/*package*/ int[] getKeys() {
 		return keys;
 	}
 
@@ -103,10 +105,8 @@ public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 	@Override
 	public T get(int key) {
 		int bucket = bucket(key);
-
-		// Read the value first
 		T value = values[bucket];
-		if (value == null || keys.get(bucket) != key) {
+		if (value == null || keys[bucket] != key) {
 			return null;
 		}
 
@@ -123,43 +123,49 @@ public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 			return remove(key);
 		}
 
-		synchronized (this) {
-			int bucket = bucket(key);
-			int currentKey = keys.get(bucket);
-			if (currentKey == key) {
-				values[bucket] = value;
+		int bucket = bucket(key);
+		T currentValue = values[bucket];
+		int currentKey = keys[bucket];
+		if (currentValue == null || currentKey == key) {
+			if (currentValue == value) {
 				return this;
 			}
 
-			T currentValue = values[bucket];
-			if (currentValue == null) {
-				// Write the key first
-				keys.set(bucket, key);
-				values[bucket] = value;
-				return this;
-			}
+			HashEdgeMap<T> result = new HashEdgeMap<T>(this, values.length);
+			result.set(key, value);
+			return result;
+		}
 
-			// Resize on collision
-			int newSize = values.length;
-			while (true) {
-				newSize *= 2;
-				if (newSize >= (maxIndex - minIndex + 1) / 2) {
-					ArrayEdgeMap<T> arrayMap = new ArrayEdgeMap<T>(minIndex, maxIndex);
-					arrayMap = arrayMap.putAll(this);
-					arrayMap.put(key, value);
-					return arrayMap;
-				}
-
-				// Check for another collision
-				if (bucket(newSize, currentKey) != bucket(newSize, key)) {
-					break;
-				}
+		// Resize on collision
+		int newSize = values.length;
+		while (true) {
+			newSize *= 2;
+			if (newSize >= (maxIndex - minIndex + 1) / 2) {
+				ArrayEdgeMap<T> arrayMap = new ArrayEdgeMap<T>(minIndex, maxIndex);
+				arrayMap = arrayMap.putAll(this);
+				arrayMap.put(key, value);
+				return arrayMap;
 			}
 
-			HashEdgeMap<T> resized = new HashEdgeMap<T>(this, newSize);
-			resized.put(key, value);
-			return resized;
+			// Check for another collision
+			if (bucket(newSize, currentKey) != bucket(newSize, key)) {
+				break;
+			}
 		}
+
+		HashEdgeMap<T> resized = new HashEdgeMap<T>(this, newSize);
+		resized.set(key, value);
+		return resized;
+	}
+
+	/**
+	 * Stores an edge in a map which is not published yet. The bucket of the
+	 * key must be empty or contain the same key.
+	 */
+	private void set(int key, T value) {
+		int bucket = bucket(key);
+		keys[bucket] = key;
+		values[bucket] = value;
 	}
 
 	@Override
@@ -170,7 +176,7 @@ public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 
 		HashEdgeMap<T> result = new HashEdgeMap<T>(this, values.length);
 		int bucket = result.bucket(key);
-		result.keys.set(bucket, 0);
+		result.keys[bucket] = 0;
 		result.values[bucket] = null;
 		return result;
 	}
@@ -190,18 +196,15 @@ public final class HashEdgeMap<T> extends AbstractEdgeMap<T> {
 			return Collections.emptyMap();
 		}
 
-		synchronized (this) {
-			Map<Integer, T> result = new TreeMap<Integer, T>();
-			for (int i = 0; i < values.length; i++) {
-				int key = keys.get(i);
-				T value = values[i];
-				if (value != null) {
-					result.put(key, value);
-				}
+		Map<Integer, T> result = new TreeMap<Integer, T>();
+		for (int i = 0; i < values.length; i++) {
+			T value = values[i];
+			if (value != null) {
+				result.put(keys[i], value);
 			}
-
-			return result;
 		}
+
+		return result;
 	}
 
 	@Override
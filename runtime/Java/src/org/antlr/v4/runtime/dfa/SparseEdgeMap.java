@@ -16,6 +16,11 @@ import java.util.Map;
 import java.util.Set;
 
 /**
+ * An edge map which stores its keys in a sorted array.
+ *
+ * <p>Like {@link HashEdgeMap}, the map is not modified after it is published,
+ * so it can be read and updated without locking.</p>
+ *
  * @deprecated Use {@link HashEdgeMap} instead.
  *
  * @author Sam Harwell
@@ -39,15 +44,13 @@ public final class SparseEdgeMap<T> extends AbstractEdgeMap<T> {
 
 	private SparseEdgeMap(@NotNull SparseEdgeMap<T> map, int maxSparseSize) {
 		super(map.minIndex, map.maxIndex);
-		synchronized (map) {
-			if (maxSparseSize < map.values.size()) {
-				throw new IllegalArgumentException();
-			}
-
-			keys = Arrays.copyOf(map.keys, maxSparseSize);
-			values = new ArrayList<T>(maxSparseSize);
-			values.addAll(map.values);
+		if (maxSparseSize < map.values.size()) {
+			throw new IllegalArgumentException();
 		}
+
+		keys = Arrays.copyOf(map.keys, maxSparseSize);
+		values = new ArrayList<T>(maxSparseSize);
+		values.addAll(map.values);
 	}
 
 	public final int[] getKeys() {
@@ -79,9 +82,8 @@ public final class SparseEdgeMap<T> extends AbstractEdgeMap<T> {
 
 	@Override
 	public T get(int key) {
-		// Special property of this collection: values are only even added to
-		// the end, else a new object is returned from put(). Therefore no lock
-		// is required in this method.
+		// The map is not modified after it is published, so no lock is
+		// required in this method.
 		int index = Arrays.binarySearch(keys, 0, size(), key);
 		if (index < 0) {
 			return null;
@@ -100,55 +102,49 @@ public final class SparseEdgeMap<T> extends AbstractEdgeMap<T> {
 			return remove(key);
 		}
 
-		synchronized (this) {
-			int index = Arrays.binarySearch(keys, 0, size(), key);
-			if (index >= 0) {
-				// replace existing entry
-				values.set(index, value);
+		int index = Arrays.binarySearch(keys, 0, size(), key);
+		if (index >= 0) {
+			if (values.get(index) == value) {
 				return this;
 			}
 
-			assert index < 0 && value != null;
-			int insertIndex = -index - 1;
-			if (size() < getMaxSparseSize() && insertIndex == size()) {
-				// stay sparse and add new entry
-				keys[insertIndex] = key;
-				values.add(value);
-				return this;
-			}
+			// replace existing entry
+			SparseEdgeMap<T> result = new SparseEdgeMap<T>(this, getMaxSparseSize());
+			result.values.set(index, value);
+			return result;
+		}
 
-			int desiredSize = size() >= getMaxSparseSize() ? getMaxSparseSize() * 2 : getMaxSparseSize();
-			int space = maxIndex - minIndex + 1;
-			// SparseEdgeMap only uses less memory than ArrayEdgeMap up to half the size of the symbol space
-			if (desiredSize >= space / 2) {
-				ArrayEdgeMap<T> arrayMap = new ArrayEdgeMap<T>(minIndex, maxIndex);
-				arrayMap = arrayMap.putAll(this);
-				arrayMap.put(key, value);
-				return arrayMap;
-			}
-			else {
-				SparseEdgeMap<T> resized = new SparseEdgeMap<T>(this, desiredSize);
-				System.arraycopy(resized.keys, insertIndex, resized.keys, insertIndex + 1, size() - insertIndex);
-				resized.keys[insertIndex] = key;
-				resized.values.add(insertIndex, value);
-				return resized;
-			}
+		assert index < 0 && value != null;
+		int insertIndex = -index - 1;
+		int desiredSize = size() >= getMaxSparseSize() ? getMaxSparseSize() * 2 : getMaxSparseSize();
+		int space = maxIndex - minIndex + 1;
+		// SparseEdgeMap only uses less memory than ArrayEdgeMap up to half the size of the symbol space
+		if (desiredSize >= space / 2) {
+			ArrayEdgeMap<T> arrayMap = new ArrayEdgeMap<T>(minIndex, maxIndex);
+			arrayMap = arrayMap.putAll(this);
+			arrayMap.put(key, value);
+			return arrayMap;
+		}
+		else {
+			SparseEdgeMap<T> resized = new SparseEdgeMap<T>(this, desiredSize);
+			System.arraycopy(resized.keys, insertIndex, resized.keys, insertIndex + 1, size() - insertIndex);
+			resized.keys[insertIndex] = key;
+			resized.values.add(insertIndex, value);
+			return resized;
 		}
 	}
 
 	@Override
 	public SparseEdgeMap<T> remove(int key) {
-		synchronized (this) {
-			int index = Arrays.binarySearch(keys, 0, size(), key);
-			if (index < 0) {
-				return this;
-			}
-
-			SparseEdgeMap<T> result = new SparseEdgeMap<T>(this, getMaxSparseSize());
-			System.arraycopy(result.keys, index + 1, result.keys, index, size() - index - 1);
-			result.values.remove(index);
-			return result;
+		int index = Arrays.binarySearch(keys, 0, size(), key);
+		if (index < 0) {
+			return this;
 		}
+
+		SparseEdgeMap<T> result = new SparseEdgeMap<T>(this, getMaxSparseSize());
+		System.arraycopy(result.keys, index + 1, result.keys, index, size() - index - 1);
+		result.values.remove(index);
+		return result;
 	}
 
 	@Override
@@ -166,14 +162,12 @@ public final class SparseEdgeMap<T> extends AbstractEdgeMap<T> {
 			return Collections.emptyMap();
 		}
 
-		synchronized (this) {
-			Map<Integer, T> result = new LinkedHashMap<Integer, T>();
-			for (int i = 0; i < size(); i++) {
-				result.put(keys[i], values.get(i));
-			}
-
-			return result;
+		Map<Integer, T> result = new LinkedHashMap<Integer, T>();
+		for (int i = 0; i < size(); i++) {
+			result.put(keys[i], values.get(i));
 		}
+
+		return result;
 	}
 
 	@Override
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.misc;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe hash map from {@code long} keys to {@code int} values, which
+ * stores keys and values in open-addressing arrays so lookups do not box
+ * either one.
+ *
+ * <p>Lookups do not lock. Updates are serialized by a {@link ReentrantLock},
+ * which unlike a monitor does not pin a virtual thread waiting for it to its
+ * carrier thread, and entries cannot be removed individually. Each value is
+ * written before its key is published, so a reader which finds a key always
+ * sees its value. When the table grows, the entries are copied to a new table
+ * which replaces the old one, so a lookup concurrent with an update may miss
+ * the entry being added.</p>
+ */
+public class ConcurrentLongIntHashMap {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * The key marking an unused slot of the table. The entry for this key is
+	 * stored outside the table.
+	 */
+	private static final long FREE_KEY = 0;
+
+	private final int initialCapacity;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The current table, or {@code null} if nothing has been added since the
+	 * map was created or cleared.
+	 */
+	private volatile Table table;
+
+	private volatile boolean hasFreeKey;
+	private volatile int freeKeyValue;
+
+	public ConcurrentLongIntHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs an empty map which can hold {@code initialCapacity} entries
+	 * before its table grows. The table is not allocated until the first
+	 * entry is added.
+	 */
+	public ConcurrentLongIntHashMap(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity cannot be negative");
+		}
+
+		this.initialCapacity = initialCapacity;
+	}
+
+	/**
+	 * Gets the value associated with {@code key}.
+	 *
+	 * @param key the key
+	 * @param defaultValue the value to return if the map does not contain
+	 * {@code key}
+	 * @return the value associated with {@code key}, or {@code defaultValue}
+	 * if the map does not contain {@code key}.
+	 */
+	public final int get(long key, int defaultValue) {
+		if (key == FREE_KEY) {
+			return hasFreeKey ? freeKeyValue : defaultValue;
+		}
+
+		Table t = table;
+		if (t == null) {
+			return defaultValue;
+		}
+
+		int index = t.indexOf(key);
+		return index >= 0 ? t.values.get(index) : defaultValue;
+	}
+
+	public final boolean containsKey(long key) {
+		if (key == FREE_KEY) {
+			return hasFreeKey;
+		}
+
+		Table t = table;
+		return t != null && t.indexOf(key) >= 0;
+	}
+
+	/**
+	 * Associates {@code value} with {@code key}, replacing the previous value
+	 * if the map already contains {@code key}.
+	 */
+	public final void put(long key, int value) {
+		lock.lock();
+		try {
+			if (key == FREE_KEY) {
+				freeKeyValue = value;
+				hasFreeKey = true;
+				return;
+			}
+
+			Table t = getTableForInsert();
+			int index = t.indexOf(key);
+			if (index >= 0) {
+				t.values.set(index, value);
+				return;
+			}
+
+			t.insert(key, value);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Associates {@code value} with {@code key} if the map does not already
+	 * contain {@code key}.
+	 *
+	 * @return {@code true} if the entry was added, or {@code false} if the map
+	 * already contained {@code key}.
+	 */
+	public final boolean putIfAbsent(long key, int value) {
+		lock.lock();
+		try {
+			if (key == FREE_KEY) {
+				if (hasFreeKey) {
+					return false;
+				}
+
+				freeKeyValue = value;
+				hasFreeKey = true;
+				return true;
+			}
+
+			Table t = getTableForInsert();
+			if (t.indexOf(key) >= 0) {
+				return false;
+			}
+
+			t.insert(key, value);
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public final int size() {
+		Table t = table;
+		int size = t != null ? t.size : 0;
+		return hasFreeKey ? size + 1 : size;
+	}
+
+	public final boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Gets the keys of the entries in this map. Entries added while this
+	 * method is running may or may not be included in the result.
+	 */
+	@NotNull
+	public final long[] keys() {
+		boolean includeFreeKey = hasFreeKey;
+		Table t = table;
+		int size = t != null ? t.size : 0;
+		long[] result = new long[includeFreeKey ? size + 1 : size];
+		int count = 0;
+		if (includeFreeKey) {
+			result[count++] = FREE_KEY;
+		}
+
+		for (int i = 0; t != null && i < t.keys.length() && count < result.length; i++) {
+			long key = t.keys.get(i);
+			if (key != FREE_KEY) {
+				result[count++] = key;
+			}
+		}
+
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	public final void clear() {
+		lock.lock();
+		try {
+			table = null;
+			hasFreeKey = false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private Table getTableForInsert() {
+		Table t = table;
+		if (t == null) {
+			t = new Table(initialCapacity);
+			table = t;
+		}
+		else if (t.isFull()) {
+			Table resized = new Table(t.size * 2);
+			for (int i = 0; i < t.keys.length(); i++) {
+				long key = t.keys.get(i);
+				if (key != FREE_KEY) {
+					resized.insert(key, t.values.get(i));
+				}
+			}
+
+			t = resized;
+			table = t;
+		}
+
+		return t;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	private static final class Table {
+		private final AtomicLongArray keys;
+		private final AtomicIntegerArray values;
+		private final int mask;
+		private final int threshold;
+		/** Only modified while holding the lock of the map. */
+		private volatile int size;
+
+		Table(int capacity) {
+			// keep the load factor at or below 1/2
+			int length = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) * 2;
+			this.keys = new AtomicLongArray(length);
+			this.values = new AtomicIntegerArray(length);
+			this.mask = length - 1;
+			this.threshold = length / 2;
+		}
+
+		boolean isFull() {
+			return size >= threshold;
+		}
+
+		/**
+		 * Gets the slot containing {@code key}, or -1 if the table does not
+		 * contain {@code key}.
+		 */
+		int indexOf(long key) {
+			for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+				long current = keys.get(i);
+				if (current == key) {
+					return i;
+				}
+				else if (current == FREE_KEY) {
+					return -1;
+				}
+			}
+		}
+
+		/**
+		 * Adds an entry for a key which is not in the table. The table must
+		 * not be full.
+		 */
+		void insert(long key, int value) {
+			int i = hash(key) & mask;
+			while (keys.get(i) != FREE_KEY) {
+				i = (i + 1) & mask;
+			}
+
+			values.set(i, value);
+			keys.set(i, key);
+			size++;
+		}
+	}
+}
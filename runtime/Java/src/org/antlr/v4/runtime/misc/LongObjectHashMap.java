@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime.misc;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from {@code long} keys to non-null values, which stores the
+ * entries in open-addressing arrays so neither lookups nor updates box the
+ * key or allocate an entry. {@link #clear} keeps the arrays, so a map which is
+ * cleared and reused does not allocate once its table is large enough.
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @param <V> the type of the values
+ */
+public class LongObjectHashMap<V> {
+	/**
+	 * The key marking an unused slot of the table. The entry for this key is
+	 * stored outside the table.
+	 */
+	private static final long FREE_KEY = 0;
+
+	private static final long[] EMPTY_KEYS = new long[0];
+	private static final Object[] EMPTY_VALUES = new Object[0];
+
+	private final int initialCapacity;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	private V freeKeyValue;
+
+	public LongObjectHashMap() {
+		this(4);
+	}
+
+	/**
+	 * Constructs an empty map which can hold {@code initialCapacity} entries
+	 * before its table grows. The table is not allocated until the first
+	 * entry is added.
+	 */
+	public LongObjectHashMap(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity cannot be negative");
+		}
+
+		this.initialCapacity = initialCapacity;
+		this.keys = EMPTY_KEYS;
+		this.values = EMPTY_VALUES;
+	}
+
+	public LongObjectHashMap(@NotNull LongObjectHashMap<? extends V> map) {
+		this.initialCapacity = map.initialCapacity;
+		this.keys = map.keys.length > 0 ? map.keys.clone() : EMPTY_KEYS;
+		this.values = map.values.length > 0 ? map.values.clone() : EMPTY_VALUES;
+		this.size = map.size;
+		this.freeKeyValue = map.freeKeyValue;
+	}
+
+	/**
+	 * Gets the value associated with {@code key}, or {@code null} if the map
+	 * does not contain {@code key}.
+	 */
+	@Nullable
+	public final V get(long key) {
+		if (key == FREE_KEY) {
+			return freeKeyValue;
+		}
+
+		int index = indexOf(key);
+		return index >= 0 ? valueAt(index) : null;
+	}
+
+	/**
+	 * Associates {@code value} with {@code key}, replacing the previous value
+	 * if the map already contains {@code key}.
+	 *
+	 * @return the previous value associated with {@code key}, or {@code null}
+	 * if the map did not contain {@code key}.
+	 */
+	@Nullable
+	public final V put(long key, @NotNull V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+
+		if (key == FREE_KEY) {
+			V previous = freeKeyValue;
+			freeKeyValue = value;
+			return previous;
+		}
+
+		int index = indexOf(key);
+		if (index >= 0) {
+			V previous = valueAt(index);
+			values[index] = value;
+			return previous;
+		}
+
+		if (size >= keys.length / 2) {
+			resize();
+		}
+
+		insert(key, value);
+		return null;
+	}
+
+	/**
+	 * Removes the entry for {@code key}.
+	 *
+	 * @return the value which was associated with {@code key}, or
+	 * {@code null} if the map did not contain {@code key}.
+	 */
+	@Nullable
+	public final V remove(long key) {
+		if (key == FREE_KEY) {
+			V previous = freeKeyValue;
+			freeKeyValue = null;
+			return previous;
+		}
+
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+
+		V previous = valueAt(index);
+		int mask = keys.length - 1;
+		// shift the following entries of the probe sequence back, so lookups
+		// never stop at the slot which was freed
+		int hole = index;
+		for (int i = (hole + 1) & mask; keys[i] != FREE_KEY; i = (i + 1) & mask) {
+			int home = hash(keys[i]) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+
+		keys[hole] = FREE_KEY;
+		values[hole] = null;
+		size--;
+		return previous;
+	}
+
+	public final int size() {
+		return freeKeyValue != null ? size + 1 : size;
+	}
+
+	public final boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Removes all entries from this map, keeping the current table.
+	 */
+	public final void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, FREE_KEY);
+			Arrays.fill(values, null);
+			size = 0;
+		}
+
+		freeKeyValue = null;
+	}
+
+	private int indexOf(long key) {
+		if (size == 0) {
+			return -1;
+		}
+
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			long current = keys[i];
+			if (current == key) {
+				return i;
+			}
+			else if (current == FREE_KEY) {
+				return -1;
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int index) {
+		return (V)values[index];
+	}
+
+	private void insert(long key, Object value) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != FREE_KEY) {
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		// keep the load factor at or below 1/2
+		int capacity = Math.max(initialCapacity, size * 2);
+		int length = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) * 2;
+		keys = new long[length];
+		values = new Object[length];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE_KEY) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+}
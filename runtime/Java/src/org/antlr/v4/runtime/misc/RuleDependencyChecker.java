@@ -19,9 +19,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,7 +32,8 @@ import java.util.logging.Logger;
 public class RuleDependencyChecker {
 	private static final Logger LOGGER = Logger.getLogger(RuleDependencyChecker.class.getName());
 
-	private static final Set<Class<?>> checkedTypes = new HashSet<Class<?>>();
+	private static final Set<Class<?>> checkedTypes =
+		Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
 
 	public static void checkDependencies(Class<?> dependentClass) {
 		if (isChecked(dependentClass)) {
@@ -57,15 +58,11 @@ public class RuleDependencyChecker {
 	}
 
 	private static boolean isChecked(Class<?> clazz) {
-		synchronized (checkedTypes) {
-			return checkedTypes.contains(clazz);
-		}
+		return checkedTypes.contains(clazz);
 	}
 
 	private static void markChecked(Class<?> clazz) {
-		synchronized (checkedTypes) {
-			checkedTypes.add(clazz);
-		}
+		checkedTypes.add(clazz);
 	}
 
 	private static void checkDependencies(List<Tuple2<RuleDependency, AnnotatedElement>> dependencies, Class<? extends Recognizer<?, ?>> recognizerClass) {
@@ -107,6 +107,7 @@ public class Tool {
 	public boolean launch_ST_inspector = false;
 	public boolean ST_inspector_wait_for_close = false;
     public boolean force_atn = false;
+	public boolean compile_lexer = false;
     public boolean log = false;
 	public boolean gen_listener = true;
 	public boolean gen_visitor = false;
@@ -135,6 +136,7 @@ public class Tool {
 		new Option("launch_ST_inspector",         "-XdbgST", "launch StringTemplate visualizer on generated code"),
 		new Option("ST_inspector_wait_for_close", "-XdbgSTWait", "wait for STViz to close before continuing"),
 		new Option("force_atn",                   "-Xforce-atn", "use the ATN simulator for all predictions"),
+		new Option("compile_lexer",               "-Xcompile-lexer", "precompute the lexer DFA for modes without predicates"),
 		new Option("log",                         "-Xlog", "dump lots of logging info to antlr-timestamp.log"),
 	    new Option("exact_output_dir",            "-Xexact-output-dir", "all output goes into -o dir regardless of paths/package"),
 	};
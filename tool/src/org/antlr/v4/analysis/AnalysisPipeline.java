@@ -8,6 +8,7 @@ package org.antlr.v4.analysis;
 
 import org.antlr.v4.misc.Utils;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.BasicBlockStartState;
 import org.antlr.v4.runtime.atn.DecisionState;
 import org.antlr.v4.runtime.atn.LL1Analyzer;
 import org.antlr.v4.runtime.atn.PredictionContext;
@@ -76,6 +77,36 @@ public class AnalysisPipeline {
 			g.decisionLOOK.set(s.decision, look);
 			g.tool.log("LL1", "LL(1)? " + disjoint(look));
 		}
+
+		processFixedLookahead();
+	}
+
+	/**
+	 * Computes the fixed-k lookahead of the choice and optional blocks which
+	 * are not LL(1), so they can be predicted without calling
+	 * {@link org.antlr.v4.runtime.atn.ParserATNSimulator#adaptivePredict}.
+	 * Loop decisions are always predicted by the ATN simulator when they are
+	 * not LL(1), so their lookahead is not computed.
+	 */
+	protected void processFixedLookahead() {
+		g.decisionLLk = new ArrayList<LLkAnalyzer.LookaheadNode>(g.atn.getNumberOfDecisions()+1);
+		Utils.setSize(g.decisionLLk, g.atn.getNumberOfDecisions());
+		int count = 0;
+		for (DecisionState s : g.atn.decisionToState) {
+			if ( s.nonGreedy || !(s instanceof BasicBlockStartState) || disjoint(g.decisionLOOK.get(s.decision)) ) {
+				continue;
+			}
+
+			LLkAnalyzer anal = new LLkAnalyzer(g.atn);
+			LLkAnalyzer.LookaheadNode look = anal.getDecisionLookahead(s, LLkAnalyzer.MAX_K);
+			g.tool.log("LLk", "DECISION "+s.decision+" in rule "+g.getRule(s.ruleIndex).name+" look="+look);
+			if ( look!=null ) {
+				g.decisionLLk.set(s.decision, look);
+				count++;
+			}
+		}
+
+		g.tool.log("LLk", count+" decisions are LL(k) for k<="+LLkAnalyzer.MAX_K);
 	}
 
 	/** Return whether lookahead sets are disjoint; no lookahead ⇒ not disjoint */
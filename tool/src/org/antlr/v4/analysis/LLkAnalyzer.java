@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.AbstractPredicateTransition;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.RuleStopState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the exact fixed-k lookahead of parser decisions for small values
+ * of k. The result is a tree of {@link LookaheadNode}s which examines one
+ * symbol at each level and predicts an alternative as soon as only one
+ * alternative remains viable, so it can be generated as nested
+ * {@code switch} statements instead of calling
+ * {@link org.antlr.v4.runtime.atn.ParserATNSimulator#adaptivePredict}.
+ *
+ * <p>The analysis does not use the invoking context of the decision rule, so
+ * the prediction is correct for every possible context (the decision is
+ * strong LL(k)). Since any symbol may follow the decision rule, an
+ * alternative which reaches the end of the rule conflicts with every other
+ * alternative which is still viable. Decisions which reach a semantic
+ * predicate before matching the first symbol are never LL(k).</p>
+ */
+public class LLkAnalyzer {
+	/**
+	 * The largest number of lookahead symbols examined by the trees produced
+	 * by this analyzer.
+	 */
+	public static final int MAX_K = 3;
+
+	/**
+	 * The maximum number of branches in the lookahead tree of a single
+	 * decision. Larger trees are rejected to keep the generated code small.
+	 */
+	public static final int MAX_BRANCHES = 64;
+
+	@NotNull
+	public final ATN atn;
+
+	public LLkAnalyzer(@NotNull ATN atn) {
+		this.atn = atn;
+	}
+
+	/**
+	 * Computes the lookahead tree which predicts the alternatives of
+	 * {@code s} using at most {@code k} symbols of lookahead.
+	 *
+	 * @param s the decision state
+	 * @param k the maximum number of lookahead symbols
+	 * @return the lookahead tree of the decision, or {@code null} if the
+	 * decision is not LL(k) or the tree would exceed {@link #MAX_BRANCHES}
+	 * branches.
+	 */
+	@Nullable
+	public LookaheadNode getDecisionLookahead(@NotNull DecisionState s, int k) {
+		List<Set<ATNConfig>> altConfigs = new ArrayList<Set<ATNConfig>>();
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Set<ATNConfig> configs = new LinkedHashSet<ATNConfig>();
+			ATNConfig config = ATNConfig.create(s.transition(i).target, 0, PredictionContext.EMPTY_LOCAL);
+			if (!closure(config, configs, new HashSet<ATNConfig>(), false)) {
+				return null;
+			}
+
+			altConfigs.add(configs);
+		}
+
+		return getLookahead(altConfigs, 1, k, new int[] { MAX_BRANCHES });
+	}
+
+	/**
+	 * Computes the lookahead tree for the remaining configurations of two or
+	 * more viable alternatives, starting with lookahead symbol {@code depth}.
+	 *
+	 * @param altConfigs the configurations of each alternative, or
+	 * {@code null} for alternatives which are no longer viable
+	 * @param depth the lookahead symbol examined by the returned node
+	 * @param k the maximum number of lookahead symbols
+	 * @param budget the remaining number of branches
+	 */
+	@Nullable
+	protected LookaheadNode getLookahead(@NotNull List<Set<ATNConfig>> altConfigs, int depth, int k, @NotNull int[] budget) {
+		for (Set<ATNConfig> configs : altConfigs) {
+			if (configs != null && hasConfigInRuleStopState(configs)) {
+				// any symbol may follow this alternative
+				return null;
+			}
+		}
+
+		// group the symbols which lead to the same configurations
+		Map<List<Set<ATNConfig>>, IntervalSet> groups = new LinkedHashMap<List<Set<ATNConfig>>, IntervalSet>();
+		for (int symbol = Token.EOF; symbol <= atn.maxTokenType; symbol++) {
+			if (symbol == Token.EPSILON || symbol == Token.INVALID_TYPE) {
+				continue;
+			}
+
+			List<Set<ATNConfig>> reach = getReach(altConfigs, symbol);
+			if (reach == null) {
+				// no viable alternative
+				continue;
+			}
+
+			IntervalSet look = groups.get(reach);
+			if (look == null) {
+				look = new IntervalSet();
+				groups.put(reach, look);
+			}
+
+			look.add(symbol);
+		}
+
+		List<LookaheadBranch> branches = new ArrayList<LookaheadBranch>();
+		Map<Integer, IntervalSet> altLook = new LinkedHashMap<Integer, IntervalSet>();
+		for (Map.Entry<List<Set<ATNConfig>>, IntervalSet> entry : groups.entrySet()) {
+			LookaheadBranch branch = getBranch(entry.getValue(), entry.getKey(), depth, k, budget);
+			if (branch == null) {
+				return null;
+			}
+
+			if (branch.next != null) {
+				branches.add(branch);
+				continue;
+			}
+
+			// combine the symbols which predict the same alternative
+			IntervalSet look = altLook.get(branch.alt);
+			if (look == null) {
+				altLook.put(branch.alt, new IntervalSet(branch.look));
+			}
+			else {
+				look.addAll(branch.look);
+			}
+		}
+
+		for (Map.Entry<Integer, IntervalSet> entry : altLook.entrySet()) {
+			branches.add(new LookaheadBranch(entry.getValue(), entry.getKey(), null));
+		}
+
+		budget[0] -= branches.size();
+		if (budget[0] < 0) {
+			return null;
+		}
+
+		return new LookaheadNode(depth, branches);
+	}
+
+	@Nullable
+	private LookaheadBranch getBranch(@NotNull IntervalSet look, @NotNull List<Set<ATNConfig>> reach, int depth, int k, @NotNull int[] budget) {
+		int alt = 0;
+		for (int i = 0; i < reach.size(); i++) {
+			if (reach.get(i) == null) {
+				continue;
+			}
+
+			if (alt != 0) {
+				// more than one alternative is viable
+				if (depth >= k) {
+					return null;
+				}
+
+				LookaheadNode next = getLookahead(reach, depth + 1, k, budget);
+				if (next == null) {
+					return null;
+				}
+
+				return new LookaheadBranch(look, 0, next);
+			}
+
+			alt = i + 1;
+		}
+
+		return new LookaheadBranch(look, alt, null);
+	}
+
+	/**
+	 * Computes the configurations of each alternative after matching
+	 * {@code symbol}.
+	 *
+	 * <p>As in {@link org.antlr.v4.runtime.atn.ParserATNSimulator}, semantic
+	 * predicates are not evaluated after the first symbol of a prediction, so
+	 * they are treated as epsilon transitions here.</p>
+	 *
+	 * @return the configurations reached by each alternative, with
+	 * {@code null} for the alternatives which are not viable, or {@code null}
+	 * if no alternative is viable.
+	 */
+	@Nullable
+	private List<Set<ATNConfig>> getReach(@NotNull List<Set<ATNConfig>> altConfigs, int symbol) {
+		List<Set<ATNConfig>> reach = new ArrayList<Set<ATNConfig>>(altConfigs.size());
+		boolean viable = false;
+		for (Set<ATNConfig> configs : altConfigs) {
+			Set<ATNConfig> altReach = null;
+			if (configs != null) {
+				for (ATNConfig config : configs) {
+					for (int i = 0; i < config.getState().getNumberOfTransitions(); i++) {
+						Transition transition = config.getState().transition(i);
+						if (transition.isEpsilon() || !transition.matches(symbol, Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType)) {
+							continue;
+						}
+
+						if (altReach == null) {
+							altReach = new LinkedHashSet<ATNConfig>();
+						}
+
+						ATNConfig target = ATNConfig.create(transition.target, 0, config.getContext());
+						closure(target, altReach, new HashSet<ATNConfig>(), true);
+					}
+				}
+			}
+
+			reach.add(altReach);
+			viable |= altReach != null;
+		}
+
+		return viable ? reach : null;
+	}
+
+	/**
+	 * Adds the configurations which match a symbol, or which are at the end of
+	 * the decision rule, reachable from {@code config} without matching a
+	 * symbol.
+	 *
+	 * @param seeThruPreds {@code true} to treat semantic predicates as epsilon
+	 * transitions, or {@code false} to fail when a predicate is reached
+	 * @return {@code false} if a semantic predicate was reached and
+	 * {@code seeThruPreds} is {@code false}, otherwise {@code true}.
+	 */
+	protected boolean closure(@NotNull ATNConfig config, @NotNull Set<ATNConfig> configs, @NotNull Set<ATNConfig> closureBusy, boolean seeThruPreds) {
+		if (!closureBusy.add(config)) {
+			return true;
+		}
+
+		ATNState s = config.getState();
+		PredictionContext ctx = config.getContext();
+		if (s instanceof RuleStopState) {
+			if (ctx.isEmpty()) {
+				// any symbol may follow the decision rule
+				configs.add(config);
+				return true;
+			}
+
+			ATNState returnState = atn.states.get(ctx.getReturnState(0));
+			return closure(ATNConfig.create(returnState, 0, ctx.getParent(0)), configs, closureBusy, seeThruPreds);
+		}
+
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Transition t = s.transition(i);
+			if (t instanceof RuleTransition) {
+				PredictionContext newContext = ctx.getChild(((RuleTransition)t).followState.stateNumber);
+				if (!closure(ATNConfig.create(t.target, 0, newContext), configs, closureBusy, seeThruPreds)) {
+					return false;
+				}
+			}
+			else if (t instanceof AbstractPredicateTransition && !seeThruPreds) {
+				return false;
+			}
+			else if (t.isEpsilon()) {
+				if (!closure(ATNConfig.create(t.target, 0, ctx), configs, closureBusy, seeThruPreds)) {
+					return false;
+				}
+			}
+			else {
+				configs.add(config);
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean hasConfigInRuleStopState(@NotNull Set<ATNConfig> configs) {
+		for (ATNConfig config : configs) {
+			if (config.getState() instanceof RuleStopState) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * A node of a lookahead tree, which examines lookahead symbol
+	 * {@link #depth}.
+	 */
+	public static class LookaheadNode {
+		/** The lookahead symbol examined by this node, starting at 1. */
+		public final int depth;
+		/**
+		 * The branches of this node. No alternative is viable for the symbols
+		 * which are not matched by any branch.
+		 */
+		@NotNull
+		public final List<LookaheadBranch> branches;
+
+		public LookaheadNode(int depth, @NotNull List<LookaheadBranch> branches) {
+			this.depth = depth;
+			this.branches = Collections.unmodifiableList(branches);
+		}
+
+		/**
+		 * Gets the largest number of symbols examined by this tree.
+		 */
+		public int getMaxDepth() {
+			int result = depth;
+			for (LookaheadBranch branch : branches) {
+				if (branch.next != null) {
+					result = Math.max(result, branch.next.getMaxDepth());
+				}
+			}
+
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "LA(" + depth + ")" + Arrays.toString(branches.toArray());
+		}
+	}
+
+	/**
+	 * A branch of a {@link LookaheadNode}, which either predicts an
+	 * alternative or examines the next lookahead symbol.
+	 */
+	public static class LookaheadBranch {
+		/** The symbols matched by this branch. */
+		@NotNull
+		public final IntervalSet look;
+		/**
+		 * The predicted alternative, or 0 if {@link #next} examines the next
+		 * lookahead symbol.
+		 */
+		public final int alt;
+		@Nullable
+		public final LookaheadNode next;
+
+		public LookaheadBranch(@NotNull IntervalSet look, int alt, @Nullable LookaheadNode next) {
+			this.look = look;
+			this.alt = alt;
+			this.next = next;
+		}
+
+		@Override
+		public String toString() {
+			if (next != null) {
+				return look + "=>" + next;
+			}
+
+			return look + "=>" + alt;
+		}
+	}
+}
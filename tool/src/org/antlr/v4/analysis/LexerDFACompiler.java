@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNDeserializer;
+import org.antlr.v4.runtime.atn.ATNSerializer;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.CompiledLexerDFA;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.LexerAction;
+import org.antlr.v4.runtime.atn.LexerActionExecutor;
+import org.antlr.v4.runtime.atn.OrderedATNConfigSet;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.dfa.AcceptStateInfo;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.tool.LexerGrammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Computes the complete DFA of each lexer mode by subset construction, for
+ * the {@code -Xcompile-lexer} tool option.
+ *
+ * <p>The DFA states are computed by the {@link LexerATNSimulator} of the
+ * runtime, over the same deserialized ATN the generated lexer uses, so the
+ * result matches the DFA the lexer would otherwise build while matching
+ * input. A mode is not compiled if matching it evaluates semantic predicates
+ * or executes position-dependent (custom) actions, or if its DFA exceeds
+ * {@link #MAX_STATES} states or {@link #MAX_TABLE_SIZE} transitions.</p>
+ */
+public class LexerDFACompiler {
+	public static final int MAX_STATES = 0x7FFF;
+	public static final int MAX_TABLE_SIZE = 1 << 22;
+
+	public final LexerGrammar g;
+
+	private final ATN atn;
+	private final Simulator simulator;
+
+	public LexerDFACompiler(LexerGrammar g) {
+		this.g = g;
+		char[] serializedAtn = ATNSerializer.getSerializedAsChars(g.atn, Arrays.asList(g.getRuleNames()));
+		this.atn = new ATNDeserializer().deserialize(serializedAtn);
+		this.simulator = new Simulator(atn);
+	}
+
+	/**
+	 * Compiles all modes of the lexer. Returns {@code null} if none of the
+	 * modes could be compiled.
+	 */
+	@Nullable
+	public CompiledLexerDFA compile() {
+		int[] rangeStarts = getSymbolRanges();
+		int[] rangeClasses = new int[rangeStarts.length];
+		IntegerList representatives = getSymbolClasses(rangeStarts, rangeClasses);
+
+		List<String> modeNames = new ArrayList<String>(g.modes.keySet());
+		CompiledLexerDFA.ModeTable[] modes = new CompiledLexerDFA.ModeTable[atn.modeToStartState.size()];
+		boolean compiledAny = false;
+		for (int mode = 0; mode < modes.length; mode++) {
+			modes[mode] = compileMode(mode, modeNames.get(mode), rangeStarts, rangeClasses, representatives);
+			compiledAny |= modes[mode] != null;
+		}
+
+		return compiledAny ? new CompiledLexerDFA(modes) : null;
+	}
+
+	/**
+	 * Serializes the result of {@link #compile} for the lexer ATN, or returns
+	 * {@code null} if none of the modes could be compiled.
+	 */
+	@Nullable
+	public IntegerList compileAndSerialize() {
+		CompiledLexerDFA dfa = compile();
+		return dfa != null ? dfa.serialize(atn) : null;
+	}
+
+	@Nullable
+	protected CompiledLexerDFA.ModeTable compileMode(int mode, String modeName, int[] rangeStarts, int[] rangeClasses, IntegerList symbolClasses) {
+		IntegerList representatives = new IntegerList(symbolClasses);
+		// the last class is the EOF class
+		int eofClass = representatives.size();
+		representatives.add(IntStream.EOF);
+		int classCount = representatives.size();
+
+		simulator.setMode(mode);
+		ATNConfigSet startConfigs = simulator.computeStartState(atn.modeToStartState.get(mode));
+		if (!isCompilable(startConfigs)) {
+			g.tool.log("compile-lexer", "mode " + modeName + " is not compiled: it requires predicates or custom actions");
+			return null;
+		}
+
+		List<DFAState> states = new ArrayList<DFAState>();
+		Map<DFAState, Integer> stateNumbers = new HashMap<DFAState, Integer>();
+		states.add(simulator.addDFAState(startConfigs));
+		stateNumbers.put(states.get(0), CompiledLexerDFA.START_STATE);
+
+		IntegerList transitions = new IntegerList();
+		for (int current = 0; current < states.size(); current++) {
+			if (states.size() > MAX_STATES || (long)states.size() * classCount > MAX_TABLE_SIZE) {
+				g.tool.log("compile-lexer", "mode " + modeName + " is not compiled: its DFA is too large");
+				return null;
+			}
+
+			DFAState state = states.get(current);
+			for (int symbolClass = 0; symbolClass < classCount; symbolClass++) {
+				ATNConfigSet reach = simulator.computeReach(state, representatives.get(symbolClass));
+				if (!isCompilable(reach)) {
+					g.tool.log("compile-lexer", "mode " + modeName + " is not compiled: it requires predicates or custom actions");
+					return null;
+				}
+
+				if (reach.isEmpty()) {
+					transitions.add(CompiledLexerDFA.ERROR_STATE);
+					continue;
+				}
+
+				DFAState target = simulator.addDFAState(reach);
+				Integer targetNumber = stateNumbers.get(target);
+				if (targetNumber == null) {
+					targetNumber = states.size();
+					states.add(target);
+					stateNumbers.put(target, targetNumber);
+				}
+
+				transitions.add(targetNumber);
+			}
+		}
+
+		AcceptStateInfo[] acceptStates = new AcceptStateInfo[states.size()];
+		for (int i = 0; i < acceptStates.length; i++) {
+			acceptStates[i] = states.get(i).getAcceptStateInfo();
+		}
+
+		CompiledLexerDFA.ModeTable table = createTable(rangeStarts, rangeClasses, eofClass, classCount, transitions.toArray(), acceptStates);
+		g.tool.log("compile-lexer", "mode " + modeName + ": " + table.getStateCount() + " states, " + table.getClassCount() + " symbol classes");
+		return table;
+	}
+
+	/**
+	 * Gets the first symbol of each range of symbols which are not split by
+	 * the label of any transition in the ATN.
+	 */
+	protected int[] getSymbolRanges() {
+		TreeSet<Integer> boundaries = new TreeSet<Integer>();
+		boundaries.add(Lexer.MIN_CHAR_VALUE);
+		for (ATNState state : atn.states) {
+			if (state == null) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+				IntervalSet label = state.transition(i).label();
+				if (label == null) {
+					continue;
+				}
+
+				for (Interval interval : label.getIntervals()) {
+					if (interval.a > Lexer.MIN_CHAR_VALUE) {
+						boundaries.add(interval.a);
+					}
+
+					if (interval.b >= Lexer.MIN_CHAR_VALUE && interval.b < Lexer.MAX_CHAR_VALUE) {
+						boundaries.add(interval.b + 1);
+					}
+				}
+			}
+		}
+
+		int[] result = new int[boundaries.size()];
+		int i = 0;
+		for (int boundary : boundaries) {
+			result[i++] = boundary;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Assigns the same symbol class to all ranges which are matched by the
+	 * same transitions, and returns a representative symbol for each class.
+	 */
+	protected IntegerList getSymbolClasses(int[] rangeStarts, int[] rangeClasses) {
+		List<Transition> transitions = new ArrayList<Transition>();
+		for (ATNState state : atn.states) {
+			if (state == null) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+				Transition transition = state.transition(i);
+				if (!transition.isEpsilon()) {
+					transitions.add(transition);
+				}
+			}
+		}
+
+		IntegerList representatives = new IntegerList();
+		Map<BitSet, Integer> classes = new HashMap<BitSet, Integer>();
+		for (int i = 0; i < rangeStarts.length; i++) {
+			BitSet signature = new BitSet(transitions.size());
+			for (int j = 0; j < transitions.size(); j++) {
+				if (transitions.get(j).matches(rangeStarts[i], Lexer.MIN_CHAR_VALUE, Lexer.MAX_CHAR_VALUE)) {
+					signature.set(j);
+				}
+			}
+
+			Integer symbolClass = classes.get(signature);
+			if (symbolClass == null) {
+				symbolClass = representatives.size();
+				classes.put(signature, symbolClass);
+				representatives.add(rangeStarts[i]);
+			}
+
+			rangeClasses[i] = symbolClass;
+		}
+
+		return representatives;
+	}
+
+	/**
+	 * Creates the table for a mode, after merging the symbol classes which
+	 * have the same transitions in every state and the adjacent ranges which
+	 * have the same symbol class.
+	 */
+	protected CompiledLexerDFA.ModeTable createTable(int[] rangeStarts, int[] rangeClasses, int eofClass, int classCount, int[] transitions, AcceptStateInfo[] acceptStates) {
+		int stateCount = acceptStates.length;
+		int[] classMap = new int[classCount];
+		List<IntegerList> columns = new ArrayList<IntegerList>();
+		Map<IntegerList, Integer> columnIndexes = new HashMap<IntegerList, Integer>();
+		for (int symbolClass = 0; symbolClass < classCount; symbolClass++) {
+			IntegerList column = new IntegerList(stateCount);
+			for (int state = 0; state < stateCount; state++) {
+				column.add(transitions[state * classCount + symbolClass]);
+			}
+
+			Integer index = columnIndexes.get(column);
+			if (index == null) {
+				index = columns.size();
+				columns.add(column);
+				columnIndexes.put(column, index);
+			}
+
+			classMap[symbolClass] = index;
+		}
+
+		int mergedClassCount = columns.size();
+		int[] mergedTransitions = new int[stateCount * mergedClassCount];
+		for (int symbolClass = 0; symbolClass < mergedClassCount; symbolClass++) {
+			IntegerList column = columns.get(symbolClass);
+			for (int state = 0; state < stateCount; state++) {
+				mergedTransitions[state * mergedClassCount + symbolClass] = column.get(state);
+			}
+		}
+
+		IntegerList mergedStarts = new IntegerList();
+		IntegerList mergedClasses = new IntegerList();
+		for (int i = 0; i < rangeStarts.length; i++) {
+			int symbolClass = classMap[rangeClasses[i]];
+			if (!mergedClasses.isEmpty() && mergedClasses.get(mergedClasses.size() - 1) == symbolClass) {
+				continue;
+			}
+
+			mergedStarts.add(rangeStarts[i]);
+			mergedClasses.add(symbolClass);
+		}
+
+		return new CompiledLexerDFA.ModeTable(mergedStarts.toArray(), mergedClasses.toArray(), classMap[eofClass], mergedClassCount, mergedTransitions, acceptStates);
+	}
+
+	/**
+	 * Determines whether the DFA state for {@code configs} can be stored in
+	 * a table, which is the case when computing it did not evaluate semantic
+	 * predicates, and it does not depend on the position of any custom
+	 * actions in the input.
+	 */
+	protected static boolean isCompilable(ATNConfigSet configs) {
+		if (configs.hasSemanticContext()) {
+			return false;
+		}
+
+		for (ATNConfig config : configs) {
+			LexerActionExecutor executor = config.getLexerActionExecutor();
+			if (executor == null) {
+				continue;
+			}
+
+			for (LexerAction action : executor.getLexerActions()) {
+				if (action.isPositionDependent()) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Exposes the closure operations of the lexer ATN simulator. The
+	 * simulator has no recognizer, so it does not evaluate predicates; their
+	 * presence is detected by {@link ATNConfigSet#hasSemanticContext()}.
+	 */
+	protected static class Simulator extends LexerATNSimulator {
+		private final CharStream input = CharStreams.fromString("");
+
+		public Simulator(ATN atn) {
+			super(atn);
+		}
+
+		public void setMode(int mode) {
+			this.mode = mode;
+		}
+
+		public ATNConfigSet computeStartState(ATNState startState) {
+			return computeStartState(input, startState);
+		}
+
+		public ATNConfigSet computeReach(DFAState state, int t) {
+			ATNConfigSet reach = new OrderedATNConfigSet();
+			getReachableConfigSet(input, state.getConfigs(), reach, t);
+			return reach;
+		}
+
+		@Override
+		public DFAState addDFAState(ATNConfigSet configs) {
+			return super.addDFAState(configs);
+		}
+	}
+}
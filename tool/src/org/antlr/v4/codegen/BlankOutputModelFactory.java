@@ -88,12 +88,18 @@ public abstract class BlankOutputModelFactory implements OutputModelFactory {
 	@Override
 	public Choice getLL1ChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) { return null; }
 
+	@Override
+	public Choice getLLkChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) { return null; }
+
 	@Override
 	public Choice getComplexChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) { return null; }
 
 	@Override
 	public Choice getLL1EBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts) { return null; }
 
+	@Override
+	public Choice getLLkEBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts) { return null; }
+
 	@Override
 	public Choice getComplexEBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts) { return null; }
 
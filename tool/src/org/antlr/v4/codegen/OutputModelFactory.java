@@ -82,10 +82,14 @@ public interface OutputModelFactory {
 
 	Choice getLL1ChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts);
 
+	Choice getLLkChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts);
+
 	Choice getComplexChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts);
 
 	Choice getLL1EBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts);
 
+	Choice getLLkEBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts);
+
 	Choice getComplexEBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts);
 
 	List<SrcOp> getLL1Test(IntervalSet look, GrammarAST blkAST);
@@ -19,6 +19,8 @@ import org.antlr.v4.codegen.model.LL1OptionalBlock;
 import org.antlr.v4.codegen.model.LL1OptionalBlockSingleAlt;
 import org.antlr.v4.codegen.model.LL1PlusBlockSingleAlt;
 import org.antlr.v4.codegen.model.LL1StarBlockSingleAlt;
+import org.antlr.v4.codegen.model.LLkAltBlock;
+import org.antlr.v4.codegen.model.LLkOptionalBlock;
 import org.antlr.v4.codegen.model.LabeledOp;
 import org.antlr.v4.codegen.model.LeftFactoredRuleFunction;
 import org.antlr.v4.codegen.model.LeftRecursiveRuleFunction;
@@ -219,6 +221,9 @@ public class ParserFactory extends DefaultOutputModelFactory {
 		if ( !g.tool.force_atn && AnalysisPipeline.disjoint(g.decisionLOOK.get(decision)) ) {
 			c = getLL1ChoiceBlock(blkAST, alts);
 		}
+		else if ( !g.tool.force_atn && g.decisionLLk.get(decision)!=null ) {
+			c = getLLkChoiceBlock(blkAST, alts);
+		}
 		else {
 			c = getComplexChoiceBlock(blkAST, alts);
 		}
@@ -255,6 +260,10 @@ public class ParserFactory extends DefaultOutputModelFactory {
 			if ( AnalysisPipeline.disjoint(g.decisionLOOK.get(decision)) ) {
 				return getLL1EBNFBlock(ebnfRoot, alts);
 			}
+
+			if ( g.decisionLLk.get(decision)!=null ) {
+				return getLLkEBNFBlock(ebnfRoot, alts);
+			}
 		}
 
 		return getComplexEBNFBlock(ebnfRoot, alts);
@@ -265,6 +274,11 @@ public class ParserFactory extends DefaultOutputModelFactory {
 		return new LL1AltBlock(this, blkAST, alts);
 	}
 
+	@Override
+	public Choice getLLkChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) {
+		return new LLkAltBlock(this, blkAST, alts);
+	}
+
 	@Override
 	public Choice getComplexChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) {
 		return new AltBlock(this, blkAST, alts);
@@ -292,6 +306,16 @@ public class ParserFactory extends DefaultOutputModelFactory {
 		return c;
 	}
 
+	@Override
+	public Choice getLLkEBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts) {
+		// only optional blocks have fixed-k lookahead (see AnalysisPipeline)
+		if ( ebnfRoot.getType()==ANTLRParser.OPTIONAL ) {
+			return new LLkOptionalBlock(this, ebnfRoot, alts);
+		}
+
+		return getComplexEBNFBlock(ebnfRoot, alts);
+	}
+
 	@Override
 	public Choice getComplexEBNFBlock(GrammarAST ebnfRoot, List<CodeBlockForAlt> alts) {
 		int ebnf = 0;
@@ -42,11 +42,13 @@ block[GrammarAST label, GrammarAST ebnfRoot] returns [List<? extends SrcOp> omos
     	{
     	if ( alts.size()==1 && ebnfRoot==null) return alts;
     	if ( ebnfRoot==null ) {
-    	    $omos = DefaultOutputModelFactory.list(controller.getChoiceBlock((BlockAST)$blk, alts, $label));
+    	    Choice choice = controller.getChoiceBlock((BlockAST)$blk, alts, $label);
+    	    hasLookaheadBlock |= choice instanceof LLkAltBlock;
+    	    $omos = DefaultOutputModelFactory.list(choice);
     	}
     	else {
             Choice choice = controller.getEBNFBlock($ebnfRoot, alts);
-            hasLookaheadBlock |= choice instanceof PlusBlock || choice instanceof StarBlock;
+            hasLookaheadBlock |= choice instanceof PlusBlock || choice instanceof StarBlock || choice instanceof LLkAltBlock;
     	    $omos = DefaultOutputModelFactory.list(choice);
     	}
     	}
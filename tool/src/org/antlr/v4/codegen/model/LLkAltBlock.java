@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.analysis.LLkAnalyzer;
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.atn.BlockStartState;
+import org.antlr.v4.tool.ast.GrammarAST;
+
+import java.util.List;
+
+/** (A | B | C) where the alternatives are predicted by examining up to
+ *  {@link LLkAnalyzer#MAX_K} symbols with nested switch statements.
+ */
+public class LLkAltBlock extends Choice {
+	/** The lookahead tree which sets _alt to the predicted alternative */
+	public LLkPrediction prediction;
+
+	public LLkAltBlock(OutputModelFactory factory, GrammarAST blkOrEbnfRootAST, List<CodeBlockForAlt> alts) {
+		super(factory, blkOrEbnfRootAST, alts);
+		this.decision = ((BlockStartState)blkOrEbnfRootAST.atnState).decision;
+
+		LLkAnalyzer.LookaheadNode look = factory.getGrammar().decisionLLk.get(decision);
+		this.prediction = new LLkPrediction(factory, look);
+	}
+}
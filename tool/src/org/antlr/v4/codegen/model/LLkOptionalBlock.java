@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.tool.ast.GrammarAST;
+
+import java.util.List;
+
+/** (A | B | C)? where the lookahead tree predicts the exit branch as the
+ *  alternative following the last alternative of the block.
+ */
+public class LLkOptionalBlock extends LLkAltBlock {
+	public LLkOptionalBlock(OutputModelFactory factory, GrammarAST questionAST, List<CodeBlockForAlt> alts) {
+		super(factory, questionAST, alts);
+	}
+}
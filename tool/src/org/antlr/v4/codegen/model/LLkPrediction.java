@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.analysis.LLkAnalyzer;
+import org.antlr.v4.codegen.OutputModelFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A node of the lookahead tree of an {@link LLkAltBlock}, with the symbols
+ *  of each branch converted to token names of the target.
+ */
+public class LLkPrediction {
+	/** The lookahead symbol examined by this node, starting at 1 */
+	public int depth;
+	public List<Branch> branches = new ArrayList<Branch>();
+
+	public LLkPrediction(OutputModelFactory factory, LLkAnalyzer.LookaheadNode node) {
+		this.depth = node.depth;
+		for (LLkAnalyzer.LookaheadBranch branch : node.branches) {
+			branches.add(new Branch(factory, branch));
+		}
+	}
+
+	public static class Branch {
+		/** Token names matched by this branch */
+		public String[] look;
+		/** The predicted alternative if next is null */
+		public int alt;
+		public LLkPrediction next;
+
+		public Branch(OutputModelFactory factory, LLkAnalyzer.LookaheadBranch branch) {
+			look = factory.getTarget().getTokenTypesAsTargetLabels(factory.getGrammar(), branch.look.toArray());
+			alt = branch.alt;
+			if ( branch.next!=null ) {
+				next = new LLkPrediction(factory, branch.next);
+			}
+		}
+	}
+}
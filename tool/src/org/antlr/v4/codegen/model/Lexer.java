@@ -6,7 +6,9 @@
 
 package org.antlr.v4.codegen.model;
 
+import org.antlr.v4.analysis.LexerDFACompiler;
 import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
@@ -23,6 +25,8 @@ public class Lexer extends Recognizer {
 	@ModelElement public LinkedHashMap<Rule, RuleActionFunction> actionFuncs =
 		new LinkedHashMap<Rule, RuleActionFunction>();
 
+	@ModelElement public SerializedLexerDFA compiledDFA;
+
 	public Lexer(OutputModelFactory factory, LexerFile file) {
 		super(factory);
 		this.file = file; // who contains us?
@@ -30,5 +34,12 @@ public class Lexer extends Recognizer {
 		Grammar g = factory.getGrammar();
 		channels = new LinkedHashMap<String, Integer>(g.channelNameToValueMap);
 		modes = ((LexerGrammar)g).modes.keySet();
+
+		if (g.tool.compile_lexer) {
+			IntegerList serializedDFA = new LexerDFACompiler((LexerGrammar)g).compileAndSerialize();
+			if (serializedDFA != null) {
+				compiledDFA = new SerializedLexerDFA(factory, serializedDFA);
+			}
+		}
 	}
 }
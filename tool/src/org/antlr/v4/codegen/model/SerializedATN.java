@@ -19,8 +19,11 @@ public class SerializedATN extends OutputModelObject {
 	// TODO: make this into a kind of decl or multiple?
 	public List<String> serialized;
 	public SerializedATN(OutputModelFactory factory, ATN atn, List<String> ruleNames) {
+		this(factory, ATNSerializer.getSerialized(atn, ruleNames));
+	}
+
+	protected SerializedATN(OutputModelFactory factory, IntegerList data) {
 		super(factory);
-		IntegerList data = ATNSerializer.getSerialized(atn, ruleNames);
 		serialized = new ArrayList<String>(data.size());
 		for (int c : data.toArray()) {
 			String encoded = factory.getTarget().encodeIntAsCharEscape(c == -1 ? Character.MAX_VALUE : c);
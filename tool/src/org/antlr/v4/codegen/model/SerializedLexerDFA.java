@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.misc.IntegerList;
+
+/**
+ * The serialized form of the precomputed lexer DFA, generated for the
+ * {@code -Xcompile-lexer} tool option.
+ *
+ * @see org.antlr.v4.analysis.LexerDFACompiler
+ * @see org.antlr.v4.runtime.atn.CompiledLexerDFA
+ */
+public class SerializedLexerDFA extends SerializedATN {
+	public SerializedLexerDFA(OutputModelFactory factory, IntegerList data) {
+		super(factory, data);
+	}
+}
@@ -117,9 +117,9 @@ public class DOTGenerator {
 			buf.append("=>").append(s.getPrediction());
 		}
 		if ( grammar!=null ) {
-			BitSet alts = s.configs.getRepresentedAlternatives();
+			BitSet alts = s.getConfigs().getRepresentedAlternatives();
 			buf.append("\\n");
-			Set<ATNConfig> configurations = s.configs;
+			Set<ATNConfig> configurations = s.getConfigs();
 			for (int alt = alts.nextSetBit(0); alt >= 0; alt = alts.nextSetBit(alt + 1)) {
 				if ( alt>alts.nextSetBit(0) ) {
 					buf.append("\\n");
@@ -7,6 +7,7 @@
 package org.antlr.v4.tool;
 
 import org.antlr.v4.Tool;
+import org.antlr.v4.analysis.LLkAnalyzer;
 import org.antlr.v4.analysis.LeftRecursiveRuleTransformer;
 import org.antlr.v4.automata.ParserATNFactory;
 import org.antlr.v4.misc.CharSupport;
@@ -212,6 +213,12 @@ public class Grammar implements AttributeResolver {
 
 	public List<IntervalSet[]> decisionLOOK;
 
+	/**
+	 * The fixed-k lookahead of each decision which is LL(k) but not LL(1), or
+	 * {@code null} for all other decisions.
+	 */
+	public List<LLkAnalyzer.LookaheadNode> decisionLLk;
+
 	@NotNull
 	public final Tool tool;
 
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Helpers for tests of the DFA features which are observed across several
+ * recognizers sharing the ATN and the DFA of a prototype interpreter.
+ */
+final class SharedDFAFixtures {
+	/**
+	 * A lexer grammar for simple assignments, calls and expressions.
+	 */
+	static final String STATEMENT_LEXER =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"ASSIGN : '=' ;\n" +
+		"SEMI : ';' ;\n" +
+		"PLUS : '+' ;\n" +
+		"LPAREN : '(' ;\n" +
+		"RPAREN : ')' ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	private SharedDFAFixtures() {
+	}
+
+	/**
+	 * Creates a lexer interpreter for {@code input} which shares the ATN and
+	 * the DFA of {@code prototype}.
+	 */
+	static LexerInterpreter createLexerInterpreter(LexerInterpreter prototype, String input) {
+		return new LexerInterpreter(prototype.getGrammarFileName(), prototype.getVocabulary(),
+			Arrays.asList(prototype.getRuleNames()), Arrays.asList(prototype.getChannelNames()), Arrays.asList(prototype.getModeNames()),
+			prototype.getATN(), CharStreams.fromString(input));
+	}
+
+	/**
+	 * Lexes {@code input} with the DFA of {@code prototype}, and returns the
+	 * type, text and position of each token.
+	 */
+	static List<String> lex(LexerInterpreter prototype, String input) {
+		LexerInterpreter lexer = createLexerInterpreter(prototype, input);
+		lexer.removeErrorListeners();
+		List<String> tokens = new ArrayList<String>();
+		for (Token t = lexer.nextToken(); t.getType() != Token.EOF; t = lexer.nextToken()) {
+			tokens.add(t.getType() + ":" + t.getText() + "@" + t.getLine() + ":" + t.getCharPositionInLine());
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Parses {@code input} from the rule {@code startRule} with the DFAs of
+	 * the prototypes, and returns the parse tree as a string.
+	 */
+	static String parse(LexerInterpreter lexerPrototype, ParserInterpreter parserPrototype, int startRule, String input) {
+		ParserInterpreter parser = new ParserInterpreter(parserPrototype);
+		parser.setInputStream(new CommonTokenStream(createLexerInterpreter(lexerPrototype, input)));
+		parser.removeErrorListeners();
+		return parser.parse(startRule).toStringTree(parser);
+	}
+
+	/**
+	 * Parses {@code input} from the rule {@code startRule} with new
+	 * interpreters, which do not share their DFA with the interpreters used by
+	 * the test.
+	 */
+	static String parseUnshared(LexerGrammar lg, Grammar g, int startRule, String input) {
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input))));
+		parser.removeErrorListeners();
+		return parser.parse(startRule).toStringTree(parser);
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.BatchParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBatchParser extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+	private ParserInterpreter prototype;
+
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"ASSIGN : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"LBRACE : '{' ;\n" +
+			"RBRACE : '}' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN (INT | ID) SEMI | LBRACE stat* RBRACE ;\n",
+			lg);
+		prototype = g.createParserInterpreter(null);
+	}
+
+	@Test
+	public void testRecognizersAreReused() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			BatchParser<ParserInterpreter, String> batch = createBatchParser(executor, 8);
+			List<String> inputs = new ArrayList<String>();
+			List<CompletableFuture<String>> results = new ArrayList<CompletableFuture<String>>();
+			for (int i = 0; i < 200; i++) {
+				StringBuilder input = new StringBuilder();
+				for (int j = 0; j < i % 10; j++) {
+					input.append(j % 3 == 0 ? "{ x = " + j + "; }\n" : "y = z;\n");
+				}
+
+				inputs.add(input.toString());
+				results.add(batch.submit(input.toString()));
+				assertTrue(batch.getPendingCount() <= 8);
+			}
+
+			for (int i = 0; i < inputs.size(); i++) {
+				assertEquals(parseSequentially(inputs.get(i)), results.get(i).get());
+			}
+
+			assertTrue(batch.getCreatedCount() <= 4);
+			assertEquals(0, batch.getPendingCount());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFailedParseCompletesExceptionally() throws Exception {
+		final int s = g.getRule("s").index;
+		BatchParser<ParserInterpreter, ParserRuleContext> batch = new BatchParser<ParserInterpreter, ParserRuleContext>(
+			lg::createLexerInterpreter, this::createParserInterpreter,
+			p -> {
+				ParserRuleContext tree = p.parse(s);
+				if (p.getNumberOfSyntaxErrors() > 0) {
+					throw new IllegalStateException(p.getNumberOfSyntaxErrors() + " syntax errors");
+				}
+
+				return tree;
+			},
+			Runnable::run, 1);
+
+		CompletableFuture<ParserRuleContext> failed = batch.submit("x = ;");
+		CompletableFuture<ParserRuleContext> parsed = batch.submit("x = 1;");
+		try {
+			failed.get();
+			fail();
+		}
+		catch (ExecutionException ex) {
+			assertEquals("1 syntax errors", ex.getCause().getMessage());
+		}
+
+		assertEquals("(s (stat x = 1 ;) <EOF>)", parsed.get().toStringTree(prototype));
+		// the recognizers of the failed parse were discarded
+		assertEquals(2, batch.getCreatedCount());
+	}
+
+	@Test
+	public void testSubmitBlocksWhenQueueIsFull() throws Exception {
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		final BatchParser<ParserInterpreter, String> batch = createBatchParser(queued::add, 2);
+		batch.submit("x = 1;");
+		batch.submit("x = 2;");
+		assertEquals(2, batch.getPendingCount());
+
+		final AtomicBoolean submitted = new AtomicBoolean();
+		Thread producer = new Thread(() -> {
+			try {
+				batch.submit("x = 3;");
+				submitted.set(true);
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		producer.start();
+		producer.join(200);
+		assertFalse(submitted.get());
+
+		queued.get(0).run();
+		producer.join(TimeUnit.SECONDS.toMillis(10));
+		assertTrue(submitted.get());
+		assertEquals(2, batch.getPendingCount());
+	}
+
+	private BatchParser<ParserInterpreter, String> createBatchParser(Executor executor, int maxPending) {
+		final int s = g.getRule("s").index;
+		return new BatchParser<ParserInterpreter, String>(
+			lg::createLexerInterpreter, this::createParserInterpreter,
+			p -> {
+				ParserRuleContext tree = p.parse(s);
+				assertEquals(-1, tree.invokingState);
+				return tree.toStringTree(p);
+			},
+			executor, maxPending);
+	}
+
+	private ParserInterpreter createParserInterpreter(TokenStream input) {
+		// the parsers share the ATN and the DFA of the prototype
+		ParserInterpreter parser = new ParserInterpreter(prototype);
+		parser.setInputStream(input);
+		parser.removeErrorListeners();
+		return parser;
+	}
+
+	private String parseSequentially(String input) {
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input))));
+		parser.removeErrorListeners();
+		return parser.parse(g.getRule("s").index).toStringTree(parser);
+	}
+}
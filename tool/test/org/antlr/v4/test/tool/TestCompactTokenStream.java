@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.CompactTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.WritableToken;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestCompactTokenStream extends TestBufferedTokenStream {
+
+	@Override
+	protected TokenStream createTokenStream(TokenSource src) {
+		return new CompactTokenStream(src);
+	}
+
+	@Test public void testSameTokensAsCommonTokenStream() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar t;\n"+
+			"ID : 'a'..'z'+;\n" +
+			"INT : '0'..'9'+;\n" +
+			"SEMI : ';';\n" +
+			"ASSIGN : '=';\n" +
+			"WS : [ \\n]+ -> channel(HIDDEN);\n");
+		String input = "x = 34;\n  y = x;\n";
+		CommonTokenStream expected = new CommonTokenStream(g.createLexerInterpreter(CharStreams.fromString(input)));
+		CompactTokenStream tokens = new CompactTokenStream(g.createLexerInterpreter(CharStreams.fromString(input)));
+		expected.fill();
+		tokens.fill();
+
+		assertEquals(expected.size(), tokens.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), tokens.get(i).toString());
+			assertSame(tokens.getTokenSource(), tokens.get(i).getTokenSource());
+		}
+
+		assertEquals(expected.getText(), tokens.getText());
+		assertEquals(expected.getHiddenTokensToRight(5).toString(), tokens.getHiddenTokensToRight(5).toString());
+		assertEquals(expected.getHiddenTokensToLeft(4).toString(), tokens.getHiddenTokensToLeft(4).toString());
+
+		tokens.seek(0);
+		for (int i = 1; i <= 10; i++) {
+			assertEquals(expected.LA(i), tokens.LA(i));
+			assertEquals(expected.LT(i).getTokenIndex(), tokens.LT(i).getTokenIndex());
+		}
+
+		tokens.consume();
+		assertEquals("=", tokens.LT(1).getText());
+		assertEquals("x", tokens.LT(-1).getText());
+		assertEquals(g.getTokenType("ASSIGN"), tokens.LA(1));
+	}
+
+	@Test public void testViewsAreWritable() throws Exception {
+		List<Token> source = Arrays.<Token>asList(
+			new CommonToken(1, "x"),
+			new CommonToken(2, "="),
+			new CommonToken(Token.EOF, ""));
+		CompactTokenStream tokens = new CompactTokenStream(new ListTokenSource(source));
+		tokens.fill();
+
+		Token first = tokens.get(0);
+		assertEquals(first, tokens.get(0));
+		assertEquals("x", first.getText());
+
+		WritableToken writable = (WritableToken)first;
+		writable.setText("y");
+		writable.setType(3);
+		writable.setChannel(Lexer.HIDDEN);
+
+		assertEquals("y", tokens.get(0).getText());
+		assertEquals(3, tokens.get(0).getType());
+		assertEquals("y=", tokens.getText());
+		tokens.seek(0);
+		assertEquals("=", tokens.LT(1).getText());
+	}
+
+	@Test public void testTokenSubclassesAreNotCopied() throws Exception {
+		@SuppressWarnings("serial")
+		Token hidden = new CommonToken(1, " ") {{channel = Lexer.HIDDEN;}};
+		Token plain = new CommonToken(1, "x");
+		CompactTokenStream tokens = new CompactTokenStream(new ListTokenSource(Arrays.asList(
+			hidden, plain, new CommonToken(Token.EOF, ""))));
+		tokens.fill();
+
+		assertSame(hidden, tokens.get(0));
+		assertNotSame(plain, tokens.get(1));
+		assertEquals("x", tokens.LT(1).getText());
+		assertEquals(1, tokens.LT(1).getTokenIndex());
+		assertEquals(" x", tokens.getText());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.analysis.LexerDFACompiler;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.CompiledLexerATNSimulator;
+import org.antlr.v4.runtime.atn.CompiledLexerDFA;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestCompiledLexer extends BaseTest {
+	private static final String LEXER_GRAMMAR =
+		"lexer grammar L;\n" +
+		"channels { COMMENTS }\n" +
+		"ID : [a-zA-Z_] [a-zA-Z_0-9]* ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"FLOAT : [0-9]+ '.' [0-9]* ;\n" +
+		"LBRACK : '[' -> pushMode(INSIDE) ;\n" +
+		"QUOTE : '\"' -> more, pushMode(STR) ;\n" +
+		"COMMENT : '#' ~[\\n]* -> channel(COMMENTS) ;\n" +
+		"WS : [ \\t\\r\\n]+ -> skip ;\n" +
+		"mode INSIDE;\n" +
+		"RBRACK : ']' -> popMode ;\n" +
+		"KEY : [a-z]+ '=' ;\n" +
+		"VALUE : ~[\\] =]+ ;\n" +
+		"SP : ' ' -> skip ;\n" +
+		"mode STR;\n" +
+		"STRING : '\"' -> popMode ;\n" +
+		"ESC : '\\\\' . -> more ;\n" +
+		"TEXT : ~[\"\\\\] -> more ;\n";
+
+	private static final String INPUT =
+		"abc 12 3.5 [key=value x=\u00e9t\u00e9] \"a \\\" b\" # comment\n" +
+		"def 7. ? \"unterminated";
+
+	@Test public void testCompiledModesMatchInterpreter() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER_GRAMMAR);
+		CompiledLexerDFA dfa = compile(lg);
+		assertNotNull(dfa.getMode(0));
+		assertNotNull(dfa.getMode(1));
+		assertNotNull(dfa.getMode(2));
+
+		assertEquals(lex(lg, null), lex(lg, dfa));
+	}
+
+	@Test public void testModeWithPredicateIsNotCompiled() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"LBRACK : '[' -> pushMode(PRED) ;\n" +
+			"mode PRED;\n" +
+			"B : 'b' {true}? ;\n" +
+			"C : 'c' ;\n" +
+			"RBRACK : ']' -> popMode ;\n");
+		CompiledLexerDFA dfa = compile(lg);
+		assertNotNull(dfa.getMode(0));
+		assertNull(dfa.getMode(1));
+
+		String input = "a[bc]a";
+		assertEquals(lex(lg, null, input), lex(lg, dfa, input));
+	}
+
+	@Test public void testGeneratedLexer() throws Exception {
+		String expected = execLexer("L.g4", LEXER_GRAMMAR, "L", INPUT);
+
+		boolean success = rawGenerateAndBuildRecognizer("L.g4", LEXER_GRAMMAR, null, "L", "-Xcompile-lexer");
+		assertTrue(success);
+		writeFile(tmpdir, "input", INPUT);
+		writeLexerTestFile("L", false);
+		compile("Test.java");
+		String found = execClass("Test");
+		assertEquals(expected, found);
+		assertTrue(load(tmpdir + "/L.java", null).contains("CompiledLexerATNSimulator"));
+	}
+
+	private static CompiledLexerDFA compile(LexerGrammar lg) {
+		IntegerList serialized = new LexerDFACompiler(lg).compileAndSerialize();
+		assertNotNull(serialized);
+
+		char[] data = new char[serialized.size()];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (char)serialized.get(i);
+		}
+
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString(""));
+		return CompiledLexerDFA.deserialize(data, lexer.getATN());
+	}
+
+	private static List<String> lex(LexerGrammar lg, CompiledLexerDFA dfa) {
+		return lex(lg, dfa, INPUT);
+	}
+
+	/**
+	 * Returns the tokens of {@code input}, matched with the tables in
+	 * {@code dfa}, or with the ATN if {@code dfa} is {@code null}.
+	 */
+	private static List<String> lex(LexerGrammar lg, CompiledLexerDFA dfa, String input) {
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString(input));
+		if (dfa != null) {
+			lexer.setInterpreter(new CompiledLexerATNSimulator(lexer, lexer.getATN(), dfa));
+		}
+
+		lexer.removeErrorListeners();
+		List<String> tokens = new ArrayList<String>();
+		for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+			tokens.add(token.toString());
+		}
+
+		return tokens;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.misc.ConcurrentLongIntHashMap;
+import org.antlr.v4.runtime.misc.LongObjectHashMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentLongHashMap {
+	@Test
+	public void intMapPutAndGet() {
+		ConcurrentLongIntHashMap map = new ConcurrentLongIntHashMap(0);
+		for (long key = -500; key <= 500; key++) {
+			map.put(key << 32, (int)key * 2);
+		}
+
+		assertEquals(1001, map.size());
+		for (long key = -500; key <= 500; key++) {
+			assertEquals((int)key * 2, map.get(key << 32, -1));
+		}
+
+		assertEquals(-1, map.get(501L << 32, -1));
+		assertEquals(0, map.get(0, -1));
+	}
+
+	@Test
+	public void intMapPutIfAbsent() {
+		ConcurrentLongIntHashMap map = new ConcurrentLongIntHashMap();
+		assertTrue(map.putIfAbsent(0, 1));
+		assertTrue(map.putIfAbsent(3, 1));
+		assertFalse(map.putIfAbsent(0, 2));
+		assertFalse(map.putIfAbsent(3, 2));
+		map.put(3, 4);
+
+		assertEquals(1, map.get(0, -1));
+		assertEquals(4, map.get(3, -1));
+		assertEquals(2, map.size());
+
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		assertArrayEquals(new long[] { 0, 3 }, keys);
+	}
+
+	@Test
+	public void intMapClear() {
+		ConcurrentLongIntHashMap map = new ConcurrentLongIntHashMap();
+		map.put(0, 1);
+		map.put(Long.MIN_VALUE, 2);
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0));
+		assertFalse(map.containsKey(Long.MIN_VALUE));
+		assertEquals(0, map.keys().length);
+	}
+
+	@Test
+	public void unsynchronizedObjectMapRemoveAndClear() {
+		LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+		for (long key = 0; key < 100; key++) {
+			assertNull(map.put(key << 8, Long.toString(key)));
+		}
+
+		for (long key = 0; key < 100; key += 2) {
+			assertEquals(Long.toString(key), map.remove(key << 8));
+		}
+
+		assertEquals(50, map.size());
+		for (long key = 0; key < 100; key++) {
+			assertEquals(key % 2 == 0 ? null : Long.toString(key), map.get(key << 8));
+		}
+
+		LongObjectHashMap<String> copy = new LongObjectHashMap<String>(map);
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(1L << 8));
+		assertEquals("1", copy.get(1L << 8));
+
+		map.put(7, "y");
+		assertEquals("y", map.get(7));
+		assertEquals(1, map.size());
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAEvictionPolicy;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestDFAEvictionPolicy extends BaseTest {
+	private static final String LEXER_GRAMMAR =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"PLUS : '+' ;\n" +
+		"MINUS : '-' ;\n" +
+		"MULT : '*' ;\n" +
+		"DIV : '/' ;\n" +
+		"LPAREN : '(' ;\n" +
+		"RPAREN : ')' ;\n" +
+		"SEMI : ';' ;\n" +
+		"WS : [ \\t\\r\\n]+ -> skip ;\n";
+
+	private static final String PARSER_GRAMMAR =
+		"parser grammar T;\n" +
+		"s : stat+ EOF ;\n" +
+		"stat : e SEMI ;\n" +
+		"e : e (MULT | DIV) e\n" +
+		"  | e (PLUS | MINUS) e\n" +
+		"  | MINUS e\n" +
+		"  | LPAREN e RPAREN\n" +
+		"  | ID LPAREN e RPAREN\n" +
+		"  | ID\n" +
+		"  | INT\n" +
+		"  ;\n";
+
+	private static final String INPUT =
+		"a + b * (c - 12) / 3;\n" +
+		"f(x) * -g(y + 1);\n" +
+		"((a));\n" +
+		"abc / def - ghi * jkl;\n";
+
+	@Test public void testPerDFALimit() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER_GRAMMAR);
+		Grammar g = new Grammar(PARSER_GRAMMAR, lg);
+
+		String expected = parse(lg, g, null);
+
+		DFAEvictionPolicy policy = new DFAEvictionPolicy(4, DFAEvictionPolicy.UNLIMITED);
+		String actual = parse(lg, g, policy);
+		assertEquals(expected, actual);
+		assertTrue(policy.getEvictedStates() > 0);
+		assertTrue(policy.getSweeps() > 0);
+	}
+
+	@Test public void testTotalLimit() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER_GRAMMAR);
+		Grammar g = new Grammar(PARSER_GRAMMAR, lg);
+
+		String expected = parse(lg, g, null);
+
+		DFAEvictionPolicy policy = new DFAEvictionPolicy(DFAEvictionPolicy.UNLIMITED, 8);
+		String actual = parse(lg, g, policy);
+		assertEquals(expected, actual);
+		assertTrue(policy.getEvictedStates() > 0);
+	}
+
+	/**
+	 * Verifies an accept state which is reached by every other prediction is
+	 * not evicted, even though no edge is ever looked up from it.
+	 */
+	@Test public void testHotAcceptStateSurvivesSweep() throws Exception {
+		// stat predicts one alternative per punctuation token after ID, so each
+		// statement with a new punctuation token adds an accept state to the
+		// DFA of stat
+		String punctuation = "=+-*/%&|^!~<>?:,.@#";
+		StringBuilder lexerGrammar = new StringBuilder("lexer grammar L;\n");
+		StringBuilder parserGrammar = new StringBuilder("parser grammar T;\ns : stat EOF ;\nstat");
+		for (int i = 0; i < punctuation.length(); i++) {
+			lexerGrammar.append("T").append(i).append(" : '").append(punctuation.charAt(i)).append("' ;\n");
+			parserGrammar.append(i == 0 ? " : " : " | ").append("ID T").append(i).append(" SEMI");
+		}
+
+		lexerGrammar.append("ID : [a-z]+ ;\nSEMI : ';' ;\nWS : [ ]+ -> skip ;\n");
+		parserGrammar.append(" ;\n");
+		LexerGrammar lg = new LexerGrammar(lexerGrammar.toString());
+		Grammar g = new Grammar(parserGrammar.toString(), lg);
+
+		LexerInterpreter lexer = lg.createLexerInterpreter(null);
+		ParserInterpreter parser = g.createParserInterpreter(null);
+		DFAEvictionPolicy policy = new DFAEvictionPolicy(12, DFAEvictionPolicy.UNLIMITED);
+		parser.getATN().setDFAEvictionPolicy(policy);
+		DFA dfa = null;
+		for (DFA current : parser.getATN().decisionToDFA) {
+			if (current.atnStartState.ruleIndex == g.rules.get("stat").index) {
+				dfa = current;
+			}
+		}
+
+		assertNotNull(dfa);
+
+		// the first sweep clears the reference bit of every state
+		String hot = "a = ;";
+		parse(lexer, parser, g, hot);
+		int next = 1;
+		while (policy.getSweeps() == 0) {
+			parse(lexer, parser, g, "b " + punctuation.charAt(next++) + " ;");
+		}
+
+		// the hot statement is parsed again, then new statements are parsed
+		// until the next sweep
+		parse(lexer, parser, g, hot);
+		DFAState hotState = null;
+		for (DFAState state : dfa.states.values()) {
+			if (state.isAcceptState() && state.getPrediction() == 1) {
+				hotState = state;
+			}
+		}
+
+		assertNotNull(hotState);
+		while (policy.getSweeps() == 1) {
+			assertTrue(next < punctuation.length());
+			parse(lexer, parser, g, "b " + punctuation.charAt(next++) + " ;");
+		}
+
+		assertFalse(hotState.isEvicted());
+		assertSame(hotState, dfa.states.get(hotState));
+		assertTrue(policy.getEvictedStates() > 0);
+	}
+
+	private static void parse(LexerInterpreter lexer, ParserInterpreter parser, Grammar g, String input) {
+		lexer.setInputStream(CharStreams.fromString(input));
+		parser.setInputStream(new CommonTokenStream(lexer));
+		parser.parse(g.rules.get("s").index);
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+	}
+
+	/**
+	 * Parses {@link #INPUT} several times with a parser limited by
+	 * {@code policy}, and verifies the parser DFA is limited as requested.
+	 */
+	private static String parse(LexerGrammar lg, Grammar g, DFAEvictionPolicy policy) {
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString(INPUT));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexer));
+		ATN atn = parser.getATN();
+		atn.setDFAEvictionPolicy(policy);
+
+		String result = null;
+		for (int i = 0; i < 5; i++) {
+			lexer.setInputStream(CharStreams.fromString(INPUT));
+			parser.setInputStream(new CommonTokenStream(lexer));
+			ParseTree tree = parser.parse(g.rules.get("s").index);
+			result = tree.toStringTree(parser);
+
+			if (policy != null) {
+				int total = 0;
+				for (DFA dfa : atn.decisionToDFA) {
+					assertTrue(dfa.states.size() <= policy.getMaxStatesPerDFA());
+					total += dfa.states.size();
+				}
+
+				assertEquals(total, policy.getTotalStates());
+			}
+		}
+
+		return result;
+	}
+}
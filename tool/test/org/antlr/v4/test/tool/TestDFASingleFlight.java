@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFASingleFlight;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.antlr.v4.test.tool.SharedDFAFixtures.parse;
+import static org.antlr.v4.test.tool.SharedDFAFixtures.parseUnshared;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDFASingleFlight extends BaseTest {
+	@Test
+	public void testWaitingThreadReusesTarget() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n");
+		DFA dfa = lg.createLexerInterpreter(null).getATN().modeToDFA[0];
+		final DFAState s = dfa.addState(new DFAState(dfa, new ATNConfigSet()));
+		final DFAState target = new DFAState(dfa, new ATNConfigSet());
+		final DFASingleFlight singleFlight = new DFASingleFlight(10, TimeUnit.SECONDS);
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<DFAState> computed = executor.submit(() -> singleFlight.computeTarget(s, 'a', () -> {
+				started.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException ex) {
+					throw new IllegalStateException(ex);
+				}
+
+				s.setTarget('a', target);
+				return target;
+			}));
+
+			started.await();
+			final AtomicReference<Thread> waiter = new AtomicReference<Thread>();
+			Future<DFAState> reused = executor.submit(() -> {
+				waiter.set(Thread.currentThread());
+				return singleFlight.computeTarget(s, 'a', () -> {
+					fail("the target was computed twice");
+					return null;
+				});
+			});
+
+			// the only timed wait of the second thread is the wait for the
+			// computation of the first thread
+			while (!reused.isDone() && (waiter.get() == null || waiter.get().getState() != Thread.State.TIMED_WAITING)) {
+				Thread.yield();
+			}
+
+			release.countDown();
+
+			assertSame(target, computed.get());
+			assertSame(target, reused.get());
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, singleFlight.getComputations());
+		assertEquals(1, singleFlight.getCollapsedComputations());
+		assertEquals(0, singleFlight.getDuplicateComputations());
+		assertTrue(singleFlight.getWaitNanos() > 0);
+	}
+
+	@Test
+	public void testWaitingThreadComputesMissingEdge() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n");
+		DFA dfa = lg.createLexerInterpreter(null).getATN().modeToDFA[0];
+		final DFAState s = dfa.addState(new DFAState(dfa, new ATNConfigSet()));
+		final DFAState target = new DFAState(dfa, new ATNConfigSet());
+		final DFASingleFlight singleFlight = new DFASingleFlight(10, TimeUnit.MILLISECONDS);
+
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// the first computation does not add its edge, like a target which
+			// depends on a semantic predicate
+			executor.submit(() -> singleFlight.computeTarget(s, 'a', () -> {
+				try {
+					release.await();
+				}
+				catch (InterruptedException ex) {
+					throw new IllegalStateException(ex);
+				}
+
+				return target;
+			}));
+
+			while (singleFlight.getComputations() == 0) {
+				Thread.sleep(1);
+			}
+
+			assertSame(target, singleFlight.computeTarget(s, 'a', () -> target));
+		}
+		finally {
+			release.countDown();
+			executor.shutdown();
+		}
+
+		assertEquals(0, singleFlight.getCollapsedComputations());
+		assertEquals(1, singleFlight.getDuplicateComputations());
+	}
+
+	@Test
+	public void testConcurrentParse() throws Exception {
+		final LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"ASSIGN : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"PLUS : '+' ;\n" +
+			"LBRACE : '{' ;\n" +
+			"RBRACE : '}' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		// the ambiguous alternatives of stat use full-context prediction, which
+		// computes its targets without the single-flight policy
+		final Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN e SEMI | ID ASSIGN ID SEMI | LBRACE stat* RBRACE ;\n" +
+			"e : e PLUS e | INT | ID ;\n",
+			lg);
+
+		final List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < 200; i++) {
+			StringBuilder input = new StringBuilder();
+			for (int j = 0; j < i % 13; j++) {
+				input.append(j % 4 == 0 ? "{ a = b; }\n" : "x = y + " + j + ";\n");
+			}
+
+			inputs.add(input.toString());
+		}
+
+		final LexerInterpreter lexerPrototype = lg.createLexerInterpreter(null);
+		final ParserInterpreter parserPrototype = g.createParserInterpreter(null);
+		DFASingleFlight lexerSingleFlight = new DFASingleFlight();
+		DFASingleFlight parserSingleFlight = new DFASingleFlight();
+		lexerPrototype.getATN().setDFASingleFlight(lexerSingleFlight);
+		parserPrototype.getATN().setDFASingleFlight(parserSingleFlight);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final int s = g.getRule("s").index;
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (final String input : inputs) {
+				results.add(executor.submit(() -> parse(lexerPrototype, parserPrototype, s, input)));
+			}
+
+			for (int i = 0; i < inputs.size(); i++) {
+				assertEquals(parseUnshared(lg, g, s, inputs.get(i)), results.get(i).get());
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		assertTrue(lexerSingleFlight.getComputations() > 0);
+		assertTrue(parserSingleFlight.getComputations() > 0);
+	}
+}
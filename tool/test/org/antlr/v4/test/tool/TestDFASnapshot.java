@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.DFASnapshotDeserializer;
+import org.antlr.v4.runtime.atn.DFASnapshotSerializer;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class TestDFASnapshot extends BaseTest {
+	private static final String LEXER_GRAMMAR =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"PLUS : '+' ;\n" +
+		"MULT : '*' ;\n" +
+		"LPAREN : '(' ;\n" +
+		"RPAREN : ')' ;\n" +
+		"WS : [ \\t\\r\\n]+ -> skip ;\n";
+
+	private static final String PARSER_GRAMMAR =
+		"parser grammar T;\n" +
+		"s : e EOF ;\n" +
+		"e : e MULT e\n" +
+		"  | e PLUS e\n" +
+		"  | LPAREN e RPAREN\n" +
+		"  | ID\n" +
+		"  | INT\n" +
+		"  ;\n";
+
+	@Test public void testRoundTrip() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER_GRAMMAR);
+		Grammar g = new Grammar(PARSER_GRAMMAR, lg);
+
+		LexerInterpreter warmLexer = lg.createLexerInterpreter(CharStreams.fromString("a + b * (c + 12) * 3"));
+		ParserInterpreter warmParser = g.createParserInterpreter(new CommonTokenStream(warmLexer));
+		assertNotNull(warmParser.parse(g.rules.get("s").index));
+
+		byte[] lexerSnapshot = serialize(warmLexer.getATN());
+		byte[] parserSnapshot = serialize(warmParser.getATN());
+
+		LexerInterpreter coldLexer = lg.createLexerInterpreter(CharStreams.fromString(""));
+		ParserInterpreter coldParser = g.createParserInterpreter(new CommonTokenStream(coldLexer));
+		new DFASnapshotDeserializer(coldLexer.getATN()).deserialize(new ByteArrayInputStream(lexerSnapshot));
+		new DFASnapshotDeserializer(coldParser.getATN()).deserialize(new ByteArrayInputStream(parserSnapshot));
+
+		ATN warmLexerATN = warmLexer.getATN();
+		ATN coldLexerATN = coldLexer.getATN();
+		for (int i = 0; i < warmLexerATN.modeToDFA.length; i++) {
+			String expected = warmLexerATN.modeToDFA[i].toLexerString();
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, coldLexerATN.modeToDFA[i].toLexerString());
+		}
+
+		ATN warmParserATN = warmParser.getATN();
+		ATN coldParserATN = coldParser.getATN();
+		for (int i = 0; i < warmParserATN.decisionToDFA.length; i++) {
+			DFA expected = warmParserATN.decisionToDFA[i];
+			DFA actual = coldParserATN.decisionToDFA[i];
+			assertEquals(expected.states.size(), actual.states.size());
+			assertEquals(expected.toString(g.getVocabulary(), g.getRuleNames()), actual.toString(g.getVocabulary(), g.getRuleNames()));
+		}
+
+		// the restored DFA must be usable for parsing, and writing it again
+		// must produce the same snapshot
+		coldLexer.setInputStream(CharStreams.fromString("a + b * (c + 12) * 3"));
+		coldParser.setInputStream(new CommonTokenStream(coldLexer));
+		assertNotNull(coldParser.parse(g.rules.get("s").index));
+		assertEquals(parserSnapshot.length, serialize(coldParserATN).length);
+	}
+
+	@Test public void testRejectDifferentGrammar() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER_GRAMMAR);
+		LexerInterpreter warmLexer = lg.createLexerInterpreter(CharStreams.fromString("a + b"));
+		warmLexer.getAllTokens();
+		byte[] snapshot = serialize(warmLexer.getATN());
+
+		LexerGrammar other = new LexerGrammar(LEXER_GRAMMAR.replace("'+'", "'-'"));
+		LexerInterpreter otherLexer = other.createLexerInterpreter(CharStreams.fromString(""));
+		try {
+			new DFASnapshotDeserializer(otherLexer.getATN()).deserialize(new ByteArrayInputStream(snapshot));
+			fail("Expected the snapshot to be rejected.");
+		}
+		catch (InvalidClassException ex) {
+			// expected
+		}
+
+		for (DFA dfa : otherLexer.getATN().modeToDFA) {
+			assertEquals(0, dfa.states.size());
+		}
+	}
+
+	private static byte[] serialize(ATN atn) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new DFASnapshotSerializer(atn).serialize(output);
+		return output.toByteArray();
+	}
+}
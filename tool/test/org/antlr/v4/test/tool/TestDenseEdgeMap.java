@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.dfa.AbstractEdgeMap;
+import org.antlr.v4.runtime.dfa.DenseEdgeMap;
+import org.antlr.v4.runtime.dfa.EmptyEdgeMap;
+import org.antlr.v4.runtime.dfa.HashEdgeMap;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestDenseEdgeMap {
+	private static final int[] KEYS = { 'a', 0xE9, 0x4E00, 0x4E01, 0x1F600, 0x1F601, 0x10FFFF };
+
+	@Test
+	public void testEdgesAboveDenseRange() {
+		AbstractEdgeMap<String> map = new EmptyEdgeMap<String>(0, 0x10FFFF);
+		for (int key : KEYS) {
+			map = map.put(key, Integer.toHexString(key));
+		}
+
+		assertTrue(map instanceof DenseEdgeMap<?>);
+		AbstractEdgeMap<String> sparse = ((DenseEdgeMap<String>)map).getSparseEdgeMap();
+		assertFalse(sparse instanceof DenseEdgeMap<?>);
+		assertEquals(KEYS.length - 1, sparse.size());
+
+		assertEquals(KEYS.length, map.size());
+		for (int key : KEYS) {
+			assertEquals(Integer.toHexString(key), map.get(key));
+		}
+
+		assertNull(map.get('b'));
+		assertNull(map.get(0x4E02));
+		assertNull(map.get(0x1F5FF));
+
+		Map<Integer, String> entries = map.toMap();
+		assertEquals(KEYS.length, entries.size());
+		for (int key : KEYS) {
+			assertEquals(Integer.toHexString(key), entries.get(key));
+		}
+
+		map = map.remove(0x4E00);
+		assertEquals(KEYS.length - 1, map.size());
+		assertNull(map.get(0x4E00));
+		assertEquals("4e01", map.get(0x4E01));
+	}
+
+	@Test
+	public void testOnlyEdgesAboveDenseRange() {
+		AbstractEdgeMap<String> map = new EmptyEdgeMap<String>(0, 0x10FFFF);
+		map = map.put(0x1F600, "grinning");
+		map = map.put(0x1F601, "beaming");
+
+		assertTrue(map instanceof DenseEdgeMap<?>);
+		AbstractEdgeMap<String> sparse = ((DenseEdgeMap<String>)map).getSparseEdgeMap();
+		assertTrue(sparse instanceof HashEdgeMap<?>);
+		assertEquals(2, sparse.size());
+
+		assertEquals(2, map.size());
+		assertEquals("grinning", map.get(0x1F600));
+		assertEquals("beaming", map.get(0x1F601));
+		assertNull(map.get(0x1F602));
+		assertNull(map.get(0));
+
+		assertSame(map, map.put(0x1F602, "smiling"));
+		assertEquals("smiling", map.get(0x1F602));
+		assertEquals(3, map.size());
+	}
+}
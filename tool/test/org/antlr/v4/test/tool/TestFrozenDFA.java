@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.FrozenDFA;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.antlr.v4.test.tool.SharedDFAFixtures.lex;
+import static org.antlr.v4.test.tool.SharedDFAFixtures.parse;
+import static org.antlr.v4.test.tool.SharedDFAFixtures.parseUnshared;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestFrozenDFA extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(SharedDFAFixtures.STATEMENT_LEXER);
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN e SEMI | ID LPAREN RPAREN SEMI | ID ASSIGN ID LPAREN RPAREN SEMI ;\n" +
+			"e : e PLUS e | INT | ID ;\n",
+			lg);
+	}
+
+	@Test
+	public void testFrozenLexer() {
+		LexerInterpreter prototype = lg.createLexerInterpreter(null);
+		DFA dfa = prototype.getATN().modeToDFA[0];
+		lex(prototype, "abc = 12;");
+		FrozenDFA frozen = dfa.freeze();
+		assertSame(frozen, dfa.getFrozenDFA());
+		assertEquals(dfa.states.size(), frozen.getStateCount());
+
+		// the new characters and the recognition error use the mutable DFA
+		String input = "abc = 12;\nxyz = abc + 345;\nq = 9 # 8;\n";
+		assertEquals(lex(lg.createLexerInterpreter(null), input), lex(prototype, input));
+		assertTrue(dfa.states.size() > frozen.getStateCount());
+
+		assertEquals(dfa.states.size(), dfa.freeze().getStateCount());
+		assertEquals(lex(lg.createLexerInterpreter(null), input), lex(prototype, input));
+
+		dfa.thaw();
+		assertNull(dfa.getFrozenDFA());
+	}
+
+	@Test
+	public void testFrozenParser() {
+		LexerInterpreter lexerPrototype = lg.createLexerInterpreter(null);
+		ParserInterpreter parserPrototype = g.createParserInterpreter(null);
+		int s = g.getRule("s").index;
+		parse(lexerPrototype, parserPrototype, s, "a = 1; b = c + 2;");
+		lexerPrototype.getATN().freezeDFA();
+		parserPrototype.getATN().freezeDFA();
+
+		List<String> inputs = Arrays.asList(
+			"a = 1; b = c + 2;",
+			"a = b(); c(); d = e + 1 + f;",
+			"a = ; b();",
+			"");
+		for (String input : inputs) {
+			assertEquals(parseUnshared(lg, g, s, input), parse(lexerPrototype, parserPrototype, s, input));
+		}
+	}
+}
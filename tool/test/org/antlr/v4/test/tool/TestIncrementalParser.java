@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IncrementalLexer;
+import org.antlr.v4.runtime.IncrementalParser;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TextEdit;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestIncrementalParser extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"ASSIGN : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"PLUS : '+' ;\n" +
+			"LBRACE : '{' ;\n" +
+			"RBRACE : '}' ;\n" +
+			"QUOTE : '\"' -> pushMode(STR) ;\n" +
+			"COMMENT : '/*' .*? '*/' -> channel(HIDDEN) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"mode STR;\n" +
+			"TEXT : ~'\"'+ ;\n" +
+			"END_QUOTE : '\"' -> popMode ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN e SEMI | LBRACE stat* RBRACE ;\n" +
+			"e : e PLUS e | INT | ID | QUOTE TEXT? END_QUOTE ;\n",
+			lg);
+	}
+
+	@Test
+	public void testRelexOnlyDamagedTokens() {
+		IncrementalLexer lexer = createLexer();
+		String text = "x = 1;\ny = 2;\nz = 3;";
+		List<Token> tokens = lexer.lex(CharStreams.fromString(text));
+		Token x = tokens.get(0);
+		Token z = tokens.get(8);
+
+		text = "x = 1;\ny = 42;\nz = 3;";
+		tokens = lexer.relex(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(11, 1, "42")));
+
+		assertTrue(lexer.isLastLexIncremental());
+		assertEquals(6, lexer.getDamageStart());
+		assertEquals(7, lexer.getOldDamageEnd());
+		assertEquals(7, lexer.getNewDamageEnd());
+		assertEquals("[[@6,11:11='2',<2>,2:4]]", lexer.getReplacedTokens().toString());
+		assertSame(x, tokens.get(0));
+		assertSame(z, tokens.get(8));
+		assertEquals("[@8,15:15='z',<1>,3:0]", z.toString());
+		assertEquals(fullLex(text), tokens.toString());
+	}
+
+	@Test
+	public void testRelexAcrossLines() {
+		IncrementalLexer lexer = createLexer();
+		String text = "x = 1;\ny = 2;\nz = 3; w = 4;";
+		List<Token> tokens = lexer.lex(CharStreams.fromString(text));
+		Token w = tokens.get(12);
+
+		text = "x = 1;\ny = 2 +\n\n2;\nz = 3; w = 4;";
+		tokens = lexer.relex(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(12, 0, " +\n\n2")));
+
+		assertTrue(lexer.isLastLexIncremental());
+		assertSame(w, tokens.get(14));
+		assertEquals("[@14,26:26='w',<1>,5:7]", w.toString());
+		assertEquals(fullLex(text), tokens.toString());
+	}
+
+	@Test
+	public void testRelexResynchronizesInSameMode() {
+		IncrementalLexer lexer = createLexer();
+		String text = "x = \"a\";\ny = 2;\nz = \"b\";";
+		lexer.lex(CharStreams.fromString(text));
+
+		// the inserted quote changes the mode of every following token
+		text = "x = \"\"a\";\ny = 2;\nz = \"b\";";
+		List<Token> tokens = lexer.relex(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(5, 0, "\"")));
+		assertEquals(fullLex(text), tokens.toString());
+
+		text = "x = \"a\";\ny = 2;\nz = \"b\";";
+		tokens = lexer.relex(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(5, 1, "")));
+		assertEquals(fullLex(text), tokens.toString());
+
+		// each edit is relative to the document produced by the previous one
+		text = "x = \"a\";\n/*y = 2;*/\nz = \"b\";";
+		tokens = lexer.relex(CharStreams.fromString(text), Arrays.asList(TextEdit.replace(9, 0, "/*"), TextEdit.replace(17, 0, "*/")));
+		assertEquals(fullLex(text), tokens.toString());
+		assertEquals("[@6,9:18='/*y = 2;*/',<9>,channel=1,2:0]", tokens.get(6).toString());
+	}
+
+	@Test
+	public void testReparseReusesUnchangedItems() {
+		IncrementalParser<ParserInterpreter> parser = createParser();
+		ParserRuleContext tree = parser.parse(CharStreams.fromString("x = 1;\ny = 2;\nz = 3;"));
+		ParserRuleContext first = tree.getChild(ParserRuleContext.class, 0);
+		ParserRuleContext second = tree.getChild(ParserRuleContext.class, 1);
+		ParserRuleContext third = tree.getChild(ParserRuleContext.class, 2);
+
+		String text = "x = 1;\ny = 2 + a;\nz = 3;";
+		tree = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(12, 0, " + a")));
+
+		assertTrue(parser.isLastParseIncremental());
+		assertSame(first, tree.getChild(ParserRuleContext.class, 0));
+		assertNotSame(second, tree.getChild(ParserRuleContext.class, 1));
+		assertSame(third, tree.getChild(ParserRuleContext.class, 2));
+		assertSame(tree, tree.getChild(ParserRuleContext.class, 1).getParent());
+		assertEquals(18, third.start.getStartIndex());
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+	}
+
+	@Test
+	public void testReparseNestedItems() {
+		IncrementalParser<ParserInterpreter> parser = createParser();
+		ParserRuleContext tree = parser.parse(CharStreams.fromString("x = 1;\n{\n  y = 2;\n  z = 3;\n}\nw = 4;"));
+		ParserRuleContext block = tree.getChild(ParserRuleContext.class, 1);
+		ParserRuleContext y = block.getChild(ParserRuleContext.class, 0);
+		ParserRuleContext z = block.getChild(ParserRuleContext.class, 1);
+
+		String text = "x = 1;\n{\n  y = 2;\n  z = 3 + 4;\n}\nw = 4;";
+		tree = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(25, 0, " + 4")));
+
+		assertTrue(parser.isLastParseIncremental());
+		assertSame(block, tree.getChild(ParserRuleContext.class, 1));
+		assertSame(y, block.getChild(ParserRuleContext.class, 0));
+		assertNotSame(z, block.getChild(ParserRuleContext.class, 1));
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+
+		// inserting a statement at the end of the block
+		text = "x = 1;\n{\n  y = 2;\n  z = 3 + 4;\n  v = 5;\n}\nw = 4;";
+		tree = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(31, 0, "  v = 5;\n")));
+
+		assertTrue(parser.isLastParseIncremental());
+		assertSame(block, tree.getChild(ParserRuleContext.class, 1));
+		assertEquals("}", block.stop.getText());
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+	}
+
+	@Test
+	public void testReparseHiddenTokens() {
+		IncrementalParser<ParserInterpreter> parser = createParser();
+		ParserRuleContext tree = parser.parse(CharStreams.fromString("x = 1;\ny = 2;"));
+
+		String text = "x = 1; /* one */\ny = 2;";
+		ParserRuleContext updated = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(6, 0, " /* one */")));
+
+		assertTrue(parser.isLastParseIncremental());
+		assertSame(tree, updated);
+		assertEquals(17, tree.getChild(ParserRuleContext.class, 1).start.getStartIndex());
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+	}
+
+	@Test
+	public void testSyntaxErrorParsesWholeDocument() {
+		IncrementalParser<ParserInterpreter> parser = createParser();
+		parser.parse(CharStreams.fromString("x = 1;\ny = 2;\nz = 3;"));
+
+		String text = "x = 1;\ny = 2 +;\nz = 3;";
+		ParserRuleContext tree = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(12, 0, " +")));
+
+		assertFalse(parser.isLastParseIncremental());
+		assertEquals(1, parser.getParser().getNumberOfSyntaxErrors());
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+
+		// the previous version had errors, so the document is parsed again
+		text = "x = 1;\ny = 2;\nz = 3;";
+		tree = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(12, 2, "")));
+
+		assertFalse(parser.isLastParseIncremental());
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+
+		text = "x = 1;\ny = 3;\nz = 3;";
+		tree = parser.reparse(CharStreams.fromString(text), Collections.singletonList(TextEdit.replace(11, 1, "3")));
+
+		assertTrue(parser.isLastParseIncremental());
+		assertEquals(fullParse(text), tree.toStringTree(parser.getParser()));
+	}
+
+	@Test
+	public void testTextEditThen() {
+		TextEdit edit = TextEdit.replace(4, 2, "abc").then(TextEdit.replace(10, 1, ""));
+		assertEquals(4, edit.getStart());
+		assertEquals(6, edit.getOldLength());
+		assertEquals(6, edit.getNewLength());
+	}
+
+	private IncrementalLexer createLexer() {
+		return new IncrementalLexer(lg.createLexerInterpreter(CharStreams.fromString("")));
+	}
+
+	private IncrementalParser<ParserInterpreter> createParser() {
+		final int s = g.getRule("s").index;
+		final int stat = g.getRule("stat").index;
+		ParserInterpreter parser = g.createParserInterpreter(null);
+		parser.removeErrorListeners();
+		IncrementalParser<ParserInterpreter> incremental = new IncrementalParser<ParserInterpreter>(parser, createLexer(), p -> p.parse(s));
+		incremental.addItemRule(stat, p -> p.parse(stat, p.getContext(), p.getState()));
+		return incremental;
+	}
+
+	private String fullLex(String text) {
+		return createLexer().lex(CharStreams.fromString(text)).toString();
+	}
+
+	private String fullParse(String text) {
+		IncrementalParser<ParserInterpreter> parser = createParser();
+		return parser.parse(CharStreams.fromString(text)).toStringTree(parser.getParser());
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.analysis.LLkAnalyzer;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Test the fixed-k lookahead analysis and the code generated from it. */
+public class TestLLkPrediction extends BaseTest {
+	@Test public void testLL2() throws Exception {
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B,C}\n" +
+			"a : A B | A C ;";
+		assertEquals("LA(1)[1=>LA(2)[2=>1, 3=>2]]", getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testLL3Optional() throws Exception {
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B,C,D,E}\n" +
+			"a : (A B C | A B D)? A E ;";
+		assertEquals("LA(1)[1=>LA(2)[2=>LA(3)[3=>1, 4=>2], 5=>3]]", getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testSymbolsCombinedByAlt() throws Exception {
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B,C,D}\n" +
+			"a : A B | A C | D | b ;\n" +
+			"b : C | B ;";
+		assertEquals("LA(1)[1=>LA(2)[2=>1, 3=>2], {2..3}=>4, 4=>3]", getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testLL4IsNotLLk() throws Exception {
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B,C,D}\n" +
+			"a : A A A B | A A A C ;";
+		assertNull(getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testEndOfRuleIsNotLLk() throws Exception {
+		// the follow of a depends on the invoking context
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B}\n" +
+			"s : a B ;\n" +
+			"a : A | A B ;";
+		assertNull(getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testPredicateIsNotLLk() throws Exception {
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B,C}\n" +
+			"a : {true}? A B | A C ;";
+		assertNull(getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testPredicateAfterFirstSymbol() throws Exception {
+		// predicates are not evaluated after the first symbol of a prediction
+		String grammar =
+			"parser grammar T;\n" +
+			"tokens {A,B,C}\n" +
+			"a : A {true}? B | A C ;";
+		assertEquals("LA(1)[1=>LA(2)[2=>1, 3=>2]]", getDecisionLookahead(grammar, 0));
+	}
+
+	@Test public void testGeneratedCode() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : c* EOF ;\n" +
+			"c : a | b ;\n" +
+			"a : x=ID '=' ID ';' {System.out.println(\"assign \"+$x.text);}\n" +
+			"  | ID '(' ')' ';' {System.out.println(\"call \"+$ID.text);}\n" +
+			"  ;\n" +
+			"b : 'x' ('y' 'z' | 'y' 'w')? '!' {System.out.println($text);} ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\t\\n]+ -> skip ;\n";
+		String input = "a = b; f(); x y z ! x ! x y w !";
+		String expecting =
+			"assign a\n" +
+			"call f\n" +
+			"xyz!\n" +
+			"x!\n" +
+			"xyw!\n";
+
+		String found = execParser("T.g4", grammar, "TParser", "TLexer", "s", input, false);
+		assertEquals(expecting, found);
+		assertNull(stderrDuringParse);
+
+		String parser = load(tmpdir + "/TParser.java", null);
+		assertTrue(parser.contains("_input.LA(2)"));
+		assertFalse(parser.contains("adaptivePredict"));
+	}
+
+	@Test public void testNoViableAltAtThirdSymbol() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : 'a' 'b' 'c' | 'a' 'b' 'd' ;\n" +
+			"q : 'e' ;\n";
+		execParser("T.g4", grammar, "TParser", "TLexer", "s", "abe", false);
+		assertEquals("line 1:2 no viable alternative at input 'abe'\n", stderrDuringParse);
+	}
+
+	private String getDecisionLookahead(String grammar, int decision) throws Exception {
+		Grammar g = new Grammar(grammar);
+		ATN atn = createATN(g, false);
+		DecisionState s = atn.decisionToState.get(decision);
+		LLkAnalyzer.LookaheadNode look = new LLkAnalyzer(atn).getDecisionLookahead(s, LLkAnalyzer.MAX_K);
+		return look != null ? look.toString() : null;
+	}
+}
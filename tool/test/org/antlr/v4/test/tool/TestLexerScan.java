@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestLexerScan extends BaseTest {
+	private static final String INPUT = "abc \"x y\" # hi\n de\n\"q\"";
+
+	private LexerGrammar g;
+
+	@Before
+	public void createGrammar() throws Exception {
+		g = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"CMT : '#' ~'\\n'* -> channel(HIDDEN) ;\n" +
+			"STR_START : '\"' -> more, pushMode(STRING) ;\n" +
+			"mode STRING;\n" +
+			"STR : '\"' -> popMode ;\n" +
+			"STR_CHAR : . -> more ;\n");
+	}
+
+	@Test
+	public void testScanMatchesNextToken() {
+		List<String> expected = new ArrayList<String>();
+		Lexer lexer = g.createLexerInterpreter(CharStreams.fromString(INPUT));
+		for (Token t = lexer.nextToken(); ; t = lexer.nextToken()) {
+			expected.add(record(t.getType(), t.getChannel(), t.getStartIndex(), t.getStopIndex(), t.getLine(), t.getCharPositionInLine()));
+			if (t.getType() == Token.EOF) {
+				break;
+			}
+		}
+
+		List<String> actual = new ArrayList<String>();
+		lexer = g.createLexerInterpreter(CharStreams.fromString(INPUT));
+		int count = lexer.scan((type, channel, start, stop, line, pos) -> actual.add(record(type, channel, start, stop, line, pos)));
+
+		assertEquals(expected, actual);
+		assertEquals(expected.size(), count);
+
+		// once the input is exhausted, only the EOF token is reported
+		List<Integer> types = new ArrayList<Integer>();
+		assertEquals(1, lexer.scan((type, channel, start, stop, line, pos) -> types.add(type)));
+		assertEquals("[" + Token.EOF + "]", types.toString());
+	}
+
+	@Test
+	public void testScanIntoBufferInChunks() {
+		List<String> expected = new ArrayList<String>();
+		Lexer lexer = g.createLexerInterpreter(CharStreams.fromString(INPUT));
+		lexer.scan((type, channel, start, stop, line, pos) -> expected.add(record(type, channel, start, stop, line, pos)));
+
+		List<String> actual = new ArrayList<String>();
+		lexer = g.createLexerInterpreter(CharStreams.fromString(INPUT));
+		int[] buffer = new int[1 + 2 * Lexer.SCAN_RECORD_SIZE];
+		while (true) {
+			int n = lexer.scan(buffer, 1, 2);
+			for (int i = 0; i < n; i++) {
+				int r = 1 + i * Lexer.SCAN_RECORD_SIZE;
+				actual.add(record(buffer[r], buffer[r + 1], buffer[r + 2], buffer[r + 3], buffer[r + 4], buffer[r + 5]));
+			}
+
+			if (buffer[1 + (n - 1) * Lexer.SCAN_RECORD_SIZE] == Token.EOF) {
+				break;
+			}
+		}
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testScanCanBeMixedWithNextToken() {
+		LexerInterpreter lexer = g.createLexerInterpreter(CharStreams.fromString(INPUT));
+		List<Integer> types = new ArrayList<Integer>();
+		assertEquals(1, lexer.scan((type, channel, start, stop, line, pos) -> {
+			types.add(type);
+			return false;
+		}));
+
+		Token t = lexer.nextToken();
+		assertEquals(g.getTokenType("STR"), t.getType());
+		assertEquals("\"x y\"", t.getText());
+		assertEquals(Lexer.DEFAULT_MODE, lexer._mode);
+
+		lexer.scan((type, channel, start, stop, line, pos) -> types.add(type));
+		assertEquals("[" + g.getTokenType("ID") + ", " + g.getTokenType("CMT") + ", " + g.getTokenType("ID") + ", " + g.getTokenType("STR") + ", " + Token.EOF + "]", types.toString());
+	}
+
+	private static String record(int type, int channel, int start, int stop, int line, int pos) {
+		return type + "," + channel + "," + start + ":" + stop + "," + line + ":" + pos;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.MappedUTF8CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Utils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestMappedUTF8CharStream {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void fromSMPUTF8PathHasExpectedSize() throws Exception {
+		File p = folder.newFile();
+		Utils.writeFile(p, "hello \uD83C\uDF0E".getBytes(StandardCharsets.UTF_8));
+		MappedUTF8CharStream s = MappedUTF8CharStream.fromPath(p.toPath());
+		assertEquals(7, s.size());
+		assertEquals(0, s.index());
+		assertEquals("hello \uD83C\uDF0E", s.toString());
+		assertEquals(p.toString(), s.getSourceName());
+	}
+
+	@Test
+	public void emptyInputIsEOF() {
+		CharStream s = new MappedUTF8CharStream(ByteBuffer.allocate(0), "empty");
+		assertEquals(0, s.size());
+		assertEquals(IntStream.EOF, s.LA(1));
+		assertEquals(IntStream.EOF, s.LA(-1));
+		assertThrows(IllegalStateException.class, s::consume);
+	}
+
+	@Test
+	public void lookaheadAndLookbehindDecodeCodePoints() {
+		CharStream s = fromString("a\u00E9\u4E2D\uD83C\uDF0Eb");
+		assertEquals('a', s.LA(1));
+		assertEquals(0x1F30E, s.LA(4));
+		s.consume();
+		s.consume();
+		s.consume();
+		assertEquals(3, s.index());
+		assertEquals(0x1F30E, s.LA(1));
+		assertEquals(0x4E2D, s.LA(-1));
+		assertEquals('a', s.LA(-3));
+		assertEquals(IntStream.EOF, s.LA(-4));
+		assertEquals(IntStream.EOF, s.LA(3));
+		assertEquals("\u00E9\u4E2D\uD83C\uDF0E", s.getText(Interval.of(1, 3)));
+	}
+
+	@Test
+	public void malformedInputIsReplacedLikeCharStreams() throws Exception {
+		byte[] bytes = {'a', (byte)0xE2, (byte)0x82, 'b', (byte)0xED, (byte)0xA0, (byte)0x80, (byte)0xF8, (byte)0xE2, (byte)0x82, (byte)0xAC};
+		File p = folder.newFile();
+		Utils.writeFile(p, bytes);
+		CharStream expected = CharStreams.fromFile(p);
+		CharStream s = MappedUTF8CharStream.fromPath(p.toPath());
+		assertEquals(expected.size(), s.size());
+		assertEquals(expected.toString(), s.toString());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.LA(1), s.LA(1));
+			expected.consume();
+			s.consume();
+		}
+	}
+
+	@Test
+	public void seekAndGetTextMatchCodePointCharStream() {
+		Random random = new Random(0);
+		StringBuilder builder = new StringBuilder();
+		while (builder.length() < 5000) {
+			switch (random.nextInt(4)) {
+			case 0:
+				builder.append((char)(0x80 + random.nextInt(0x700)));
+				break;
+			case 1:
+				builder.appendCodePoint(0x10000 + random.nextInt(0x1000));
+				break;
+			default:
+				builder.append((char)(' ' + random.nextInt(95)));
+				break;
+			}
+		}
+
+		String text = builder.toString();
+		CharStream expected = CharStreams.fromString(text);
+		CharStream s = fromString(text);
+		for (int i = 0; i < 200; i++) {
+			int index = random.nextInt(expected.size() + 1);
+			expected.seek(index);
+			s.seek(index);
+			assertEquals(index, s.index());
+			assertEquals(expected.LA(1), s.LA(1));
+			assertEquals(expected.LA(-1), s.LA(-1));
+			assertEquals(expected.LA(2), s.LA(2));
+
+			int start = random.nextInt(expected.size());
+			Interval interval = Interval.of(start, start + random.nextInt(1000));
+			assertEquals(expected.getText(interval), s.getText(interval));
+		}
+
+		s.seek(expected.size() + 10);
+		assertEquals(expected.size(), s.index());
+		assertEquals(IntStream.EOF, s.LA(1));
+		assertEquals(expected.size(), s.size());
+	}
+
+	private static MappedUTF8CharStream fromString(String text) {
+		return new MappedUTF8CharStream(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), "test");
+	}
+}
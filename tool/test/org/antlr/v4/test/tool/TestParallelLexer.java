@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParallelLexer;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestParallelLexer extends BaseTest {
+	@Test
+	public void testModeFreeGrammar() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"SEMI : ';' ;\n" +
+			"COMMENT : '/*' .*? '*/' -> channel(HIDDEN) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			input.append("abc ").append(i).append(";\n");
+			if (i % 50 == 0) {
+				// comments spanning chunk boundaries are lexed again
+				input.append("/* a\ncomment\n*/\n");
+			}
+		}
+
+		assertSameTokens(lg, input.toString(), 64);
+		assertSameTokens(lg, input.toString(), 1000);
+		assertSameTokens(lg, "abc 1;", 1);
+	}
+
+	@Test
+	public void testModes() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"QUOTE : '\"' -> pushMode(STR) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"mode STR;\n" +
+			"TEXT : ~'\"'+ ;\n" +
+			"END_QUOTE : '\"' -> popMode ;\n");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			input.append("key \"value ").append(i % 7 == 0 ? "spanning\nseveral\nlines\n" : "").append("\"\n");
+		}
+
+		assertSameTokens(lg, input.toString(), 32);
+		assertSameTokens(lg, input.toString(), 100);
+	}
+
+	@Test
+	public void testPopModeBeforeChunk() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"LBRACE : '{' -> pushMode(DEFAULT_MODE) ;\n" +
+			"RBRACE : '}' -> popMode ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			// chunks starting inside a block pop an empty mode stack
+			input.append("{ a\nb\nc }\n");
+		}
+
+		assertSameTokens(lg, input.toString(), 16);
+		assertSameTokens(lg, input.toString(), 100);
+	}
+
+	@Test
+	public void testErrorsAreReportedOnce() throws Exception {
+		final LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append(i == 150 ? "a # b\n" : "a b c\n");
+		}
+
+		final List<String> errors = new ArrayList<String>();
+		ParallelLexer lexer = new ParallelLexer(in -> {
+			LexerInterpreter lexerInterpreter = lg.createLexerInterpreter(in);
+			lexerInterpreter.removeErrorListeners();
+			lexerInterpreter.addErrorListener(new ANTLRErrorListener<Integer>() {
+				@Override
+				public <T extends Integer> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+					errors.add(line + ":" + charPositionInLine + " " + msg);
+				}
+			});
+			return lexerInterpreter;
+		});
+		lexer.setChunkSize(64);
+		List<Token> tokens = lexer.tokenize(CharStreams.fromString(input.toString()));
+
+		assertEquals(600, tokens.size());
+		assertEquals("[151:2 token recognition error at: '#']", errors.toString());
+	}
+
+	@Test
+	public void testCharStreamInput() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append("a b c\n");
+		}
+
+		ParallelLexer lexer = new ParallelLexer(lg::createLexerInterpreter);
+		lexer.setChunkSize(64);
+		CharStream stream = CharStreams.fromStream(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)));
+		assertEquals(601, lexer.tokenize(stream).size());
+
+		final CharStream legacyStream = new ANTLRInputStream(input.toString());
+		assertThrows(IllegalArgumentException.class, () -> lexer.tokenize(legacyStream));
+	}
+
+	private static void assertSameTokens(final LexerGrammar lg, String text, int chunkSize) {
+		CodePointCharStream input = CharStreams.fromString(text);
+		ParallelLexer lexer = new ParallelLexer(lg::createLexerInterpreter);
+		lexer.setChunkSize(chunkSize);
+		List<Token> tokens = lexer.tokenize(input);
+
+		List<Token> expected = new ArrayList<Token>();
+		LexerInterpreter sequential = lg.createLexerInterpreter(CharStreams.fromString(text));
+		for (Token token = sequential.nextToken(); ; token = sequential.nextToken()) {
+			((CommonToken)token).setTokenIndex(expected.size());
+			expected.add(token);
+			if (token.getType() == Token.EOF) {
+				break;
+			}
+		}
+
+		assertEquals(expected.toString(), tokens.toString());
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParallelParser;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestParallelParser extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+	private ParserInterpreter prototype;
+
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"ASSIGN : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"PLUS : '+' ;\n" +
+			"LBRACE : '{' ;\n" +
+			"RBRACE : '}' ;\n" +
+			"COMMENT : '/*' .*? '*/' -> channel(HIDDEN) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN e SEMI | LBRACE stat* RBRACE ;\n" +
+			"e : e PLUS e | INT | ID ;\n",
+			lg);
+		prototype = g.createParserInterpreter(null);
+	}
+
+	@Test
+	public void testParallelParse() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 400; i++) {
+			if (i % 7 == 0) {
+				// the semicolons in the block are not safe boundaries
+				input.append("{\n  a = ").append(i).append(";\n  { b = a + 1; }\n}\n");
+			}
+			else {
+				input.append("x = y + ").append(i).append("; /* comment */\n");
+			}
+		}
+
+		List<Token> tokens = lex(input.toString());
+		ParallelParser<ParserInterpreter> parser = createParser(null);
+		parser.setPartitionSize(100);
+		ParserRuleContext tree = parser.parse(tokens);
+
+		assertTrue(parser.isLastParseParallel());
+		assertSameTree(parseSequentially(tokens), tree);
+	}
+
+	@Test
+	public void testSyntaxErrorParsesSequentially() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			input.append(i == 150 ? "x = ;\n" : "x = 1;\n");
+		}
+
+		List<String> errors = new ArrayList<String>();
+		List<Token> tokens = lex(input.toString());
+		ParallelParser<ParserInterpreter> parser = createParser(errors);
+		parser.setPartitionSize(100);
+		ParserRuleContext tree = parser.parse(tokens);
+
+		assertFalse(parser.isLastParseParallel());
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).startsWith("151:4 "));
+		assertEquals(parseSequentially(tokens).toStringTree(prototype), tree.toStringTree(prototype));
+	}
+
+	@Test
+	public void testSmallInputParsesSequentially() {
+		List<Token> tokens = lex("x = 1;\n{ y = 2; }\n");
+		ParallelParser<ParserInterpreter> parser = createParser(null);
+		ParserRuleContext tree = parser.parse(tokens);
+
+		assertFalse(parser.isLastParseParallel());
+		assertSameTree(parseSequentially(tokens), tree);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testChildRuleMustBeInvokedByStartRule() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			input.append("x = 1;\n");
+		}
+
+		final int s = g.getRule("s").index;
+		final int e = g.getRule("e").index;
+		ParallelParser<ParserInterpreter> parser = new ParallelParser<ParserInterpreter>(this::createParserInterpreter,
+			s, p -> p.parse(s),
+			e, p -> p.parse(e, p.getContext(), p.getState()),
+			g.getTokenType("SEMI"));
+		parser.setPartitionSize(100);
+		parser.parse(lex(input.toString()));
+	}
+
+	private ParallelParser<ParserInterpreter> createParser(final List<String> errors) {
+		final int s = g.getRule("s").index;
+		final int stat = g.getRule("stat").index;
+		return new ParallelParser<ParserInterpreter>(input -> {
+				ParserInterpreter parser = createParserInterpreter(input);
+				if (errors != null) {
+					parser.addErrorListener(new BaseErrorListener() {
+						@Override
+						public <T extends Token> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+							errors.add(line + ":" + charPositionInLine + " " + msg);
+						}
+					});
+				}
+
+				return parser;
+			},
+			s, p -> p.parse(s),
+			stat, p -> p.parse(stat, p.getContext(), p.getState()),
+			g.getTokenType("SEMI"), g.getTokenType("RBRACE"));
+	}
+
+	private ParserInterpreter createParserInterpreter(TokenStream input) {
+		// the parsers share the ATN and the DFA of the prototype
+		ParserInterpreter parser = new ParserInterpreter(prototype);
+		parser.setInputStream(input);
+		parser.removeErrorListeners();
+		return parser;
+	}
+
+	private ParserRuleContext parseSequentially(List<Token> tokens) {
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(new ListTokenSource(tokens)));
+		parser.removeErrorListeners();
+		return parser.parse(g.getRule("s").index);
+	}
+
+	private List<Token> lex(String text) {
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString(text)));
+		tokens.fill();
+		return tokens.getTokens();
+	}
+
+	private static void assertSameTree(ParseTree expected, ParseTree actual) {
+		assertEquals(expected.getClass(), actual.getClass());
+		if (expected instanceof TerminalNode) {
+			assertSame(((TerminalNode)expected).getSymbol(), ((TerminalNode)actual).getSymbol());
+			return;
+		}
+
+		ParserRuleContext expectedContext = (ParserRuleContext)expected;
+		ParserRuleContext actualContext = (ParserRuleContext)actual;
+		assertEquals(expectedContext.getRuleIndex(), actualContext.getRuleIndex());
+		assertEquals(expectedContext.invokingState, actualContext.invokingState);
+		assertSame(expectedContext.start, actualContext.start);
+		assertSame(expectedContext.stop, actualContext.stop);
+		assertEquals(expectedContext.getChildCount(), actualContext.getChildCount());
+		for (int i = 0; i < expectedContext.getChildCount(); i++) {
+			assertSame(actualContext, actualContext.getChild(i).getParent());
+			assertSameTree(expectedContext.getChild(i), actualContext.getChild(i));
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.SlidingWindowTokenStream;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestParserEmitRules extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"ASSIGN : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"PLUS : '+' ;\n" +
+			"MULT : '*' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN e SEMI ;\n" +
+			"e : e MULT e | e PLUS e | INT | ID ;\n",
+			lg);
+	}
+
+	@Test
+	public void testEmittedContextsAreDetached() {
+		ParserInterpreter parser = createParser(new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString("x = 1; y = x + 2;"))));
+		parser.setEmitRules(g.getRule("stat").index);
+		List<ParserRuleContext> emitted = addEmitListener(parser);
+		ParserRuleContext tree = parser.parse(g.getRule("s").index);
+
+		assertEquals("(s <EOF>)", tree.toStringTree(parser));
+		assertEquals(2, emitted.size());
+		assertEquals("(stat x = (e 1) ;)", emitted.get(0).toStringTree(parser));
+		assertEquals("(stat y = (e (e x) + (e 2)) ;)", emitted.get(1).toStringTree(parser));
+		assertSame(tree, emitted.get(1).getParent());
+		assertTrue(parser.isEmitRule(g.getRule("stat").index));
+		assertFalse(parser.isEmitRule(g.getRule("e").index));
+	}
+
+	@Test
+	public void testLeftRecursiveEmitRule() {
+		ParserInterpreter parser = createParser(new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString("x = 1 + 2 * y;"))));
+		parser.setEmitRules(g.getRule("e").index);
+		List<ParserRuleContext> emitted = addEmitListener(parser);
+		ParserRuleContext tree = parser.parse(g.getRule("s").index);
+
+		assertEquals("(s (stat x = ;) <EOF>)", tree.toStringTree(parser));
+		assertEquals("[(e y), (e (e 2) *), (e (e 1) +)]", toStringTrees(parser, emitted));
+
+		parser.setEmitRules();
+		parser.setInputStream(new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString("x = 1;"))));
+		tree = parser.parse(g.getRule("s").index);
+		assertEquals("(s (stat x = (e 1) ;) <EOF>)", tree.toStringTree(parser));
+	}
+
+	@Test
+	public void testStreamingWithSlidingWindowTokenStream() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			input.append("x").append(" = ").append(i).append(" + y;\n");
+		}
+
+		SlidingWindowTokenStream tokens = new SlidingWindowTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input.toString())));
+		ParserInterpreter parser = createParser(tokens);
+		parser.setEmitRules(g.getRule("stat").index);
+		final List<String> texts = new ArrayList<String>();
+		parser.addParseListener(new EmitListener(parser) {
+			@Override
+			public void exitEveryRule(ParserRuleContext ctx) {
+				if (parser.isEmitRule(ctx.getRuleIndex())) {
+					texts.add(tokens.getText(ctx));
+				}
+			}
+		});
+		ParserRuleContext tree = parser.parse(g.getRule("s").index);
+
+		assertEquals("(s <EOF>)", tree.toStringTree(parser));
+		assertEquals(1000, texts.size());
+		assertEquals("x=999+y;", texts.get(999));
+		assertTrue(tokens.getWindowStart() > 0);
+	}
+
+	private ParserInterpreter createParser(TokenStream tokens) {
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		parser.removeErrorListeners();
+		return parser;
+	}
+
+	private static List<ParserRuleContext> addEmitListener(final ParserInterpreter parser) {
+		final List<ParserRuleContext> emitted = new ArrayList<ParserRuleContext>();
+		parser.addParseListener(new EmitListener(parser) {
+			@Override
+			public void exitEveryRule(ParserRuleContext ctx) {
+				if (parser.isEmitRule(ctx.getRuleIndex())) {
+					emitted.add(ctx);
+				}
+			}
+		});
+		return emitted;
+	}
+
+	private static String toStringTrees(ParserInterpreter parser, List<ParserRuleContext> contexts) {
+		List<String> trees = new ArrayList<String>();
+		for (ParserRuleContext context : contexts) {
+			trees.add(context.toStringTree(parser));
+		}
+
+		return trees.toString();
+	}
+
+	private static abstract class EmitListener implements ParseTreeListener {
+		protected final ParserInterpreter parser;
+
+		protected EmitListener(ParserInterpreter parser) {
+			this.parser = parser;
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+		}
+	}
+}
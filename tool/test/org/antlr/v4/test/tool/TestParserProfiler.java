@@ -222,11 +222,12 @@ public class TestParserProfiler extends BaseTest {
 
 		String found = execParser("T.g4", grammar, "TParser", "TLexer", "s",
 								  "xyz;abc;z.q", false, true);
+		// decision 1 is LL(2), so the generated code predicts it without the ATN
 		String expecting =
 			"[{decision=0, contextSensitivities=0, errors=0, ambiguities=0, SLL_lookahead=6, SLL_ATNTransitions=4, " +
 			"SLL_DFATransitions=2, LL_Fallback=0, LL_lookahead=0, LL_ATNTransitions=0}," +
-			" {decision=1, contextSensitivities=0, errors=0, ambiguities=0, SLL_lookahead=6, " +
-			"SLL_ATNTransitions=3, SLL_DFATransitions=3, LL_Fallback=0, LL_lookahead=0, LL_ATNTransitions=0}]\n";
+			" {decision=1, contextSensitivities=0, errors=0, ambiguities=0, SLL_lookahead=0, " +
+			"SLL_ATNTransitions=0, SLL_DFATransitions=0, LL_Fallback=0, LL_lookahead=0, LL_ATNTransitions=0}]\n";
 		assertEquals(expecting, found);
 		assertEquals(null, stderrDuringParse);
 	}
@@ -923,8 +923,8 @@ public class TestPerformance extends BaseTest {
 
 					states += dfa.states.size();
 					for (DFAState state : dfa.states.values()) {
-						configs += state.configs.size();
-						uniqueConfigs.addAll(state.configs);
+						configs += state.getConfigs().size();
+						uniqueConfigs.addAll(state.getConfigs());
 					}
 				}
 
@@ -940,7 +940,7 @@ public class TestPerformance extends BaseTest {
 
 						int modeConfigs = 0;
 						for (DFAState state : dfa.states.values()) {
-							modeConfigs += state.configs.size();
+							modeConfigs += state.getConfigs().size();
 						}
 
 						String modeName = lexer.getModeNames()[i];
@@ -970,8 +970,8 @@ public class TestPerformance extends BaseTest {
 
                     states += dfa.states.size();
 					for (DFAState state : dfa.states.values()) {
-						configs += state.configs.size();
-						uniqueConfigs.addAll(state.configs);
+						configs += state.getConfigs().size();
+						uniqueConfigs.addAll(state.getConfigs());
 					}
                 }
 
@@ -993,7 +993,7 @@ public class TestPerformance extends BaseTest {
 
 						int decisionConfigs = 0;
 						for (DFAState state : dfa.states.values()) {
-							decisionConfigs += state.configs.size();
+							decisionConfigs += state.getConfigs().size();
 						}
 
 						String ruleName = parser.getRuleNames()[parser.getATN().decisionToState.get(dfa.decision).ruleIndex];
@@ -1066,13 +1066,13 @@ public class TestPerformance extends BaseTest {
 
                 if (SHOW_CONFIG_STATS) {
                     for (DFAState state : dfa.states.keySet()) {
-                        if (state.configs.size() >= contextsInDFAState.length) {
-                            contextsInDFAState = Arrays.copyOf(contextsInDFAState, state.configs.size() + 1);
+                        if (state.getConfigs().size() >= contextsInDFAState.length) {
+                            contextsInDFAState = Arrays.copyOf(contextsInDFAState, state.getConfigs().size() + 1);
                         }
 
                         if (state.isAcceptState()) {
                             boolean hasGlobal = false;
-                            for (ATNConfig config : state.configs) {
+                            for (ATNConfig config : state.getConfigs()) {
                                 if (config.getReachesIntoOuterContext()) {
                                     globalConfigCount++;
                                     hasGlobal = true;
@@ -1088,13 +1088,13 @@ public class TestPerformance extends BaseTest {
                             }
                         }
 
-                        contextsInDFAState[state.configs.size()]++;
+                        contextsInDFAState[state.getConfigs().size()]++;
                     }
                 }
 
                 if (EXPORT_LARGEST_CONFIG_CONTEXTS) {
                     for (DFAState state : dfa.states.keySet()) {
-                        for (ATNConfig config : state.configs) {
+                        for (ATNConfig config : state.getConfigs()) {
                             String configOutput = config.toDotString();
                             if (configOutput.length() <= configOutputSize) {
                                 continue;
@@ -1694,7 +1694,7 @@ public class TestPerformance extends BaseTest {
 		@Override
 		public void reportAttemptingFullContext(Parser recognizer, DFA dfa, int startIndex, int stopIndex, BitSet conflictingAlts, SimulatorState conflictState) {
 			_sllConflict = conflictingAlts;
-			_sllConfigs = conflictState.s0.configs;
+			_sllConfigs = conflictState.s0.getConfigs();
 			if (!REPORT_FULL_CONTEXT) {
 				return;
 			}
@@ -1704,7 +1704,7 @@ public class TestPerformance extends BaseTest {
 			int decision = dfa.decision;
 			String rule = recognizer.getRuleNames()[dfa.atnStartState.ruleIndex];
 			String input = recognizer.getInputStream().getText(Interval.of(startIndex, stopIndex));
-			BitSet representedAlts = getConflictingAlts(conflictingAlts, conflictState.s0.configs);
+			BitSet representedAlts = getConflictingAlts(conflictingAlts, conflictState.s0.getConfigs());
 			recognizer.notifyErrorListeners(String.format(format, decision, rule, input, representedAlts));
 		}
 
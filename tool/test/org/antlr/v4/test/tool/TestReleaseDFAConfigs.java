@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ConfigReleaseInfo;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.antlr.v4.test.tool.SharedDFAFixtures.lex;
+import static org.antlr.v4.test.tool.SharedDFAFixtures.parse;
+import static org.antlr.v4.test.tool.SharedDFAFixtures.parseUnshared;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestReleaseDFAConfigs extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(SharedDFAFixtures.STATEMENT_LEXER);
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN e SEMI | ID LPAREN args RPAREN SEMI | ID ASSIGN call SEMI ;\n" +
+			"call : ID LPAREN args RPAREN ;\n" +
+			"args : (e (PLUS e)*)? ;\n" +
+			"e : e PLUS e | INT | ID | LPAREN e RPAREN ;\n",
+			lg);
+	}
+
+	@Test
+	public void testReleaseLexerConfigs() {
+		LexerInterpreter prototype = lg.createLexerInterpreter(null);
+		String input = "abc = 12;\nxyz = abc + 345;\n";
+		List<String> expected = lex(lg.createLexerInterpreter(null), input);
+		assertEquals(expected, lex(prototype, input));
+
+		ConfigReleaseInfo info = prototype.getATN().releaseDFAConfigs();
+		assertEquals(1, info.getDecisionCount());
+		assertTrue(info.getTotalReleasedStates() > 0);
+		assertTrue(info.getTotalReclaimedBytes() > 0);
+		assertEquals(countReleased(prototype.getATN().modeToDFA[0]), info.getTotalReleasedStates());
+
+		// the released states are restored when new characters follow them
+		String more = input + "abcd = 1234 + (q);\nz = 9 # 8;\n";
+		assertEquals(lex(lg.createLexerInterpreter(null), more), lex(prototype, more));
+
+		// releasing again only reports the newly released states
+		DFA dfa = prototype.getATN().modeToDFA[0];
+		int released = countReleased(dfa);
+		info = prototype.getATN().releaseDFAConfigs();
+		assertEquals(countReleased(dfa) - released, info.getTotalReleasedStates());
+		assertEquals(lex(lg.createLexerInterpreter(null), more), lex(prototype, more));
+	}
+
+	@Test
+	public void testReleaseParserConfigs() {
+		LexerInterpreter lexerPrototype = lg.createLexerInterpreter(null);
+		ParserInterpreter parserPrototype = g.createParserInterpreter(null);
+		int s = g.getRule("s").index;
+		parse(lexerPrototype, parserPrototype, s, "a = 1; b = c + (2 + d); f(g, 1 + h); i = j(k + 1);");
+
+		ConfigReleaseInfo info = parserPrototype.getATN().releaseDFAConfigs();
+		assertEquals(parserPrototype.getATN().decisionToDFA.length, info.getDecisionCount());
+		assertTrue(info.getTotalReleasedStates() > 0);
+		assertTrue(info.getTotalReclaimedBytes() > 0);
+		for (DFA dfa : parserPrototype.getATN().decisionToDFA) {
+			for (DFAState state : dfa.states.values()) {
+				// accept states hold the configurations used to report ambiguities
+				assertFalse(state.isAcceptState() && state.isConfigsReleased());
+			}
+		}
+
+		List<String> inputs = Arrays.asList(
+			"a = 1; b = c + (2 + d); f(g, 1 + h); i = j(k + 1);",
+			"a = b(((c))); c(); d = e + 1 + (f + g);",
+			"a = ; b(;",
+			"");
+		for (String input : inputs) {
+			assertEquals(parseUnshared(lg, g, s, input), parse(lexerPrototype, parserPrototype, s, input));
+		}
+
+		parserPrototype.getATN().freezeDFA();
+		parserPrototype.getATN().releaseDFAConfigs();
+		for (String input : inputs) {
+			assertEquals(parseUnshared(lg, g, s, input), parse(lexerPrototype, parserPrototype, s, input));
+		}
+	}
+
+	private static int countReleased(DFA dfa) {
+		int count = 0;
+		for (DFAState state : dfa.states.values()) {
+			if (state.isConfigsReleased()) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LongToken;
+import org.antlr.v4.runtime.LongTokenFactory;
+import org.antlr.v4.runtime.SegmentedCharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Utils;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestSegmentedCharStream {
+	private static final String INPUT = "abc d\u00E9f\n  \uD83C\uDF0E x\u4E2Dy\n\n  last";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsCodePointsAcrossSegments() {
+		SegmentedCharStream s = fromString("a\u00E9\u4E2D\uD83C\uDF0Eb", 2, Integer.MAX_VALUE);
+		assertEquals('a', s.LA(1));
+		assertEquals(0x1F30E, s.LA(4));
+		assertEquals(IntStream.EOF, s.LA(6));
+		s.consume();
+		s.consume();
+		s.consume();
+		assertEquals(3, s.index());
+		assertEquals(0x4E2D, s.LA(-1));
+		assertEquals(0x1F30E, s.LA(1));
+		s.consume();
+		s.consume();
+		assertEquals(IntStream.EOF, s.LA(1));
+		assertThrows(IllegalStateException.class, s::consume);
+		assertThrows(UnsupportedOperationException.class, s::size);
+	}
+
+	@Test
+	public void discardsSegmentsUnlessMarked() {
+		SegmentedCharStream s = fromString("abcdefghij", 2, Integer.MAX_VALUE);
+		int marker = s.mark();
+		for (int i = 0; i < 6; i++) {
+			s.consume();
+		}
+
+		assertEquals("abcdef", s.getText(Interval.of(0, 5)));
+		s.seek(1);
+		assertEquals('b', s.LA(1));
+		assertEquals('a', s.LA(-1));
+		s.seek(6);
+		s.release(marker);
+
+		assertEquals('f', s.LA(-1));
+		assertThrows(UnsupportedOperationException.class, () -> s.LA(-3));
+		assertThrows(UnsupportedOperationException.class, () -> s.seek(1));
+		assertThrows(UnsupportedOperationException.class, () -> s.getText(Interval.of(0, 5)));
+		assertEquals("ghij", s.getText(Interval.of(6, 9)));
+	}
+
+	@Test
+	public void indexesAreRebasedBetweenTokens() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : ~[ \\n]+ ;\n" +
+			"NL : '\\n' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Lexer expected = g.createLexerInterpreter(CharStreams.fromString(INPUT));
+		SegmentedCharStream input = fromString(INPUT, 4, 8);
+		Lexer lexer = g.createLexerInterpreter(input);
+		lexer.setTokenFactory(LongTokenFactory.DEFAULT);
+
+		boolean rebased = false;
+		for (Token t = expected.nextToken(); ; t = expected.nextToken()) {
+			LongToken token = (LongToken)lexer.nextToken();
+			assertEquals(t.getType(), token.getType());
+			assertEquals(t.getStartIndex(), token.getLongStartIndex());
+			assertEquals(t.getStopIndex(), token.getLongStopIndex());
+			assertEquals(t.getText(), token.getText());
+			assertEquals(t.getLine(), token.getLine());
+			assertEquals(t.getCharPositionInLine(), token.getCharPositionInLine());
+			rebased |= token.getStartIndex() != token.getLongStartIndex();
+			if (t.getType() == Token.EOF) {
+				break;
+			}
+		}
+
+		assertEquals(true, rebased);
+		assertEquals(input.longIndex(), input.getIndexOrigin() + input.index());
+	}
+
+	@Test
+	public void readsMappedFile() throws Exception {
+		File p = folder.newFile();
+		Utils.writeFile(p, INPUT.getBytes(StandardCharsets.UTF_8));
+		CharStream expected = CharStreams.fromString(INPUT);
+		SegmentedCharStream s = SegmentedCharStream.fromPath(p.toPath());
+		assertEquals(p.toString(), s.getSourceName());
+		int marker = s.mark();
+		while (expected.LA(1) != IntStream.EOF) {
+			assertEquals(expected.LA(1), s.LA(1));
+			expected.consume();
+			s.consume();
+		}
+
+		assertEquals(IntStream.EOF, s.LA(1));
+		assertEquals(INPUT, s.getText(Interval.of(0, s.index() - 1)));
+		s.release(marker);
+	}
+
+	private static SegmentedCharStream fromString(String text, int segmentSize, final int rebaseThreshold) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		return new SegmentedCharStream(Channels.newChannel(new ByteArrayInputStream(bytes)), StandardCharsets.UTF_8, segmentSize, "test") {{
+			indexRebaseThreshold = rebaseThreshold;
+		}};
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.SlidingWindowTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TestSlidingWindowTokenStream extends TestBufferedTokenStream {
+
+	@Override
+	protected TokenStream createTokenStream(TokenSource src) {
+		return new SlidingWindowTokenStream(src);
+	}
+
+	@Test public void testSameTokensAsCommonTokenStream() throws Exception {
+		CommonTokenStream expected = new CommonTokenStream(new ListTokenSource(createTokens(2000)));
+		SlidingWindowTokenStream tokens = new SlidingWindowTokenStream(new ListTokenSource(createTokens(2000)), Token.DEFAULT_CHANNEL, 2);
+
+		while (expected.LA(1) != Token.EOF) {
+			assertEquals(expected.LA(1), tokens.LA(1));
+			assertEquals(expected.index(), tokens.index());
+			assertEquals(expected.LT(2).getText(), tokens.LT(2).getText());
+			if (expected.index() > 0) {
+				int previous = expected.LT(-1).getTokenIndex();
+				assertEquals(previous, tokens.LT(-1).getTokenIndex());
+				assertEquals(String.valueOf(expected.getHiddenTokensToLeft(previous)), String.valueOf(tokens.getHiddenTokensToLeft(previous)));
+				assertEquals(String.valueOf(expected.getHiddenTokensToRight(previous)), String.valueOf(tokens.getHiddenTokensToRight(previous)));
+			}
+
+			expected.consume();
+			tokens.consume();
+		}
+
+		assertEquals(Token.EOF, tokens.LA(1));
+		assertEquals(expected.size(), tokens.size());
+		assertTrue(tokens.getWindowStart() > 0);
+		assertTrue(tokens.getTokens().size() <= 256);
+		assertEquals(tokens.getWindowStart(), tokens.getTokens().get(0).getTokenIndex());
+	}
+
+	@Test public void testMarkKeepsTokens() throws Exception {
+		SlidingWindowTokenStream tokens = new SlidingWindowTokenStream(new ListTokenSource(createTokens(2000)), Token.DEFAULT_CHANNEL, 0);
+		tokens.consume();
+		int start = tokens.index();
+		int marker = tokens.mark();
+		for (int i = 0; i < 1000; i++) {
+			tokens.consume();
+		}
+
+		int stop = tokens.index();
+		assertEquals(0, tokens.getWindowStart());
+		assertEquals("x = 0;\n", tokens.getText(Interval.of(0, 6)));
+		tokens.seek(start);
+		assertEquals("=", tokens.LT(1).getText());
+		tokens.seek(stop);
+		tokens.release(marker);
+		assertThrows(IllegalStateException.class, () -> tokens.release(marker));
+
+		while (tokens.LA(1) != Token.EOF) {
+			tokens.consume();
+		}
+
+		int windowStart = tokens.getWindowStart();
+		assertTrue(windowStart > start);
+		assertEquals(";", tokens.LT(-1).getText());
+		assertNull(tokens.getHiddenTokensToLeft(windowStart));
+		assertThrows(UnsupportedOperationException.class, () -> tokens.seek(start));
+		assertThrows(UnsupportedOperationException.class, () -> tokens.getText(Interval.of(0, 5)));
+		assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(windowStart - 1));
+	}
+
+	@Test public void testWindowBoundedWhileParsing() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"ASSIGN : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"LPAREN : '(' ;\n" +
+			"RPAREN : ')' ;\n" +
+			"WS : [ \\n]+ -> channel(HIDDEN) ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ASSIGN INT SEMI | ID ASSIGN ID LPAREN RPAREN SEMI | ID LPAREN RPAREN SEMI ;\n",
+			lg);
+
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			switch (i % 3) {
+			case 0:
+				input.append("x = ").append(i).append(";\n");
+				break;
+			case 1:
+				input.append("y = f();\n");
+				break;
+			default:
+				input.append("g();\n");
+				break;
+			}
+		}
+
+		// the parser holds a mark while most tokens are fetched by adaptivePredict
+		final SlidingWindowTokenStream tokens = new SlidingWindowTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input.toString())));
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		parser.setBuildParseTree(false);
+		final int[] maxWindowSize = new int[1];
+		parser.addParseListener(new ParseTreeListener() {
+			@Override
+			public void visitTerminal(TerminalNode node) {
+			}
+
+			@Override
+			public void visitErrorNode(ErrorNode node) {
+			}
+
+			@Override
+			public void enterEveryRule(ParserRuleContext ctx) {
+			}
+
+			@Override
+			public void exitEveryRule(ParserRuleContext ctx) {
+				maxWindowSize[0] = Math.max(maxWindowSize[0], tokens.getTokens().size());
+			}
+		});
+
+		parser.parse(g.getRule("s").index);
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+		assertEquals(Token.EOF, tokens.LA(1));
+		assertTrue(tokens.size() > 100000);
+		assertTrue(tokens.getWindowStart() > 0);
+		assertTrue("window size " + maxWindowSize[0], maxWindowSize[0] <= 256);
+	}
+
+	@Test public void testWindowBoundedWhileMarked() throws Exception {
+		SlidingWindowTokenStream tokens = new SlidingWindowTokenStream(new ListTokenSource(createTokens(20000)), Token.DEFAULT_CHANNEL, 2);
+		int maxWindowSize = 0;
+		while (tokens.LA(1) != Token.EOF) {
+			// look ahead like a prediction, which fetches the tokens while a
+			// mark is held
+			int marker = tokens.mark();
+			int start = tokens.index();
+			for (int i = 0; i < 4 && tokens.LA(1) != Token.EOF; i++) {
+				tokens.consume();
+			}
+
+			maxWindowSize = Math.max(maxWindowSize, tokens.getTokens().size());
+			tokens.seek(start);
+			tokens.release(marker);
+			tokens.consume();
+		}
+
+		assertTrue(tokens.getWindowStart() > 0);
+		assertTrue("window size " + maxWindowSize, maxWindowSize <= 256);
+	}
+
+	/**
+	 * Creates the tokens of the statements {@code x = 0;\n} to
+	 * {@code x = n-1;\n}, with the whitespace on the hidden channel.
+	 */
+	private static List<Token> createTokens(int n) {
+		List<Token> tokens = new ArrayList<Token>();
+		for (int i = 0; i < n; i++) {
+			tokens.add(new CommonToken(1, "x"));
+			tokens.add(createHiddenToken(" "));
+			tokens.add(new CommonToken(2, "="));
+			tokens.add(createHiddenToken(" "));
+			tokens.add(new CommonToken(3, String.valueOf(i)));
+			tokens.add(new CommonToken(4, ";"));
+			tokens.add(createHiddenToken("\n"));
+		}
+
+		tokens.add(new CommonToken(Token.EOF, ""));
+		return tokens;
+	}
+
+	private static Token createHiddenToken(String text) {
+		CommonToken token = new CommonToken(5, text);
+		token.setChannel(Lexer.HIDDEN);
+		return token;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TwoStageParser;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestTwoStageParser extends BaseTest {
+	private LexerGrammar lg;
+	private Grammar g;
+	private final List<String> errors = new ArrayList<String>();
+
+	/**
+	 * For the input {@code c d b}, SLL prediction cannot tell that {@code e}
+	 * was invoked from the second alternative of {@code s} and chooses to
+	 * match {@code D} in {@code e}, so only the second stage succeeds.
+	 */
+	@Before
+	public void createGrammars() throws Exception {
+		lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"D : 'd' ;\n" +
+			"WS : ' ' -> skip ;\n");
+		g = new Grammar(
+			"parser grammar T;\n" +
+			"s : A e B | C e D B ;\n" +
+			"e : D | ;\n",
+			lg);
+	}
+
+	@Test
+	public void testFirstStageSucceeds() {
+		ParserInterpreter parser = createParser("c d d b");
+		TwoStageParser<ParserInterpreter> twoStage = new TwoStageParser<ParserInterpreter>(parser);
+		ParserRuleContext tree = parse(twoStage);
+
+		assertEquals("(s c (e d) d b)", tree.toStringTree(parser));
+		assertFalse(twoStage.isSecondStageUsed());
+		assertNull(twoStage.getFirstStageException());
+		assertEquals(0, twoStage.getSecondStageNanos());
+		assertEquals(1, twoStage.getParseCount());
+		assertEquals(0, twoStage.getSecondStageCount());
+		assertParserRestored(parser);
+	}
+
+	@Test
+	public void testSecondStageUsesFullContext() {
+		ParserInterpreter parser = createParser("c d b");
+		TwoStageParser<ParserInterpreter> twoStage = new TwoStageParser<ParserInterpreter>(parser);
+		ParserRuleContext tree = parse(twoStage);
+
+		assertEquals("(s c e d b)", tree.toStringTree(parser));
+		assertTrue(twoStage.isSecondStageUsed());
+		assertTrue(twoStage.getFirstStageException().getCause() instanceof RecognitionException);
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+		assertEquals(1, twoStage.getSecondStageCount());
+		assertEquals(twoStage.getSecondStageNanos(), twoStage.getTotalSecondStageNanos());
+		assertParserRestored(parser);
+	}
+
+	@Test
+	public void testOnlySecondStageErrorsAreReported() {
+		ParserInterpreter parser = createParser("c b");
+		TwoStageParser<ParserInterpreter> twoStage = new TwoStageParser<ParserInterpreter>(parser);
+		ParserRuleContext tree = parse(twoStage);
+
+		assertEquals("(s c e <missing D> b)", tree.toStringTree(parser));
+		assertTrue(twoStage.isSecondStageUsed());
+		assertEquals("[line 1:2 missing D at 'b']", errors.toString());
+		assertEquals(1, parser.getNumberOfSyntaxErrors());
+		assertParserRestored(parser);
+	}
+
+	@Test
+	public void testStatisticsAccumulate() {
+		ParserInterpreter parser = createParser("c d b");
+		TwoStageParser<ParserInterpreter> twoStage = new TwoStageParser<ParserInterpreter>(parser);
+		parse(twoStage);
+		parser.setInputStream(new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString("a d b"))));
+		parse(twoStage);
+
+		assertFalse(twoStage.isSecondStageUsed());
+		assertEquals(2, twoStage.getParseCount());
+		assertEquals(1, twoStage.getSecondStageCount());
+		assertTrue(twoStage.getTotalFirstStageNanos() >= twoStage.getFirstStageNanos());
+
+		twoStage.resetStatistics();
+		assertEquals(0, twoStage.getParseCount());
+		assertEquals(0, twoStage.getSecondStageCount());
+		assertEquals(0, twoStage.getTotalFirstStageNanos());
+		assertEquals(0, twoStage.getTotalSecondStageNanos());
+	}
+
+	@Test
+	public void testCancellationIsNotRetried() {
+		ParserInterpreter parser = createParser("c d b");
+		TwoStageParser<ParserInterpreter> twoStage = new TwoStageParser<ParserInterpreter>(parser);
+		ParseCancellationException cancellation = new ParseCancellationException("cancelled");
+		try {
+			twoStage.parse(p -> {
+				throw cancellation;
+			});
+			fail("Expected the cancellation to propagate.");
+		}
+		catch (ParseCancellationException ex) {
+			assertSame(cancellation, ex);
+		}
+
+		assertEquals(0, twoStage.getSecondStageCount());
+		assertParserRestored(parser);
+	}
+
+	private ParserInterpreter createParser(String input) {
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(CharStreams.fromString(input));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		parser.removeErrorListeners();
+		parser.addErrorListener(new BaseErrorListener() {
+			@Override
+			public <T extends Token> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+				errors.add("line " + line + ":" + charPositionInLine + " " + msg);
+			}
+		});
+		return parser;
+	}
+
+	private ParserRuleContext parse(TwoStageParser<ParserInterpreter> twoStage) {
+		int startRule = g.rules.get("s").index;
+		return twoStage.parse(p -> p.parse(startRule));
+	}
+
+	private static void assertParserRestored(ParserInterpreter parser) {
+		assertEquals(PredictionMode.LL, parser.getInterpreter().getPredictionMode());
+		assertEquals(DefaultErrorStrategy.class, parser.getErrorHandler().getClass());
+		assertEquals(1, parser.getErrorListeners().size());
+	}
+}